@@ -0,0 +1,18 @@
+#version 120
+
+varying vec4 v_color;
+varying float v_pointSize;
+
+void main() {
+    // Points a couple of pixels wide are already as round as they can get
+    if (v_pointSize <= 2.0) {
+        gl_FragColor = v_color;
+        return;
+    }
+    vec2 offset = gl_PointCoord * 2.0 - 1.0;
+    float distanceSquared = dot(offset, offset);
+    if (distanceSquared > 1.0) discard;
+    // Fade the outermost pixel for an anti-aliased rim
+    float edge = 1.0 - smoothstep(1.0 - 2.0 / v_pointSize, 1.0, sqrt(distanceSquared));
+    gl_FragColor = vec4(v_color.rgb, v_color.a * edge);
+}
@@ -0,0 +1,24 @@
+#version 120
+
+// One vertex per particle, expanded into a screen-aligned point sprite.
+attribute vec2 a_position;
+attribute float a_radius;
+attribute vec4 a_color;
+
+uniform mat4 u_projTrans;
+uniform float u_pixelsPerUnit;
+uniform float u_minCoverage;
+
+varying vec4 v_color;
+varying float v_pointSize;
+
+void main() {
+    // Keep at least one pixel so distant bodies never vanish, but let that pixel only be as opaque as the
+    // share of it the body covers
+    float diameter = 2.0 * a_radius * u_pixelsPerUnit;
+    float coverage = diameter < 1.0 ? clamp(0.785398 * diameter * diameter, u_minCoverage, 1.0) : 1.0;
+    v_color = vec4(a_color.rgb, a_color.a * coverage);
+    v_pointSize = max(diameter, 1.0);
+    gl_PointSize = v_pointSize;
+    gl_Position = u_projTrans * vec4(a_position, 0.0, 1.0);
+}
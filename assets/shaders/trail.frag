@@ -0,0 +1,9 @@
+#version 120
+
+varying vec4 v_color;
+varying float v_valid;
+
+void main() {
+    if (v_valid < 0.0) discard;
+    gl_FragColor = v_color;
+}
@@ -0,0 +1,18 @@
+#version 120
+
+// One vertex per body per trail sample; a_color.a is 1 for a sample of a live body and 0 for an empty one.
+attribute vec2 a_position;
+attribute vec4 a_color;
+
+uniform mat4 u_projTrans;
+uniform float u_alpha;
+
+varying vec4 v_color;
+varying float v_valid;
+
+void main() {
+    v_color = vec4(a_color.rgb, u_alpha);
+    // Interpolates to below zero along all but a vanishing stub of any segment that touches an empty sample
+    v_valid = a_color.a > 0.5 ? 1.0 : -1.0e6;
+    gl_Position = u_projTrans * vec4(a_position, 0.0, 1.0);
+}
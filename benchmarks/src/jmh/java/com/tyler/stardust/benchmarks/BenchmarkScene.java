@@ -0,0 +1,40 @@
+package com.tyler.stardust.benchmarks;
+
+import java.util.Random;
+
+import com.tyler.stardust.ParticleStore;
+
+/** Reproducible particle layouts shared by the benchmarks. */
+public enum BenchmarkScene {
+
+    /** Evenly spread bodies that almost never touch. */
+    UNIFORM,
+    /** A handful of dense Gaussian clumps with empty space between them. */
+    CLUSTERED,
+    /** Bodies packed so tightly that most of them overlap a neighbour. */
+    COLLIDING;
+
+    private static final long SEED = 42;
+    private static final int CLUSTERS = 8;
+
+    public ParticleStore create(int count) {
+        Random random = new Random(SEED);
+        ParticleStore particles = new ParticleStore(count);
+        double side = Math.sqrt(count) * (this == COLLIDING ? 8 : 40);
+
+        for (int i = 0; i < count; i++) {
+            double x, y;
+            if (this == CLUSTERED) {
+                int cluster = i % CLUSTERS;
+                double spread = side / 40;
+                x = side * (cluster % 4) / 4 + random.nextGaussian() * spread;
+                y = side * (cluster / 4) / 2 + random.nextGaussian() * spread;
+            } else {
+                x = random.nextDouble() * side;
+                y = random.nextDouble() * side;
+            }
+            particles.add(1 + random.nextDouble() * 99, x, y, random.nextGaussian(), random.nextGaussian(), 0xffffffff);
+        }
+        return particles;
+    }
+}
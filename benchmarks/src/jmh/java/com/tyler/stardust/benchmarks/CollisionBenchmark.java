@@ -0,0 +1,80 @@
+package com.tyler.stardust.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tyler.stardust.CollisionMode;
+import com.tyler.stardust.ParticleStore;
+import com.tyler.stardust.PhysicsEngine;
+
+/**
+ * {@link PhysicsEngine#handleCollisions} on its own, without gravity or integration. A pass resolves the overlaps
+ * it measures, so each operation first copies the unresolved scene back in; subtract {@link SceneCopyBenchmark}
+ * for the pass alone. Restoring in a per-invocation setup instead would time calls of a few microseconds one by
+ * one, which JMH cannot do reliably.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollisionBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int particleCount;
+
+    @Param({"UNIFORM", "CLUSTERED", "COLLIDING"})
+    public BenchmarkScene scene;
+
+    /**
+     * Neighbour-list margin; 0 detects from a fresh grid. Each operation restores the scene as new bodies, so 1
+     * measures building the lists, which a simulation pays once every several steps.
+     */
+    @Param({"0", "1"})
+    public double skin;
+
+    /** See {@link CollisionMode}: only {@code clustered} spreads a scene packed into one cluster over the threads. */
+    @Param({"exact", "clustered"})
+    public String mode;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private final PhysicsEngine engine = new PhysicsEngine();
+    private final ParticleStore particles = new ParticleStore();
+    private ParticleStore template;
+
+    @Setup(Level.Trial)
+    public void createScene() {
+        engine.setContactSkin(skin);
+        engine.setCollisionMode(CollisionMode.fromName(mode));
+        engine.setParallelism(threads);
+        template = scene.create(particleCount);
+    }
+
+    @Benchmark
+    public ParticleStore handleCollisions() {
+        particles.copyFrom(template);
+        engine.handleCollisions(particles);
+        return particles;
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        engine.shutdown();
+    }
+}
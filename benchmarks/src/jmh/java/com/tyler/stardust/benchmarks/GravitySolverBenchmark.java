@@ -0,0 +1,66 @@
+package com.tyler.stardust.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tyler.stardust.GravitySolver;
+import com.tyler.stardust.GravitySolverType;
+import com.tyler.stardust.ParticleStore;
+import com.tyler.stardust.Precision;
+import com.tyler.stardust.WorkerPool;
+
+/** One force evaluation on its own, comparing the double and float paths of each solver. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GravitySolverBenchmark {
+
+    @Param({"1000", "10000", "30000"})
+    public int particleCount;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    public BenchmarkScene scene;
+
+    @Param({"direct"})
+    public String solver;
+
+    @Param({"double", "float"})
+    public String precision;
+
+    private final WorkerPool workers = new WorkerPool(1);
+    private GravitySolver gravitySolver;
+    private ParticleStore particles;
+
+    // Forces leave the scene untouched, so one per trial is enough
+    @Setup
+    public void createScene() {
+        gravitySolver = GravitySolverType.fromName(solver).create(Precision.fromName(precision));
+        particles = scene.create(particleCount);
+    }
+
+    @TearDown
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    @Benchmark
+    public ParticleStore calculateAccelerations() {
+        gravitySolver.calculateAccelerations(particles, 1, workers);
+        return particles;
+    }
+}
@@ -0,0 +1,80 @@
+package com.tyler.stardust.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tyler.stardust.GravitySolverType;
+import com.tyler.stardust.ParticleStore;
+import com.tyler.stardust.PhysicsEngine;
+
+/**
+ * One full {@link PhysicsEngine#update} step. The direct sum at 100k bodies takes tens of seconds per
+ * operation; narrow the run with {@code -PjmhIncludes} when that is not what you are measuring.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhysicsEngineBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int particleCount;
+
+    @Param({"UNIFORM", "CLUSTERED", "COLLIDING"})
+    public BenchmarkScene scene;
+
+    @Param({"barnes-hut", "direct", "p3m"})
+    public String solver;
+
+    @Param({"1"})
+    public int threads;
+
+    private PhysicsEngine engine;
+    private ParticleStore template;
+    private final ParticleStore particles = new ParticleStore();
+
+    @Setup(Level.Trial)
+    public void createEngine() {
+        engine = new PhysicsEngine();
+        engine.setGravitationalConstant(1);
+        engine.setParallelism(threads);
+        engine.setGravitySolver(GravitySolverType.fromName(solver).create());
+    }
+
+    @Setup(Level.Trial)
+    public void createScene() {
+        template = scene.create(particleCount);
+    }
+
+    // Collisions merge and separate bodies every step, so every step starts again from the same scene
+    @Setup(Level.Invocation)
+    public void restoreScene() {
+        particles.copyFrom(template);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public ParticleStore update() {
+        engine.update(particles, 1.0 / 60.0);
+        return particles;
+    }
+}
@@ -0,0 +1,51 @@
+package com.tyler.stardust.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tyler.stardust.ParticleStore;
+
+/**
+ * Restoring a scene with {@link ParticleStore#copyFrom}, the part of each {@link CollisionBenchmark} operation that
+ * is not the pass.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SceneCopyBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int particleCount;
+
+    @Param({"UNIFORM", "CLUSTERED", "COLLIDING"})
+    public BenchmarkScene scene;
+
+    private final ParticleStore particles = new ParticleStore();
+    private ParticleStore template;
+
+    @Setup(Level.Trial)
+    public void createScene() {
+        template = scene.create(particleCount);
+    }
+
+    @Benchmark
+    public ParticleStore copyScene() {
+        particles.copyFrom(template);
+        return particles;
+    }
+}
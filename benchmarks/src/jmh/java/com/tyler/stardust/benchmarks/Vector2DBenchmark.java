@@ -0,0 +1,63 @@
+package com.tyler.stardust.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tyler.stardust.Vector2D;
+
+/** The {@link Vector2D} operations that used to sit in the per-pair force loop. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Vector2DBenchmark {
+
+    public Vector2D a = new Vector2D(3.5, -1.25);
+    public Vector2D b = new Vector2D(-7.0, 12.5);
+
+    @Benchmark
+    public Vector2D add() {
+        return new Vector2D(a.x, a.y).add(b);
+    }
+
+    @Benchmark
+    public Vector2D subtract() {
+        return a.subtract(b);
+    }
+
+    @Benchmark
+    public Vector2D scale() {
+        return a.scale(1.5);
+    }
+
+    @Benchmark
+    public Vector2D normalize() {
+        return a.normalize();
+    }
+
+    @Benchmark
+    public double dot() {
+        return a.dot(b);
+    }
+
+    @Benchmark
+    public double distanceTo() {
+        return a.distanceTo(b);
+    }
+
+    @Benchmark
+    public double calculateMagnitude() {
+        return a.calculateMagnitude();
+    }
+}
@@ -0,0 +1,111 @@
+package com.tyler.stardust;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.Matrix4;
+
+/**
+ * Leaves trails by never clearing an off-screen framebuffer: each new step darkens what is already there and
+ * draws the bodies on top, and the result is copied to the screen. The cost is one full-screen quad and one
+ * blit per frame, whatever the trail length or body count.
+ * <p>
+ * The darkening subtracts a fixed amount instead of scaling, so every trail reaches black after
+ * {@value #DEFAULT_LENGTH} steps rather than leaving an 8-bit residue behind. The accumulated image is in
+ * screen space, so it starts over whenever the camera moves.
+ */
+public class FadingTrailRenderer implements TrailRenderer {
+
+    public static final int DEFAULT_LENGTH = 60;
+
+    private final float fadePerStep;
+    private final SpriteBatch batch = new SpriteBatch();
+    private final ShapeRenderer fadeRenderer = new ShapeRenderer();
+    private final Matrix4 screenProjection = new Matrix4();
+    private FrameBuffer frameBuffer;
+    private long lastStep = Long.MIN_VALUE;
+
+    // View the accumulated image was drawn with
+    private float cameraX, cameraY, cameraZoom, viewportWidth, viewportHeight;
+
+    public FadingTrailRenderer() {
+        this(DEFAULT_LENGTH);
+    }
+
+    /** @param length steps until a trail has faded out completely */
+    public FadingTrailRenderer(int length) {
+        if (length < 1) throw new IllegalArgumentException("Trail length must be positive: " + length);
+        fadePerStep = 1f / length;
+    }
+
+    @Override
+    public void render(ParticleSnapshot snapshot, OrthographicCamera camera, ParticleRenderer bodies) {
+        int width = Gdx.graphics.getBackBufferWidth();
+        int height = Gdx.graphics.getBackBufferHeight();
+        if (frameBuffer == null || frameBuffer.getWidth() != width || frameBuffer.getHeight() != height) {
+            if (frameBuffer != null) frameBuffer.dispose();
+            frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, width, height, false);
+            reset();
+        }
+        if (camera.position.x != cameraX || camera.position.y != cameraY || camera.zoom != cameraZoom
+                || camera.viewportWidth != viewportWidth || camera.viewportHeight != viewportHeight) {
+            cameraX = camera.position.x;
+            cameraY = camera.position.y;
+            cameraZoom = camera.zoom;
+            viewportWidth = camera.viewportWidth;
+            viewportHeight = camera.viewportHeight;
+            reset();
+        }
+        screenProjection.setToOrtho2D(0, 0, width, height);
+
+        // Nothing changes until the next step arrives, so a paused simulation only pays for the blit
+        long step = snapshot.getStep();
+        if (step != lastStep) {
+            frameBuffer.begin();
+            if (lastStep == Long.MIN_VALUE || step < lastStep) {
+                Gdx.gl.glClearColor(0, 0, 0, 1);
+                Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+            } else {
+                fade(width, height, Math.min(1f, fadePerStep * (step - lastStep)));
+            }
+            bodies.render(snapshot, camera);
+            frameBuffer.end();
+            lastStep = step;
+        }
+
+        batch.setProjectionMatrix(screenProjection);
+        batch.disableBlending();
+        batch.begin();
+        batch.draw(frameBuffer.getColorBufferTexture(), 0, 0, width, height, 0, 0, width, height, false, true);
+        batch.end();
+    }
+
+    private void fade(int width, int height, float amount) {
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendEquation(GL20.GL_FUNC_REVERSE_SUBTRACT);
+        Gdx.gl.glBlendFunc(GL20.GL_ONE, GL20.GL_ONE);
+        fadeRenderer.setProjectionMatrix(screenProjection);
+        fadeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        fadeRenderer.setColor(amount, amount, amount, 0);
+        fadeRenderer.rect(0, 0, width, height);
+        fadeRenderer.end();
+        Gdx.gl.glBlendEquation(GL20.GL_FUNC_ADD);
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+    }
+
+    @Override
+    public void reset() {
+        lastStep = Long.MIN_VALUE;
+    }
+
+    @Override
+    public void dispose() {
+        if (frameBuffer != null) frameBuffer.dispose();
+        batch.dispose();
+        fadeRenderer.dispose();
+    }
+}
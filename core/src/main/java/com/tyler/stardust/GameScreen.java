@@ -1,6 +1,10 @@
 package com.tyler.stardust;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
@@ -10,25 +14,83 @@ import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 
 public class GameScreen implements Screen {
+
+    private static final String QUICKSAVE_FILE = "quicksave" + SnapshotFile.EXTENSION;
+    private static final String RECORDING_FILE = "recording" + TrajectoryRecorder.EXTENSION;
     
     private SimulatorParameterEditorUI simulatorParameterEditorUI;
-    private PhysicsEngine physicsEngine;
-    private ArrayList<Particle> particleList;
-    private ShapeRenderer shapeRenderer;
+    private final Map<GravitySolverType, GravitySolver> gravitySolvers = new EnumMap<GravitySolverType, GravitySolver>(GravitySolverType.class);
+    // Only touched by the simulation thread while it runs, and shut down here once it has stopped
+    private PhysicsEngine engine;
+    private SimulationRunner simulation;
+    private boolean reportedFailure;
+    // Set when watching a remote server; the local simulation is then never started
+    private SimulationClient remote;
+    private boolean framedRemoteScene;
+    private boolean reportedDisconnect;
+    private PerformanceMonitor performanceMonitor;
+    private final PerformanceMonitor.Sample performanceSample = new PerformanceMonitor.Sample();
+    private long renderNanos;
+    private ParticleRenderer pointRenderer;
+    private ParticleRenderer shapeRenderer;
+    private boolean useShapeRenderer;
+    private TrailMode trailMode = TrailMode.OFF;
+    private TrailRenderer trailRenderer;
     private OrthographicCamera camera;
 
+    // Recording and replay; the live simulation keeps running underneath a replay
+    private TrajectoryRecorder recorder;
+    private TrajectoryReader replay;
+    private final ParticleSnapshot replaySnapshot = new ParticleSnapshot();
+    private int replayFrame = -1;
+    private boolean replayPlaying;
+
+    // Last parameter values handed to the simulation thread
+    private float sentGravity = Float.NaN;
+    private float sentOpeningAngle = Float.NaN;
+    private GravitySolverType sentSolverType;
+    private int sentThreads;
+    private IntegratorType sentIntegratorType;
+
     public GameScreen() {
+        this(Precision.DOUBLE);
+    }
+
+    public GameScreen(Precision precision) {
+        this(precision, null);
+    }
+
+    /** @param server simulation server to watch instead of simulating locally, or null */
+    public GameScreen(Precision precision, InetSocketAddress server) {
         camera = new OrthographicCamera(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
         camera.position.set(camera.viewportWidth / 2f, camera.viewportHeight / 2f, 0);
         
         simulatorParameterEditorUI = new SimulatorParameterEditorUI();
-        physicsEngine = new PhysicsEngine();
-        particleList = new ArrayList<Particle>();
-        shapeRenderer = new ShapeRenderer();
+        for (GravitySolverType type : GravitySolverType.values()) {
+            gravitySolvers.put(type, type.create(precision));
+        }
+        engine = new PhysicsEngine();
+        performanceMonitor = engine.getPerformanceMonitor();
+        simulation = new SimulationRunner(engine, new ParticleStore());
+        if (server != null) {
+            try {
+                remote = new SimulationClient(server, SimulationClient.DEFAULT_CONNECT_TIMEOUT_MILLIS);
+                Gdx.app.log("GameScreen", "Watching the simulation at " + server);
+            } catch (IOException e) {
+                Gdx.app.error("GameScreen", "Could not connect to " + server + ", simulating locally", e);
+            }
+        }
+        shapeRenderer = new ShapeParticleRenderer();
+        try {
+            pointRenderer = new PointSpriteParticleRenderer();
+        } catch (GdxRuntimeException e) {
+            Gdx.app.error("GameScreen", "Falling back to ShapeRenderer", e);
+            useShapeRenderer = true;
+        }
     }
 
     @Override
@@ -39,13 +101,43 @@ public class GameScreen implements Screen {
             new InputAdapter() {
                 @Override
                 public boolean touchDown(int screenX, int screenY, int pointer, int button) {
-                    if (button == Input.Buttons.LEFT) {
+                    if (button == Input.Buttons.LEFT && replay == null) {
                         spawnParticleAtMouse(screenX, screenY);
                         return true;
                     }
                     return false;
                 }
 
+                @Override
+                public boolean keyDown(int keycode) {
+                    if (keycode == Input.Keys.R && pointRenderer != null) {
+                        useShapeRenderer = !useShapeRenderer;
+                        return true;
+                    }
+                    if (keycode == Input.Keys.F3) {
+                        simulatorParameterEditorUI.setPerformanceOverlayVisible(!simulatorParameterEditorUI.isPerformanceOverlayVisible());
+                        return true;
+                    }
+                    if (keycode == Input.Keys.F5) {
+                        saveSnapshot();
+                        return true;
+                    }
+                    if (keycode == Input.Keys.F9) {
+                        loadSnapshot();
+                        return true;
+                    }
+                    if (keycode == Input.Keys.T) {
+                        toggleRecording();
+                        return true;
+                    }
+                    if (keycode == Input.Keys.P) {
+                        toggleReplay();
+                        return true;
+                    }
+                    if (replay != null) return handleReplayKey(keycode);
+                    return false;
+                }
+
                 @Override
                 public boolean scrolled(float amountX, float amountY) {
                     camera.zoom += amountY * 0.1f * camera.zoom;
@@ -54,6 +146,11 @@ public class GameScreen implements Screen {
                 }
             }
         ));
+        if (remote == null) {
+            // Starting again after a failure clears it, so a later one gets reported too
+            reportedFailure = false;
+            simulation.start();
+        }
     }
     
     @Override
@@ -69,21 +166,34 @@ public class GameScreen implements Screen {
         
         camera.update();
 
-        physicsEngine.setGravitationalConstant(simulatorParameterEditorUI.getGravity());        
-        physicsEngine.update(particleList, delta);
+        if (remote == null) {
+            syncSimulationParameters();
+            if (simulation.getFailure() != null && !reportedFailure) {
+                reportedFailure = true;
+                Gdx.app.error("GameScreen", "The simulation stopped", simulation.getFailure());
+            }
+        } else if (!remote.isConnected() && !reportedDisconnect) {
+            reportedDisconnect = true;
+            Gdx.app.error("GameScreen", "Lost the connection to the server", remote.getFailure());
+        }
+        if (simulatorParameterEditorUI.pollGenerateRequest()) generateScene();
+        ParticleSnapshot snapshot = replay != null ? advanceReplay() : liveSnapshot();
+        if (remote != null && !framedRemoteScene && snapshot.getCount() > 0) {
+            framedRemoteScene = true;
+            frameScene(snapshot);
+        }
 
-        shapeRenderer.setProjectionMatrix(camera.combined);
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-        for (Particle particle : particleList) {
-            shapeRenderer.setColor(particle.getBodyColor());
-            shapeRenderer.circle(
-                (float)particle.getPosition().x,
-                (float)particle.getPosition().y,
-                (float)particle.getRadius()
-            );
+        long renderStart = System.nanoTime();
+        ParticleRenderer bodies = useShapeRenderer ? shapeRenderer : pointRenderer;
+        updateTrailMode();
+        if (trailRenderer != null) {
+            trailRenderer.render(snapshot, camera, bodies);
+        } else {
+            bodies.render(snapshot, camera);
         }
-        shapeRenderer.end();
+        renderNanos = System.nanoTime() - renderStart;
 
+        updatePerformanceOverlay();
         simulatorParameterEditorUI.render();
     }
     
@@ -107,8 +217,272 @@ public class GameScreen implements Screen {
     
     @Override
     public void dispose() {
+        if (recorder != null) stopRecording();
+        if (replay != null) stopReplay();
+        simulation.stop();
+        engine.shutdown();
+        if (remote != null) {
+            try {
+                remote.close();
+            } catch (IOException e) {
+                Gdx.app.error("GameScreen", "Could not close the connection to the server", e);
+            }
+        }
         simulatorParameterEditorUI.dispose();
         shapeRenderer.dispose();
+        if (pointRenderer != null) pointRenderer.dispose();
+        if (trailRenderer != null) trailRenderer.dispose();
+    }
+
+    // Trail renderers hold GPU buffers sized to the scene, so only the selected one exists
+    private void updateTrailMode() {
+        TrailMode mode = simulatorParameterEditorUI.getTrailMode();
+        if (mode == trailMode) return;
+        if (trailRenderer != null) {
+            trailRenderer.dispose();
+            trailRenderer = null;
+        }
+        trailMode = mode;
+        try {
+            trailRenderer = mode.create();
+        } catch (GdxRuntimeException e) {
+            Gdx.app.error("GameScreen", "Trails unavailable", e);
+            trailMode = TrailMode.OFF;
+            simulatorParameterEditorUI.setTrailMode(TrailMode.OFF);
+        }
+    }
+
+    private void resetTrails() {
+        if (trailRenderer != null) trailRenderer.reset();
+    }
+
+    // The engine belongs to the simulation thread, so parameter changes travel through its command queue
+    private void syncSimulationParameters() {
+        final float gravity = simulatorParameterEditorUI.getGravity();
+        if (gravity != sentGravity) {
+            sentGravity = gravity;
+            simulation.submit((engine, particles) -> engine.setGravitationalConstant(gravity));
+        }
+
+        final float openingAngle = simulatorParameterEditorUI.getOpeningAngle();
+        if (openingAngle != sentOpeningAngle) {
+            sentOpeningAngle = openingAngle;
+            final BarnesHutGravitySolver barnesHutSolver = (BarnesHutGravitySolver)gravitySolvers.get(GravitySolverType.BARNES_HUT);
+            simulation.submit((engine, particles) -> barnesHutSolver.setOpeningAngle(openingAngle));
+        }
+
+        GravitySolverType solverType = simulatorParameterEditorUI.getGravitySolverType();
+        if (solverType != sentSolverType) {
+            sentSolverType = solverType;
+            final GravitySolver solver = gravitySolvers.get(solverType);
+            simulation.submit((engine, particles) -> engine.setGravitySolver(solver));
+        }
+
+        final int threads = simulatorParameterEditorUI.getThreads();
+        if (threads != sentThreads) {
+            sentThreads = threads;
+            simulation.submit((engine, particles) -> engine.setParallelism(threads));
+        }
+
+        IntegratorType integratorType = simulatorParameterEditorUI.getIntegratorType();
+        if (integratorType != sentIntegratorType) {
+            sentIntegratorType = integratorType;
+            final Integrator integrator = integratorType.create();
+            simulation.submit((engine, particles) -> engine.setIntegrator(integrator));
+        }
+    }
+
+    // The monitor only runs while its overlay is open, so a hidden overlay costs the physics nothing
+    private void updatePerformanceOverlay() {
+        boolean visible = simulatorParameterEditorUI.isPerformanceOverlayVisible();
+        if (visible != performanceMonitor.isEnabled()) {
+            performanceMonitor.setEnabled(visible);
+            if (visible) performanceMonitor.reset();
+        }
+        if (visible) {
+            simulatorParameterEditorUI.updatePerformanceOverlay(performanceMonitor.sample(performanceSample), renderNanos);
+        }
+    }
+
+    private ParticleSnapshot liveSnapshot() {
+        return remote != null ? remote.getLatestSnapshot() : simulation.getLatestSnapshot();
+    }
+
+    // Centres the view on the bodies of a scene that was set up elsewhere, zoomed out far enough to show them all
+    private void frameScene(ParticleSnapshot snapshot) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < snapshot.getCount(); i++) {
+            minX = Math.min(minX, snapshot.getX(i));
+            minY = Math.min(minY, snapshot.getY(i));
+            maxX = Math.max(maxX, snapshot.getX(i));
+            maxY = Math.max(maxY, snapshot.getY(i));
+        }
+        camera.position.set((minX + maxX) / 2f, (minY + maxY) / 2f, 0);
+        camera.zoom = Math.max(0.1f, Math.max((maxX - minX) / camera.viewportWidth, (maxY - minY) / camera.viewportHeight) * 1.1f);
+        camera.update();
+    }
+
+    // A client only watches and spawns; the server owns everything else about the scene
+    private boolean unavailableWhileRemote(String action) {
+        if (remote == null) return false;
+        Gdx.app.log("GameScreen", action + " is not available while watching a server");
+        return true;
+    }
+
+    // Replaces the scene with a generated one centred on the view, and zooms out far enough to show it
+    private void generateScene() {
+        if (unavailableWhileRemote("Generating a scene")) return;
+        final int count = simulatorParameterEditorUI.getSceneBodyCount();
+        final SceneGenerator generator = simulatorParameterEditorUI.getSceneType().create();
+        generator.setCenter(camera.position.x, camera.position.y);
+        camera.zoom = Math.max(0.1f, (float)(2 * generator.getExtent(count) / Math.min(camera.viewportWidth, camera.viewportHeight)));
+        simulation.submit((engine, particles) -> {
+            particles.clear();
+            generator.generate(particles, count, engine.getGravitationalConstant(), engine.getWorkers());
+            simulation.setClock(0, 0);
+            Gdx.app.log("GameScreen", "Generated " + count + " bodies");
+        });
+    }
+
+    private void saveSnapshot() {
+        if (unavailableWhileRemote("Saving")) return;
+        final Path file = Gdx.files.local(QUICKSAVE_FILE).file().toPath();
+        simulation.submit((engine, particles) -> {
+            try {
+                SnapshotFile.write(particles, simulation.getStep(), simulation.getSimulationTime(), file);
+                Gdx.app.log("GameScreen", "Saved " + particles.size() + " particles to " + file);
+            } catch (IOException e) {
+                Gdx.app.error("GameScreen", "Could not save " + file, e);
+            }
+        });
+    }
+
+    private void loadSnapshot() {
+        if (unavailableWhileRemote("Loading")) return;
+        final Path file = Gdx.files.local(QUICKSAVE_FILE).file().toPath();
+        simulation.submit((engine, particles) -> {
+            try {
+                SnapshotFile.Header header = SnapshotFile.read(file, particles);
+                simulation.setClock(header.step, header.simulationTime);
+                Gdx.app.log("GameScreen", "Loaded " + header.count + " particles from " + file);
+            } catch (IOException e) {
+                Gdx.app.error("GameScreen", "Could not load " + file, e);
+            }
+        });
+    }
+
+    private void toggleRecording() {
+        if (recorder != null) {
+            stopRecording();
+            return;
+        }
+        if (unavailableWhileRemote("Recording")) return;
+        try {
+            final TrajectoryRecorder started = new TrajectoryRecorder(Gdx.files.local(RECORDING_FILE).file().toPath());
+            recorder = started;
+            simulation.submit((engine, particles) -> engine.addStepListener(started));
+            Gdx.app.log("GameScreen", "Recording every " + TrajectoryRecorder.DEFAULT_RECORD_EVERY + "th step to " + RECORDING_FILE);
+        } catch (IOException e) {
+            Gdx.app.error("GameScreen", "Could not start recording", e);
+        }
+    }
+
+    private void stopRecording() {
+        final TrajectoryRecorder stopped = recorder;
+        recorder = null;
+        simulation.submit((engine, particles) -> engine.removeStepListener(stopped));
+        try {
+            // Steps that still reach the recorder after this are ignored, so closing here is safe
+            stopped.close();
+            Gdx.app.log("GameScreen", "Recorded " + stopped.getRecordedFrames() + " frames ("
+                + stopped.getDroppedFrames() + " dropped)");
+        } catch (IOException e) {
+            Gdx.app.error("GameScreen", "Recording failed", e);
+        }
+    }
+
+    private void toggleReplay() {
+        if (replay != null) {
+            stopReplay();
+            return;
+        }
+        if (recorder != null) stopRecording();
+        try {
+            replay = new TrajectoryReader(Gdx.files.local(RECORDING_FILE).file().toPath());
+        } catch (IOException e) {
+            Gdx.app.error("GameScreen", "Could not open " + RECORDING_FILE, e);
+            return;
+        }
+        if (replay.getFrameCount() == 0) {
+            Gdx.app.log("GameScreen", RECORDING_FILE + " has no frames");
+            stopReplay();
+            return;
+        }
+        replayFrame = -1;
+        replayPlaying = true;
+        resetTrails();
+        simulatorParameterEditorUI.showReplayControls(replay.getFrameCount());
+    }
+
+    private void stopReplay() {
+        try {
+            replay.close();
+        } catch (IOException e) {
+            Gdx.app.error("GameScreen", "Could not close " + RECORDING_FILE, e);
+        }
+        replay = null;
+        simulatorParameterEditorUI.hideReplayControls();
+        resetTrails();
+    }
+
+    // Space plays or pauses, the arrow keys step one frame (ten with shift), Home and End jump to either end
+    private boolean handleReplayKey(int keycode) {
+        int last = replay.getFrameCount() - 1;
+        int frame = simulatorParameterEditorUI.getReplayFrame();
+        int stride = Gdx.input.isKeyPressed(Input.Keys.SHIFT_LEFT) || Gdx.input.isKeyPressed(Input.Keys.SHIFT_RIGHT) ? 10 : 1;
+        switch (keycode) {
+            case Input.Keys.SPACE:
+                replayPlaying = !replayPlaying;
+                if (replayPlaying && frame == last) simulatorParameterEditorUI.setReplayFrame(0);
+                return true;
+            case Input.Keys.LEFT:
+                replayPlaying = false;
+                simulatorParameterEditorUI.setReplayFrame(Math.max(0, frame - stride));
+                return true;
+            case Input.Keys.RIGHT:
+                replayPlaying = false;
+                simulatorParameterEditorUI.setReplayFrame(Math.min(last, frame + stride));
+                return true;
+            case Input.Keys.HOME:
+                simulatorParameterEditorUI.setReplayFrame(0);
+                return true;
+            case Input.Keys.END:
+                simulatorParameterEditorUI.setReplayFrame(last);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private ParticleSnapshot advanceReplay() {
+        int frame = simulatorParameterEditorUI.getReplayFrame();
+        if (replayPlaying && !simulatorParameterEditorUI.isScrubbingReplay() && replayFrame >= 0) {
+            frame = Math.min(replay.getFrameCount() - 1, frame + 1);
+            if (frame == replay.getFrameCount() - 1) replayPlaying = false;
+            simulatorParameterEditorUI.setReplayFrame(frame);
+        }
+        if (frame != replayFrame) {
+            try {
+                replay.readFrame(frame, replaySnapshot);
+                replayFrame = frame;
+            } catch (IOException e) {
+                Gdx.app.error("GameScreen", "Could not read frame " + frame, e);
+                stopReplay();
+                return liveSnapshot();
+            }
+        }
+        return replaySnapshot;
     }
 
     private void spawnParticleAtMouse(int screenX, int screenY) {
@@ -119,9 +493,17 @@ public class GameScreen implements Screen {
                 simulatorParameterEditorUI.getMass(),
                 new Vector2D(worldCoords.x, worldCoords.y))
             .velocity(new Vector2D(0, 0))
-            .bodyColor(Color.WHITE)
+            .bodyColor(Color.rgba8888(Color.WHITE))
             .build();
-            
-        particleList.add(particle);
+
+        if (remote != null) {
+            try {
+                remote.spawn(particle.getMass(), worldCoords.x, worldCoords.y, 0, 0, particle.getBodyColor());
+            } catch (IOException e) {
+                Gdx.app.error("GameScreen", "Could not send the new body to the server", e);
+            }
+            return;
+        }
+        simulation.submit((engine, particles) -> particles.add(particle));
     }
 }
@@ -0,0 +1,329 @@
+package com.tyler.stardust;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Draws each body's last {@value #DEFAULT_LENGTH} positions as a polyline that fades with age, from a ring buffer
+ * that lives on the GPU.
+ * <p>
+ * Every body gets a slot, and the vertex buffer holds one column of slots per sample, oldest to newest around
+ * a shared head. A new sample therefore overwrites one contiguous column, so each one costs a single
+ * {@code glBufferSubData} of a dozen bytes per body however long the trails are. The segments between two
+ * neighbouring columns share one static index buffer and one draw call, with the attribute pointers moved to
+ * the older column.
+ * <p>
+ * Slots follow bodies by id. A slot left by a removed body is written empty at every sample (alpha zero, which
+ * the shader uses to drop any segment touching it) and is only handed to a new body once every column has been
+ * overwritten, so a new body never inherits its predecessor's path.
+ */
+public class LineTrailRenderer implements TrailRenderer {
+
+    public static final int DEFAULT_LENGTH = 32;
+    /** Simulation steps between samples, so the trails cover {@code DEFAULT_LENGTH * DEFAULT_SAMPLE_INTERVAL} steps. */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 2;
+
+    private static final int BYTES_PER_VERTEX = 12;
+    private static final int COLOR_OFFSET = 8;
+    private static final int MIN_CAPACITY = 1024;
+    private static final float MAX_ALPHA = 0.6f;
+
+    private final int length;
+    private final int sampleInterval;
+    private final ShaderProgram shader;
+    private final int positionLocation;
+    private final int colorLocation;
+
+    // GL buffers: length + 1 columns of capacity vertices (the last column mirrors the first so the segments
+    // that wrap around need no special case), and the indices pairing slot s of one column with the next
+    private int vertexBuffer;
+    private int indexBuffer;
+    private int capacity;
+    private ByteBuffer column;
+    private boolean columnsEmpty = true;
+    private int head;
+    private long samples;
+    private long lastStep = Long.MIN_VALUE;
+
+    // Ids and slots of the bodies at the last sample, by index
+    private int bodyCount;
+    private long[] bodyIds = new long[0];
+    private int[] bodySlots = new int[0];
+    private long[] nextIds = new long[0];
+    private int[] nextSlots = new int[0];
+
+    // Index of each slot's body at the last sample, or -1 for an empty slot
+    private int slotCount;
+    private int[] slotBody = new int[0];
+
+    // Empty slots waiting for their old path to be overwritten, in the order they were freed
+    private int[] freeSlots = new int[16];
+    private long[] freedAt = new long[16];
+    private int freeHead;
+    private int freeSize;
+
+    /**
+     * @throws GdxRuntimeException if the trail shaders fail to compile
+     */
+    public LineTrailRenderer() {
+        this(DEFAULT_LENGTH, DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    public LineTrailRenderer(int length, int sampleInterval) {
+        if (length < 2) throw new IllegalArgumentException("Trails need at least two samples: " + length);
+        if (sampleInterval < 1) throw new IllegalArgumentException("Sample interval must be positive: " + sampleInterval);
+        this.length = length;
+        this.sampleInterval = sampleInterval;
+        ShaderProgram.pedantic = false;
+        shader = new ShaderProgram(
+            Gdx.files.internal("shaders/trail.vert"),
+            Gdx.files.internal("shaders/trail.frag"));
+        if (!shader.isCompiled()) {
+            String log = shader.getLog();
+            shader.dispose();
+            throw new GdxRuntimeException("Trail shader failed to compile: " + log);
+        }
+        positionLocation = shader.getAttributeLocation("a_position");
+        colorLocation = shader.getAttributeLocation("a_color");
+    }
+
+    @Override
+    public void render(ParticleSnapshot snapshot, OrthographicCamera camera, ParticleRenderer bodies) {
+        long step = snapshot.getStep();
+        if (step < lastStep) reset();
+        if (lastStep == Long.MIN_VALUE || step - lastStep >= sampleInterval) {
+            sample(snapshot);
+            lastStep = step;
+        }
+        draw(camera);
+        bodies.render(snapshot, camera);
+    }
+
+    @Override
+    public void reset() {
+        lastStep = Long.MIN_VALUE;
+        bodyCount = 0;
+        slotCount = 0;
+        freeSize = 0;
+        samples = 0;
+    }
+
+    private void sample(ParticleSnapshot snapshot) {
+        // A new scene, or ids that do not ascend, start the trails over rather than churning through slots
+        if (!remap(snapshot)) restart(snapshot);
+        if (slotCount > capacity || column == null) {
+            allocate(Math.max(1, slotCount));
+        }
+
+        head = (head + 1) % length;
+        ByteBuffer column = this.column;
+        column.clear();
+        for (int slot = 0; slot < slotCount; slot++) {
+            int body = slotBody[slot];
+            if (body < 0) {
+                column.putFloat(0).putFloat(0).putInt(0);
+                continue;
+            }
+            int rgba = snapshot.getColor(body);
+            column.putFloat(snapshot.getX(body)).putFloat(snapshot.getY(body))
+                .put((byte)(rgba >>> 24)).put((byte)(rgba >>> 16)).put((byte)(rgba >>> 8)).put((byte)0xff);
+        }
+        column.flip();
+        if (column.hasRemaining()) {
+            Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, vertexBuffer);
+            Gdx.gl.glBufferSubData(GL20.GL_ARRAY_BUFFER, head * capacity * BYTES_PER_VERTEX, column.remaining(), column);
+            if (head == 0) {
+                Gdx.gl.glBufferSubData(GL20.GL_ARRAY_BUFFER, length * capacity * BYTES_PER_VERTEX, column.remaining(), column);
+            }
+            Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+            columnsEmpty = false;
+        }
+        samples++;
+    }
+
+    // Carries slots over from the last sample by walking both id lists in ascending order; false if most bodies
+    // are new or the ids are out of order
+    private boolean remap(ParticleSnapshot snapshot) {
+        int count = snapshot.getCount();
+        if (nextIds.length < count) {
+            nextIds = new long[Math.max(count, nextIds.length * 2)];
+            nextSlots = new int[nextIds.length];
+        }
+        int previous = 0;
+        int kept = 0;
+        long lastId = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long id = snapshot.getId(i);
+            if (i > 0 && id <= lastId) return false;
+            lastId = id;
+            while (previous < bodyCount && bodyIds[previous] < id) {
+                free(bodySlots[previous++]);
+            }
+            int slot;
+            if (previous < bodyCount && bodyIds[previous] == id) {
+                slot = bodySlots[previous++];
+                kept++;
+            } else {
+                slot = allocateSlot();
+            }
+            slotBody[slot] = i;
+            nextIds[i] = id;
+            nextSlots[i] = slot;
+        }
+        while (previous < bodyCount) {
+            free(bodySlots[previous++]);
+        }
+        swapBodies(count);
+        return 2 * kept >= count;
+    }
+
+    // Gives body i slot i and empties every column
+    private void restart(ParticleSnapshot snapshot) {
+        int count = snapshot.getCount();
+        reset();
+        ensureSlots(count);
+        for (int i = 0; i < count; i++) {
+            nextIds[i] = snapshot.getId(i);
+            nextSlots[i] = i;
+            slotBody[i] = i;
+        }
+        swapBodies(count);
+        slotCount = count;
+        if (count > capacity) {
+            allocate(count);
+        } else if (!columnsEmpty) {
+            clearColumns();
+        }
+    }
+
+    private void swapBodies(int count) {
+        long[] ids = bodyIds;
+        bodyIds = nextIds;
+        nextIds = ids;
+        int[] slots = bodySlots;
+        bodySlots = nextSlots;
+        nextSlots = slots;
+        bodyCount = count;
+    }
+
+    private int allocateSlot() {
+        // A freed slot may be reused once every column has been written empty since
+        if (freeSize > 0 && samples - freedAt[freeHead] >= length) {
+            int slot = freeSlots[freeHead];
+            freeHead = (freeHead + 1) % freeSlots.length;
+            freeSize--;
+            return slot;
+        }
+        ensureSlots(slotCount + 1);
+        return slotCount++;
+    }
+
+    private void free(int slot) {
+        slotBody[slot] = -1;
+        if (freeSize == freeSlots.length) {
+            int[] slots = new int[freeSlots.length * 2];
+            long[] times = new long[slots.length];
+            for (int i = 0; i < freeSize; i++) {
+                slots[i] = freeSlots[(freeHead + i) % freeSlots.length];
+                times[i] = freedAt[(freeHead + i) % freeSlots.length];
+            }
+            freeSlots = slots;
+            freedAt = times;
+            freeHead = 0;
+        }
+        int tail = (freeHead + freeSize) % freeSlots.length;
+        freeSlots[tail] = slot;
+        freedAt[tail] = samples;
+        freeSize++;
+    }
+
+    private void ensureSlots(int slots) {
+        if (slotBody.length < slots) slotBody = Arrays.copyOf(slotBody, Math.max(slots, slotBody.length * 2));
+        if (nextIds.length < slots) {
+            nextIds = Arrays.copyOf(nextIds, Math.max(slots, nextIds.length * 2));
+            nextSlots = Arrays.copyOf(nextSlots, nextIds.length);
+        }
+    }
+
+    // Growing changes the column stride, so the old paths are dropped rather than moved; the headroom keeps
+    // bodies added to a scene from doing that straight away
+    private void allocate(int slots) {
+        capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(slots + slots / 2 - 1) << 1);
+        column = ByteBuffer.allocateDirect(capacity * BYTES_PER_VERTEX).order(ByteOrder.nativeOrder());
+        if (vertexBuffer == 0) {
+            vertexBuffer = Gdx.gl.glGenBuffer();
+            indexBuffer = Gdx.gl.glGenBuffer();
+        }
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, vertexBuffer);
+        Gdx.gl.glBufferData(GL20.GL_ARRAY_BUFFER, (length + 1) * capacity * BYTES_PER_VERTEX, null, GL20.GL_DYNAMIC_DRAW);
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+        clearColumns();
+
+        IntBuffer indices = ByteBuffer.allocateDirect(2 * capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        for (int slot = 0; slot < capacity; slot++) {
+            indices.put(slot).put(capacity + slot);
+        }
+        indices.flip();
+        Gdx.gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        Gdx.gl.glBufferData(GL20.GL_ELEMENT_ARRAY_BUFFER, 2 * capacity * 4, indices, GL20.GL_STATIC_DRAW);
+        Gdx.gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    private void clearColumns() {
+        ByteBuffer column = this.column;
+        column.clear();
+        while (column.hasRemaining()) column.putInt(0);
+        column.flip();
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, vertexBuffer);
+        for (int c = 0; c <= length; c++) {
+            Gdx.gl.glBufferSubData(GL20.GL_ARRAY_BUFFER, c * capacity * BYTES_PER_VERTEX, column.remaining(), column);
+        }
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+        columnsEmpty = true;
+    }
+
+    private void draw(OrthographicCamera camera) {
+        int segments = (int)Math.min(samples, length) - 1;
+        if (segments <= 0 || slotCount == 0) return;
+
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        shader.bind();
+        shader.setUniformMatrix("u_projTrans", camera.combined);
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, vertexBuffer);
+        Gdx.gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        shader.enableVertexAttribute(positionLocation);
+        shader.enableVertexAttribute(colorLocation);
+        for (int age = 0; age < segments; age++) {
+            // The segments from age + 1 samples back to age samples back start in the older column
+            int older = Math.floorMod(head - age - 1, length);
+            int offset = older * capacity * BYTES_PER_VERTEX;
+            shader.setVertexAttribute(positionLocation, 2, GL20.GL_FLOAT, false, BYTES_PER_VERTEX, offset);
+            shader.setVertexAttribute(colorLocation, 4, GL20.GL_UNSIGNED_BYTE, true, BYTES_PER_VERTEX, offset + COLOR_OFFSET);
+            shader.setUniformf("u_alpha", MAX_ALPHA * (segments - age) / segments);
+            Gdx.gl.glDrawElements(GL20.GL_LINES, 2 * slotCount, GL20.GL_UNSIGNED_INT, 0);
+        }
+        shader.disableVertexAttribute(positionLocation);
+        shader.disableVertexAttribute(colorLocation);
+        Gdx.gl.glBindBuffer(GL20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+    }
+
+    @Override
+    public void dispose() {
+        if (vertexBuffer != 0) {
+            Gdx.gl.glDeleteBuffer(vertexBuffer);
+            Gdx.gl.glDeleteBuffer(indexBuffer);
+        }
+        shader.dispose();
+    }
+}
@@ -1,12 +1,33 @@
 package com.tyler.stardust;
 
+import java.net.InetSocketAddress;
+
 import com.badlogic.gdx.Game;
 
 /** {@link com.badlogic.gdx.ApplicationListener} implementation shared by all platforms. */
 public class Main extends Game {
+
+    private final Precision precision;
+    private final InetSocketAddress server;
+
+    public Main() {
+        this(Precision.DOUBLE);
+    }
+
+    /** @param precision arithmetic of the force sums, fixed for the lifetime of the application */
+    public Main(Precision precision) {
+        this(precision, null);
+    }
+
+    /** @param server simulation server to watch instead of simulating locally, or null */
+    public Main(Precision precision, InetSocketAddress server) {
+        this.precision = precision;
+        this.server = server;
+    }
+
     @Override
     public void create() {
-        setScreen(new GameScreen());
+        setScreen(new GameScreen(precision, server));
 
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.tyler.stardust;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+
+/**
+ * Camera-aware culling and level-of-detail decisions shared by the particle renderers. Call
+ * {@link #update(OrthographicCamera)} once per frame, then classify each body by its on-screen size.
+ */
+public class ParticleLod {
+
+    /** Bodies narrower than this many pixels are drawn as single points or merged into a density splat. */
+    public static final float SUB_PIXEL_DIAMETER = 1f;
+    /** Bodies at least this many pixels wide get full circle geometry; smaller ones get a coarse polygon. */
+    public static final float FULL_CIRCLE_DIAMETER = 24f;
+
+    private static final int MIN_SEGMENTS = 6;
+    private static final int MAX_SEGMENTS = 64;
+
+    private float left, right, bottom, top;
+    private float pixelsPerUnit = 1f;
+
+    public void update(OrthographicCamera camera) {
+        float halfWidth = camera.viewportWidth * camera.zoom / 2f;
+        float halfHeight = camera.viewportHeight * camera.zoom / 2f;
+        left = camera.position.x - halfWidth;
+        right = camera.position.x + halfWidth;
+        bottom = camera.position.y - halfHeight;
+        top = camera.position.y + halfHeight;
+        pixelsPerUnit = Gdx.graphics.getBackBufferWidth() / (2f * halfWidth);
+    }
+
+    /** Whether any part of the disc overlaps the view rectangle. */
+    public boolean isVisible(float x, float y, float radius) {
+        return x + radius >= left && x - radius <= right && y + radius >= bottom && y - radius <= top;
+    }
+
+    /**
+     * The fraction of the box from ({@code minX}, {@code minY}) to ({@code maxX}, {@code maxY}) inside the view
+     * rectangle: 1 when it is all in view, 0 when none of it is.
+     */
+    public float visibleFraction(float minX, float minY, float maxX, float maxY) {
+        float width = Math.min(right, maxX) - Math.max(left, minX);
+        float height = Math.min(top, maxY) - Math.max(bottom, minY);
+        if (width < 0 || height < 0) return 0;
+        float area = (maxX - minX) * (maxY - minY);
+        return area > 0 ? Math.min(1f, width * height / area) : 1;
+    }
+
+    public float getPixelsPerUnit() {
+        return pixelsPerUnit;
+    }
+
+    public float getLeft() {
+        return left;
+    }
+
+    public float getBottom() {
+        return bottom;
+    }
+
+    public float pixelDiameter(float radius) {
+        return 2f * radius * pixelsPerUnit;
+    }
+
+    public boolean isSubPixel(float radius) {
+        return pixelDiameter(radius) < SUB_PIXEL_DIAMETER;
+    }
+
+    /** Polygon segments for a circle so that each edge covers only a few pixels of its circumference. */
+    public int circleSegments(float radius) {
+        float diameter = pixelDiameter(radius);
+        if (diameter >= FULL_CIRCLE_DIAMETER) return MAX_SEGMENTS;
+        return Math.max(MIN_SEGMENTS, Math.min(MAX_SEGMENTS, (int)(diameter * Math.PI / 4f)));
+    }
+}
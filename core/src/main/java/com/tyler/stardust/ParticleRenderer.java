@@ -0,0 +1,11 @@
+package com.tyler.stardust;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+
+/** Draws every body in a {@link ParticleSnapshot}. */
+public interface ParticleRenderer {
+
+    void render(ParticleSnapshot snapshot, OrthographicCamera camera);
+
+    void dispose();
+}
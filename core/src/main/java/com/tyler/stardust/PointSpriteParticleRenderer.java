@@ -0,0 +1,272 @@
+package com.tyler.stardust;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Draws every body as one GL point sprite: a single vertex per body and a single draw call per frame,
+ * with the disc cut out in the fragment shader. Bodies wider than the driver's maximum point size are
+ * handed to a {@link ShapeParticleRenderer} instead.
+ * <p>
+ * While every body fits in a point sprite and most of the scene is in view, the snapshot's off-heap vertex buffer
+ * is uploaded as it is and drawn whole: there is no per-body work on the render thread, the GPU clips what is
+ * off-screen, and the shader draws sub-pixel bodies as single pixels whose opacity follows the area they cover.
+ * <p>
+ * Otherwise each body is looked at on the CPU. Off-screen bodies are culled, which is cheaper than uploading and
+ * shading them once the view takes in less than {@value #MIN_VISIBLE_FRACTION} of the scene's bounding box.
+ * Sub-pixel bodies are merged into a density splat: a screen-space grid of {@value #SPLAT_CELL_PIXELS}-pixel cells
+ * that each become one point whose color is the area-weighted mean of the bodies inside and whose opacity follows
+ * their combined area.
+ */
+public class PointSpriteParticleRenderer implements ParticleRenderer {
+
+    // Desktop GL enables that GLES 2.0 lacks, so GL20 has no constants for them
+    private static final int GL_VERTEX_PROGRAM_POINT_SIZE = 0x8642;
+    private static final int GL_POINT_SPRITE = 0x8861;
+    private static final int GL_ALIASED_POINT_SIZE_RANGE = 0x846E;
+
+    private static final int FLOATS_PER_PARTICLE = ParticleSnapshot.FLOATS_PER_PARTICLE;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SPLAT_CELL_PIXELS = 2;
+    // Keep lone specks of dust visible even though they cover a fraction of their cell
+    private static final float MIN_SPLAT_ALPHA = 0.35f;
+    private static final float MIN_VISIBLE_FRACTION = 0.25f;
+
+    private final ShaderProgram shader;
+    private final ShapeParticleRenderer oversizeRenderer;
+    private final float maxPointSize;
+    private final int positionLocation;
+    private final int radiusLocation;
+    private final int colorLocation;
+    private final int snapshotBuffer;
+    private Mesh mesh;
+    private int capacity;
+    private float[] vertices;
+    private int[] oversized = new int[16];
+    private final ParticleLod lod = new ParticleLod();
+
+    // Density splat cells, indexed row-major; only the cells listed in splatCells are non-zero
+    private int splatColumns, splatRows;
+    private float[] splatArea = new float[0];
+    private float[] splatRed = new float[0], splatGreen = new float[0], splatBlue = new float[0];
+    private int[] splatCells = new int[0];
+    private int splatCellCount;
+
+    /**
+     * @throws GdxRuntimeException if the particle shaders fail to compile
+     */
+    public PointSpriteParticleRenderer() {
+        ShaderProgram.pedantic = false;
+        shader = new ShaderProgram(
+            Gdx.files.internal("shaders/particle.vert"),
+            Gdx.files.internal("shaders/particle.frag"));
+        if (!shader.isCompiled()) {
+            String log = shader.getLog();
+            shader.dispose();
+            throw new GdxRuntimeException("Particle shader failed to compile: " + log);
+        }
+        maxPointSize = queryMaxPointSize();
+        positionLocation = shader.getAttributeLocation(ShaderProgram.POSITION_ATTRIBUTE);
+        radiusLocation = shader.getAttributeLocation("a_radius");
+        colorLocation = shader.getAttributeLocation(ShaderProgram.COLOR_ATTRIBUTE);
+        snapshotBuffer = Gdx.gl.glGenBuffer();
+        oversizeRenderer = new ShapeParticleRenderer();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public void render(ParticleSnapshot snapshot, OrthographicCamera camera) {
+        lod.update(camera);
+        float visible = lod.visibleFraction(snapshot.getMinX(), snapshot.getMinY(), snapshot.getMaxX(), snapshot.getMaxY());
+        if (lod.pixelDiameter(snapshot.getMaxRadius()) <= maxPointSize && visible >= MIN_VISIBLE_FRACTION) {
+            renderSnapshot(snapshot, camera);
+        } else {
+            renderCulled(snapshot, camera);
+        }
+    }
+
+    private void renderSnapshot(ParticleSnapshot snapshot, OrthographicCamera camera) {
+        int count = snapshot.getCount();
+        if (count == 0) return;
+        FloatBuffer vertices = snapshot.getVertices();
+        vertices.position(0);
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, snapshotBuffer);
+        // Orphans last frame's storage and copies straight from the snapshot's native memory
+        Gdx.gl.glBufferData(GL20.GL_ARRAY_BUFFER, count * ParticleSnapshot.BYTES_PER_PARTICLE, vertices, GL20.GL_STREAM_DRAW);
+
+        beginPoints(camera);
+        int stride = ParticleSnapshot.BYTES_PER_PARTICLE;
+        shader.enableVertexAttribute(positionLocation);
+        shader.enableVertexAttribute(radiusLocation);
+        shader.enableVertexAttribute(colorLocation);
+        shader.setVertexAttribute(positionLocation, 2, GL20.GL_FLOAT, false, stride, 0);
+        shader.setVertexAttribute(radiusLocation, 1, GL20.GL_FLOAT, false, stride, 8);
+        shader.setVertexAttribute(colorLocation, 4, GL20.GL_UNSIGNED_BYTE, true, stride, 12);
+        Gdx.gl.glDrawArrays(GL20.GL_POINTS, 0, count);
+        shader.disableVertexAttribute(positionLocation);
+        shader.disableVertexAttribute(radiusLocation);
+        shader.disableVertexAttribute(colorLocation);
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+        endPoints();
+    }
+
+    private void renderCulled(ParticleSnapshot snapshot, OrthographicCamera camera) {
+        int count = snapshot.getCount();
+        prepareSplat();
+
+        float pixelsPerUnit = lod.getPixelsPerUnit();
+        float maxRadius = maxPointSize / (2f * pixelsPerUnit);
+
+        int vertexCount = 0;
+        int oversizedCount = 0;
+        for (int i = 0; i < count; i++) {
+            float x = snapshot.getX(i);
+            float y = snapshot.getY(i);
+            float radius = snapshot.getRadius(i);
+            if (!lod.isVisible(x, y, radius)) continue;
+
+            if (lod.isSubPixel(radius)) {
+                splat(x, y, radius, snapshot.getColor(i));
+            } else if (radius > maxRadius) {
+                if (oversizedCount == oversized.length) {
+                    int[] grown = new int[oversized.length * 2];
+                    System.arraycopy(oversized, 0, grown, 0, oversizedCount);
+                    oversized = grown;
+                }
+                oversized[oversizedCount++] = i;
+            } else {
+                // Mesh color attributes are ABGR, the snapshot stores RGBA
+                putVertex(vertexCount++, x, y, radius, ParticleSnapshot.packColor(snapshot.getColor(i)));
+            }
+        }
+        vertexCount = emitSplat(vertexCount);
+
+        if (vertexCount > 0) {
+            mesh.setVertices(vertices, 0, vertexCount * FLOATS_PER_PARTICLE);
+            beginPoints(camera);
+            mesh.render(shader, GL20.GL_POINTS, 0, vertexCount);
+            endPoints();
+        }
+
+        if (oversizedCount > 0) {
+            oversizeRenderer.render(snapshot, camera, oversized, oversizedCount);
+        }
+    }
+
+    private void beginPoints(OrthographicCamera camera) {
+        Gdx.gl.glEnable(GL_VERTEX_PROGRAM_POINT_SIZE);
+        Gdx.gl.glEnable(GL_POINT_SPRITE);
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+        shader.bind();
+        shader.setUniformMatrix("u_projTrans", camera.combined);
+        shader.setUniformf("u_pixelsPerUnit", lod.getPixelsPerUnit());
+        shader.setUniformf("u_minCoverage", MIN_SPLAT_ALPHA);
+    }
+
+    private void endPoints() {
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+    }
+
+    private void putVertex(int vertex, float x, float y, float radius, float packedColor) {
+        if (vertex == capacity) {
+            float[] previous = vertices;
+            mesh.dispose();
+            allocate(capacity * 2);
+            System.arraycopy(previous, 0, vertices, 0, previous.length);
+        }
+        int offset = vertex * FLOATS_PER_PARTICLE;
+        vertices[offset] = x;
+        vertices[offset + 1] = y;
+        vertices[offset + 2] = radius;
+        vertices[offset + 3] = packedColor;
+    }
+
+    private void prepareSplat() {
+        splatColumns = Gdx.graphics.getBackBufferWidth() / SPLAT_CELL_PIXELS + 1;
+        splatRows = Gdx.graphics.getBackBufferHeight() / SPLAT_CELL_PIXELS + 1;
+        int cells = splatColumns * splatRows;
+        if (splatArea.length < cells) {
+            splatArea = new float[cells];
+            splatRed = new float[cells];
+            splatGreen = new float[cells];
+            splatBlue = new float[cells];
+            splatCells = new int[cells];
+        }
+        splatCellCount = 0;
+    }
+
+    private void splat(float x, float y, float radius, int rgba8888) {
+        float pixelsPerUnit = lod.getPixelsPerUnit();
+        int column = (int)((x - lod.getLeft()) * pixelsPerUnit) / SPLAT_CELL_PIXELS;
+        int row = (int)((y - lod.getBottom()) * pixelsPerUnit) / SPLAT_CELL_PIXELS;
+        column = Math.max(0, Math.min(splatColumns - 1, column));
+        row = Math.max(0, Math.min(splatRows - 1, row));
+        int cell = row * splatColumns + column;
+
+        float pixelRadius = radius * pixelsPerUnit;
+        float area = Math.max((float)Math.PI * pixelRadius * pixelRadius, 1e-6f);
+        if (splatArea[cell] == 0) splatCells[splatCellCount++] = cell;
+        splatArea[cell] += area;
+        splatRed[cell] += area * ((rgba8888 >>> 24) / 255f);
+        splatGreen[cell] += area * (((rgba8888 >>> 16) & 0xff) / 255f);
+        splatBlue[cell] += area * (((rgba8888 >>> 8) & 0xff) / 255f);
+    }
+
+    // Appends one point per occupied splat cell after the regular vertices and clears the cells it used
+    private int emitSplat(int vertexCount) {
+        float unitsPerCell = SPLAT_CELL_PIXELS / lod.getPixelsPerUnit();
+        float cellArea = SPLAT_CELL_PIXELS * SPLAT_CELL_PIXELS;
+        for (int i = 0; i < splatCellCount; i++) {
+            int cell = splatCells[i];
+            float area = splatArea[cell];
+            float alpha = Math.max(MIN_SPLAT_ALPHA, Math.min(1f, area / cellArea));
+            float x = lod.getLeft() + (cell % splatColumns + 0.5f) * unitsPerCell;
+            float y = lod.getBottom() + (cell / splatColumns + 0.5f) * unitsPerCell;
+            float packedColor = Color.toFloatBits(splatRed[cell] / area, splatGreen[cell] / area, splatBlue[cell] / area, alpha);
+            putVertex(vertexCount++, x, y, unitsPerCell / 2f, packedColor);
+            splatArea[cell] = 0;
+            splatRed[cell] = 0;
+            splatGreen[cell] = 0;
+            splatBlue[cell] = 0;
+        }
+        return vertexCount;
+    }
+
+    private void allocate(int particles) {
+        capacity = particles;
+        vertices = new float[particles * FLOATS_PER_PARTICLE];
+        mesh = new Mesh(false, particles, 0,
+            new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+            new VertexAttribute(Usage.Generic, 1, "a_radius"),
+            new VertexAttribute(Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE));
+    }
+
+    private static float queryMaxPointSize() {
+        FloatBuffer range = ByteBuffer.allocateDirect(16 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        Gdx.gl.glGetFloatv(GL_ALIASED_POINT_SIZE_RANGE, range);
+        float max = range.get(1);
+        // Some drivers report nothing here, so assume a conservative limit
+        return max >= 1 ? max : 64f;
+    }
+
+    @Override
+    public void dispose() {
+        Gdx.gl.glDeleteBuffer(snapshotBuffer);
+        mesh.dispose();
+        shader.dispose();
+        oversizeRenderer.dispose();
+    }
+}
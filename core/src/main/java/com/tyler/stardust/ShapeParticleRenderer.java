@@ -0,0 +1,62 @@
+package com.tyler.stardust;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+
+/**
+ * Tessellates one filled circle per visible body on the CPU. Slow at high counts, but works on any GL context,
+ * so it is the fallback when {@link PointSpriteParticleRenderer} is unavailable. Off-screen bodies are skipped,
+ * sub-pixel bodies become a single pixel and the segment count follows the on-screen size.
+ */
+public class ShapeParticleRenderer implements ParticleRenderer {
+
+    private final ShapeRenderer shapeRenderer = new ShapeRenderer();
+    private final ParticleLod lod = new ParticleLod();
+    private final Color drawColor = new Color();
+
+    @Override
+    public void render(ParticleSnapshot snapshot, OrthographicCamera camera) {
+        begin(camera);
+        for (int i = 0; i < snapshot.getCount(); i++) {
+            drawParticle(snapshot, i);
+        }
+        shapeRenderer.end();
+    }
+
+    /** Draws only the bodies listed in {@code indices[0..count)}. */
+    public void render(ParticleSnapshot snapshot, OrthographicCamera camera, int[] indices, int count) {
+        begin(camera);
+        for (int i = 0; i < count; i++) {
+            drawParticle(snapshot, indices[i]);
+        }
+        shapeRenderer.end();
+    }
+
+    private void begin(OrthographicCamera camera) {
+        lod.update(camera);
+        shapeRenderer.setProjectionMatrix(camera.combined);
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+    }
+
+    private void drawParticle(ParticleSnapshot snapshot, int index) {
+        float x = snapshot.getX(index);
+        float y = snapshot.getY(index);
+        float radius = snapshot.getRadius(index);
+        if (!lod.isVisible(x, y, radius)) return;
+
+        Color.rgba8888ToColor(drawColor, snapshot.getColor(index));
+        shapeRenderer.setColor(drawColor);
+        if (lod.isSubPixel(radius)) {
+            float pixel = 1f / lod.getPixelsPerUnit();
+            shapeRenderer.rect(x - pixel / 2f, y - pixel / 2f, pixel, pixel);
+        } else {
+            shapeRenderer.circle(x, y, radius, lod.circleSegments(radius));
+        }
+    }
+
+    @Override
+    public void dispose() {
+        shapeRenderer.dispose();
+    }
+}
@@ -4,10 +4,13 @@ import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.scenes.scene2d.ui.CheckBox;
 import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.SelectBox;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.scenes.scene2d.ui.Slider;
 import com.badlogic.gdx.scenes.scene2d.ui.Table;
+import com.badlogic.gdx.scenes.scene2d.ui.TextButton;
 import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
 import com.badlogic.gdx.utils.Align;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
@@ -19,6 +22,20 @@ public class SimulatorParameterEditorUI extends ApplicationAdapter {
 
     private Slider massSlider;
     private Slider gravitySlider;
+    private SelectBox<GravitySolverType> solverSelectBox;
+    private Slider openingAngleSlider;
+    private Slider threadsSlider;
+    private SelectBox<IntegratorType> integratorSelectBox;
+    private SelectBox<TrailMode> trailSelectBox;
+    private Table replayTable;
+    private Slider replaySlider;
+    private SelectBox<SceneType> sceneSelectBox;
+    private Slider sceneSizeSlider;
+    private boolean generateRequested;
+    private CheckBox statsCheckBox;
+    private Table statsTable;
+    private Label statsLabel;
+    private final StringBuilder statsText = new StringBuilder();
 
     @Override
     public void create() {
@@ -64,7 +81,200 @@ public class SimulatorParameterEditorUI extends ApplicationAdapter {
         editorTable.add(gravityLabel).padLeft(10);
         editorTable.row();
 
+        // Gravity solver
+        editorTable.add("Solver:").padRight(10);
+        solverSelectBox = new SelectBox<GravitySolverType>(skin);
+        solverSelectBox.setItems(GravitySolverType.values());
+        editorTable.add(solverSelectBox).colspan(2).left();
+        editorTable.row();
+
+        editorTable.add("Theta:").padRight(10);
+        openingAngleSlider = new Slider(0.1f, 1.5f, 0.05f, false, skin);
+        Label openingAngleLabel = new Label("0.50", skin);
+        openingAngleSlider.setValue((float)BarnesHutGravitySolver.DEFAULT_OPENING_ANGLE);
+        openingAngleSlider.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                openingAngleLabel.setText(String.format("%.2f", openingAngleSlider.getValue()));
+            }
+        });
+        editorTable.add(openingAngleSlider).size(100, 20);
+        editorTable.add(openingAngleLabel).padLeft(10);
+        editorTable.row();
+
+        // Worker threads
+        int processors = Runtime.getRuntime().availableProcessors();
+        editorTable.add("Threads:").padRight(10);
+        threadsSlider = new Slider(1.0f, Math.max(2, processors), 1.0f, false, skin);
+        Label threadsLabel = new Label(Integer.toString(processors), skin);
+        threadsSlider.setValue(processors);
+        threadsSlider.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                threadsLabel.setText(Integer.toString((int)threadsSlider.getValue()));
+            }
+        });
+        editorTable.add(threadsSlider).size(100, 20);
+        editorTable.add(threadsLabel).padLeft(10);
+        editorTable.row();
+
+        // Integrator
+        editorTable.add("Integrator:").padRight(10);
+        integratorSelectBox = new SelectBox<IntegratorType>(skin);
+        integratorSelectBox.setItems(IntegratorType.values());
+        editorTable.add(integratorSelectBox).colspan(2).left();
+        editorTable.row();
+
+        // Motion trails
+        editorTable.add("Trails:").padRight(10);
+        trailSelectBox = new SelectBox<TrailMode>(skin);
+        trailSelectBox.setItems(TrailMode.values());
+        editorTable.add(trailSelectBox).colspan(2).left();
+        editorTable.row();
+
+        // Procedural scenes; the slider picks the body count on a log scale from a thousand to a million
+        editorTable.add("Scene:").padRight(10);
+        sceneSelectBox = new SelectBox<SceneType>(skin);
+        sceneSelectBox.setItems(SceneType.values());
+        editorTable.add(sceneSelectBox).left();
+        TextButton generateButton = new TextButton("Generate", skin);
+        generateButton.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                generateRequested = true;
+            }
+        });
+        editorTable.add(generateButton).padLeft(10).left();
+        editorTable.row();
+
+        editorTable.add("Bodies:").padRight(10);
+        sceneSizeSlider = new Slider(3.0f, 6.0f, 0.25f, false, skin);
+        sceneSizeSlider.setValue(4.0f);
+        Label sceneSizeLabel = new Label(Integer.toString(getSceneBodyCount()), skin);
+        sceneSizeSlider.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                sceneSizeLabel.setText(Integer.toString(getSceneBodyCount()));
+            }
+        });
+        editorTable.add(sceneSizeSlider).size(100, 20);
+        editorTable.add(sceneSizeLabel).padLeft(10);
+        editorTable.row();
+
+        // Performance overlay
+        statsCheckBox = new CheckBox(" Stats (F3)", skin);
+        statsCheckBox.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                statsTable.setVisible(statsCheckBox.isChecked());
+            }
+        });
+        editorTable.add(statsCheckBox).colspan(3).left();
+        editorTable.row();
+
         stage.addActor(editorTable);
+
+        statsTable = new Table(skin);
+        statsTable.setFillParent(true);
+        statsTable.align(Align.topRight);
+        statsTable.pad(10);
+        statsLabel = new Label("", skin);
+        statsTable.add(statsLabel).width(220);
+        statsTable.setVisible(false);
+        stage.addActor(statsTable);
+
+        // Replay scrubber, only shown while replaying a recording
+        replayTable = new Table(skin);
+        replayTable.setFillParent(true);
+        replayTable.align(Align.bottom);
+        replayTable.pad(10);
+        replayTable.add("Frame:").padRight(10);
+        replaySlider = new Slider(0f, 1f, 1f, false, skin);
+        Label replayLabel = new Label("0", skin);
+        replaySlider.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                replayLabel.setText(Integer.toString((int)replaySlider.getValue()));
+            }
+        });
+        replayTable.add(replaySlider).size(400, 20);
+        replayTable.add(replayLabel).width(60).padLeft(10);
+        replayTable.setVisible(false);
+        stage.addActor(replayTable);
+    }
+
+    public void showReplayControls(int frameCount) {
+        replaySlider.setRange(0f, Math.max(1, frameCount - 1));
+        replaySlider.setValue(0f);
+        replayTable.setVisible(true);
+    }
+
+    public void hideReplayControls() {
+        replayTable.setVisible(false);
+    }
+
+    public int getReplayFrame() {
+        return (int)replaySlider.getValue();
+    }
+
+    public void setReplayFrame(int frame) {
+        replaySlider.setValue(frame);
+    }
+
+    /** Whether the user is dragging the replay scrubber, in which case playback should not move it. */
+    public boolean isScrubbingReplay() {
+        return replaySlider.isDragging();
+    }
+
+    public SceneType getSceneType() {
+        return sceneSelectBox.getSelected();
+    }
+
+    public int getSceneBodyCount() {
+        return (int)Math.round(Math.pow(10, sceneSizeSlider.getValue()));
+    }
+
+    /** Whether Generate was pressed since the last call. */
+    public boolean pollGenerateRequest() {
+        boolean requested = generateRequested;
+        generateRequested = false;
+        return requested;
+    }
+
+    public boolean isPerformanceOverlayVisible() {
+        return statsCheckBox.isChecked();
+    }
+
+    public void setPerformanceOverlayVisible(boolean visible) {
+        statsCheckBox.setChecked(visible);
+    }
+
+    /** Shows smoothed step phases from {@code sample} alongside the time the last frame took to draw. */
+    public void updatePerformanceOverlay(PerformanceMonitor.Sample sample, long renderNanos) {
+        StringBuilder text = statsText;
+        text.setLength(0);
+        text.append("FPS ").append(Gdx.graphics.getFramesPerSecond())
+            .append("   particles ").append(sample.particles).append('\n');
+        appendMillis(text.append("Step "), sample.averageStepNanos()).append('\n');
+        for (PerformanceMonitor.Phase phase : PerformanceMonitor.Phase.values()) {
+            appendMillis(text.append("  ").append(phase.getLabel()).append(' '), sample.averageNanos[phase.ordinal()]).append('\n');
+        }
+        appendMillis(text.append("Draw "), renderNanos).append('\n');
+        text.append("Pair tests ").append(sample.pairTests).append('\n');
+        text.append("Contacts ").append(sample.contacts).append(" in ").append(sample.clusters).append(" clusters\n");
+        text.append("Allocated ");
+        if (sample.allocatedBytes < 0) {
+            text.append("n/a");
+        } else {
+            text.append(sample.allocatedBytes / 1024).append(" KB/step on the stepping thread");
+        }
+        statsLabel.setText(text);
+    }
+
+    // One decimal place without String.format, which would allocate every frame
+    private static StringBuilder appendMillis(StringBuilder text, double nanos) {
+        long tenths = Math.round(nanos / 100_000);
+        return text.append(tenths / 10).append('.').append(tenths % 10).append(" ms");
     }
 
     @Override
@@ -92,6 +302,30 @@ public class SimulatorParameterEditorUI extends ApplicationAdapter {
         return gravitySlider.getValue();
     }
 
+    public GravitySolverType getGravitySolverType() {
+        return solverSelectBox.getSelected();
+    }
+
+    public float getOpeningAngle() {
+        return openingAngleSlider.getValue();
+    }
+
+    public int getThreads() {
+        return (int)threadsSlider.getValue();
+    }
+
+    public IntegratorType getIntegratorType() {
+        return integratorSelectBox.getSelected();
+    }
+
+    public TrailMode getTrailMode() {
+        return trailSelectBox.getSelected();
+    }
+
+    public void setTrailMode(TrailMode mode) {
+        trailSelectBox.setSelected(mode);
+    }
+
     public Stage getStage() {
         return stage;
     }
@@ -0,0 +1,29 @@
+package com.tyler.stardust;
+
+/** How motion trails are drawn, if at all. */
+public enum TrailMode {
+
+    OFF("Off"),
+    LINES("Lines"),
+    FADE("Fade");
+
+    private final String displayName;
+
+    TrailMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /** A new renderer for this mode, or null for {@link #OFF}. Needs a GL context. */
+    public TrailRenderer create() {
+        switch (this) {
+            case LINES: return new LineTrailRenderer();
+            case FADE: return new FadingTrailRenderer();
+            default: return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
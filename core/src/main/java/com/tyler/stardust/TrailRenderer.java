@@ -0,0 +1,14 @@
+package com.tyler.stardust;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+
+/** Draws the recent paths of the bodies in a {@link ParticleSnapshot} along with the bodies themselves. */
+public interface TrailRenderer {
+
+    void render(ParticleSnapshot snapshot, OrthographicCamera camera, ParticleRenderer bodies);
+
+    /** Forgets every trail, for when the scene is replaced or time jumps. */
+    void reset();
+
+    void dispose();
+}
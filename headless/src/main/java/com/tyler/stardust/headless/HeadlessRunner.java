@@ -0,0 +1,448 @@
+package com.tyler.stardust.headless;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.tyler.stardust.BarnesHutGravitySolver;
+import com.tyler.stardust.CollisionMode;
+import com.tyler.stardust.DomainTransport;
+import com.tyler.stardust.DomainWorker;
+import com.tyler.stardust.EnergyDiagnostics;
+import com.tyler.stardust.GravitySolver;
+import com.tyler.stardust.GravitySolverType;
+import com.tyler.stardust.IntegratorType;
+import com.tyler.stardust.LocalDomainTransport;
+import com.tyler.stardust.ParticleMeshGravitySolver;
+import com.tyler.stardust.ParticleStore;
+import com.tyler.stardust.PerformanceMonitor;
+import com.tyler.stardust.Precision;
+import com.tyler.stardust.SceneGenerator;
+import com.tyler.stardust.SceneType;
+import com.tyler.stardust.PhysicsEngine;
+import com.tyler.stardust.SimulationRunner;
+import com.tyler.stardust.SnapshotFile;
+import com.tyler.stardust.TcpDomainTransport;
+import com.tyler.stardust.TrajectoryRecorder;
+
+/**
+ * Advances a scene for a fixed number of steps as fast as the hardware allows, with no window or GL context.
+ * Writes a CSV row of statistics every {@code --stats-every} steps and optionally the final state.
+ */
+public class HeadlessRunner {
+
+    private static final String USAGE = String.join("\n",
+        "Usage: HeadlessRunner (--input <particles.csv|state.stardust> | --scene <name>) [options]",
+        "  --scene <name>          generate disk | plummer | merger | uniform instead of reading --input",
+        "  --count <n>             bodies in a generated scene (default 10000)",
+        "  --seed <n>              random seed of a generated scene (default 1)",
+        "  --scale <length>        scale length of a generated scene (default: grows with --count)",
+        "  --steps <n>             steps to run (default 1000)",
+        "  --dt <seconds>          timestep (default 1/60)",
+        "  --gravity <G>           gravitational constant (default 1)",
+        "  --solver <name>         direct | barnes-hut | pm | p3m (default barnes-hut)",
+        "  --precision <name>      double | float force sums; float speeds up the direct sum (default double)",
+        "  --theta <angle>         Barnes-Hut opening angle, also used for sources from other domains (default 0.5)",
+        "  --grid <n>              particle-mesh cells per side, a power of two (default 256)",
+        "  --integrator <name>     euler | leapfrog | verlet | yoshida | block (default leapfrog)",
+        "  --collisions <mode>     exact | clustered, which spreads dense scenes over the threads (default exact)",
+        "  --threads <n>           worker threads (default: all cores)",
+        "  --stats-every <n>       steps between statistics rows (default 100)",
+        "  --stats <file.csv>      statistics destination (default stdout)",
+        "  --energy                include total energy and its drift (O(n²) per row)",
+        "  --profile               include per-phase timings and counters, and print a summary at the end",
+        "  --record <file>         record a trajectory for replay in the desktop app",
+        "  --record-every <n>      steps between recorded frames, about 1 byte per body each (default 10)",
+        "  --output <file>         write the final state (.stardust for a binary snapshot, otherwise CSV)",
+        "  --domains <n>           split the scene into n domains, each on its own thread in this process",
+        "  --rank <r>              run domain r of a multi-process run, connecting to the others over TCP",
+        "  --peers <host:port,...> listening address of every domain of a multi-process run, in rank order",
+        "  --imbalance <fraction>  body-count excess of the largest domain that triggers a rebalance (default 0.2)",
+        "With domains, each process generates or reads only its share of a scene; statistics and --output come",
+        "from domain 0, and --energy, --profile and --record are not available. Start every process of a",
+        "multi-process run with the same options apart from --rank.");
+
+    public static void main(String[] args) {
+        try {
+            Options options = new Options(args);
+            if (options.has("help")) {
+                System.out.println(USAGE);
+                return;
+            }
+            new HeadlessRunner().run(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public void run(Options options) throws IOException {
+        if (options.has("domains") || options.has("rank")) {
+            runDistributed(options);
+            return;
+        }
+        PhysicsEngine engine = createEngine(options);
+        ParticleStore particles = new ParticleStore();
+        long startStep = 0;
+        double startTime = 0;
+        if (options.has("scene")) {
+            SceneGenerator generator = SceneType.fromName(options.getString("scene", null)).create();
+            generator.setSeed(options.getLong("seed", SceneGenerator.DEFAULT_SEED));
+            generator.setScaleLength(options.getDouble("scale", 0));
+            generator.generate(particles, options.getInt("count", 10000), engine.getGravitationalConstant(), engine.getWorkers());
+        } else {
+            Path input = Paths.get(options.require("input"));
+            if (SnapshotFile.isSnapshotFile(input)) {
+                // Resume the clock of a checkpoint so statistics continue where the previous run stopped
+                SnapshotFile.Header header = SnapshotFile.read(input, particles);
+                startStep = header.step;
+                startTime = header.simulationTime;
+            } else {
+                particles = ParticleCsv.read(input);
+            }
+        }
+
+        long steps = options.getLong("steps", 1000);
+        double deltaTime = options.getDouble("dt", SimulationRunner.DEFAULT_TIME_STEP);
+        int statsEvery = Math.max(1, options.getInt("stats-every", 100));
+        boolean trackEnergy = options.has("energy");
+        boolean profile = options.has("profile");
+        PerformanceMonitor monitor = engine.getPerformanceMonitor();
+        monitor.setEnabled(profile);
+        PerformanceMonitor.Sample sample = new PerformanceMonitor.Sample();
+        PerformanceMonitor.Sample previous = new PerformanceMonitor.Sample();
+
+        TrajectoryRecorder recorder = null;
+        if (options.has("record")) {
+            recorder = new TrajectoryRecorder(Paths.get(options.getString("record", null)),
+                TrajectoryRecorder.DEFAULT_POSITION_QUANTUM, TrajectoryRecorder.DEFAULT_KEYFRAME_INTERVAL,
+                Math.max(1, options.getInt("record-every", TrajectoryRecorder.DEFAULT_RECORD_EVERY)));
+            engine.addStepListener(recorder);
+        }
+
+        EnergyDiagnostics energy = new EnergyDiagnostics();
+        if (trackEnergy) energy.reset(particles, engine.getGravitationalConstant(), engine.getWorkers());
+
+        try (PrintWriter stats = openStatistics(options)) {
+            stats.println("step,time,particles,total_mass,momentum_x,momentum_y,kinetic_energy"
+                + (trackEnergy ? ",total_energy,energy_drift" : "") + ",steps_per_second"
+                + (profile ? profileHeader() : ""));
+            writeStatistics(stats, startStep, startTime, particles, engine, trackEnergy ? energy : null, Double.NaN, null, profile ? previous : null);
+
+            long intervalStart = System.nanoTime();
+            for (long step = 1; step <= steps; step++) {
+                engine.update(particles, deltaTime);
+                if (step % statsEvery == 0 || step == steps) {
+                    long now = System.nanoTime();
+                    long intervalSteps = step % statsEvery == 0 ? statsEvery : step % statsEvery;
+                    double stepsPerSecond = intervalSteps * 1e9 / Math.max(1, now - intervalStart);
+                    if (profile) monitor.sample(sample);
+                    writeStatistics(stats, startStep + step, startTime + step * deltaTime, particles, engine,
+                        trackEnergy ? energy : null, stepsPerSecond, profile ? sample : null, profile ? previous : null);
+                    if (profile) monitor.sample(previous);
+                    intervalStart = System.nanoTime();
+                }
+            }
+        } finally {
+            engine.shutdown();
+            if (profile) printProfile(monitor.sample(sample));
+            if (recorder != null) {
+                recorder.close();
+                if (recorder.getDroppedFrames() > 0) {
+                    System.err.println("Trajectory writer fell behind; dropped " + recorder.getDroppedFrames() + " frames");
+                }
+            }
+        }
+
+        if (options.has("output")) {
+            Path output = Paths.get(options.getString("output", null));
+            if (SnapshotFile.isSnapshotFile(output)) {
+                SnapshotFile.write(particles, startStep + steps, startTime + steps * deltaTime, output);
+            } else {
+                ParticleCsv.write(particles, output);
+            }
+        }
+    }
+
+    private void runDistributed(Options options) throws IOException {
+        for (String unsupported : new String[] { "energy", "profile", "record" }) {
+            if (options.has(unsupported)) throw new IllegalArgumentException("--" + unsupported + " is not available with domains");
+        }
+        if (options.has("integrator") && IntegratorType.fromName(options.getString("integrator", null)) == IntegratorType.BLOCK) {
+            throw new IllegalArgumentException("The block integrator is not available with domains");
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (options.has("rank")) {
+            List<InetSocketAddress> peers = parsePeers(options.require("peers"));
+            try (DomainTransport transport = TcpDomainTransport.connect(options.getInt("rank", 0), peers,
+                    TcpDomainTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS)) {
+                runDomain(options, transport, cores);
+            }
+            return;
+        }
+
+        int domains = options.getInt("domains", 1);
+        if (domains < 1) throw new IllegalArgumentException("--domains must be positive");
+        List<DomainTransport> transports = LocalDomainTransport.create(domains);
+        Thread[] threads = new Thread[domains];
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int rank = 0; rank < domains; rank++) {
+            DomainTransport transport = transports.get(rank);
+            threads[rank] = new Thread(() -> {
+                try {
+                    runDomain(options, transport, Math.max(1, cores / domains));
+                } catch (Throwable e) {
+                    // The other domains would wait forever for this one, so stop them too
+                    if (failure.compareAndSet(null, e)) {
+                        for (Thread thread : threads) thread.interrupt();
+                    }
+                }
+            }, "stardust-domain-" + rank);
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the domains");
+            }
+        }
+        Throwable error = failure.get();
+        if (error instanceof IOException) throw (IOException)error;
+        if (error instanceof RuntimeException) throw (RuntimeException)error;
+        if (error instanceof Error) throw (Error)error;
+    }
+
+    private void runDomain(Options options, DomainTransport transport, int defaultThreads) throws IOException {
+        PhysicsEngine engine = createEngine(options);
+        if (!options.has("threads")) engine.setParallelism(defaultThreads);
+        int rank = transport.getRank();
+        int domains = transport.getSize();
+        ParticleStore particles = new ParticleStore();
+        long startStep = 0;
+        double startTime = 0;
+        if (options.has("scene")) {
+            SceneGenerator generator = SceneType.fromName(options.getString("scene", null)).create();
+            generator.setSeed(options.getLong("seed", SceneGenerator.DEFAULT_SEED));
+            generator.setScaleLength(options.getDouble("scale", 0));
+            int count = options.getInt("count", 10000);
+            generator.generate(particles, count, (int)((long)count * rank / domains), (int)((long)count * (rank + 1) / domains),
+                engine.getGravitationalConstant(), engine.getWorkers());
+        } else {
+            Path input = Paths.get(options.require("input"));
+            if (SnapshotFile.isSnapshotFile(input)) {
+                SnapshotFile.Header header = SnapshotFile.read(input, particles);
+                startStep = header.step;
+                startTime = header.simulationTime;
+            } else {
+                particles = ParticleCsv.read(input);
+            }
+            // Every domain reads the whole file and keeps its share until distribute() sorts them out
+            int count = particles.size();
+            for (int i = 0; i < count; i++) {
+                if ((long)i * domains / count != rank) particles.mass[i] = 0;
+            }
+            particles.removeMassless();
+        }
+
+        DomainWorker worker = new DomainWorker(engine, particles, transport);
+        worker.setOpeningAngle(options.getDouble("theta", DomainWorker.DEFAULT_OPENING_ANGLE));
+        worker.setImbalanceTolerance(options.getDouble("imbalance", DomainWorker.DEFAULT_IMBALANCE_TOLERANCE));
+        worker.distribute();
+
+        long steps = options.getLong("steps", 1000);
+        double deltaTime = options.getDouble("dt", SimulationRunner.DEFAULT_TIME_STEP);
+        int statsEvery = Math.max(1, options.getInt("stats-every", 100));
+        PrintWriter stats = rank == 0 ? openStatistics(options) : null;
+        try {
+            if (stats != null) {
+                stats.println("step,time,particles,total_mass,momentum_x,momentum_y,kinetic_energy,steps_per_second,imbalance,rebalances");
+            }
+            writeDomainStatistics(stats, startStep, startTime, worker, Double.NaN);
+
+            long intervalStart = System.nanoTime();
+            for (long step = 1; step <= steps; step++) {
+                worker.step(deltaTime);
+                if (step % statsEvery == 0 || step == steps) {
+                    long intervalSteps = step % statsEvery == 0 ? statsEvery : step % statsEvery;
+                    double stepsPerSecond = intervalSteps * 1e9 / Math.max(1, System.nanoTime() - intervalStart);
+                    writeDomainStatistics(stats, startStep + step, startTime + step * deltaTime, worker, stepsPerSecond);
+                    intervalStart = System.nanoTime();
+                }
+            }
+        } finally {
+            engine.shutdown();
+            if (stats != null) stats.close();
+        }
+
+        if (options.has("output")) {
+            ParticleStore all = new ParticleStore();
+            worker.gather(all);
+            if (rank == 0) {
+                Path output = Paths.get(options.getString("output", null));
+                if (SnapshotFile.isSnapshotFile(output)) {
+                    SnapshotFile.write(all, startStep + steps, startTime + steps * deltaTime, output);
+                } else {
+                    ParticleCsv.write(all, output);
+                }
+            }
+        }
+    }
+
+    // Collective, so every domain calls it; only domain 0 has somewhere to write the totals
+    private void writeDomainStatistics(PrintWriter stats, long step, double time, DomainWorker worker,
+            double stepsPerSecond) throws IOException {
+        ParticleStore particles = worker.getParticles();
+        double totalMass = 0, momentumX = 0, momentumY = 0;
+        for (int i = 0; i < particles.size(); i++) {
+            totalMass += particles.mass[i];
+            momentumX += particles.mass[i] * particles.vx[i];
+            momentumY += particles.mass[i] * particles.vy[i];
+        }
+        double[] totals = worker.sum(particles.size(), totalMass, momentumX, momentumY, EnergyDiagnostics.kineticEnergy(particles));
+        if (stats == null) return;
+
+        StringBuilder row = new StringBuilder();
+        row.append(step).append(',')
+            .append(String.format(Locale.ROOT, "%.6f", time)).append(',')
+            .append((long)totals[0]).append(',')
+            .append(totals[1]).append(',')
+            .append(totals[2]).append(',')
+            .append(totals[3]).append(',')
+            .append(totals[4]).append(',')
+            .append(Double.isNaN(stepsPerSecond) ? "" : String.format(Locale.ROOT, "%.1f", stepsPerSecond)).append(',')
+            .append(String.format(Locale.ROOT, "%.3f", worker.getImbalance())).append(',')
+            .append(worker.getRebalanceCount());
+        stats.println(row);
+    }
+
+    private static List<InetSocketAddress> parsePeers(String peers) {
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+        for (String peer : peers.split(",")) {
+            int colon = peer.lastIndexOf(':');
+            if (colon <= 0) throw new IllegalArgumentException("Expected host:port in --peers, got " + peer);
+            try {
+                addresses.add(new InetSocketAddress(peer.substring(0, colon).trim(), Integer.parseInt(peer.substring(colon + 1).trim())));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad port in --peers: " + peer);
+            }
+        }
+        return addresses;
+    }
+
+    static PhysicsEngine createEngine(Options options) {
+        PhysicsEngine engine = new PhysicsEngine();
+        engine.setGravitationalConstant(options.getDouble("gravity", 1));
+        engine.setGravitySolver(createGravitySolver(options));
+        engine.setIntegrator(IntegratorType.fromName(options.getString("integrator", "leapfrog")).create());
+        engine.setCollisionMode(CollisionMode.fromName(options.getString("collisions", "exact")));
+        engine.setParallelism(options.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        return engine;
+    }
+
+    /** The solver chosen by {@code --solver} and {@code --precision}, tuned by {@code --theta} or {@code --grid}. */
+    static GravitySolver createGravitySolver(Options options) {
+        GravitySolver solver = GravitySolverType.fromName(options.getString("solver", "barnes-hut"))
+            .create(Precision.fromName(options.getString("precision", "double")));
+        if (solver instanceof BarnesHutGravitySolver) {
+            ((BarnesHutGravitySolver)solver).setOpeningAngle(options.getDouble("theta", BarnesHutGravitySolver.DEFAULT_OPENING_ANGLE));
+        } else if (solver instanceof ParticleMeshGravitySolver) {
+            ((ParticleMeshGravitySolver)solver).setGridSize(options.getInt("grid", ParticleMeshGravitySolver.DEFAULT_GRID_SIZE));
+        }
+        return solver;
+    }
+
+    private void printProfile(PerformanceMonitor.Sample sample) {
+        if (sample.steps == 0) return;
+        long total = 0;
+        for (long nanos : sample.totalNanos) total += nanos;
+        System.err.printf(Locale.ROOT, "%-12s %10s %8s%n", "phase", "ms/step", "share");
+        for (PerformanceMonitor.Phase phase : PerformanceMonitor.Phase.values()) {
+            long nanos = sample.totalNanos[phase.ordinal()];
+            System.err.printf(Locale.ROOT, "%-12s %10.3f %7.1f%%%n", phase.getLabel(),
+                nanos / 1e6 / sample.steps, total == 0 ? 0 : 100.0 * nanos / total);
+        }
+        System.err.printf(Locale.ROOT, "%-12s %10.3f%n", "Total", total / 1e6 / sample.steps);
+        if (sample.totalAllocatedBytes > 0) {
+            System.err.printf(Locale.ROOT, "Allocated %.1f KB/step on the simulation thread%n",
+                sample.totalAllocatedBytes / 1024.0 / sample.steps);
+        }
+    }
+
+    private PrintWriter openStatistics(Options options) throws IOException {
+        if (!options.has("stats")) {
+            // Don't close System.out along with the writer
+            return new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true) {
+                @Override
+                public void close() {
+                    flush();
+                }
+            };
+        }
+        return new PrintWriter(Files.newBufferedWriter(Paths.get(options.getString("stats", null)), StandardCharsets.UTF_8));
+    }
+
+    private static String profileHeader() {
+        StringBuilder header = new StringBuilder();
+        for (PerformanceMonitor.Phase phase : PerformanceMonitor.Phase.values()) {
+            header.append(',').append(phase.name().toLowerCase(Locale.ROOT)).append("_ms");
+        }
+        return header.append(",pair_tests,contacts,clusters,stepping_thread_allocated_bytes").toString();
+    }
+
+    private void writeStatistics(PrintWriter stats, long step, double time, ParticleStore particles,
+            PhysicsEngine engine, EnergyDiagnostics energy, double stepsPerSecond,
+            PerformanceMonitor.Sample profile, PerformanceMonitor.Sample previousProfile) {
+        double totalMass = 0, momentumX = 0, momentumY = 0;
+        for (int i = 0; i < particles.size(); i++) {
+            totalMass += particles.mass[i];
+            momentumX += particles.mass[i] * particles.vx[i];
+            momentumY += particles.mass[i] * particles.vy[i];
+        }
+
+        StringBuilder row = new StringBuilder();
+        row.append(step).append(',')
+            .append(String.format(Locale.ROOT, "%.6f", time)).append(',')
+            .append(particles.size()).append(',')
+            .append(totalMass).append(',')
+            .append(momentumX).append(',')
+            .append(momentumY).append(',')
+            .append(EnergyDiagnostics.kineticEnergy(particles));
+        if (energy != null) {
+            // The potential is an O(n²) pair sum, so take it once for both columns
+            double totalEnergy = energy.totalEnergy(particles, engine.getGravitationalConstant(), engine.getWorkers());
+            row.append(',').append(totalEnergy).append(',').append(energy.relativeDrift(totalEnergy));
+        }
+        row.append(',').append(Double.isNaN(stepsPerSecond) ? "" : String.format(Locale.ROOT, "%.1f", stepsPerSecond));
+        if (profile != null) {
+            // Phase columns average the steps since the previous row; the counters describe the last step
+            long steps = Math.max(1, profile.steps - previousProfile.steps);
+            for (int p = 0; p < profile.totalNanos.length; p++) {
+                double nanos = (profile.totalNanos[p] - previousProfile.totalNanos[p]) / (double)steps;
+                row.append(',').append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+            }
+            row.append(',').append(profile.pairTests)
+                .append(',').append(profile.contacts)
+                .append(',').append(profile.clusters)
+                .append(',').append(profile.allocatedBytes);
+        } else if (previousProfile != null) {
+            row.append(profileHeader().replaceAll("[^,]", ""));
+        }
+        stats.println(row);
+    }
+}
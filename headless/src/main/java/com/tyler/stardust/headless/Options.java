@@ -0,0 +1,71 @@
+package com.tyler.stardust.headless;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Minimal {@code --name value} / {@code --flag} command-line parser shared by the headless entry points. */
+public class Options {
+
+    private final Map<String, String> values = new LinkedHashMap<String, String>();
+
+    public Options(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("Unexpected argument: " + arg);
+            String name = arg.substring(2);
+            int equals = name.indexOf('=');
+            if (equals >= 0) {
+                values.put(name.substring(0, equals), name.substring(equals + 1));
+            } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                values.put(name, args[++i]);
+            } else {
+                values.put(name, "true");
+            }
+        }
+    }
+
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    public String getString(String name, String defaultValue) {
+        String value = values.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    public String require(String name) {
+        String value = values.get(name);
+        if (value == null) throw new IllegalArgumentException("Missing required option --" + name);
+        return value;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects an integer, got " + value);
+        }
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects an integer, got " + value);
+        }
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects a number, got " + value);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.tyler.stardust.headless;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import com.tyler.stardust.ParticleStore;
+
+/**
+ * Plain-text particle lists: one {@code mass,x,y,vx,vy[,rgba8888 hex]} line per body. Blank lines and lines
+ * starting with {@code #} are ignored, so files can carry a header.
+ */
+public final class ParticleCsv {
+
+    private static final String HEADER = "# mass,x,y,vx,vy,color";
+
+    private ParticleCsv() { }
+
+    public static ParticleStore read(Path file) throws IOException {
+        ParticleStore particles = new ParticleStore();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\\s*,\\s*");
+                if (fields.length < 5) {
+                    throw new IOException(file + ":" + lineNumber + ": expected mass,x,y,vx,vy[,color]");
+                }
+                try {
+                    int color = fields.length > 5 ? (int)Long.parseLong(fields[5], 16) : 0xffffffff;
+                    particles.add(
+                        Double.parseDouble(fields[0]),
+                        Double.parseDouble(fields[1]), Double.parseDouble(fields[2]),
+                        Double.parseDouble(fields[3]), Double.parseDouble(fields[4]),
+                        color
+                    );
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return particles;
+    }
+
+    public static void write(ParticleStore particles, Path file) throws IOException {
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writer.write(HEADER);
+            writer.write('\n');
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < particles.size(); i++) {
+                // Double.toString round-trips exactly, so a written state reloads bit-for-bit
+                line.setLength(0);
+                line.append(particles.mass[i]).append(',')
+                    .append(particles.x[i]).append(',')
+                    .append(particles.y[i]).append(',')
+                    .append(particles.vx[i]).append(',')
+                    .append(particles.vy[i]).append(',')
+                    .append(String.format(Locale.ROOT, "%08x", particles.color[i]))
+                    .append('\n');
+                writer.write(line.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.tyler.stardust.headless;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.tyler.stardust.ParticleStore;
+import com.tyler.stardust.PhysicsEngine;
+import com.tyler.stardust.SceneGenerator;
+import com.tyler.stardust.SceneType;
+import com.tyler.stardust.SimulationRunner;
+import com.tyler.stardust.SimulationServer;
+import com.tyler.stardust.SnapshotFile;
+import com.tyler.stardust.TrajectoryRecorder;
+
+/**
+ * Runs a simulation in real time and streams it to desktop clients started with {@code --connect host:port}.
+ * Clients can spawn bodies; everything else about the run is fixed by the options here.
+ */
+public class ServerRunner {
+
+    private static final String USAGE = String.join("\n",
+        "Usage: ServerRunner (--input <particles.csv|state.stardust> | --scene <name>) [options]",
+        "  --port <n>              port to listen on (default " + SimulationServer.DEFAULT_PORT + ")",
+        "  --bind <host>           address to listen on (default: every interface)",
+        "  --rate <hz>             frames sent to each client per second (default 30)",
+        "  --quantum <length>      grid spacing positions are rounded to when sent (default 1/32)",
+        "  --duration <seconds>    stop after this much wall-clock time (default: run until killed)",
+        "  --status-every <s>      seconds between status lines on stderr (default 10)",
+        "  --scene <name>          generate disk | plummer | merger | uniform instead of reading --input",
+        "  --count <n>             bodies in a generated scene (default 10000)",
+        "  --seed <n>              random seed of a generated scene (default 1)",
+        "  --scale <length>        scale length of a generated scene (default: grows with --count)",
+        "  --dt <seconds>          timestep, also the wall-clock time per step (default 1/60)",
+        "  --gravity <G>           gravitational constant (default 1)",
+        "  --solver <name>         direct | barnes-hut | pm | p3m (default barnes-hut)",
+        "  --precision <name>      double | float force sums (default double)",
+        "  --theta <angle>         Barnes-Hut opening angle (default 0.5)",
+        "  --grid <n>              particle-mesh cells per side, a power of two (default 256)",
+        "  --integrator <name>     euler | leapfrog | verlet | yoshida | block (default leapfrog)",
+        "  --collisions <mode>     exact | clustered, which spreads dense scenes over the threads (default exact)",
+        "  --threads <n>           worker threads (default: all cores)",
+        "When the physics cannot keep up with real time the simulation slows down; slow clients skip frames.");
+
+    public static void main(String[] args) {
+        try {
+            Options options = new Options(args);
+            if (options.has("help")) {
+                System.out.println(USAGE);
+                return;
+            }
+            new ServerRunner().run(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public void run(Options options) throws IOException {
+        PhysicsEngine engine = HeadlessRunner.createEngine(options);
+        ParticleStore particles = new ParticleStore();
+        if (options.has("scene")) {
+            SceneGenerator generator = SceneType.fromName(options.getString("scene", null)).create();
+            generator.setSeed(options.getLong("seed", SceneGenerator.DEFAULT_SEED));
+            generator.setScaleLength(options.getDouble("scale", 0));
+            generator.generate(particles, options.getInt("count", 10000), engine.getGravitationalConstant(), engine.getWorkers());
+        } else {
+            Path input = Paths.get(options.require("input"));
+            if (SnapshotFile.isSnapshotFile(input)) {
+                SnapshotFile.read(input, particles);
+            } else {
+                particles = ParticleCsv.read(input);
+            }
+        }
+
+        int port = options.getInt("port", SimulationServer.DEFAULT_PORT);
+        InetSocketAddress address = options.has("bind")
+            ? new InetSocketAddress(options.getString("bind", null), port) : new InetSocketAddress(port);
+        double deltaTime = options.getDouble("dt", SimulationRunner.DEFAULT_TIME_STEP);
+        double duration = options.getDouble("duration", Double.POSITIVE_INFINITY);
+        long statusMillis = (long)(1000 * Math.max(0.1, options.getDouble("status-every", 10)));
+
+        SimulationRunner simulation = new SimulationRunner(engine, particles, deltaTime);
+        try (SimulationServer server = new SimulationServer(simulation, address,
+                options.getDouble("rate", SimulationServer.DEFAULT_RATE),
+                options.getDouble("quantum", TrajectoryRecorder.DEFAULT_POSITION_QUANTUM))) {
+            // The simulation thread has not started yet, so the engine can still be touched from here
+            engine.addStepListener(server);
+            simulation.start();
+            System.err.println("Serving " + particles.size() + " bodies on port " + server.getPort());
+
+            long start = System.nanoTime();
+            boolean forever = Double.isInfinite(duration);
+            long end = start + (long)(Math.min(duration, 1e9) * TimeUnit.SECONDS.toNanos(1));
+            while ((forever || end - System.nanoTime() > 0) && simulation.isRunning()) {
+                // Rounded up, so the last wait does not stop just short of the end and go round once more
+                long wait = forever ? statusMillis : Math.min(statusMillis, (end - System.nanoTime() + 999999) / 1000000);
+                try {
+                    Thread.sleep(Math.max(1, wait));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                System.err.println(String.format(Locale.ROOT, "%.0f s: %d clients, %d frames sent, %d dropped",
+                    (System.nanoTime() - start) / 1e9, server.getClientCount(), server.getSentFrames(), server.getDroppedFrames()));
+            }
+            if (simulation.getFailure() != null) throw new IllegalStateException("The simulation stopped", simulation.getFailure());
+        } finally {
+            simulation.stop();
+            engine.shutdown();
+        }
+    }
+}
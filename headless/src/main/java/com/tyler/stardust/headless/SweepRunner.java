@@ -0,0 +1,312 @@
+package com.tyler.stardust.headless;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.tyler.stardust.EnergyDiagnostics;
+import com.tyler.stardust.IntegratorType;
+import com.tyler.stardust.ParticleStore;
+import com.tyler.stardust.PhysicsEngine;
+import com.tyler.stardust.SceneGenerator;
+import com.tyler.stardust.SceneType;
+import com.tyler.stardust.SimulationRunner;
+import com.tyler.stardust.SnapshotFile;
+
+/**
+ * Runs one simulation for every combination of the swept parameters and collects their statistics into a single
+ * CSV, one block of rows per run in configuration order. Each run has its own engine and bodies, so runs share
+ * nothing and a fixed pool of {@code --jobs} threads keeps that many in flight at once.
+ */
+public class SweepRunner {
+
+    private static final String USAGE = String.join("\n",
+        "Usage: SweepRunner (--input <particles.csv|state.stardust> | --scene <name>) [options]",
+        "Swept options take a comma-separated list of values or start:end:n for n evenly spaced values; every",
+        "combination is run.",
+        "  --gravity <list>        gravitational constants (default 1)",
+        "  --restitution <list>    coefficients of restitution, 0 to 1 (default 0.8)",
+        "  --absorption <list>     share of the smaller body's mass absorbed per contact, 0 to 1 (default 0.25)",
+        "  --seed <list>           random seeds of a generated scene (default 1)",
+        "  --scene <name>          generate disk | plummer | merger | uniform instead of reading --input",
+        "  --count <n>             bodies in a generated scene (default 10000)",
+        "  --scale <length>        scale length of a generated scene (default: grows with --count)",
+        "  --steps <n>             steps per run (default 1000)",
+        "  --dt <seconds>          timestep (default 1/60)",
+        "  --solver <name>         direct | barnes-hut | pm | p3m (default barnes-hut)",
+        "  --precision <name>      double | float force sums (default double)",
+        "  --theta <angle>         Barnes-Hut opening angle (default 0.5)",
+        "  --grid <n>              particle-mesh cells per side, a power of two (default 256)",
+        "  --integrator <name>     euler | leapfrog | verlet | yoshida | block (default leapfrog)",
+        "  --jobs <n>              runs in flight at once (default: all cores divided by --threads)",
+        "  --threads <n>           worker threads per run (default 1)",
+        "  --stats-every <n>       steps between statistics rows of each run (default 100)",
+        "  --output <file.csv>     results destination (default stdout)");
+
+    private static final String HEADER = "run,gravity,restitution,absorption,seed,step,time,particles,total_mass,"
+        + "momentum_x,momentum_y,kinetic_energy,wall_seconds";
+
+    /** One point of the parameter grid. */
+    static final class Configuration {
+        final int index;
+        final double gravity;
+        final double restitution;
+        final double absorption;
+        final long seed;
+
+        Configuration(int index, double gravity, double restitution, double absorption, long seed) {
+            this.index = index;
+            this.gravity = gravity;
+            this.restitution = restitution;
+            this.absorption = absorption;
+            this.seed = seed;
+        }
+
+        @Override
+        public String toString() {
+            return "run " + index + " (gravity " + gravity + ", restitution " + restitution
+                + ", absorption " + absorption + ", seed " + seed + ")";
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            Options options = new Options(args);
+            if (options.has("help")) {
+                System.out.println(USAGE);
+                return;
+            }
+            new SweepRunner().run(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public void run(Options options) throws IOException {
+        List<Configuration> configurations = configurations(options);
+        int threads = Math.max(1, options.getInt("threads", 1));
+        int jobs = Math.max(1, options.getInt("jobs", Math.max(1, Runtime.getRuntime().availableProcessors() / threads)));
+        // Check the shared options once up front rather than in every run
+        HeadlessRunner.createGravitySolver(options);
+        IntegratorType.fromName(options.getString("integrator", "leapfrog"));
+        SceneType scene = options.has("scene") ? SceneType.fromName(options.getString("scene", null)) : null;
+
+        // A file is read once and copied into each run; a generated scene depends on the seed and G, so each
+        // run generates its own
+        ParticleStore template = null;
+        long startStep = 0;
+        double startTime = 0;
+        if (scene == null) {
+            Path input = Paths.get(options.require("input"));
+            if (SnapshotFile.isSnapshotFile(input)) {
+                template = new ParticleStore();
+                SnapshotFile.Header header = SnapshotFile.read(input, template);
+                startStep = header.step;
+                startTime = header.simulationTime;
+            } else {
+                template = ParticleCsv.read(input);
+            }
+        }
+
+        long sweepStart = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(jobs, task -> {
+            Thread thread = new Thread(task, "stardust-sweep-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (PrintWriter out = openOutput(options)) {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (Configuration configuration : configurations) {
+                ParticleStore initial = template;
+                long firstStep = startStep;
+                double firstTime = startTime;
+                results.add(executor.submit(() -> runOne(options, configuration, scene, initial, firstStep, firstTime, threads)));
+            }
+
+            out.println(HEADER);
+            // Rows go out in configuration order as soon as each run and all those before it are done
+            for (int i = 0; i < results.size(); i++) {
+                out.print(await(results.get(i), configurations.get(i)));
+                out.flush();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.err.println(String.format(Locale.ROOT, "%d runs on %d jobs in %.1f s", configurations.size(), jobs,
+            (System.nanoTime() - sweepStart) / 1e9));
+    }
+
+    private String runOne(Options options, Configuration configuration, SceneType scene, ParticleStore template,
+            long startStep, double startTime, int threads) {
+        PhysicsEngine engine = new PhysicsEngine();
+        engine.setGravitationalConstant(configuration.gravity);
+        engine.setRestitution(configuration.restitution);
+        engine.setAbsorptionRate(configuration.absorption);
+        engine.setGravitySolver(HeadlessRunner.createGravitySolver(options));
+        engine.setIntegrator(IntegratorType.fromName(options.getString("integrator", "leapfrog")).create());
+        engine.setParallelism(threads);
+
+        StringBuilder rows = new StringBuilder();
+        try {
+            ParticleStore particles = new ParticleStore();
+            if (scene != null) {
+                SceneGenerator generator = scene.create();
+                generator.setSeed(configuration.seed);
+                generator.setScaleLength(options.getDouble("scale", 0));
+                generator.generate(particles, options.getInt("count", 10000), configuration.gravity, engine.getWorkers());
+            } else {
+                particles.copyFrom(template);
+            }
+
+            long steps = options.getLong("steps", 1000);
+            double deltaTime = options.getDouble("dt", SimulationRunner.DEFAULT_TIME_STEP);
+            int statsEvery = Math.max(1, options.getInt("stats-every", 100));
+            long start = System.nanoTime();
+            appendRow(rows, configuration, startStep, startTime, particles, 0);
+            for (long step = 1; step <= steps; step++) {
+                engine.update(particles, deltaTime);
+                if (step % statsEvery == 0 || step == steps) {
+                    appendRow(rows, configuration, startStep + step, startTime + step * deltaTime, particles,
+                        (System.nanoTime() - start) / 1e9);
+                }
+            }
+        } finally {
+            engine.shutdown();
+        }
+        return rows.toString();
+    }
+
+    private static void appendRow(StringBuilder rows, Configuration configuration, long step, double time,
+            ParticleStore particles, double wallSeconds) {
+        double totalMass = 0, momentumX = 0, momentumY = 0;
+        for (int i = 0; i < particles.size(); i++) {
+            totalMass += particles.mass[i];
+            momentumX += particles.mass[i] * particles.vx[i];
+            momentumY += particles.mass[i] * particles.vy[i];
+        }
+        rows.append(configuration.index).append(',')
+            .append(configuration.gravity).append(',')
+            .append(configuration.restitution).append(',')
+            .append(configuration.absorption).append(',')
+            .append(configuration.seed).append(',')
+            .append(step).append(',')
+            .append(String.format(Locale.ROOT, "%.6f", time)).append(',')
+            .append(particles.size()).append(',')
+            .append(totalMass).append(',')
+            .append(momentumX).append(',')
+            .append(momentumY).append(',')
+            .append(EnergyDiagnostics.kineticEnergy(particles)).append(',')
+            .append(String.format(Locale.ROOT, "%.3f", wallSeconds)).append('\n');
+    }
+
+    private static String await(Future<String> result, Configuration configuration) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + configuration, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new IllegalStateException(configuration + " failed: " + cause, cause);
+        }
+    }
+
+    static List<Configuration> configurations(Options options) {
+        double[] gravity = parseValues(options, "gravity", 1);
+        double[] restitution = parseValues(options, "restitution", PhysicsEngine.DEFAULT_RESTITUTION);
+        double[] absorption = parseValues(options, "absorption", PhysicsEngine.DEFAULT_ABSORPTION_RATE);
+        long[] seeds = parseSeeds(options);
+        for (double value : restitution) checkFraction("restitution", value);
+        for (double value : absorption) checkFraction("absorption", value);
+
+        List<Configuration> configurations = new ArrayList<Configuration>();
+        for (double g : gravity) {
+            for (double r : restitution) {
+                for (double a : absorption) {
+                    for (long seed : seeds) {
+                        configurations.add(new Configuration(configurations.size(), g, r, a, seed));
+                    }
+                }
+            }
+        }
+        return configurations;
+    }
+
+    /** Parses a comma-separated list whose items are numbers or {@code start:end:n} ranges. */
+    private static double[] parseValues(Options options, String name, double defaultValue) {
+        if (!options.has(name)) return new double[] { defaultValue };
+        String list = options.getString(name, null);
+        List<Double> values = new ArrayList<Double>();
+        try {
+            for (String item : list.split(",")) {
+                String[] range = item.trim().split(":");
+                if (range.length == 1) {
+                    values.add(Double.parseDouble(range[0]));
+                } else if (range.length == 3) {
+                    double start = Double.parseDouble(range[0]);
+                    double end = Double.parseDouble(range[1]);
+                    int count = Integer.parseInt(range[2]);
+                    if (count < 1) throw new IllegalArgumentException("--" + name + " range needs at least one value: " + item);
+                    for (int i = 0; i < count; i++) {
+                        values.add(count == 1 ? start : start + (end - start) * i / (count - 1));
+                    }
+                } else {
+                    throw new IllegalArgumentException("--" + name + " expects values or start:end:n ranges, got " + item);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects a list of numbers, got " + list);
+        }
+        double[] result = new double[values.size()];
+        for (int i = 0; i < result.length; i++) result[i] = values.get(i);
+        return result;
+    }
+
+    private static long[] parseSeeds(Options options) {
+        if (!options.has("seed")) return new long[] { SceneGenerator.DEFAULT_SEED };
+        String list = options.getString("seed", null);
+        String[] items = list.split(",");
+        long[] seeds = new long[items.length];
+        try {
+            for (int i = 0; i < items.length; i++) seeds[i] = Long.parseLong(items[i].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--seed expects a list of integers, got " + list);
+        }
+        return seeds;
+    }
+
+    private static void checkFraction(String name, double value) {
+        if (!(value >= 0 && value <= 1)) throw new IllegalArgumentException("--" + name + " values must be between 0 and 1: " + value);
+    }
+
+    private static PrintWriter openOutput(Options options) throws IOException {
+        if (!options.has("output")) {
+            // Don't close System.out along with the writer
+            return new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true) {
+                @Override
+                public void close() {
+                    flush();
+                }
+            };
+        }
+        return new PrintWriter(Files.newBufferedWriter(Paths.get(options.getString("output", null)), StandardCharsets.UTF_8));
+    }
+}
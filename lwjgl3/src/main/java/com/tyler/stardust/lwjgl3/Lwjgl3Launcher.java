@@ -1,18 +1,42 @@
 package com.tyler.stardust.lwjgl3;
 
+import java.net.InetSocketAddress;
+
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
 import com.tyler.stardust.Main;
+import com.tyler.stardust.Precision;
+import com.tyler.stardust.SimulationServer;
 
 /** Launches the desktop (LWJGL3) application. */
 public class Lwjgl3Launcher {
     public static void main(String[] args) {
         if (StartupHelper.startNewJvmIfRequired()) return; // This handles macOS support and helps on Windows.
-        createApplication();
+        createApplication(parsePrecision(args), parseServer(args));
+    }
+
+    private static Lwjgl3Application createApplication(Precision precision, InetSocketAddress server) {
+        return new Lwjgl3Application(new Main(precision, server), getDefaultConfiguration());
+    }
+
+    /** Reads {@code --precision double|float}; the force sums use double when it is absent. */
+    private static Precision parsePrecision(String[] args) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--precision")) return Precision.fromName(args[i + 1]);
+        }
+        return Precision.DOUBLE;
     }
 
-    private static Lwjgl3Application createApplication() {
-        return new Lwjgl3Application(new Main(), getDefaultConfiguration());
+    /** Reads {@code --connect host[:port]} to watch a headless server; the simulation runs locally when it is absent. */
+    private static InetSocketAddress parseServer(String[] args) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (!args[i].equals("--connect")) continue;
+            String server = args[i + 1];
+            int colon = server.lastIndexOf(':');
+            if (colon < 0) return new InetSocketAddress(server, SimulationServer.DEFAULT_PORT);
+            return new InetSocketAddress(server.substring(0, colon), Integer.parseInt(server.substring(colon + 1)));
+        }
+        return null;
     }
 
     private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
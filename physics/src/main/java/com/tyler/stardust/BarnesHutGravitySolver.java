@@ -0,0 +1,77 @@
+package com.tyler.stardust;
+
+/**
+ * O(n log n) approximate gravity using a quadtree rebuilt every step.
+ *
+ * <p>The opening angle θ controls accuracy: a node is approximated by its centre of mass when its width
+ * divided by the distance is below θ. Measured against {@link DirectSumGravitySolver} on uniform and
+ * clustered scenes of 10k bodies, the relative error of the per-particle acceleration is:
+ * <ul>
+ *     <li>θ = 0.3: median 0.3%, 99th percentile 3%</li>
+ *     <li>θ = 0.5: median 1%, 99th percentile 10%</li>
+ *     <li>θ = 1.0: median 6%, 99th percentile 75%</li>
+ * </ul>
+ * The tail comes from bodies whose net acceleration nearly cancels. θ = 0 reproduces the direct sum up to
+ * summation order.
+ */
+public class BarnesHutGravitySolver implements GravitySolver {
+
+    public static final double DEFAULT_OPENING_ANGLE = 0.5;
+
+    private final QuadTree tree = new QuadTree();
+    private double openingAngle = DEFAULT_OPENING_ANGLE;
+
+    public BarnesHutGravitySolver() { }
+
+    public BarnesHutGravitySolver(double openingAngle) {
+        setOpeningAngle(openingAngle);
+    }
+
+    @Override
+    public void calculateAccelerations(final ParticleStore particles, final double gravitationalConstant, WorkerPool workers) {
+        tree.build(particles.x, particles.y, particles.mass, particles.size());
+
+        final double theta = openingAngle;
+        workers.forRange(particles.size(), (start, end) -> {
+            int[] stack = QuadTree.newTraversalStack();
+            double[] acceleration = new double[2];
+            for (int i = start; i < end; i++) {
+                acceleration[0] = 0;
+                acceleration[1] = 0;
+                tree.accumulateAcceleration(i, theta, stack, acceleration);
+                particles.ax[i] = gravitationalConstant * acceleration[0];
+                particles.ay[i] = gravitationalConstant * acceleration[1];
+            }
+        });
+    }
+
+    /** Builds the tree over every body but only walks it for the active ones. */
+    @Override
+    public void calculateAccelerations(final ParticleStore particles, final double gravitationalConstant, WorkerPool workers,
+            final int[] active, int activeCount) {
+        tree.build(particles.x, particles.y, particles.mass, particles.size());
+
+        final double theta = openingAngle;
+        workers.forRange(activeCount, (start, end) -> {
+            int[] stack = QuadTree.newTraversalStack();
+            double[] acceleration = new double[2];
+            for (int k = start; k < end; k++) {
+                int i = active[k];
+                acceleration[0] = 0;
+                acceleration[1] = 0;
+                tree.accumulateAcceleration(i, theta, stack, acceleration);
+                particles.ax[i] = gravitationalConstant * acceleration[0];
+                particles.ay[i] = gravitationalConstant * acceleration[1];
+            }
+        });
+    }
+
+    public double getOpeningAngle() {
+        return openingAngle;
+    }
+
+    public void setOpeningAngle(double openingAngle) {
+        if (openingAngle < 0) throw new IllegalArgumentException("Opening angle must be non-negative: " + openingAngle);
+        this.openingAngle = openingAngle;
+    }
+}
@@ -0,0 +1,191 @@
+package com.tyler.stardust;
+
+import java.util.Arrays;
+
+/**
+ * Kick-drift-kick leapfrog with hierarchical block timesteps, so a few bodies in close encounters take small
+ * steps without dragging everything else along.
+ *
+ * <p>Each body steps by the frame's {@code deltaTime} divided by {@code 2^rung}. Its rung comes from
+ * {@code accuracy * sqrt(d / |a|)}, where {@code d} is the distance to its nearest neighbour at the start of
+ * the frame and {@code a} its latest acceleration; for a binary that is a fixed fraction of the orbital period.
+ * The frame advances in substeps of the finest rung in use. Every body drifts on every substep, which predicts
+ * the positions of the ones between kicks, but only the bodies whose own step ends get new forces and a kick.
+ * At the end of each of its steps a body may move to any finer rung, up to {@link #setMaxRung}, and to a coarser
+ * one where the steps line up, so a body falling into a close encounter mid-frame still gets small steps.
+ * Every rung ends on the frame boundary, so each frame finishes with all bodies in step and one full force
+ * evaluation that the next frame reuses.
+ *
+ * <p>With a single rung this is exactly {@link LeapfrogIntegrator}. Solvers without a cheaper way to update a
+ * few bodies (see {@link GravitySolver#calculateAccelerations(ParticleStore, double, WorkerPool, int[], int)})
+ * still give the right result, but pay for a full evaluation on every substep.
+ */
+public class BlockTimestepIntegrator implements Integrator {
+
+    public static final double DEFAULT_ACCURACY = 0.02;
+    public static final int DEFAULT_MAX_RUNG = 10;
+    private static final int RUNG_LIMIT = 30;
+
+    private final QuadTree tree = new QuadTree();
+    private double accuracy = DEFAULT_ACCURACY;
+    private int maxRung = DEFAULT_MAX_RUNG;
+
+    private int[] rung = new int[0];
+    private double[] neighborDistance = new double[0];
+    private int[] active = new int[0];
+    private final int[] rungCounts = new int[RUNG_LIMIT + 1];
+    private int lastTopRung;
+    private long lastKicks;
+
+    @Override
+    public void step(final ParticleStore particles, final double deltaTime, ForceEvaluator forces, WorkerPool workers) {
+        final int count = particles.size();
+        if (count == 0) {
+            // No rung has bodies, so the search for the finest one in use would run off the end
+            lastTopRung = 0;
+            lastKicks = 0;
+            return;
+        }
+        if (rung.length < count) {
+            rung = new int[particles.capacity()];
+            neighborDistance = new double[particles.capacity()];
+            active = new int[particles.capacity()];
+        }
+        if (!forces.accelerationsCurrent(particles)) forces.computeAccelerations(particles);
+
+        final int[] rung = this.rung;
+        final double[] neighborDistance = this.neighborDistance;
+        final int[] active = this.active;
+        tree.build(particles.x, particles.y, particles.mass, count);
+        workers.forRange(count, (start, end) -> {
+            int[] stack = QuadTree.newTraversalStack();
+            for (int i = start; i < end; i++) {
+                // Touching bodies collide rather than orbit, so a body's own size bounds how close it gets
+                neighborDistance[i] = Math.max(tree.nearestNeighborDistance(i, stack), particles.radius[i]);
+                rung[i] = desiredRung(particles, i, deltaTime);
+            }
+        });
+        Arrays.fill(rungCounts, 0);
+        for (int i = 0; i < count; i++) {
+            rungCounts[rung[i]]++;
+        }
+
+        // Time runs in ticks of the finest step allowed, so a body can move to any finer rung mid-frame
+        final int ticks = 1 << maxRung;
+        final double tickLength = deltaTime / ticks;
+        int now = 0;
+        int topRung = 0;
+        long kicks = 0;
+        while (now < ticks) {
+            int finest = maxRung;
+            while (rungCounts[finest] == 0) finest--;
+            topRung = Math.max(topRung, finest);
+            // Every step starts on a multiple of its own length, so the finest one in use ends first
+            final int opening = now;
+            final int closing = now + (1 << (maxRung - finest));
+            final double drift = (closing - opening) * tickLength;
+            workers.forRange(count, (start, end) -> {
+                for (int i = start; i < end; i++) {
+                    if (onBoundary(opening, rung[i])) {
+                        double halfStep = 0.5 * deltaTime / (1 << rung[i]);
+                        particles.vx[i] += particles.ax[i] * halfStep;
+                        particles.vy[i] += particles.ay[i] * halfStep;
+                    }
+                    particles.x[i] += particles.vx[i] * drift;
+                    particles.y[i] += particles.vy[i] * drift;
+                }
+            });
+
+            int activeCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (onBoundary(closing, rung[i])) {
+                    active[activeCount++] = i;
+                    rungCounts[rung[i]]--;
+                }
+            }
+            if (activeCount == count) {
+                forces.computeAccelerations(particles);
+            } else {
+                forces.computeAccelerations(particles, active, activeCount);
+            }
+            kicks += activeCount;
+
+            // Closing half kicks, then each of those bodies picks the rung for its next step
+            final boolean last = closing == ticks;
+            workers.forRange(activeCount, (start, end) -> {
+                for (int k = start; k < end; k++) {
+                    int i = active[k];
+                    double halfStep = 0.5 * deltaTime / (1 << rung[i]);
+                    particles.vx[i] += particles.ax[i] * halfStep;
+                    particles.vy[i] += particles.ay[i] * halfStep;
+                    if (last) continue;
+                    int next = desiredRung(particles, i, deltaTime);
+                    int current = rung[i];
+                    while (current > next && onBoundary(closing, current - 1)) current--;
+                    rung[i] = Math.max(current, next);
+                }
+            });
+            for (int k = 0; k < activeCount; k++) {
+                rungCounts[rung[active[k]]]++;
+            }
+            now = closing;
+        }
+        lastTopRung = topRung;
+        lastKicks = kicks;
+    }
+
+    // Whether tick t starts or ends a step of the given rung
+    private boolean onBoundary(int t, int bodyRung) {
+        return (t & ((1 << (maxRung - bodyRung)) - 1)) == 0;
+    }
+
+    private int desiredRung(ParticleStore particles, int i, double deltaTime) {
+        double acceleration = Math.sqrt(particles.ax[i] * particles.ax[i] + particles.ay[i] * particles.ay[i]);
+        if (!(acceleration > 0)) return 0;
+        double timestep = accuracy * Math.sqrt(neighborDistance[i] / acceleration);
+        int bodyRung = 0;
+        while (bodyRung < maxRung && deltaTime / (1 << bodyRung) > timestep) bodyRung++;
+        return bodyRung;
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    /** The factor η in {@code η sqrt(d / |a|)}; smaller is more accurate and puts more bodies on fine rungs. */
+    public void setAccuracy(double accuracy) {
+        if (!(accuracy > 0)) throw new IllegalArgumentException("Accuracy must be positive: " + accuracy);
+        this.accuracy = accuracy;
+    }
+
+    public int getMaxRung() {
+        return maxRung;
+    }
+
+    /** Finest rung allowed, so the shortest step is {@code deltaTime / 2^maxRung}. At most 30. */
+    public void setMaxRung(int maxRung) {
+        if (maxRung < 0 || maxRung > RUNG_LIMIT) {
+            throw new IllegalArgumentException("Max rung must be between 0 and " + RUNG_LIMIT + ": " + maxRung);
+        }
+        this.maxRung = maxRung;
+    }
+
+    /** Finest rung any body used in the last step. */
+    public int getLastTopRung() {
+        return lastTopRung;
+    }
+
+    /** Body updates in the last step; a single-rung step makes one per body. */
+    public long getLastKicks() {
+        return lastKicks;
+    }
+
+    /** How many of the first {@code count} bodies were on at the end of the last step, by rung. */
+    public int[] rungHistogram(int count) {
+        int[] histogram = new int[lastTopRung + 1];
+        for (int i = 0; i < count; i++) {
+            histogram[rung[i]]++;
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,64 @@
+package com.tyler.stardust;
+
+import java.util.SplittableRandom;
+
+/**
+ * Two equal {@link PlummerGenerator} clusters falling towards each other on a parabolic orbit.
+ *
+ * <p>The clusters start {@link #setSeparation separation} scale lengths apart along x, offset by an impact
+ * parameter along y, with the relative speed that just lets them escape to infinity. A zero impact parameter
+ * gives a head-on collision; larger ones give a grazing encounter that raises tidal tails.
+ */
+public class ClusterMergerGenerator extends SceneGenerator {
+
+    public static final double DEFAULT_SEPARATION = 16;
+    public static final double DEFAULT_IMPACT_PARAMETER = 3;
+
+    private static final int FIRST_COLOR = 0xffc890ff;
+    private static final int SECOND_COLOR = 0x90c8ffff;
+
+    private double separation = DEFAULT_SEPARATION;
+    private double impactParameter = DEFAULT_IMPACT_PARAMETER;
+
+    @Override
+    protected void place(ParticleStore particles, int index, int body, int count, double totalMass,
+            double scaleLength, double gravitationalConstant, SplittableRandom random) {
+        // Each cluster is half the scene; the first half of the bodies forms the left one
+        double clusterMass = totalMass / 2;
+        double clusterScale = scaleLength / Math.sqrt(2);
+        PlummerGenerator.placeCluster(particles, index, clusterMass, clusterScale, gravitationalConstant, random);
+
+        double distance = Math.hypot(separation, impactParameter) * clusterScale;
+        double relativeSpeed = Math.sqrt(2 * gravitationalConstant * totalMass / distance);
+        double side = body < count / 2 ? -1 : 1;
+        particles.x[index] += side * separation * clusterScale / 2;
+        particles.y[index] += side * impactParameter * clusterScale / 2;
+        particles.vx[index] -= side * relativeSpeed / 2;
+        particles.color[index] = side < 0 ? FIRST_COLOR : SECOND_COLOR;
+    }
+
+    @Override
+    public double getExtent(int count) {
+        double clusterScale = getScaleLength(count) / Math.sqrt(2);
+        return (separation / 2 + 10) * clusterScale;
+    }
+
+    public double getSeparation() {
+        return separation;
+    }
+
+    /** Starting distance between the cluster centres along x, in cluster scale lengths. */
+    public void setSeparation(double separation) {
+        if (!(separation > 0)) throw new IllegalArgumentException("Separation must be positive: " + separation);
+        this.separation = separation;
+    }
+
+    public double getImpactParameter() {
+        return impactParameter;
+    }
+
+    /** Starting offset between the cluster centres along y, in cluster scale lengths. */
+    public void setImpactParameter(double impactParameter) {
+        this.impactParameter = impactParameter;
+    }
+}
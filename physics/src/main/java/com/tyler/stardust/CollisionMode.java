@@ -0,0 +1,41 @@
+package com.tyler.stardust;
+
+/**
+ * How {@link PhysicsEngine#handleCollisions} treats pairs that only come to overlap while a pass resolves others.
+ *
+ * <p>{@link #EXACT} gives the result of visiting every pair in order, which is what reproducible runs and
+ * comparisons against {@link PhysicsEngine#sweepCollisions} need. Clusters still run in parallel while bodies stay
+ * put, but a dense or piled scene, where resolving pushes bodies into new overlaps, falls back to one thread.
+ *
+ * <p>{@link #CLUSTERED} always resolves the collected clusters in parallel and leaves any overlap a pass creates
+ * between clusters for the next one, so dense accretion scenes scale with the thread count. Results are still
+ * the same for any thread count, just not those of the ordered sweep.
+ */
+public enum CollisionMode {
+
+    EXACT("exact"),
+    CLUSTERED("clustered");
+
+    private final String displayName;
+
+    CollisionMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /** Accepts either the display name or the constant name, ignoring case. */
+    public static CollisionMode fromName(String name) {
+        for (CollisionMode mode : values()) {
+            if (mode.displayName.equalsIgnoreCase(name) || mode.name().equalsIgnoreCase(name)) return mode;
+        }
+        throw new IllegalArgumentException("Unknown collision mode: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,506 @@
+package com.tyler.stardust;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The close pairs of one collision pass, grouped into independent clusters.
+ *
+ * <p>Contacts are every pair closer than the sum of their radii plus a pad, detected up front and stored in
+ * ascending (first, second) order. Contacts that share a body, directly or through a chain such as a multi-body
+ * merger, land in the same cluster, so clusters touch disjoint bodies and can be resolved on different threads.
+ * Each cluster keeps its contacts in that same ascending order, which makes the result independent of the thread
+ * count. The pad covers pairs that only come to overlap as the pass pushes bodies apart or grows them: while no
+ * body drifts further than half the pad, see {@link #drift}, no pair outside the contacts can overlap, and
+ * resolving the clusters gives exactly the result of visiting every pair in order.
+ *
+ * <p>Candidates come from Verlet neighbour lists that outlive a step: each body's later neighbours closer than the
+ * sum of their radii plus a skin, stored in CSR form. A list stays complete while no two bodies together drift
+ * further than the skin less the pad, counting both displacement and growth in radius, so the lists are only
+ * rebuilt from the grid once that happens or bodies are added or removed. In a dense field of slowly drifting
+ * bodies that is about once every ten steps, and detection runs several times faster than from a fresh grid each
+ * step.
+ *
+ * <p>Tiled collection, for {@link CollisionMode#CLUSTERED}, groups contacts by the square tile their first body
+ * lies in instead, which splits even a cluster spanning the whole scene. Tiles are at least as wide as the longest
+ * contact, so a contact's bodies lie in its own tile or a neighbouring one, and tiles a multiple of three apart in
+ * both directions share no bodies. Tiles are therefore resolved in nine phases, one per position in a 3x3 block,
+ * with the tiles of each phase in parallel.
+ */
+final class ContactBuffer {
+
+    /** Skin as a fraction of the largest radius at the time the lists are built. */
+    static final double DEFAULT_SKIN_FRACTION = 1;
+
+    /** Returned by {@link #collect} when bodies are so crowded, or one is so large, that pairs cost too much to list. */
+    static final int CROWDED = -1;
+
+    /** Phases of a tiled collection; see the class comment. */
+    static final int TILE_PHASES = 9;
+    // Tiles per side of the contacts' bounding box, at most; more only add bookkeeping once every thread has plenty
+    private static final int MAX_TILES_PER_SIDE = 96;
+
+    private final SpatialHashGrid broadPhase = new SpatialHashGrid();
+    private final List<Chunk> chunks = new ArrayList<Chunk>();
+
+    // Neighbour lists and the state they were built from; listStore is null when there are none
+    private double skinFraction = DEFAULT_SKIN_FRACTION;
+    private ParticleStore listStore;
+    private int listSize;
+    private long listLastId;
+    private double skin;
+    private int[] neighborStart = new int[1];
+    private int[] neighbors = new int[0];
+    private double[] referenceX = new double[0];
+    private double[] referenceY = new double[0];
+    private double[] referenceRadius = new double[0];
+    private long rebuilds;
+
+    private double maxRadius;
+    private double pad;
+    private int[] first = new int[0];
+    private int[] second = new int[0];
+    private int contactCount;
+    private long pairTests;
+
+    // Bodies of every cluster as they were before resolving, see saveCluster
+    private double[] savedX = new double[0];
+    private double[] savedY = new double[0];
+    private double[] savedVx = new double[0];
+    private double[] savedVy = new double[0];
+    private double[] savedMass = new double[0];
+    private double[] savedRadius = new double[0];
+
+    private int[] parent = new int[0];
+    private int[] clusterOfRoot = new int[0];
+    private int[] contactCluster = new int[0];
+    private int[] clusterStart = new int[1];
+    private int[] clusterContacts = new int[0];
+    private int clusterCount;
+    private final int[] phaseStart = new int[TILE_PHASES + 1];
+    private int phaseCount;
+    private int[] tileStart = new int[1];
+
+    /**
+     * Finds every pair closer than the sum of their radii plus {@code padFraction} of the largest radius and
+     * groups them into clusters, or into tiles if {@code tiled} is set. Returns the number of contacts, or
+     * {@link #CROWDED}. With {@code reuseNeighbors} unset the cached lists are neither used nor replaced, for
+     * one-off stores.
+     */
+    int collect(ParticleStore particles, WorkerPool workers, boolean reuseNeighbors, double padFraction, boolean tiled) {
+        contactCount = 0;
+        clusterCount = 0;
+        phaseCount = 0;
+        pairTests = 0;
+        int count = particles.size();
+        if (count < 2) return 0;
+        maxRadius = 0;
+        for (int i = 0; i < count; i++) {
+            maxRadius = Math.max(maxRadius, particles.radius[i]);
+        }
+        if (maxRadius <= 0) return 0;
+        pad = padFraction * maxRadius;
+
+        if (reuseNeighbors && neighborListsValid(particles)) {
+            detect(particles, workers, true);
+        } else {
+            if (reuseNeighbors) listStore = null;
+            // Any contact is at most two of the largest radii plus the margin apart, so it shares or neighbours a cell
+            double margin = pad + (reuseNeighbors ? skinFraction * maxRadius : 0);
+            broadPhase.build(particles.x, particles.y, count, 2 * maxRadius + margin);
+
+            // One huge body makes every cell huge; past this point listing pairs costs about as much as a full sweep
+            long allPairs = (long)count * (count - 1) / 2;
+            if (broadPhase.countCandidatePairs() > allPairs / 8) return CROWDED;
+            if (margin > pad) buildNeighborLists(particles, workers, margin);
+            detect(particles, workers, margin > pad);
+        }
+        if (contactCount > 0) {
+            if (tiled) {
+                buildTiles(particles);
+            } else {
+                buildClusters(count);
+            }
+            if (savedX.length < count) {
+                savedX = new double[particles.capacity()];
+                savedY = new double[particles.capacity()];
+                savedVx = new double[particles.capacity()];
+                savedVy = new double[particles.capacity()];
+                savedMass = new double[particles.capacity()];
+                savedRadius = new double[particles.capacity()];
+            }
+        }
+        return contactCount;
+    }
+
+    private boolean neighborListsValid(ParticleStore particles) {
+        int count = particles.size();
+        // Ids are never reused, so any removal or addition since the build changes the size or the last id
+        if (listStore != particles || listSize != count || particles.id[count - 1] != listLastId) return false;
+
+        double largest = 0, secondLargest = 0;
+        for (int i = 0; i < count; i++) {
+            double dx = particles.x[i] - referenceX[i];
+            double dy = particles.y[i] - referenceY[i];
+            double drift = Math.sqrt(dx * dx + dy * dy) + Math.max(0, particles.radius[i] - referenceRadius[i]);
+            if (drift > largest) {
+                secondLargest = largest;
+                largest = drift;
+            } else if (drift > secondLargest) {
+                secondLargest = drift;
+            }
+        }
+        return largest + secondLargest + pad <= skin;
+    }
+
+    private void buildNeighborLists(ParticleStore particles, WorkerPool workers, double margin) {
+        int count = particles.size();
+        chunks.clear();
+        workers.forRange(count, (start, end) -> {
+            Chunk chunk = new Chunk(start);
+            SpatialHashGrid.Query query = broadPhase.newQuery();
+            for (int i = start; i < end; i++) {
+                int candidates = query.collectLaterNeighbors(i);
+                int[] nearby = query.getNeighbors();
+                for (int n = 0; n < candidates; n++) {
+                    if (within(particles, i, nearby[n], margin)) chunk.add(i, nearby[n]);
+                }
+            }
+            synchronized (chunks) {
+                chunks.add(chunk);
+            }
+        });
+
+        Collections.sort(chunks, (a, b) -> Integer.compare(a.start, b.start));
+        int total = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            total += chunks.get(c).size;
+        }
+        if (neighborStart.length < count + 1) neighborStart = new int[count + 1];
+        if (neighbors.length < total) neighbors = new int[total];
+        Arrays.fill(neighborStart, 0, count + 1, 0);
+        int next = 0;
+        for (Chunk chunk : chunks) {
+            for (int k = 0; k < chunk.size; k++) {
+                neighborStart[chunk.pairs[2 * k] + 1]++;
+                neighbors[next++] = chunk.pairs[2 * k + 1];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            neighborStart[i + 1] += neighborStart[i];
+        }
+        chunks.clear();
+
+        if (referenceX.length < count) {
+            referenceX = new double[particles.capacity()];
+            referenceY = new double[particles.capacity()];
+            referenceRadius = new double[particles.capacity()];
+        }
+        System.arraycopy(particles.x, 0, referenceX, 0, count);
+        System.arraycopy(particles.y, 0, referenceY, 0, count);
+        System.arraycopy(particles.radius, 0, referenceRadius, 0, count);
+        listStore = particles;
+        listSize = count;
+        listLastId = particles.id[count - 1];
+        skin = margin;
+        rebuilds++;
+    }
+
+    private void detect(ParticleStore particles, WorkerPool workers, boolean fromLists) {
+        int count = particles.size();
+        double pad = this.pad;
+        chunks.clear();
+        workers.forRange(count, (start, end) -> {
+            Chunk chunk = new Chunk(start);
+            if (fromLists) {
+                chunk.pairTests += neighborStart[end] - neighborStart[start];
+                for (int i = start; i < end; i++) {
+                    for (int k = neighborStart[i]; k < neighborStart[i + 1]; k++) {
+                        if (within(particles, i, neighbors[k], pad)) chunk.add(i, neighbors[k]);
+                    }
+                }
+            } else {
+                SpatialHashGrid.Query query = broadPhase.newQuery();
+                for (int i = start; i < end; i++) {
+                    int found = query.collectLaterNeighbors(i);
+                    int[] nearby = query.getNeighbors();
+                    chunk.pairTests += found;
+                    for (int n = 0; n < found; n++) {
+                        if (within(particles, i, nearby[n], pad)) chunk.add(i, nearby[n]);
+                    }
+                }
+            }
+            synchronized (chunks) {
+                chunks.add(chunk);
+            }
+        });
+
+        // Chunks finish in any order; stitching them by start index restores the ascending pair order
+        Collections.sort(chunks, (a, b) -> Integer.compare(a.start, b.start));
+        int total = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            total += chunks.get(c).size;
+            pairTests += chunks.get(c).pairTests;
+        }
+        if (first.length < total) {
+            first = new int[total];
+            second = new int[total];
+        }
+        for (Chunk chunk : chunks) {
+            for (int k = 0; k < chunk.size; k++) {
+                first[contactCount] = chunk.pairs[2 * k];
+                second[contactCount] = chunk.pairs[2 * k + 1];
+                contactCount++;
+            }
+        }
+        chunks.clear();
+    }
+
+    private static boolean within(ParticleStore particles, int i, int j, double margin) {
+        double dx = particles.x[j] - particles.x[i];
+        double dy = particles.y[j] - particles.y[i];
+        double reach = particles.radius[i] + particles.radius[j] + margin;
+        return dx * dx + dy * dy < reach * reach;
+    }
+
+    private void buildClusters(int particleCount) {
+        if (parent.length < particleCount) {
+            parent = new int[particleCount];
+            clusterOfRoot = new int[particleCount];
+        }
+        for (int c = 0; c < contactCount; c++) {
+            parent[first[c]] = first[c];
+            parent[second[c]] = second[c];
+        }
+        for (int c = 0; c < contactCount; c++) {
+            int a = find(first[c]);
+            int b = find(second[c]);
+            if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+        }
+
+        // Number clusters in order of their first contact and bucket contacts by counting sort, which keeps each
+        // cluster's contacts in ascending order
+        if (contactCluster.length < contactCount) {
+            contactCluster = new int[contactCount];
+            clusterContacts = new int[contactCount];
+        }
+        for (int c = 0; c < contactCount; c++) {
+            clusterOfRoot[find(first[c])] = -1;
+        }
+        for (int c = 0; c < contactCount; c++) {
+            int root = find(first[c]);
+            if (clusterOfRoot[root] < 0) clusterOfRoot[root] = clusterCount++;
+            contactCluster[c] = clusterOfRoot[root];
+        }
+        if (clusterStart.length < clusterCount + 1) clusterStart = new int[clusterCount + 1];
+        Arrays.fill(clusterStart, 0, clusterCount + 1, 0);
+        for (int c = 0; c < contactCount; c++) {
+            clusterStart[contactCluster[c] + 1]++;
+        }
+        for (int k = 0; k < clusterCount; k++) {
+            clusterStart[k + 1] += clusterStart[k];
+        }
+        int[] next = Arrays.copyOf(clusterStart, clusterCount);
+        for (int c = 0; c < contactCount; c++) {
+            clusterContacts[next[contactCluster[c]]++] = c;
+        }
+        phaseStart[0] = 0;
+        phaseStart[1] = clusterCount;
+        phaseCount = 1;
+    }
+
+    private void buildTiles(ParticleStore particles) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < contactCount; c++) {
+            int i = first[c];
+            minX = Math.min(minX, particles.x[i]);
+            minY = Math.min(minY, particles.y[i]);
+            maxX = Math.max(maxX, particles.x[i]);
+            maxY = Math.max(maxY, particles.y[i]);
+        }
+        // The longest contact, with a little slack for rounding in the tile coordinates
+        double reach = 1.01 * (2 * maxRadius + pad);
+        double tileSize = Math.max(reach, Math.max(maxX - minX, maxY - minY) / MAX_TILES_PER_SIDE);
+        int columns = (int)((maxX - minX) / tileSize) + 1;
+        int rows = (int)((maxY - minY) / tileSize) + 1;
+
+        // Number tiles phase by phase, then row by row within a phase, and bucket contacts by counting sort, which
+        // keeps each tile's contacts in ascending order
+        int phaseColumns = (columns + 2) / 3;
+        int tilesPerPhase = phaseColumns * ((rows + 2) / 3);
+        int tiles = TILE_PHASES * tilesPerPhase;
+        if (contactCluster.length < contactCount) {
+            contactCluster = new int[contactCount];
+            clusterContacts = new int[contactCount];
+        }
+        if (tileStart.length < tiles + 1) tileStart = new int[tiles + 1];
+        Arrays.fill(tileStart, 0, tiles + 1, 0);
+        for (int c = 0; c < contactCount; c++) {
+            int column = (int)((particles.x[first[c]] - minX) / tileSize);
+            int row = (int)((particles.y[first[c]] - minY) / tileSize);
+            int phase = 3 * (row % 3) + column % 3;
+            int tile = phase * tilesPerPhase + (row / 3) * phaseColumns + column / 3;
+            contactCluster[c] = tile;
+            tileStart[tile + 1]++;
+        }
+        for (int t = 0; t < tiles; t++) {
+            tileStart[t + 1] += tileStart[t];
+        }
+        int[] next = Arrays.copyOf(tileStart, tiles);
+        for (int c = 0; c < contactCount; c++) {
+            clusterContacts[next[contactCluster[c]]++] = c;
+        }
+
+        // Only tiles holding contacts become clusters
+        if (clusterStart.length < Math.min(tiles, contactCount) + 1) clusterStart = new int[Math.min(tiles, contactCount) + 1];
+        for (int phase = 0; phase < TILE_PHASES; phase++) {
+            phaseStart[phase] = clusterCount;
+            for (int t = phase * tilesPerPhase; t < (phase + 1) * tilesPerPhase; t++) {
+                if (tileStart[t + 1] > tileStart[t]) clusterStart[clusterCount++] = tileStart[t];
+            }
+        }
+        clusterStart[clusterCount] = contactCount;
+        phaseStart[TILE_PHASES] = clusterCount;
+        phaseCount = TILE_PHASES;
+    }
+
+    /** Keeps the state of every body in cluster {@code k}, for {@link #drift} and {@link #restoreCluster}. */
+    void saveCluster(ParticleStore particles, int k) {
+        for (int c = clusterStart[k]; c < clusterStart[k + 1]; c++) {
+            save(particles, first[clusterContacts[c]]);
+            save(particles, second[clusterContacts[c]]);
+        }
+    }
+
+    private void save(ParticleStore particles, int i) {
+        savedX[i] = particles.x[i];
+        savedY[i] = particles.y[i];
+        savedVx[i] = particles.vx[i];
+        savedVy[i] = particles.vy[i];
+        savedMass[i] = particles.mass[i];
+        savedRadius[i] = particles.radius[i];
+    }
+
+    /** Puts the bodies of cluster {@code k} back the way {@link #saveCluster} found them. */
+    void restoreCluster(ParticleStore particles, int k) {
+        for (int c = clusterStart[k]; c < clusterStart[k + 1]; c++) {
+            restore(particles, first[clusterContacts[c]]);
+            restore(particles, second[clusterContacts[c]]);
+        }
+    }
+
+    private void restore(ParticleStore particles, int i) {
+        particles.x[i] = savedX[i];
+        particles.y[i] = savedY[i];
+        particles.vx[i] = savedVx[i];
+        particles.vy[i] = savedVy[i];
+        particles.mass[i] = savedMass[i];
+        particles.radius[i] = savedRadius[i];
+    }
+
+    /** How far body {@code i} of a saved cluster has moved since, plus however much its radius grew. */
+    double drift(ParticleStore particles, int i) {
+        double dx = particles.x[i] - savedX[i];
+        double dy = particles.y[i] - savedY[i];
+        return Math.sqrt(dx * dx + dy * dy) + Math.max(0, particles.radius[i] - savedRadius[i]);
+    }
+
+    private int find(int body) {
+        while (parent[body] != body) {
+            parent[body] = parent[parent[body]];
+            body = parent[body];
+        }
+        return body;
+    }
+
+    double getSkinFraction() {
+        return skinFraction;
+    }
+
+    /** Zero turns the lists off and detects candidates from a fresh grid every time. */
+    void setSkinFraction(double skinFraction) {
+        if (skinFraction < 0) throw new IllegalArgumentException("Negative skin: " + skinFraction);
+        this.skinFraction = skinFraction;
+        listStore = null;
+    }
+
+    /** How many times the neighbour lists were built from the grid. */
+    long getNeighborListRebuilds() {
+        return rebuilds;
+    }
+
+    /** Largest radius seen by the last {@link #collect}. */
+    double getMaxRadius() {
+        return maxRadius;
+    }
+
+    /** Distance beyond the sum of radii that the last {@link #collect} still counted as a contact. */
+    double getPad() {
+        return pad;
+    }
+
+    int getContactCount() {
+        return contactCount;
+    }
+
+    /** Pairs distance-tested by the last {@link #collect}. */
+    long getPairTests() {
+        return pairTests;
+    }
+
+    int getClusterCount() {
+        return clusterCount;
+    }
+
+    /** Contacts of cluster {@code k} are {@code getClusterContacts()[getClusterStart()[k] .. getClusterStart()[k + 1])}. */
+    int[] getClusterStart() {
+        return clusterStart;
+    }
+
+    int[] getClusterContacts() {
+        return clusterContacts;
+    }
+
+    /**
+     * Clusters that may run at the same time: those of phase {@code p} are {@code getPhaseStart()[p] ..
+     * getPhaseStart()[p + 1]}, and phases run one after another. Untiled collection has a single phase.
+     */
+    int[] getPhaseStart() {
+        return phaseStart;
+    }
+
+    int getPhaseCount() {
+        return phaseCount;
+    }
+
+    int[] getFirst() {
+        return first;
+    }
+
+    int[] getSecond() {
+        return second;
+    }
+
+    private static final class Chunk {
+        final int start;
+        int[] pairs = new int[32];
+        int size;
+        long pairTests;
+
+        Chunk(int start) {
+            this.start = start;
+        }
+
+        void add(int i, int j) {
+            if (2 * size == pairs.length) pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            pairs[2 * size] = i;
+            pairs[2 * size + 1] = j;
+            size++;
+        }
+    }
+}
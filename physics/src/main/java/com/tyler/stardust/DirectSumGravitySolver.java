@@ -0,0 +1,170 @@
+package com.tyler.stardust;
+
+/**
+ * Exact O(n²) pairwise sum. Slow for large scenes, but the reference every other solver is measured against.
+ *
+ * <p>Each pair is evaluated once and applied to both bodies (Newton's third law). The particles are cut into
+ * blocks of {@value #BLOCK_SIZE}; the diagonal blocks are processed first, then the off-diagonal block pairs in
+ * the rounds of a round-robin tournament. The pairs within one round touch disjoint blocks, so they run in
+ * parallel without locks or per-thread buffers, and every body receives its contributions in the same order
+ * whatever the parallelism.
+ *
+ * <p>On Java 17 and later, started with {@code --add-modules jdk.incubator.vector}, the pairs are evaluated several
+ * at a time in SIMD registers. That kernel is compiled separately and found by reflection, since the project
+ * itself targets Java 8; everywhere else the scalar loops below run instead. The two sum in different orders, so
+ * their results agree to about 1e-12 relative rather than bit for bit.
+ */
+public class DirectSumGravitySolver implements GravitySolver {
+
+    // Two blocks of positions, masses and accelerations stay well inside L1
+    private static final int BLOCK_SIZE = 128;
+
+    // Each active body is a pass over the whole scene, so a few of them are already worth a thread
+    private static final int ACTIVE_CHUNK_SIZE = 16;
+
+    static final DirectSumKernel KERNEL = loadKernel();
+
+    private double softening;
+
+    public DirectSumGravitySolver() { }
+
+    public DirectSumGravitySolver(double softening) {
+        setSoftening(softening);
+    }
+
+    public double getSoftening() {
+        return softening;
+    }
+
+    /**
+     * Plummer softening length: pairs interact as if {@code softening²} were added to their squared distance.
+     * Zero (the default) gives the exact Newtonian force, skipping coincident bodies.
+     */
+    public void setSoftening(double softening) {
+        if (softening < 0) throw new IllegalArgumentException("Softening must be non-negative: " + softening);
+        this.softening = softening;
+    }
+
+    @Override
+    public void calculateAccelerations(final ParticleStore particles, final double gravitationalConstant, WorkerPool workers) {
+        final int count = particles.size();
+        final double[] ax = particles.ax;
+        final double[] ay = particles.ay;
+        for (int i = 0; i < count; i++) {
+            ax[i] = 0;
+            ay[i] = 0;
+        }
+
+        final int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final double softeningSquared = softening * softening;
+        workers.forRange(blocks, 1, (start, end) -> {
+            for (int block = start; block < end; block++) {
+                int blockEnd = Math.min(count, (block + 1) * BLOCK_SIZE);
+                KERNEL.accumulate(particles, block * BLOCK_SIZE, blockEnd, block * BLOCK_SIZE, blockEnd, true, softeningSquared);
+            }
+        });
+
+        // Circle method: one slot stays put while the others rotate; an odd block count gets a bye slot
+        final int slots = blocks + (blocks & 1);
+        for (int round = 0; round < slots - 1; round++) {
+            final int rotation = round;
+            workers.forRange(slots / 2, 1, (start, end) -> {
+                for (int pair = start; pair < end; pair++) {
+                    int first = pair == 0 ? 0 : rotatedSlot(pair, rotation, slots);
+                    int second = rotatedSlot(slots - 1 - pair, rotation, slots);
+                    if (first >= blocks || second >= blocks) continue;
+                    int low = Math.min(first, second);
+                    int high = Math.max(first, second);
+                    KERNEL.accumulate(particles, low * BLOCK_SIZE, (low + 1) * BLOCK_SIZE,
+                        high * BLOCK_SIZE, Math.min(count, (high + 1) * BLOCK_SIZE), false, softeningSquared);
+                }
+            });
+        }
+
+        for (int i = 0; i < count; i++) {
+            ax[i] *= gravitationalConstant;
+            ay[i] *= gravitationalConstant;
+        }
+    }
+
+    /** Gathers each active body's pull from all the others; every active body costs a full pass over the scene. */
+    @Override
+    public void calculateAccelerations(final ParticleStore particles, final double gravitationalConstant, WorkerPool workers,
+            final int[] active, int activeCount) {
+        final double softeningSquared = softening * softening;
+        workers.forRange(activeCount, ACTIVE_CHUNK_SIZE, (start, end) -> {
+            for (int k = start; k < end; k++) {
+                KERNEL.gather(particles, active[k], gravitationalConstant, softeningSquared);
+            }
+        });
+    }
+
+    private static int rotatedSlot(int position, int rotation, int slots) {
+        return (position - 1 + rotation) % (slots - 1) + 1;
+    }
+
+    private static DirectSumKernel loadKernel() {
+        try {
+            return (DirectSumKernel)Class.forName("com.tyler.stardust.VectorDirectSumKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            // Before Java 17, without the incubator module, or on a CPU with no SIMD doubles
+            return new ScalarKernel();
+        }
+    }
+
+    // The kernel everywhere the SIMD one is unavailable, also the reference it is tested against
+    static final class ScalarKernel implements DirectSumKernel {
+
+        @Override
+        public void accumulate(ParticleStore particles, int start, int end, int otherStart, int otherEnd,
+                boolean within, double softeningSquared) {
+            double[] x = particles.x;
+            double[] y = particles.y;
+            double[] mass = particles.mass;
+            double[] ax = particles.ax;
+            double[] ay = particles.ay;
+
+            for (int i = start; i < end; i++) {
+                double xi = x[i], yi = y[i], mi = mass[i];
+                double axi = 0, ayi = 0;
+                for (int j = within ? i + 1 : otherStart; j < otherEnd; j++) {
+                    double dx = x[j] - xi;
+                    double dy = y[j] - yi;
+                    double distanceSquared = dx * dx + dy * dy + softeningSquared;
+                    if (distanceSquared == 0) continue;
+                    double inverseCube = 1 / (distanceSquared * Math.sqrt(distanceSquared));
+                    double fx = dx * inverseCube;
+                    double fy = dy * inverseCube;
+                    axi += mass[j] * fx;
+                    ayi += mass[j] * fy;
+                    ax[j] -= mi * fx;
+                    ay[j] -= mi * fy;
+                }
+                ax[i] += axi;
+                ay[i] += ayi;
+            }
+        }
+
+        @Override
+        public void gather(ParticleStore particles, int i, double scale, double softeningSquared) {
+            int count = particles.size();
+            double[] x = particles.x;
+            double[] y = particles.y;
+            double[] mass = particles.mass;
+            double xi = x[i], yi = y[i];
+            double axi = 0, ayi = 0;
+            for (int j = 0; j < count; j++) {
+                double dx = x[j] - xi;
+                double dy = y[j] - yi;
+                double distanceSquared = dx * dx + dy * dy + softeningSquared;
+                // Also skips the body itself, which contributes nothing when softened
+                if (distanceSquared == 0) continue;
+                double inverseCube = mass[j] / (distanceSquared * Math.sqrt(distanceSquared));
+                axi += dx * inverseCube;
+                ayi += dy * inverseCube;
+            }
+            particles.ax[i] = scale * axi;
+            particles.ay[i] = scale * ayi;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.tyler.stardust;
+
+/**
+ * The inner loops of {@link DirectSumGravitySolver}, over the primitive columns of a {@link ParticleStore}. Both
+ * leave out {@code G}. Implementations must give the same result whatever the parallelism, since the solver only
+ * ever hands them disjoint bodies to write.
+ */
+interface DirectSumKernel {
+
+    /**
+     * Adds the pull between every body of [{@code start}, {@code end}) and every body of [{@code otherStart},
+     * {@code otherEnd}) to both, or between each body of the first range and the later ones of the same range
+     * when {@code within} is set.
+     */
+    void accumulate(ParticleStore particles, int start, int end, int otherStart, int otherEnd, boolean within,
+        double softeningSquared);
+
+    /** Sets the acceleration of body {@code i} to {@code scale} times the pull of every body on it. */
+    void gather(ParticleStore particles, int i, double scale, double softeningSquared);
+}
@@ -0,0 +1,111 @@
+package com.tyler.stardust;
+
+import java.util.Arrays;
+
+/**
+ * Orthogonal recursive bisection of the plane into one region per domain.
+ *
+ * <p>Each cut splits a set of sample points across the longer side of their bounding box, so that the share of
+ * points on either side matches the share of domains assigned to it. Any number of domains works, not only
+ * powers of two. The outermost regions are open, so every position has an owner. Built from the same samples in
+ * the same order, every process arrives at the same decomposition without exchanging it.
+ */
+final class DomainDecomposition {
+
+    private final int domains;
+    // Inner nodes of the cut tree; a negative child is the leaf of domain -child - 1
+    private final boolean[] cutsX;
+    private final double[] cuts;
+    private final int[] below;
+    private final int[] above;
+    private int nodeCount;
+
+    private DomainDecomposition(int domains) {
+        this.domains = domains;
+        int inner = Math.max(1, domains - 1);
+        cutsX = new boolean[inner];
+        cuts = new double[inner];
+        below = new int[inner];
+        above = new int[inner];
+    }
+
+    /** Splits {@code count} sample points into {@code domains} regions holding equal shares of them. */
+    static DomainDecomposition bisect(double[] x, double[] y, int count, int domains) {
+        if (domains < 1) throw new IllegalArgumentException("Domain count must be positive: " + domains);
+        DomainDecomposition decomposition = new DomainDecomposition(domains);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        decomposition.split(x, y, order, 0, count, 0, domains, new double[count]);
+        return decomposition;
+    }
+
+    // Returns the node for samples order[from..to) and domains [firstDomain, endDomain)
+    private int split(double[] x, double[] y, int[] order, int from, int to, int firstDomain, int endDomain, double[] scratch) {
+        int domainCount = endDomain - firstDomain;
+        if (domainCount == 1) return -firstDomain - 1;
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        boolean alongX = !(maxY - minY > maxX - minX);
+        double[] coordinate = alongX ? x : y;
+
+        int belowDomains = domainCount / 2;
+        int points = to - from;
+        int belowPoints = (int)Math.round((double)points * belowDomains / domainCount);
+        double cut = 0;
+        if (points > 0) {
+            for (int k = from; k < to; k++) {
+                scratch[k - from] = coordinate[order[k]];
+            }
+            Arrays.sort(scratch, 0, points);
+            if (belowPoints == 0) {
+                cut = scratch[0];
+            } else if (belowPoints == points) {
+                cut = Math.nextUp(scratch[points - 1]);
+            } else {
+                cut = 0.5 * (scratch[belowPoints - 1] + scratch[belowPoints]);
+            }
+        }
+
+        // Partition in place; ties with the cut go above it, like in ownerOf
+        int boundary = from;
+        for (int k = from; k < to; k++) {
+            if (coordinate[order[k]] < cut) {
+                int swap = order[boundary];
+                order[boundary++] = order[k];
+                order[k] = swap;
+            }
+        }
+
+        int node = nodeCount++;
+        cutsX[node] = alongX;
+        cuts[node] = cut;
+        int middle = firstDomain + belowDomains;
+        below[node] = split(x, y, order, from, boundary, firstDomain, middle, scratch);
+        above[node] = split(x, y, order, boundary, to, middle, endDomain, scratch);
+        return node;
+    }
+
+    int ownerOf(double x, double y) {
+        if (domains == 1) return 0;
+        int node = 0;
+        while (node >= 0) {
+            double coordinate = cutsX[node] ? x : y;
+            node = coordinate < cuts[node] ? below[node] : above[node];
+        }
+        return -node - 1;
+    }
+
+    int getDomainCount() {
+        return domains;
+    }
+}
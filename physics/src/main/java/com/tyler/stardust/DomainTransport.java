@@ -0,0 +1,24 @@
+package com.tyler.stardust;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Point-to-point messaging between the domains of a distributed run, numbered {@code 0} to {@code getSize() - 1}.
+ *
+ * <p>Messages between any two domains arrive whole and in the order they were sent. {@link #send} must not wait
+ * for the receiver, so every domain can send to all the others before it starts receiving.
+ */
+public interface DomainTransport extends Closeable {
+
+    /** This domain's number. */
+    int getRank();
+
+    /** Number of domains taking part, including this one. */
+    int getSize();
+
+    void send(int peer, byte[] message) throws IOException;
+
+    /** Blocks until the next message from {@code peer} arrives. */
+    byte[] receive(int peer) throws IOException;
+}
@@ -0,0 +1,564 @@
+package com.tyler.stardust;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * One domain of a simulation split across several processes, or threads, each running its own
+ * {@link PhysicsEngine} on the bodies inside its region of the plane.
+ *
+ * <p>Regions come from a {@link DomainDecomposition} over a sample of every domain's bodies. Each step runs the
+ * engine as usual, with three exchanges through the {@link DomainTransport} on top:
+ * <ul>
+ *     <li>Gravity: whenever the integrator asks for forces, every domain sends each other domain the sources its
+ *     bounding box needs. Nearby bodies go individually and far groups as one mass at their centre, chosen with
+ *     the same opening test as {@link BarnesHutGravitySolver}. The engine's own solver then works on its bodies
+ *     plus those sources.</li>
+ *     <li>Contacts: bodies within reach of another domain's box are sent there as ghosts, and both sides resolve
+ *     the contacts between bodies of different domains, leaving those within a domain to its own step. Each side
+ *     starts from the same bodies in the same order and keeps only its own result, so an isolated pair comes out
+ *     identical on both. Chains of contacts across a boundary may resolve slightly differently than in one
+ *     process.</li>
+ *     <li>Migration: bodies that left the region go to the domain that owns their position now.</li>
+ * </ul>
+ * When the largest domain holds more than {@link #setImbalanceTolerance tolerance} above the average share of
+ * bodies, the regions are recomputed and bodies migrate to match.
+ *
+ * <p>Every method that exchanges messages is collective: all domains must call it, in the same order. Results
+ * depend on the number of domains, because far sources are approximated per domain, but not on timing. The
+ * particle-mesh solvers grid the bounding box of everything they are given, far sources included, so
+ * {@link DirectSumGravitySolver} or {@link BarnesHutGravitySolver} suit domains better.
+ */
+public class DomainWorker {
+
+    public static final double DEFAULT_OPENING_ANGLE = 0.5;
+    public static final double DEFAULT_IMBALANCE_TOLERANCE = 0.2;
+
+    // Total samples across all domains that a rebalance cuts regions from
+    private static final int SAMPLE_LIMIT = 1 << 16;
+    // Keeps a burst of migration from recomputing the regions every step
+    private static final int MIN_STEPS_BETWEEN_REBALANCES = 10;
+    // x, y, vx, vy, ax, ay, mass and radius, then the colour
+    private static final int BODY_BYTES = 8 * 8 + 4;
+
+    private final PhysicsEngine engine;
+    private final ParticleStore particles;
+    private final DomainTransport transport;
+    private final int rank;
+    private final int size;
+    private final RemoteSourceSolver solver;
+    private final ParticleStore ghosts = new ParticleStore();
+    // Its own contact pad and ordered-pass state, since the ghosts are a different store every step. Serial, as
+    // only the bodies along the boundaries take part
+    private final PhysicsEngine ghostEngine = new PhysicsEngine();
+    private int[] ghostDomains = new int[0];
+    private DomainDecomposition decomposition;
+    private double openingAngle = DEFAULT_OPENING_ANGLE;
+    private double imbalanceTolerance = DEFAULT_IMBALANCE_TOLERANCE;
+
+    // Every domain's bounding box, largest radius and body count as of the last contact exchange
+    private final double[] boxes;
+    private final double[] maxRadii;
+    private final long[] counts;
+    private double imbalance;
+    private long stepsSinceRebalance;
+    private int rebalances;
+    private long emigrants;
+
+    /**
+     * Takes over {@code engine} for domain {@link DomainTransport#getRank} of {@code transport}. The engine's current
+     * gravity solver handles the forces within the domain; {@code particles} holds this domain's share of the scene,
+     * which need not match its region until {@link #distribute} runs.
+     */
+    public DomainWorker(PhysicsEngine engine, ParticleStore particles, DomainTransport transport) {
+        this.engine = engine;
+        this.particles = particles;
+        this.transport = transport;
+        this.rank = transport.getRank();
+        this.size = transport.getSize();
+        this.boxes = new double[4 * size];
+        this.maxRadii = new double[size];
+        this.counts = new long[size];
+        this.solver = new RemoteSourceSolver(engine.getGravitySolver());
+        engine.setGravitySolver(solver);
+    }
+
+    /** Cuts the regions from every domain's bodies and moves each body to its owner. Collective. */
+    public void distribute() throws IOException {
+        ByteBuffer count = ByteBuffer.allocate(8).putLong(particles.size());
+        byte[][] received = allGather(count.array());
+        for (int domain = 0; domain < size; domain++) {
+            counts[domain] = ByteBuffer.wrap(received[domain]).getLong();
+        }
+        rebalance();
+    }
+
+    /** Advances this domain by one step, exchanging with all the others along the way. Collective. */
+    public void step(double deltaTime) throws IOException {
+        if (decomposition == null) throw new IllegalStateException("distribute() must run before the first step");
+        // Each domain would pick its own substeps and wait on force exchanges the others never join
+        if (size > 1 && engine.getIntegrator() instanceof BlockTimestepIntegrator) {
+            throw new IllegalStateException("Block timesteps are not supported across domains");
+        }
+        try {
+            engine.update(particles, deltaTime);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (size == 1) return;
+
+        resolveBoundaryContacts();
+        migrate(false);
+        stepsSinceRebalance++;
+        if (imbalance > imbalanceTolerance && stepsSinceRebalance >= MIN_STEPS_BETWEEN_REBALANCES) rebalance();
+    }
+
+    private void resolveBoundaryContacts() throws IOException {
+        int count = particles.size();
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] radius = particles.radius;
+
+        ByteBuffer extent = ByteBuffer.allocate(6 * 8);
+        putBoundingBox(extent, particles);
+        double maxRadius = 0;
+        for (int i = 0; i < count; i++) {
+            maxRadius = Math.max(maxRadius, radius[i]);
+        }
+        extent.putDouble(maxRadius).putLong(count);
+        byte[][] received = allGather(extent.array());
+        long total = 0, largest = 0;
+        for (int domain = 0; domain < size; domain++) {
+            ByteBuffer buffer = ByteBuffer.wrap(received[domain]);
+            for (int k = 0; k < 4; k++) {
+                boxes[4 * domain + k] = buffer.getDouble();
+            }
+            maxRadii[domain] = buffer.getDouble();
+            counts[domain] = buffer.getLong();
+            total += counts[domain];
+            largest = Math.max(largest, counts[domain]);
+        }
+        imbalance = total == 0 ? 0 : (double)largest * size / total - 1;
+
+        // Ghosts for each domain are our bodies that could touch one of its bodies
+        int[][] halo = new int[size][];
+        int[] haloCounts = new int[size];
+        int[] boundary = new int[16];
+        int boundaryCount = 0;
+        for (int i = 0; i < count; i++) {
+            boolean onBoundary = false;
+            for (int domain = 0; domain < size; domain++) {
+                if (domain == rank || boxes[4 * domain] > boxes[4 * domain + 2]) continue;
+                double reach = radius[i] + maxRadii[domain];
+                if (x[i] + reach < boxes[4 * domain] || x[i] - reach > boxes[4 * domain + 2]
+                        || y[i] + reach < boxes[4 * domain + 1] || y[i] - reach > boxes[4 * domain + 3]) continue;
+                if (halo[domain] == null) halo[domain] = new int[16];
+                if (haloCounts[domain] == halo[domain].length) halo[domain] = Arrays.copyOf(halo[domain], 2 * haloCounts[domain]);
+                halo[domain][haloCounts[domain]++] = i;
+                onBoundary = true;
+            }
+            if (onBoundary) {
+                if (boundaryCount == boundary.length) boundary = Arrays.copyOf(boundary, 2 * boundaryCount);
+                boundary[boundaryCount++] = i;
+            }
+        }
+        byte[][] outgoing = new byte[size][];
+        for (int domain = 0; domain < size; domain++) {
+            if (domain != rank) outgoing[domain] = encodeBodies(particles, halo[domain], haloCounts[domain], false);
+        }
+        received = exchange(outgoing);
+
+        // Lay out bodies in domain order, so every domain sees the bodies of a contact in the same order
+        ghosts.clear();
+        int ownStart = 0;
+        for (int domain = 0; domain < size; domain++) {
+            int start = ghosts.size();
+            if (domain == rank) {
+                ownStart = start;
+                copyBodies(particles, boundary, boundaryCount, ghosts);
+            } else {
+                decodeBodies(ByteBuffer.wrap(received[domain]), ghosts);
+            }
+            if (ghostDomains.length < ghosts.size()) ghostDomains = Arrays.copyOf(ghostDomains, ghosts.capacity());
+            Arrays.fill(ghostDomains, start, ghosts.size(), domain);
+        }
+        if (boundaryCount == 0 || ghosts.size() == boundaryCount) return;
+
+        // Pairs within one domain were resolved by its own step, ours included
+        ghostEngine.setRestitution(engine.getRestitution());
+        ghostEngine.setAbsorptionRate(engine.getAbsorptionRate());
+        ghostEngine.setCollisionMode(engine.getCollisionMode());
+        ghostEngine.setContactGroups(ghostDomains);
+        ghostEngine.handleCollisions(ghosts, false);
+        for (int k = 0; k < boundaryCount; k++) {
+            int i = boundary[k];
+            int g = ownStart + k;
+            particles.x[i] = ghosts.x[g];
+            particles.y[i] = ghosts.y[g];
+            particles.vx[i] = ghosts.vx[g];
+            particles.vy[i] = ghosts.vy[g];
+            particles.mass[i] = ghosts.mass[g];
+            particles.radius[i] = ghosts.radius[g];
+        }
+        particles.markModified();
+        particles.removeMassless();
+    }
+
+    /** Sends every body outside this domain's region to its owner and takes in the ones that arrived here. */
+    private void migrate(boolean forceChanged) throws IOException {
+        int count = particles.size();
+        int[][] leaving = new int[size][];
+        int[] leavingCounts = new int[size];
+        for (int i = 0; i < count; i++) {
+            int owner = decomposition.ownerOf(particles.x[i], particles.y[i]);
+            if (owner == rank) continue;
+            if (leaving[owner] == null) leaving[owner] = new int[16];
+            if (leavingCounts[owner] == leaving[owner].length) leaving[owner] = Arrays.copyOf(leaving[owner], 2 * leavingCounts[owner]);
+            leaving[owner][leavingCounts[owner]++] = i;
+        }
+
+        int left = 0;
+        for (int domain = 0; domain < size; domain++) {
+            left += leavingCounts[domain];
+        }
+        // Accelerations from the last evaluation only stay valid if no domain changed since
+        boolean changed = forceChanged || left > 0 || particles.getVersion() != solver.evaluatedVersion;
+        byte[][] outgoing = new byte[size][];
+        for (int domain = 0; domain < size; domain++) {
+            if (domain != rank) outgoing[domain] = encodeBodies(particles, leaving[domain], leavingCounts[domain], changed);
+        }
+        byte[][] received = exchange(outgoing);
+
+        if (left > 0) {
+            for (int domain = 0; domain < size; domain++) {
+                for (int k = 0; k < leavingCounts[domain]; k++) {
+                    particles.mass[leaving[domain][k]] = 0;
+                }
+            }
+            particles.removeMassless();
+            emigrants += left;
+        }
+        boolean anyChanged = changed;
+        for (int domain = 0; domain < size; domain++) {
+            if (domain == rank) continue;
+            ByteBuffer buffer = ByteBuffer.wrap(received[domain]);
+            anyChanged |= buffer.get(0) != 0;
+            decodeBodies(buffer, particles);
+        }
+        if (anyChanged) particles.markModified();
+    }
+
+    private void rebalance() throws IOException {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        // The same stride everywhere, so each sample stands for the same number of bodies
+        int stride = (int)Math.max(1, (total + SAMPLE_LIMIT - 1) / SAMPLE_LIMIT);
+        int count = particles.size();
+        int samples = (count + stride - 1) / stride;
+        ByteBuffer mine = ByteBuffer.allocate(4 + 16 * samples).putInt(samples);
+        for (int i = 0; i < count; i += stride) {
+            mine.putDouble(particles.x[i]).putDouble(particles.y[i]);
+        }
+        byte[][] received = allGather(mine.array());
+
+        int sampleCount = 0;
+        for (byte[] message : received) {
+            sampleCount += ByteBuffer.wrap(message).getInt();
+        }
+        double[] sampleX = new double[sampleCount];
+        double[] sampleY = new double[sampleCount];
+        int next = 0;
+        for (byte[] message : received) {
+            ByteBuffer buffer = ByteBuffer.wrap(message);
+            for (int k = buffer.getInt(); k > 0; k--) {
+                sampleX[next] = buffer.getDouble();
+                sampleY[next++] = buffer.getDouble();
+            }
+        }
+        decomposition = DomainDecomposition.bisect(sampleX, sampleY, sampleCount, size);
+        if (size > 1) migrate(true);
+        stepsSinceRebalance = 0;
+        rebalances++;
+    }
+
+    /**
+     * Adds up {@code values} over all domains, in domain order so every domain gets the same totals. Collective;
+     * every domain must pass the same number of values.
+     */
+    public double[] sum(double... values) throws IOException {
+        ByteBuffer mine = ByteBuffer.allocate(8 * values.length);
+        for (double value : values) {
+            mine.putDouble(value);
+        }
+        byte[][] received = allGather(mine.array());
+        double[] totals = new double[values.length];
+        for (byte[] message : received) {
+            ByteBuffer buffer = ByteBuffer.wrap(message);
+            for (int k = 0; k < totals.length; k++) {
+                totals[k] += buffer.getDouble();
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Appends the bodies of every domain, in domain order, to {@code into} on domain 0, for instance to write the
+     * final state. The other domains only send theirs and leave {@code into} alone. Collective.
+     */
+    public void gather(ParticleStore into) throws IOException {
+        if (rank != 0) {
+            transport.send(0, encodeBodies(particles, null, particles.size(), false));
+            return;
+        }
+        copyBodies(particles, null, particles.size(), into);
+        for (int domain = 1; domain < size; domain++) {
+            decodeBodies(ByteBuffer.wrap(transport.receive(domain)), into);
+        }
+    }
+
+    private byte[][] allGather(byte[] message) throws IOException {
+        byte[][] outgoing = new byte[size][];
+        Arrays.fill(outgoing, message);
+        byte[][] received = exchange(outgoing);
+        received[rank] = message;
+        return received;
+    }
+
+    // Sends outgoing[d] to every other domain d and returns what each of them sent back
+    private byte[][] exchange(byte[][] outgoing) throws IOException {
+        for (int domain = 0; domain < size; domain++) {
+            if (domain != rank) transport.send(domain, outgoing[domain]);
+        }
+        byte[][] received = new byte[size][];
+        for (int domain = 0; domain < size; domain++) {
+            if (domain != rank) received[domain] = transport.receive(domain);
+        }
+        return received;
+    }
+
+    private static void putBoundingBox(ByteBuffer buffer, ParticleStore particles) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < particles.size(); i++) {
+            minX = Math.min(minX, particles.x[i]);
+            minY = Math.min(minY, particles.y[i]);
+            maxX = Math.max(maxX, particles.x[i]);
+            maxY = Math.max(maxY, particles.y[i]);
+        }
+        buffer.putDouble(minX).putDouble(minY).putDouble(maxX).putDouble(maxY);
+    }
+
+    // A flag byte and a count, then the listed bodies, or the first count bodies when indices is null
+    private static byte[] encodeBodies(ParticleStore particles, int[] indices, int count, boolean flag) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + BODY_BYTES * count);
+        buffer.put((byte)(flag ? 1 : 0)).putInt(count);
+        for (int k = 0; k < count; k++) {
+            int i = indices == null ? k : indices[k];
+            buffer.putDouble(particles.x[i]).putDouble(particles.y[i])
+                .putDouble(particles.vx[i]).putDouble(particles.vy[i])
+                .putDouble(particles.ax[i]).putDouble(particles.ay[i])
+                .putDouble(particles.mass[i]).putDouble(particles.radius[i])
+                .putInt(particles.color[i]);
+        }
+        return buffer.array();
+    }
+
+    private static void decodeBodies(ByteBuffer buffer, ParticleStore into) {
+        buffer.position(1);
+        int count = buffer.getInt();
+        int start = into.size();
+        into.resize(start + count);
+        for (int i = start; i < start + count; i++) {
+            into.x[i] = buffer.getDouble();
+            into.y[i] = buffer.getDouble();
+            into.vx[i] = buffer.getDouble();
+            into.vy[i] = buffer.getDouble();
+            into.ax[i] = buffer.getDouble();
+            into.ay[i] = buffer.getDouble();
+            into.mass[i] = buffer.getDouble();
+            into.radius[i] = buffer.getDouble();
+            into.color[i] = buffer.getInt();
+        }
+    }
+
+    private static void copyBodies(ParticleStore from, int[] indices, int count, ParticleStore into) {
+        int start = into.size();
+        into.resize(start + count);
+        for (int k = 0; k < count; k++) {
+            int i = indices == null ? k : indices[k];
+            int j = start + k;
+            into.x[j] = from.x[i];
+            into.y[j] = from.y[i];
+            into.vx[j] = from.vx[i];
+            into.vy[j] = from.vy[i];
+            into.ax[j] = from.ax[i];
+            into.ay[j] = from.ay[i];
+            into.mass[j] = from.mass[i];
+            into.radius[j] = from.radius[i];
+            into.color[j] = from.color[i];
+        }
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public int getDomainCount() {
+        return size;
+    }
+
+    public ParticleStore getParticles() {
+        return particles;
+    }
+
+    /** The solver for the forces within this domain. */
+    public GravitySolver getGravitySolver() {
+        return solver.local;
+    }
+
+    /**
+     * Replaces the solver for the forces within this domain; use this rather than {@link PhysicsEngine#setGravitySolver}.
+     * Every domain must switch between the same two steps.
+     */
+    public void setGravitySolver(GravitySolver gravitySolver) {
+        solver.local = gravitySolver;
+        particles.markModified();
+    }
+
+    public double getOpeningAngle() {
+        return openingAngle;
+    }
+
+    /**
+     * Accuracy of the far field from other domains, with the same meaning as
+     * {@link BarnesHutGravitySolver#setOpeningAngle}; zero sends every body. Must be equal on all domains.
+     */
+    public void setOpeningAngle(double openingAngle) {
+        if (openingAngle < 0) throw new IllegalArgumentException("Opening angle must be non-negative: " + openingAngle);
+        this.openingAngle = openingAngle;
+    }
+
+    public double getImbalanceTolerance() {
+        return imbalanceTolerance;
+    }
+
+    /**
+     * How far the largest domain may grow beyond the average share of bodies, as a fraction of it, before the
+     * regions are recomputed. Must be equal on all domains.
+     */
+    public void setImbalanceTolerance(double imbalanceTolerance) {
+        if (imbalanceTolerance < 0) throw new IllegalArgumentException("Negative imbalance tolerance: " + imbalanceTolerance);
+        this.imbalanceTolerance = imbalanceTolerance;
+    }
+
+    /** The largest domain's excess over the average share of bodies as of the last step, e.g. 0.1 for 10% above. */
+    public double getImbalance() {
+        return imbalance;
+    }
+
+    /** How many times the regions were computed, including by {@link #distribute}. */
+    public int getRebalanceCount() {
+        return rebalances;
+    }
+
+    /** Bodies this domain handed to others so far. */
+    public long getEmigrantCount() {
+        return emigrants;
+    }
+
+    /** Runs the local solver over this domain's bodies plus the sources other domains send for them. */
+    private final class RemoteSourceSolver implements GravitySolver, QuadTree.MassSink {
+
+        private GravitySolver local;
+        private final QuadTree tree = new QuadTree();
+        private final ParticleStore sources = new ParticleStore();
+        private double[] essential = new double[3 * 64];
+        private int essentialCount;
+        private long evaluatedVersion = -1;
+
+        RemoteSourceSolver(GravitySolver local) {
+            this.local = local;
+        }
+
+        @Override
+        public void calculateAccelerations(ParticleStore particles, double gravitationalConstant, WorkerPool workers) {
+            try {
+                evaluate(particles, gravitationalConstant, workers);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            evaluatedVersion = particles.getVersion();
+        }
+
+        private void evaluate(ParticleStore particles, double gravitationalConstant, WorkerPool workers) throws IOException {
+            int count = particles.size();
+            if (size == 1) {
+                local.calculateAccelerations(particles, gravitationalConstant, workers);
+                return;
+            }
+
+            ByteBuffer box = ByteBuffer.allocate(4 * 8);
+            putBoundingBox(box, particles);
+            byte[][] received = allGather(box.array());
+
+            tree.build(particles.x, particles.y, particles.mass, count);
+            byte[][] outgoing = new byte[size][];
+            for (int domain = 0; domain < size; domain++) {
+                if (domain == rank) continue;
+                ByteBuffer peer = ByteBuffer.wrap(received[domain]);
+                double minX = peer.getDouble(), minY = peer.getDouble(), maxX = peer.getDouble(), maxY = peer.getDouble();
+                essentialCount = 0;
+                if (minX <= maxX) tree.collectEssential(minX, minY, maxX, maxY, openingAngle, this);
+                ByteBuffer message = ByteBuffer.allocate(4 + 3 * 8 * essentialCount).putInt(essentialCount);
+                message.asDoubleBuffer().put(essential, 0, 3 * essentialCount);
+                outgoing[domain] = message.array();
+            }
+            received = exchange(outgoing);
+
+            int remote = 0;
+            for (int domain = 0; domain < size; domain++) {
+                if (domain != rank) remote += ByteBuffer.wrap(received[domain]).getInt();
+            }
+            if (remote == 0) {
+                local.calculateAccelerations(particles, gravitationalConstant, workers);
+                return;
+            }
+
+            // Our bodies first, so their accelerations come back out at the same indices
+            sources.clear();
+            sources.resize(count + remote);
+            System.arraycopy(particles.x, 0, sources.x, 0, count);
+            System.arraycopy(particles.y, 0, sources.y, 0, count);
+            System.arraycopy(particles.mass, 0, sources.mass, 0, count);
+            System.arraycopy(particles.radius, 0, sources.radius, 0, count);
+            int next = count;
+            for (int domain = 0; domain < size; domain++) {
+                if (domain == rank) continue;
+                ByteBuffer message = ByteBuffer.wrap(received[domain]);
+                int sourceCount = message.getInt();
+                for (int k = 0; k < sourceCount; k++, next++) {
+                    sources.x[next] = message.getDouble();
+                    sources.y[next] = message.getDouble();
+                    sources.mass[next] = message.getDouble();
+                    sources.radius[next] = 0;
+                }
+            }
+            local.calculateAccelerations(sources, gravitationalConstant, workers);
+            System.arraycopy(sources.ax, 0, particles.ax, 0, count);
+            System.arraycopy(sources.ay, 0, particles.ay, 0, count);
+        }
+
+        @Override
+        public void add(double x, double y, double mass) {
+            if (3 * essentialCount == essential.length) essential = Arrays.copyOf(essential, 2 * essential.length);
+            essential[3 * essentialCount] = x;
+            essential[3 * essentialCount + 1] = y;
+            essential[3 * essentialCount + 2] = mass;
+            essentialCount++;
+        }
+    }
+}
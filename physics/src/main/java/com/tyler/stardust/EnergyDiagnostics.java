@@ -0,0 +1,76 @@
+package com.tyler.stardust;
+
+/**
+ * Tracks how far the total energy of a scene drifts from a baseline, to compare integrators and timesteps.
+ *
+ * <p>The potential is an exact O(n²) pair sum, so measure every few hundred steps rather than every step on
+ * large scenes. Collisions are inelastic and absorption changes masses, so drift is only meaningful for
+ * stretches without contacts.
+ */
+public class EnergyDiagnostics {
+
+    private double baselineEnergy = Double.NaN;
+    private double[] partialSums = new double[0];
+
+    public static double kineticEnergy(ParticleStore particles) {
+        double energy = 0;
+        for (int i = 0; i < particles.size(); i++) {
+            double speedSquared = particles.vx[i] * particles.vx[i] + particles.vy[i] * particles.vy[i];
+            energy += 0.5 * particles.mass[i] * speedSquared;
+        }
+        return energy;
+    }
+
+    public double potentialEnergy(final ParticleStore particles, double gravitationalConstant, WorkerPool workers) {
+        final int count = particles.size();
+        if (partialSums.length < count) partialSums = new double[particles.capacity()];
+        final double[] sums = partialSums;
+        final double[] x = particles.x;
+        final double[] y = particles.y;
+        final double[] mass = particles.mass;
+
+        // Each worker fills its own rows; the rows are then added in index order so the total is reproducible
+        workers.forRange(count, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                double sum = 0;
+                for (int j = i + 1; j < count; j++) {
+                    double dx = x[j] - x[i];
+                    double dy = y[j] - y[i];
+                    double distance = Math.sqrt(dx * dx + dy * dy);
+                    if (distance > 0) sum += mass[j] / distance;
+                }
+                sums[i] = mass[i] * sum;
+            }
+        });
+
+        double energy = 0;
+        for (int i = 0; i < count; i++) {
+            energy += sums[i];
+        }
+        return -gravitationalConstant * energy;
+    }
+
+    public double totalEnergy(ParticleStore particles, double gravitationalConstant, WorkerPool workers) {
+        return kineticEnergy(particles) + potentialEnergy(particles, gravitationalConstant, workers);
+    }
+
+    /** Records the current total energy as the reference for {@link #relativeDrift}. */
+    public double reset(ParticleStore particles, double gravitationalConstant, WorkerPool workers) {
+        baselineEnergy = totalEnergy(particles, gravitationalConstant, workers);
+        return baselineEnergy;
+    }
+
+    /** |E − E₀| / |E₀| since the last {@link #reset}; NaN if no baseline has been recorded. */
+    public double relativeDrift(ParticleStore particles, double gravitationalConstant, WorkerPool workers) {
+        return relativeDrift(totalEnergy(particles, gravitationalConstant, workers));
+    }
+
+    /** Like {@link #relativeDrift(ParticleStore, double, WorkerPool)} for a total already taken with {@link #totalEnergy}. */
+    public double relativeDrift(double totalEnergy) {
+        return Math.abs(totalEnergy - baselineEnergy) / Math.abs(baselineEnergy);
+    }
+
+    public double getBaselineEnergy() {
+        return baselineEnergy;
+    }
+}
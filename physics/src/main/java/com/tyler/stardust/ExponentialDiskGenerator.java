@@ -0,0 +1,136 @@
+package com.tyler.stardust;
+
+import java.util.SplittableRandom;
+
+/**
+ * A rotating galaxy disk whose surface density falls off as {@code exp(-r / h)} from the centre.
+ *
+ * <p>Bodies circle on the disk's own rotation curve, Freeman's exact result for a razor-thin exponential disk,
+ * plus the pull of an optional central mass, with a small random velocity dispersion on top. The disk is
+ * therefore close to equilibrium, rotates counter-clockwise, and stays cold enough to grow spiral structure.
+ */
+public class ExponentialDiskGenerator extends SceneGenerator {
+
+    public static final double DEFAULT_DISPERSION = 0.05;
+
+    private static final int CORE_COLOR = 0xffe6a8ff;
+    private static final int EDGE_COLOR = 0x8fb4ffff;
+
+    private double centralMass;
+    private double dispersion = DEFAULT_DISPERSION;
+
+    @Override
+    protected void place(ParticleStore particles, int index, int body, int count, double totalMass,
+            double scaleLength, double gravitationalConstant, SplittableRandom random) {
+        if (body == 0 && centralMass > 0) {
+            particles.mass[index] = centralMass;
+            particles.x[index] = 0;
+            particles.y[index] = 0;
+            particles.vx[index] = 0;
+            particles.vy[index] = 0;
+            particles.color[index] = CORE_COLOR;
+            return;
+        }
+
+        // The radius of an exponential disk is Gamma(2, h) distributed: the sum of two exponential deviates
+        double r = -scaleLength * Math.log((1 - random.nextDouble()) * (1 - random.nextDouble()));
+        double angle = 2 * Math.PI * random.nextDouble();
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+
+        double diskMass = centralMass > 0 ? totalMass - getBodyMass() : totalMass;
+        double speed = circularVelocity(r, diskMass, scaleLength, gravitationalConstant);
+        double sigma = dispersion * speed;
+        particles.x[index] = r * cos;
+        particles.y[index] = r * sin;
+        particles.vx[index] = -speed * sin + sigma * nextGaussian(random);
+        particles.vy[index] = speed * cos + sigma * nextGaussian(random);
+        particles.color[index] = blendColor(CORE_COLOR, EDGE_COLOR, r / (4 * scaleLength));
+    }
+
+    /** Speed of a circular orbit at radius {@code r} in the disk plane. */
+    public double circularVelocity(double r, double diskMass, double scaleLength, double gravitationalConstant) {
+        if (r <= 0) return 0;
+        double y = r / (2 * scaleLength);
+        double speedSquared;
+        if (y > 50) {
+            // Far outside the disk the products of Bessel functions lose precision and the pull is Keplerian
+            speedSquared = gravitationalConstant * diskMass / r;
+        } else {
+            double bessel = besselI0(y) * besselK0(y) - besselI1(y) * besselK1(y);
+            speedSquared = 2 * gravitationalConstant * diskMass / scaleLength * y * y * bessel;
+        }
+        speedSquared += gravitationalConstant * centralMass / r;
+        return Math.sqrt(Math.max(0, speedSquared));
+    }
+
+    @Override
+    public double getExtent(int count) {
+        return 5 * getScaleLength(count);
+    }
+
+    public double getCentralMass() {
+        return centralMass;
+    }
+
+    /** Mass of a body placed at rest in the centre, such as a central black hole; zero leaves it out. */
+    public void setCentralMass(double centralMass) {
+        if (centralMass < 0) throw new IllegalArgumentException("Negative central mass: " + centralMass);
+        this.centralMass = centralMass;
+    }
+
+    public double getDispersion() {
+        return dispersion;
+    }
+
+    /** Random velocity spread per axis as a fraction of the local circular velocity. */
+    public void setDispersion(double dispersion) {
+        if (dispersion < 0) throw new IllegalArgumentException("Negative dispersion: " + dispersion);
+        this.dispersion = dispersion;
+    }
+
+    // Modified Bessel functions by the polynomial approximations of Abramowitz and Stegun 9.8.1 to 9.8.8,
+    // accurate to about 1e-7
+
+    private static double besselI0(double x) {
+        if (x <= 3.75) {
+            double t = (x / 3.75) * (x / 3.75);
+            return 1 + t * (3.5156229 + t * (3.0899424 + t * (1.2067492 + t * (0.2659732 + t * (0.0360768 + t * 0.0045813)))));
+        }
+        double t = 3.75 / x;
+        return Math.exp(x) / Math.sqrt(x) * (0.39894228 + t * (0.01328592 + t * (0.00225319 + t * (-0.00157565
+            + t * (0.00916281 + t * (-0.02057706 + t * (0.02635537 + t * (-0.01647633 + t * 0.00392377))))))));
+    }
+
+    private static double besselI1(double x) {
+        if (x <= 3.75) {
+            double t = (x / 3.75) * (x / 3.75);
+            return x * (0.5 + t * (0.87890594 + t * (0.51498869 + t * (0.15084934 + t * (0.02658733 + t * (0.00301532 + t * 0.00032411))))));
+        }
+        double t = 3.75 / x;
+        return Math.exp(x) / Math.sqrt(x) * (0.39894228 + t * (-0.03988024 + t * (-0.00362018 + t * (0.00163801
+            + t * (-0.01031555 + t * (0.02282967 + t * (-0.02895312 + t * (0.01787654 + t * -0.00420059))))))));
+    }
+
+    private static double besselK0(double x) {
+        if (x <= 2) {
+            double t = x * x / 4;
+            return -Math.log(x / 2) * besselI0(x) + (-0.57721566 + t * (0.42278420 + t * (0.23069756
+                + t * (0.03488590 + t * (0.00262698 + t * (0.00010750 + t * 0.0000074))))));
+        }
+        double t = 2 / x;
+        return Math.exp(-x) / Math.sqrt(x) * (1.25331414 + t * (-0.07832358 + t * (0.02189568 + t * (-0.01062446
+            + t * (0.00587872 + t * (-0.00251540 + t * 0.00053208))))));
+    }
+
+    private static double besselK1(double x) {
+        if (x <= 2) {
+            double t = x * x / 4;
+            return (x * Math.log(x / 2) * besselI1(x) + (1 + t * (0.15443144 + t * (-0.67278579 + t * (-0.18156897
+                + t * (-0.01919402 + t * (-0.00110404 + t * -0.00004686))))))) / x;
+        }
+        double t = 2 / x;
+        return Math.exp(-x) / Math.sqrt(x) * (1.25331414 + t * (0.23498619 + t * (-0.03655620 + t * (0.01504268
+            + t * (-0.00780353 + t * (0.00325614 + t * -0.00068245))))));
+    }
+}
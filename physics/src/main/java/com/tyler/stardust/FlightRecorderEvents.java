@@ -0,0 +1,151 @@
+package com.tyler.stardust;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records every step of a {@link PerformanceMonitor} as a {@code stardust.Step} JDK Flight Recorder event that spans
+ * the step, whether or not the monitor itself is enabled.
+ *
+ * <p>The project compiles for Java 8, which has no {@code jdk.jfr} API, so the event type is declared at run time
+ * through {@code jdk.jfr.EventFactory} (Java 12 and later) by reflection. On older runtimes, and whenever no
+ * recording has the event enabled, {@link #beginStep} returns null and nothing is recorded.
+ */
+final class FlightRecorderEvents {
+
+    private static volatile boolean failed;
+
+    private FlightRecorderEvents() { }
+
+    /** A started event for the step about to run, or null if no recording has the event enabled. */
+    static Object beginStep() {
+        StepEvent type = StepEvent.INSTANCE;
+        if (failed || type == null) return null;
+        try {
+            if (!(Boolean)type.isEnabled.invoke(type.eventType)) return null;
+            Object event = type.newEvent.invoke(type.factory);
+            type.begin.invoke(event);
+            return event;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            failed = true;
+            return null;
+        }
+    }
+
+    /** Ends {@code event}, from {@link #beginStep}, and commits it with the figures of the step. */
+    static void commitStep(Object event, long[] phaseNanos, int particles, long pairTests, int contacts, int clusters,
+            long allocatedBytes) {
+        StepEvent type = StepEvent.INSTANCE;
+        try {
+            type.end.invoke(event);
+            int field = 0;
+            for (long nanos : phaseNanos) {
+                type.set.invoke(event, field++, nanos);
+            }
+            type.set.invoke(event, field++, particles);
+            type.set.invoke(event, field++, pairTests);
+            type.set.invoke(event, field++, contacts);
+            type.set.invoke(event, field++, clusters);
+            type.set.invoke(event, field, allocatedBytes);
+            type.commit.invoke(event);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            failed = true;
+        }
+    }
+
+    // Resolved by the first step, which loads jdk.jfr where the runtime has it
+    private static final class StepEvent {
+
+        static final StepEvent INSTANCE = tryDefine();
+
+        final Object factory;
+        final Object eventType;
+        final Method newEvent;
+        final Method isEnabled;
+        final Method begin;
+        final Method end;
+        final Method set;
+        final Method commit;
+
+        private StepEvent(Object factory) throws ReflectiveOperationException {
+            Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            this.factory = factory;
+            eventType = eventFactory.getMethod("getEventType").invoke(factory);
+            newEvent = eventFactory.getMethod("newEvent");
+            isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+            begin = event.getMethod("begin");
+            end = event.getMethod("end");
+            set = event.getMethod("set", int.class, Object.class);
+            commit = event.getMethod("commit");
+        }
+
+        private static StepEvent tryDefine() {
+            try {
+                return define();
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                // No EventFactory before Java 12
+                return null;
+            }
+        }
+
+        private static StepEvent define() throws ReflectiveOperationException {
+            Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+            Class<?> name = Class.forName("jdk.jfr.Name");
+            Class<?> label = Class.forName("jdk.jfr.Label");
+            Class<?> category = Class.forName("jdk.jfr.Category");
+            Class<?> description = Class.forName("jdk.jfr.Description");
+            Class<?> timespan = Class.forName("jdk.jfr.Timespan");
+            Class<?> dataAmount = Class.forName("jdk.jfr.DataAmount");
+
+            List<Object> eventAnnotations = Arrays.asList(
+                annotation.newInstance(name, "stardust.Step"),
+                annotation.newInstance(label, "Simulation Step"),
+                annotation.newInstance(category, new String[] { "Stardust" }),
+                annotation.newInstance(description, "Per-phase timings and counters of one physics step"));
+
+            // Field order must match the set() calls in commitStep
+            Constructor<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor")
+                .getConstructor(Class.class, String.class, List.class);
+            List<Object> fields = new ArrayList<Object>();
+            for (PerformanceMonitor.Phase phase : PerformanceMonitor.Phase.values()) {
+                fields.add(valueDescriptor.newInstance(long.class, fieldName(phase), Arrays.asList(
+                    annotation.newInstance(label, phase.getLabel()),
+                    annotation.newInstance(timespan, "NANOSECONDS"))));
+            }
+            fields.add(valueDescriptor.newInstance(int.class, "particles",
+                Arrays.asList(annotation.newInstance(label, "Particles"))));
+            fields.add(valueDescriptor.newInstance(long.class, "pairTests",
+                Arrays.asList(annotation.newInstance(label, "Pair Tests"))));
+            fields.add(valueDescriptor.newInstance(int.class, "contacts",
+                Arrays.asList(annotation.newInstance(label, "Contacts"))));
+            fields.add(valueDescriptor.newInstance(int.class, "clusters",
+                Arrays.asList(annotation.newInstance(label, "Contact Clusters"))));
+            fields.add(valueDescriptor.newInstance(long.class, "allocated", Arrays.asList(
+                annotation.newInstance(label, "Allocated by Stepping Thread"),
+                annotation.newInstance(dataAmount, "BYTES"))));
+
+            Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            return new StepEvent(eventFactory.getMethod("create", List.class, List.class).invoke(null, eventAnnotations, fields));
+        }
+
+        // COLLISION_DETECTION becomes collisionDetection
+        private static String fieldName(PerformanceMonitor.Phase phase) {
+            StringBuilder name = new StringBuilder();
+            boolean upper = false;
+            for (char c : phase.name().toCharArray()) {
+                if (c == '_') {
+                    upper = true;
+                } else {
+                    name.append(upper ? c : Character.toLowerCase(c));
+                    upper = false;
+                }
+            }
+            return name.toString();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.tyler.stardust;
+
+import java.util.Arrays;
+
+/**
+ * Computes the gravitational acceleration acting on every particle for one step, writing it into the
+ * store's {@code ax}/{@code ay} columns. Implementations trade accuracy for speed;
+ * {@link DirectSumGravitySolver} is the exact reference.
+ *
+ * <p>Work may be spread over {@code workers}, but the result must not depend on its parallelism.
+ */
+public interface GravitySolver {
+
+    void calculateAccelerations(ParticleStore particles, double gravitationalConstant, WorkerPool workers);
+
+    /**
+     * Computes the acceleration of only the bodies listed in {@code active[0..activeCount)}, from every body's
+     * current position, and leaves the others' {@code ax}/{@code ay} as they are. Block timesteps use this to
+     * advance a few bodies at a time. The default evaluates everything and puts the other bodies' values back,
+     * which is correct for any solver but saves nothing.
+     */
+    default void calculateAccelerations(ParticleStore particles, double gravitationalConstant, WorkerPool workers,
+            int[] active, int activeCount) {
+        int count = particles.size();
+        double[] ax = Arrays.copyOf(particles.ax, count);
+        double[] ay = Arrays.copyOf(particles.ay, count);
+        calculateAccelerations(particles, gravitationalConstant, workers);
+        for (int k = 0; k < activeCount; k++) {
+            int i = active[k];
+            ax[i] = particles.ax[i];
+            ay[i] = particles.ay[i];
+        }
+        System.arraycopy(ax, 0, particles.ax, 0, count);
+        System.arraycopy(ay, 0, particles.ay, 0, count);
+    }
+}
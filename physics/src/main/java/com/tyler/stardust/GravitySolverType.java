@@ -0,0 +1,50 @@
+package com.tyler.stardust;
+
+/** The gravity backends an engine can be configured with, by command-line name. */
+public enum GravitySolverType {
+
+    DIRECT_SUM("direct"),
+    BARNES_HUT("barnes-hut"),
+    PARTICLE_MESH("pm"),
+    P3M("p3m");
+
+    private final String displayName;
+
+    GravitySolverType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public GravitySolver create() {
+        return create(Precision.DOUBLE);
+    }
+
+    /**
+     * Only the direct sum has a float kernel. The tree walk and the mesh are bound by their irregular memory
+     * access rather than by arithmetic, so they stay in double at either precision.
+     */
+    public GravitySolver create(Precision precision) {
+        switch (this) {
+            case BARNES_HUT: return new BarnesHutGravitySolver();
+            case PARTICLE_MESH: return new ParticleMeshGravitySolver(ParticleMeshGravitySolver.DEFAULT_GRID_SIZE, false);
+            case P3M: return new ParticleMeshGravitySolver(ParticleMeshGravitySolver.DEFAULT_GRID_SIZE, true);
+            default: return precision == Precision.FLOAT ? new FloatDirectSumGravitySolver() : new DirectSumGravitySolver();
+        }
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /** Accepts either the display name or the constant name, ignoring case. */
+    public static GravitySolverType fromName(String name) {
+        for (GravitySolverType type : values()) {
+            if (type.displayName.equalsIgnoreCase(name) || type.name().equalsIgnoreCase(name)) return type;
+        }
+        throw new IllegalArgumentException("Unknown gravity solver: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
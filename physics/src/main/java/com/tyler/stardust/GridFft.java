@@ -0,0 +1,91 @@
+package com.tyler.stardust;
+
+/**
+ * In-place radix-2 complex FFT over a square, row-major grid whose side is a power of two. Rows and columns
+ * are transformed independently, so both passes are spread over a {@link WorkerPool} without affecting the
+ * result. Transforms are unnormalized in both directions.
+ */
+final class GridFft {
+
+    private final int size;
+    private final double[] cos;
+    private final double[] sin;
+    private final int[] reverse;
+
+    GridFft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) throw new IllegalArgumentException("Size must be a power of two: " + size);
+        this.size = size;
+        cos = new double[size / 2];
+        sin = new double[size / 2];
+        for (int k = 0; k < size / 2; k++) {
+            double angle = -2 * Math.PI * k / size;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+        reverse = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            reverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /** Transforms rows {@code [0, rows)}; the remaining rows are left alone, which is free when they are zero. */
+    void transformRows(final double[] real, final double[] imaginary, int rows, final boolean inverse, WorkerPool workers) {
+        workers.forRange(rows, (start, end) -> {
+            for (int row = start; row < end; row++) {
+                transform(real, imaginary, row * size, inverse);
+            }
+        });
+    }
+
+    void transformColumns(final double[] real, final double[] imaginary, final boolean inverse, WorkerPool workers) {
+        workers.forRange(size, (start, end) -> {
+            double[] columnReal = new double[size];
+            double[] columnImaginary = new double[size];
+            for (int column = start; column < end; column++) {
+                for (int row = 0, index = column; row < size; row++, index += size) {
+                    columnReal[row] = real[index];
+                    columnImaginary[row] = imaginary[index];
+                }
+                transform(columnReal, columnImaginary, 0, inverse);
+                for (int row = 0, index = column; row < size; row++, index += size) {
+                    real[index] = columnReal[row];
+                    imaginary[index] = columnImaginary[row];
+                }
+            }
+        });
+    }
+
+    private void transform(double[] real, double[] imaginary, int offset, boolean inverse) {
+        for (int i = 0; i < size; i++) {
+            int j = reverse[i];
+            if (j > i) {
+                double t = real[offset + i]; real[offset + i] = real[offset + j]; real[offset + j] = t;
+                t = imaginary[offset + i]; imaginary[offset + i] = imaginary[offset + j]; imaginary[offset + j] = t;
+            }
+        }
+        double sign = inverse ? -1 : 1;
+        for (int length = 2; length <= size; length <<= 1) {
+            int half = length >> 1;
+            int twiddleStride = size / length;
+            for (int block = offset; block < offset + size; block += length) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * twiddleStride];
+                    double wi = sign * sin[k * twiddleStride];
+                    int a = block + k;
+                    int b = a + half;
+                    double br = real[b] * wr - imaginary[b] * wi;
+                    double bi = real[b] * wi + imaginary[b] * wr;
+                    real[b] = real[a] - br;
+                    imaginary[b] = imaginary[a] - bi;
+                    real[a] += br;
+                    imaginary[a] += bi;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.tyler.stardust;
+
+/**
+ * Advances particle positions and velocities by one timestep, asking {@link ForceEvaluator} for
+ * accelerations as often as the scheme needs them.
+ */
+public interface Integrator {
+
+    void step(ParticleStore particles, double deltaTime, ForceEvaluator forces, WorkerPool workers);
+
+    interface ForceEvaluator {
+
+        /** Fills the store's {@code ax}/{@code ay} columns for the current positions. */
+        void computeAccelerations(ParticleStore particles);
+
+        /** Fills {@code ax}/{@code ay} of the bodies in {@code active[0..activeCount)} only, keeping the rest. */
+        void computeAccelerations(ParticleStore particles, int[] active, int activeCount);
+
+        /**
+         * Whether {@code ax}/{@code ay} already match the current positions, masses and parameters, so a
+         * scheme that ends a step with a force evaluation can reuse it at the start of the next one.
+         */
+        boolean accelerationsCurrent(ParticleStore particles);
+    }
+}
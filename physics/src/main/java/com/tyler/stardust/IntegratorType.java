@@ -0,0 +1,44 @@
+package com.tyler.stardust;
+
+/** The integration schemes an engine can be configured with, by display name. */
+public enum IntegratorType {
+
+    SEMI_IMPLICIT_EULER("Euler"),
+    LEAPFROG("Leapfrog"),
+    VELOCITY_VERLET("Verlet"),
+    YOSHIDA("Yoshida 4"),
+    BLOCK("Block");
+
+    private final String displayName;
+
+    IntegratorType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public Integrator create() {
+        switch (this) {
+            case LEAPFROG: return new LeapfrogIntegrator();
+            case VELOCITY_VERLET: return new VelocityVerletIntegrator();
+            case YOSHIDA: return new YoshidaIntegrator();
+            case BLOCK: return new BlockTimestepIntegrator();
+            default: return new SemiImplicitEulerIntegrator();
+        }
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /** Accepts the display name, the constant name, or the constant name with dashes, ignoring case. */
+    public static IntegratorType fromName(String name) {
+        for (IntegratorType type : values()) {
+            if (type.displayName.equalsIgnoreCase(name) || type.name().equalsIgnoreCase(name.replace('-', '_'))) return type;
+        }
+        throw new IllegalArgumentException("Unknown integrator: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,34 @@
+package com.tyler.stardust;
+
+/**
+ * Second-order kick-drift-kick leapfrog. Time-reversible and symplectic, so energy errors oscillate instead
+ * of drifting. The closing force evaluation is reused to open the next step, so steady-state cost is one
+ * evaluation per step, the same as Euler.
+ */
+public class LeapfrogIntegrator implements Integrator {
+
+    @Override
+    public void step(ParticleStore particles, double deltaTime, ForceEvaluator forces, WorkerPool workers) {
+        if (!forces.accelerationsCurrent(particles)) forces.computeAccelerations(particles);
+        kickDriftKick(particles, deltaTime, forces, workers);
+    }
+
+    static void kickDriftKick(final ParticleStore particles, final double deltaTime, ForceEvaluator forces, WorkerPool workers) {
+        final double halfStep = 0.5 * deltaTime;
+        workers.forRange(particles.size(), (start, end) -> {
+            for (int i = start; i < end; i++) {
+                particles.vx[i] += particles.ax[i] * halfStep;
+                particles.vy[i] += particles.ay[i] * halfStep;
+                particles.x[i] += particles.vx[i] * deltaTime;
+                particles.y[i] += particles.vy[i] * deltaTime;
+            }
+        });
+        forces.computeAccelerations(particles);
+        workers.forRange(particles.size(), (start, end) -> {
+            for (int i = start; i < end; i++) {
+                particles.vx[i] += particles.ax[i] * halfStep;
+                particles.vy[i] += particles.ay[i] * halfStep;
+            }
+        });
+    }
+}
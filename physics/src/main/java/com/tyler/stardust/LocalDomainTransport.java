@@ -0,0 +1,70 @@
+package com.tyler.stardust;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Connects domains that run as threads of one process, handing messages over through in-memory queues.
+ * Messages are passed by reference, so a sender must not modify one after sending it.
+ */
+public class LocalDomainTransport implements DomainTransport {
+
+    private final int rank;
+    // queues.get(from).get(to), shared by every endpoint of the group
+    private final List<List<BlockingQueue<byte[]>>> queues;
+
+    private LocalDomainTransport(int rank, List<List<BlockingQueue<byte[]>>> queues) {
+        this.rank = rank;
+        this.queues = queues;
+    }
+
+    /** Creates a connected endpoint for each of {@code size} domains, in rank order. */
+    public static List<DomainTransport> create(int size) {
+        if (size < 1) throw new IllegalArgumentException("Domain count must be positive: " + size);
+        List<List<BlockingQueue<byte[]>>> queues = new ArrayList<List<BlockingQueue<byte[]>>>(size);
+        for (int from = 0; from < size; from++) {
+            List<BlockingQueue<byte[]>> outgoing = new ArrayList<BlockingQueue<byte[]>>(size);
+            for (int to = 0; to < size; to++) {
+                outgoing.add(new LinkedBlockingQueue<byte[]>());
+            }
+            queues.add(outgoing);
+        }
+        List<DomainTransport> endpoints = new ArrayList<DomainTransport>(size);
+        for (int rank = 0; rank < size; rank++) {
+            endpoints.add(new LocalDomainTransport(rank, queues));
+        }
+        return endpoints;
+    }
+
+    @Override
+    public int getRank() {
+        return rank;
+    }
+
+    @Override
+    public int getSize() {
+        return queues.size();
+    }
+
+    @Override
+    public void send(int peer, byte[] message) {
+        queues.get(rank).get(peer).add(message);
+    }
+
+    @Override
+    public byte[] receive(int peer) throws IOException {
+        try {
+            return queues.get(peer).get(rank).take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for domain " + peer);
+        }
+    }
+
+    @Override
+    public void close() { }
+}
@@ -0,0 +1,225 @@
+package com.tyler.stardust;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grids over a hash of cells, like {@link SpatialHashGrid}, whose particles can move and grow while they
+ * are in use. Particles are sorted into levels by radius, each level twice the radius of the one below, and a
+ * level's cells are twice its largest radius across, so a few huge bodies do not make every cell huge. Each cell
+ * keeps its particles in a doubly linked list, so a move costs a hash lookup and a few writes and the grids never
+ * have to be rebuilt mid-pass. Not safe for concurrent use.
+ */
+final class MovingHashGrid {
+
+    private static final int EMPTY = -1;
+    private static final int MAX_LEVELS = 32;
+
+    private final Level[] levels = new Level[MAX_LEVELS];
+    private int levelCount;
+
+    private int[] particleLevel = new int[0];
+    private int[] particleCell = new int[0];
+    private int[] next = new int[0];
+    private int[] previous = new int[0];
+    private int[] found = new int[16];
+
+    private double baseRadius;
+
+    /** Sorts particles into levels whose lowest holds radii up to {@code baseRadius}. */
+    void build(double[] x, double[] y, double[] radius, int count, double baseRadius) {
+        if (!(baseRadius > 0)) throw new IllegalArgumentException("Base radius must be positive: " + baseRadius);
+        this.baseRadius = baseRadius;
+        if (particleCell.length < count) {
+            particleLevel = new int[count];
+            particleCell = new int[count];
+            next = new int[count];
+            previous = new int[count];
+        }
+        for (int k = 0; k < levelCount; k++) {
+            levels[k].clear();
+        }
+        levelCount = 0;
+        for (int i = 0; i < count; i++) {
+            int level = levelOf(radius[i]);
+            link(i, level, level(level).cellAt(x[i], y[i]));
+        }
+    }
+
+    /** Moves particle {@code i} to the cell of ({@code x}, {@code y}) on the level for {@code radius}. */
+    void move(int i, double x, double y, double radius) {
+        int level = levelOf(radius);
+        int cell = level(level).cellAt(x, y);
+        if (level == particleLevel[i] && cell == particleCell[i]) return;
+        int before = previous[i];
+        int after = next[i];
+        if (before == EMPTY) {
+            levels[particleLevel[i]].cellHead[particleCell[i]] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after != EMPTY) previous[after] = before;
+        link(i, level, cell);
+    }
+
+    /**
+     * Collects every particle numbered from {@code from} up to but excluding {@code to} that could overlap a disc
+     * of {@code radius} around ({@code x}, {@code y}), in no particular order. Returns how many were written to
+     * {@link #getFound()}.
+     */
+    int collectNear(double x, double y, double radius, int from, int to) {
+        int total = 0;
+        for (int k = 0; k < levelCount; k++) {
+            Level level = levels[k];
+            if (level.cellTotal == 0) continue;
+            double reach = radius + level.maxRadius;
+            int minX = level.cellCoordinate(x - reach);
+            int maxX = level.cellCoordinate(x + reach);
+            int minY = level.cellCoordinate(y - reach);
+            int maxY = level.cellCoordinate(y + reach);
+
+            if (((long)maxX - minX + 1) * ((long)maxY - minY + 1) > level.cellTotal) {
+                // The square spans more cells than exist, so go through the existing ones instead
+                for (int cell = 0; cell < level.cellTotal; cell++) {
+                    int cellX = (int)(level.cellKeys[cell] >> 32);
+                    int cellY = (int)level.cellKeys[cell];
+                    if (cellX >= minX && cellX <= maxX && cellY >= minY && cellY <= maxY) {
+                        total = collectCell(level.cellHead[cell], from, to, total);
+                    }
+                }
+            } else {
+                for (int cellX = minX; cellX <= maxX; cellX++) {
+                    for (int cellY = minY; cellY <= maxY; cellY++) {
+                        int cell = level.findCell(cellKey(cellX, cellY));
+                        if (cell != EMPTY) total = collectCell(level.cellHead[cell], from, to, total);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    int[] getFound() {
+        return found;
+    }
+
+    private int collectCell(int head, int from, int to, int total) {
+        for (int i = head; i != EMPTY; i = next[i]) {
+            if (i < from || i >= to) continue;
+            if (total == found.length) found = Arrays.copyOf(found, total * 2);
+            found[total++] = i;
+        }
+        return total;
+    }
+
+    private void link(int i, int level, int cell) {
+        int[] cellHead = levels[level].cellHead;
+        int head = cellHead[cell];
+        next[i] = head;
+        previous[i] = EMPTY;
+        if (head != EMPTY) previous[head] = i;
+        cellHead[cell] = i;
+        particleLevel[i] = level;
+        particleCell[i] = cell;
+    }
+
+    private int levelOf(double radius) {
+        int level = 0;
+        for (double limit = baseRadius; radius > limit && level < MAX_LEVELS - 1; limit *= 2) {
+            level++;
+        }
+        return level;
+    }
+
+    private Level level(int level) {
+        while (levelCount <= level) {
+            if (levels[levelCount] == null) levels[levelCount] = new Level();
+            levels[levelCount].clear();
+            levels[levelCount].setMaxRadius(Math.scalb(baseRadius, levelCount));
+            levelCount++;
+        }
+        return levels[level];
+    }
+
+    private static long cellKey(int cellX, int cellY) {
+        return ((long)cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    /** One grid of the hierarchy, holding particles up to {@code maxRadius}. */
+    private static final class Level {
+
+        private long[] slotKeys = new long[0];
+        private int[] slotCells = new int[0];
+        private int slotMask;
+
+        private long[] cellKeys = new long[0];
+        private int[] cellHead = new int[0];
+        private int cellTotal;
+
+        private double maxRadius;
+        private double inverseCellSize;
+
+        void clear() {
+            if (slotKeys.length == 0) allocate(16);
+            Arrays.fill(slotCells, EMPTY);
+            cellTotal = 0;
+        }
+
+        void setMaxRadius(double maxRadius) {
+            this.maxRadius = maxRadius;
+            inverseCellSize = 0.5 / maxRadius;
+        }
+
+        int cellAt(double x, double y) {
+            long key = cellKey(cellCoordinate(x), cellCoordinate(y));
+            int cell = findCell(key);
+            if (cell != EMPTY) return cell;
+            if (2 * (cellTotal + 1) > slotKeys.length) {
+                // Keep the table at most half full so probe sequences stay short
+                allocate(2 * slotKeys.length);
+                Arrays.fill(slotCells, EMPTY);
+                for (int existing = 0; existing < cellTotal; existing++) {
+                    int slot = freeSlot(cellKeys[existing]);
+                    slotKeys[slot] = cellKeys[existing];
+                    slotCells[slot] = existing;
+                }
+            }
+            cell = cellTotal++;
+            int slot = freeSlot(key);
+            slotKeys[slot] = key;
+            slotCells[slot] = cell;
+            cellKeys[cell] = key;
+            cellHead[cell] = EMPTY;
+            return cell;
+        }
+
+        int cellCoordinate(double value) {
+            return (int)Math.floor(value * inverseCellSize);
+        }
+
+        int findCell(long key) {
+            for (int slot = slotOf(key); ; slot = (slot + 1) & slotMask) {
+                int cell = slotCells[slot];
+                if (cell == EMPTY || slotKeys[slot] == key) return cell;
+            }
+        }
+
+        private void allocate(int slots) {
+            slotKeys = new long[slots];
+            slotCells = new int[slots];
+            slotMask = slots - 1;
+            cellKeys = Arrays.copyOf(cellKeys, slots / 2);
+            cellHead = Arrays.copyOf(cellHead, slots / 2);
+        }
+
+        private int slotOf(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int)(hash >>> 32) & slotMask;
+        }
+
+        private int freeSlot(long key) {
+            int slot = slotOf(key);
+            while (slotCells[slot] != EMPTY) slot = (slot + 1) & slotMask;
+            return slot;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.tyler.stardust;
 
-import com.badlogic.gdx.graphics.Color;
-
 public class Particle {
     
     private double mass;
@@ -10,7 +8,7 @@ public class Particle {
     private Vector2D acceleration;
 
     private double radius;
-    private Color bodyColor;
+    private int bodyColor; // RGBA8888
 
     private static final double RADIUS_SCALE_FACTOR = 2;
 
@@ -23,7 +21,7 @@ public class Particle {
         this.bodyColor = builder.bodyColor;
     }
 
-    private double calculateRadiusFromMass(double mass) {
+    public static double calculateRadiusFromMass(double mass) {
         return RADIUS_SCALE_FACTOR * Math.cbrt(mass);
     }
 
@@ -32,7 +30,7 @@ public class Particle {
         private double mass;
         private Vector2D position;
 
-        private Color bodyColor = Color.WHITE;
+        private int bodyColor = 0xffffffff;
         private Vector2D velocity = new Vector2D(0, 0);
         private Vector2D acceleration = new Vector2D(0, 0);
 
@@ -51,7 +49,7 @@ public class Particle {
             return this;
         }
         
-        public Builder bodyColor(Color bodyColor) {
+        public Builder bodyColor(int bodyColor) {
             this.bodyColor = bodyColor;
             return this;
         }
@@ -66,7 +64,7 @@ public class Particle {
     public Vector2D getVelocity() { return velocity; }
     public Vector2D getAcceleration() { return acceleration; }
     public double getRadius() { return radius; }
-    public Color getBodyColor() { return bodyColor; }
+    public int getBodyColor() { return bodyColor; }
 
     public void setPosition(Vector2D position) { this.position = position; }
     public void setVelocity(Vector2D velocity) { this.velocity = velocity; }
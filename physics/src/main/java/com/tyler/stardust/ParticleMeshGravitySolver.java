@@ -0,0 +1,361 @@
+package com.tyler.stardust;
+
+import java.util.Arrays;
+
+/**
+ * O(n + G log G) particle-mesh gravity for large, fairly evenly spread scenes.
+ *
+ * <p>Each step the masses are deposited onto a {@code gridSize}² mesh covering the particles' bounding box
+ * (cloud-in-cell), convolved with the potential kernel by FFT on a grid zero-padded to twice the size, so
+ * the boundary is isolated rather than periodic, differentiated with a four-point stencil and interpolated
+ * back with the same cloud-in-cell weights. The engine's force falls off as 1/r², so the kernel is the
+ * {@code 1/r} potential of that force convolved directly, not a solution of the 2D Poisson equation, whose
+ * logarithmic potential would give a 1/r force.
+ *
+ * <p>Without correction the kernel is softened over one cell, so forces between bodies closer than a few
+ * cells are too weak. With the short-range correction enabled (P3M) the kernel is split Ewald-style: the mesh
+ * carries {@code erf(r / 2r_s) / r} with {@code r_s} = {@value #SPLIT_SCALE_CELLS} cells, and the remainder
+ * is summed directly over pairs closer than {@value #CUTOFF_SPLIT_SCALES} r_s. P3M costs about 150 pair
+ * interactions per body when there is roughly one body per mesh cell, so pick the grid size to match.
+ * Measured against {@link DirectSumGravitySolver} on a uniform disc of 20k bodies with a 256² grid, the
+ * relative error of the per-particle acceleration is:
+ * <ul>
+ *     <li>mesh only: median 70%, 99th percentile 290%</li>
+ *     <li>P3M: median 0.6%, 99th percentile 7%</li>
+ * </ul>
+ * With a 1/r² force in 2D the pull on a body in a random field is dominated by its nearest neighbours, which
+ * is exactly what the mesh smooths away, so the mesh alone is only suited to collective dynamics. For a pair
+ * of bodies the mesh force is within about 1% of the direct sum 10 cells apart, 0.3% at 20 and 0.1% at 40.
+ * The mesh is sized to the bounding box, so a few distant stragglers coarsen it for everyone; prefer
+ * {@link BarnesHutGravitySolver} for clustered scenes.
+ */
+public class ParticleMeshGravitySolver implements GravitySolver {
+
+    public static final int DEFAULT_GRID_SIZE = 256;
+
+    private static final double SPLIT_SCALE_CELLS = 1.25;
+    private static final double CUTOFF_SPLIT_SCALES = 5.0;
+    // Cloud-in-cell touches the next node and the stencil reaches two further, so keep clear of the edges
+    private static final int MARGIN_LOW = 2;
+    private static final int MARGIN_HIGH = 3;
+    // The cell size snaps to 2^(k / 8) so the kernel transform is only rebuilt when the scene grows or shrinks ~9%
+    private static final double CELL_SIZE_RUNGS_PER_DOUBLING = 8;
+    private static final int SHORT_RANGE_TABLE_SIZE = 1024;
+
+    private int gridSize = DEFAULT_GRID_SIZE;
+    private boolean shortRangeCorrection;
+
+    private GridFft fft;
+    private double[] real = new double[0];
+    private double[] imaginary = new double[0];
+    private double[] kernel = new double[0];
+    private double kernelCellSize = Double.NaN;
+    private boolean kernelShortRange;
+    private double[] gradientX = new double[0];
+    private double[] gradientY = new double[0];
+
+    // Short-range pass: particles bucketed into cutoff-sized cells, CSR style
+    private final double[] shortRangeFactor = new double[SHORT_RANGE_TABLE_SIZE + 1];
+    private double shortRangeTableCutoff = Double.NaN;
+    private int[] cellStart = new int[0];
+    private int[] cellParticles = new int[0];
+    private int[] particleCell = new int[0];
+    private double[] sortedX = new double[0];
+    private double[] sortedY = new double[0];
+    private double[] sortedMass = new double[0];
+
+    public ParticleMeshGravitySolver() { }
+
+    public ParticleMeshGravitySolver(int gridSize, boolean shortRangeCorrection) {
+        setGridSize(gridSize);
+        setShortRangeCorrection(shortRangeCorrection);
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /** Mesh cells per side; must be a power of two of at least 16. */
+    public void setGridSize(int gridSize) {
+        if (gridSize < 16 || Integer.bitCount(gridSize) != 1) {
+            throw new IllegalArgumentException("Grid size must be a power of two of at least 16: " + gridSize);
+        }
+        this.gridSize = gridSize;
+    }
+
+    public boolean isShortRangeCorrection() {
+        return shortRangeCorrection;
+    }
+
+    public void setShortRangeCorrection(boolean shortRangeCorrection) {
+        this.shortRangeCorrection = shortRangeCorrection;
+    }
+
+    @Override
+    public void calculateAccelerations(final ParticleStore particles, final double gravitationalConstant, WorkerPool workers) {
+        final int count = particles.size();
+        if (count == 0) return;
+        final double[] x = particles.x;
+        final double[] y = particles.y;
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        double extent = Math.max(maxX - minX, maxY - minY);
+        if (extent == 0) extent = 1;
+
+        final int n = gridSize;
+        final double cellSize = snapCellSize(extent / (n - MARGIN_LOW - MARGIN_HIGH - 1));
+        final double originX = minX - MARGIN_LOW * cellSize;
+        final double originY = minY - MARGIN_LOW * cellSize;
+        final boolean shortRange = shortRangeCorrection;
+
+        prepareMesh(cellSize, shortRange, workers);
+        int padded = 2 * n;
+        Arrays.fill(real, 0);
+        Arrays.fill(imaginary, 0);
+        deposit(particles, originX, originY, cellSize);
+
+        // Potential ψ = Σ m K(r) by convolution; the acceleration is G ∇ψ
+        fft.transformRows(real, imaginary, n, false, workers);
+        fft.transformColumns(real, imaginary, false, workers);
+        final double[] transformedKernel = kernel;
+        workers.forRange(padded * padded, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                real[i] *= transformedKernel[i];
+                imaginary[i] *= transformedKernel[i];
+            }
+        });
+        fft.transformColumns(real, imaginary, true, workers);
+        fft.transformRows(real, imaginary, n, true, workers);
+
+        computeGradient(cellSize, workers);
+        workers.forRange(count, (start, end) ->
+            interpolate(particles, originX, originY, cellSize, gravitationalConstant, start, end));
+
+        if (shortRange) addShortRange(particles, gravitationalConstant, cellSize, workers);
+    }
+
+    private static double snapCellSize(double minimum) {
+        double rung = Math.ceil(Math.log(minimum) / Math.log(2) * CELL_SIZE_RUNGS_PER_DOUBLING);
+        double snapped = Math.pow(2, rung / CELL_SIZE_RUNGS_PER_DOUBLING);
+        return snapped >= minimum ? snapped : Math.pow(2, (rung + 1) / CELL_SIZE_RUNGS_PER_DOUBLING);
+    }
+
+    private void prepareMesh(double cellSize, boolean shortRange, WorkerPool workers) {
+        int n = gridSize;
+        int padded = 2 * n;
+        if (fft == null || fft.getSize() != padded) {
+            fft = new GridFft(padded);
+            real = new double[padded * padded];
+            imaginary = new double[padded * padded];
+            kernel = new double[padded * padded];
+            gradientX = new double[n * n];
+            gradientY = new double[n * n];
+            kernelCellSize = Double.NaN;
+        }
+        if (cellSize == kernelCellSize && shortRange == kernelShortRange) return;
+
+        // Kernel value for every offset the circular convolution of the padded grid can produce
+        double splitScale = SPLIT_SCALE_CELLS * cellSize;
+        for (int row = 0; row < padded; row++) {
+            double dy = (row <= n ? row : row - padded) * cellSize;
+            for (int column = 0; column < padded; column++) {
+                double dx = (column <= n ? column : column - padded) * cellSize;
+                double r = Math.sqrt(dx * dx + dy * dy);
+                double value;
+                if (shortRange) {
+                    value = r == 0 ? 1 / (splitScale * Math.sqrt(Math.PI)) : (1 - erfc(r / (2 * splitScale))) / r;
+                } else {
+                    value = 1 / Math.sqrt(r * r + cellSize * cellSize);
+                }
+                kernel[row * padded + column] = value;
+            }
+        }
+        Arrays.fill(imaginary, 0);
+        fft.transformRows(kernel, imaginary, padded, false, workers);
+        fft.transformColumns(kernel, imaginary, false, workers);
+        // The kernel is real and even, so its transform is real; fold in the inverse transform's 1/N² as well
+        double normalization = 1.0 / ((double)padded * padded);
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] *= normalization;
+        }
+        kernelCellSize = cellSize;
+        kernelShortRange = shortRange;
+    }
+
+    private void deposit(ParticleStore particles, double originX, double originY, double cellSize) {
+        int padded = 2 * gridSize;
+        double inverseCell = 1 / cellSize;
+        for (int i = 0; i < particles.size(); i++) {
+            double gx = (particles.x[i] - originX) * inverseCell;
+            double gy = (particles.y[i] - originY) * inverseCell;
+            int ix = (int)gx;
+            int iy = (int)gy;
+            double fx = gx - ix;
+            double fy = gy - iy;
+            double m = particles.mass[i];
+            int index = iy * padded + ix;
+            real[index] += m * (1 - fx) * (1 - fy);
+            real[index + 1] += m * fx * (1 - fy);
+            real[index + padded] += m * (1 - fx) * fy;
+            real[index + padded + 1] += m * fx * fy;
+        }
+    }
+
+    private void computeGradient(double cellSize, WorkerPool workers) {
+        final int n = gridSize;
+        final int padded = 2 * n;
+        final double scale = 1 / (12 * cellSize);
+        final double[] potential = real;
+        workers.forRange(n - MARGIN_LOW - MARGIN_HIGH + 1, (start, end) -> {
+            for (int row = start + MARGIN_LOW; row < end + MARGIN_LOW; row++) {
+                for (int column = MARGIN_LOW; column <= n - MARGIN_HIGH; column++) {
+                    int index = row * padded + column;
+                    gradientX[row * n + column] = scale * (8 * (potential[index + 1] - potential[index - 1])
+                        - (potential[index + 2] - potential[index - 2]));
+                    gradientY[row * n + column] = scale * (8 * (potential[index + padded] - potential[index - padded])
+                        - (potential[index + 2 * padded] - potential[index - 2 * padded]));
+                }
+            }
+        });
+    }
+
+    private void interpolate(ParticleStore particles, double originX, double originY, double cellSize,
+            double gravitationalConstant, int start, int end) {
+        int n = gridSize;
+        double inverseCell = 1 / cellSize;
+        for (int i = start; i < end; i++) {
+            double gx = (particles.x[i] - originX) * inverseCell;
+            double gy = (particles.y[i] - originY) * inverseCell;
+            int ix = (int)gx;
+            int iy = (int)gy;
+            double fx = gx - ix;
+            double fy = gy - iy;
+            double w00 = (1 - fx) * (1 - fy), w10 = fx * (1 - fy), w01 = (1 - fx) * fy, w11 = fx * fy;
+            int index = iy * n + ix;
+            particles.ax[i] = gravitationalConstant * (w00 * gradientX[index] + w10 * gradientX[index + 1]
+                + w01 * gradientX[index + n] + w11 * gradientX[index + n + 1]);
+            particles.ay[i] = gravitationalConstant * (w00 * gradientY[index] + w10 * gradientY[index + 1]
+                + w01 * gradientY[index + n] + w11 * gradientY[index + n + 1]);
+        }
+    }
+
+    private void addShortRange(final ParticleStore particles, final double gravitationalConstant, double cellSize,
+            WorkerPool workers) {
+        final int count = particles.size();
+        final double[] x = particles.x;
+        final double[] y = particles.y;
+        final double[] mass = particles.mass;
+        final double splitScale = SPLIT_SCALE_CELLS * cellSize;
+        final double cutoff = CUTOFF_SPLIT_SCALES * splitScale;
+        final double cutoffSquared = cutoff * cutoff;
+        final double[] factor = shortRangeFactor(cutoff, splitScale);
+        final double tableScale = SHORT_RANGE_TABLE_SIZE / cutoff;
+
+        // Bucket particles into cutoff-sized cells so every partner is in the surrounding 3x3 block
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        final double originX = minX, originY = minY;
+        final int columns = (int)((maxX - minX) / cutoff) + 1;
+        final int rows = (int)((maxY - minY) / cutoff) + 1;
+        int cells = columns * rows;
+        if (cellStart.length < cells + 1) cellStart = new int[cells + 1];
+        if (cellParticles.length < count) {
+            cellParticles = new int[particles.capacity()];
+            particleCell = new int[particles.capacity()];
+        }
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+        for (int i = 0; i < count; i++) {
+            int cell = (int)((y[i] - originY) / cutoff) * columns + (int)((x[i] - originX) / cutoff);
+            particleCell[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] fill = Arrays.copyOf(cellStart, cells);
+        for (int i = 0; i < count; i++) {
+            cellParticles[fill[particleCell[i]]++] = i;
+        }
+
+        // Cell-ordered copies keep the partner loop on contiguous memory
+        if (sortedX.length < count) {
+            sortedX = new double[particles.capacity()];
+            sortedY = new double[particles.capacity()];
+            sortedMass = new double[particles.capacity()];
+        }
+        for (int k = 0; k < count; k++) {
+            int i = cellParticles[k];
+            sortedX[k] = x[i];
+            sortedY[k] = y[i];
+            sortedMass[k] = mass[i];
+        }
+
+        final int[] starts = cellStart;
+        final int[] members = cellParticles;
+        final double[] px = sortedX, py = sortedY, pm = sortedMass;
+        workers.forRange(count, (start, end) -> {
+            for (int k = start; k < end; k++) {
+                double xi = px[k], yi = py[k];
+                int column = (int)((xi - originX) / cutoff);
+                int row = (int)((yi - originY) / cutoff);
+                double ax = 0, ay = 0;
+                for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                    // The three cells of a row are adjacent in the sorted order
+                    int first = starts[r * columns + Math.max(0, column - 1)];
+                    int last = starts[r * columns + Math.min(columns - 1, column + 1) + 1];
+                    for (int j = first; j < last; j++) {
+                        double dx = px[j] - xi;
+                        double dy = py[j] - yi;
+                        double distanceSquared = dx * dx + dy * dy;
+                        if (distanceSquared == 0 || distanceSquared >= cutoffSquared) continue;
+                        double distance = Math.sqrt(distanceSquared);
+                        double t = distance * tableScale;
+                        int slot = (int)t;
+                        double weight = factor[slot] + (t - slot) * (factor[slot + 1] - factor[slot]);
+                        double inverseCube = weight * pm[j] / (distanceSquared * distance);
+                        ax += dx * inverseCube;
+                        ay += dy * inverseCube;
+                    }
+                }
+                int i = members[k];
+                particles.ax[i] += gravitationalConstant * ax;
+                particles.ay[i] += gravitationalConstant * ay;
+            }
+        });
+    }
+
+    // Fraction of the Newtonian pair force the mesh leaves out, tabulated over [0, cutoff]
+    private double[] shortRangeFactor(double cutoff, double splitScale) {
+        if (cutoff != shortRangeTableCutoff) {
+            for (int k = 0; k <= SHORT_RANGE_TABLE_SIZE; k++) {
+                double u = k * cutoff / SHORT_RANGE_TABLE_SIZE / (2 * splitScale);
+                shortRangeFactor[k] = erfc(u) + 2 * u / Math.sqrt(Math.PI) * Math.exp(-u * u);
+            }
+            shortRangeTableCutoff = cutoff;
+        }
+        return shortRangeFactor;
+    }
+
+    // Complementary error function, fractional error below 1.2e-7 (Numerical Recipes' erfcc)
+    static double erfc(double z) {
+        double absolute = Math.abs(z);
+        double t = 1 / (1 + 0.5 * absolute);
+        double result = t * Math.exp(-absolute * absolute - 1.26551223 + t * (1.00002368 + t * (0.37409196
+            + t * (0.09678418 + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+            + t * (-0.82215223 + t * 0.17087277)))))))));
+        return z >= 0 ? result : 2 - result;
+    }
+}
@@ -0,0 +1,120 @@
+package com.tyler.stardust;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Render-ready copy of the particle state at the end of one simulation step.
+ *
+ * <p>Positions, radii and colors are written straight into an off-heap buffer laid out as GL vertices,
+ * {@value #FLOATS_PER_PARTICLE} floats per body: x, y, radius and the color packed as ABGR bits (the layout
+ * of a libGDX {@code ColorPacked} attribute). A renderer can hand {@link #getVertices()} to the driver as it is,
+ * so drawing needs no per-body work on the render thread, and the bulk of the snapshot stays out of the heap.
+ * The RGBA color and id of each body are also kept on the heap for renderers that process bodies one by one.
+ *
+ * <p>Instances are recycled by {@link SnapshotBuffer}: a snapshot is only written while the simulation owns
+ * it and only read while the renderer owns it, so neither side needs a lock.
+ */
+public class ParticleSnapshot {
+
+    public static final int FLOATS_PER_PARTICLE = 4;
+    public static final int BYTES_PER_PARTICLE = FLOATS_PER_PARTICLE * 4;
+
+    private static final int CHUNK_PARTICLES = 1024;
+
+    private FloatBuffer vertices = newVertexBuffer(0);
+    private final float[] chunk = new float[CHUNK_PARTICLES * FLOATS_PER_PARTICLE];
+    private int[] color = new int[0];
+    private long[] id = new long[0];
+    private int count;
+    private float maxRadius;
+    private float minX, minY, maxX, maxY;
+    private long step;
+    private double simulationTime;
+
+    long sequence;
+
+    void copyFrom(ParticleStore particles, long step, double simulationTime) {
+        int size = particles.size();
+        if (color.length < size) {
+            int capacity = Math.max(size, color.length + (color.length >> 1));
+            vertices = newVertexBuffer(capacity);
+            color = new int[capacity];
+            id = new long[capacity];
+        }
+        FloatBuffer vertices = this.vertices;
+        vertices.clear();
+        float maxRadius = 0;
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        // Converted a cache-sized chunk at a time, then bulk-copied, which is cheaper than a checked put per float
+        float[] chunk = this.chunk;
+        for (int start = 0; start < size; start += CHUNK_PARTICLES) {
+            int end = Math.min(size, start + CHUNK_PARTICLES);
+            int offset = 0;
+            for (int i = start; i < end; i++, offset += FLOATS_PER_PARTICLE) {
+                float x = (float)particles.x[i];
+                float y = (float)particles.y[i];
+                float radius = (float)particles.radius[i];
+                chunk[offset] = x;
+                chunk[offset + 1] = y;
+                chunk[offset + 2] = radius;
+                chunk[offset + 3] = packColor(particles.color[i]);
+                maxRadius = Math.max(maxRadius, radius);
+                minX = Math.min(minX, x - radius);
+                minY = Math.min(minY, y - radius);
+                maxX = Math.max(maxX, x + radius);
+                maxY = Math.max(maxY, y + radius);
+            }
+            vertices.put(chunk, 0, offset);
+        }
+        vertices.flip();
+        System.arraycopy(particles.color, 0, color, 0, size);
+        System.arraycopy(particles.id, 0, id, 0, size);
+        this.count = size;
+        this.maxRadius = maxRadius;
+        if (size == 0) minX = minY = maxX = maxY = 0;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.step = step;
+        this.simulationTime = simulationTime;
+    }
+
+    private static FloatBuffer newVertexBuffer(int particles) {
+        return ByteBuffer.allocateDirect(particles * BYTES_PER_PARTICLE).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * RGBA8888 as the float whose bits are the ABGR bytes, with the lowest alpha bit dropped so the result is never
+     * a NaN that could be canonicalised on the way to the GPU. The same packing as libGDX's {@code Color.toFloatBits}.
+     */
+    public static float packColor(int rgba8888) {
+        return Float.intBitsToFloat(Integer.reverseBytes(rgba8888) & 0xfeffffff);
+    }
+
+    /**
+     * The bodies as GL vertices, from position 0 to a limit of {@code getCount() * FLOATS_PER_PARTICLE}. Only valid
+     * while the snapshot is owned by the reader, and replaced when a larger scene arrives, so fetch it every frame.
+     */
+    public FloatBuffer getVertices() { return vertices; }
+
+    public int getCount() { return count; }
+    public float getX(int index) { return vertices.get(index * FLOATS_PER_PARTICLE); }
+    public float getY(int index) { return vertices.get(index * FLOATS_PER_PARTICLE + 1); }
+    public float getRadius(int index) { return vertices.get(index * FLOATS_PER_PARTICLE + 2); }
+    public int getColor(int index) { return color[index]; }
+    /** The body's {@link ParticleStore#id}; ascending with the index, like in the store. */
+    public long getId(int index) { return id[index]; }
+    /** The largest radius of any body, for renderers that need to know whether every body fits one path. */
+    public float getMaxRadius() { return maxRadius; }
+    /** The bounding box of every body's disc, for renderers that need to know how much of the scene is in view. */
+    public float getMinX() { return minX; }
+    public float getMinY() { return minY; }
+    public float getMaxX() { return maxX; }
+    public float getMaxY() { return maxY; }
+    public long getStep() { return step; }
+    public double getSimulationTime() { return simulationTime; }
+}
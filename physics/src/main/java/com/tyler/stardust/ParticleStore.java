@@ -0,0 +1,202 @@
+package com.tyler.stardust;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays particle storage that the physics engine works on directly.
+ *
+ * <p>Particle {@code i} is the {@code i}-th entry of every column. The columns are public for the hot loops,
+ * but they are replaced when the store grows, so never hold on to one across an {@link #add}.
+ * {@link Particle} remains the way to describe a single body; {@link #add(Particle)} copies it in and
+ * {@link #get(int)} copies one back out.
+ *
+ * <p>Every particle also gets an {@link #id} that is never reused and survives compaction. Particles are only
+ * ever appended and removals keep the order, so ids are always ascending from index 0 upwards.
+ */
+public class ParticleStore {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    public double[] x;
+    public double[] y;
+    public double[] vx;
+    public double[] vy;
+    public double[] ax;
+    public double[] ay;
+    public double[] mass;
+    public double[] radius;
+    public int[] color; // RGBA8888
+    public long[] id;
+
+    private int size;
+    private long version;
+    private long nextId;
+
+    public ParticleStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ParticleStore(int initialCapacity) {
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    private void allocate(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        ax = new double[capacity];
+        ay = new double[capacity];
+        mass = new double[capacity];
+        radius = new double[capacity];
+        color = new int[capacity];
+        id = new long[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Counter bumped whenever particles are added or removed or a mass changes. Code that writes
+     * positions or masses through the columns directly should call {@link #markModified()}.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void markModified() {
+        version++;
+    }
+
+    public int capacity() {
+        return x.length;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= x.length) return;
+        int newCapacity = Math.max(capacity, x.length + (x.length >> 1));
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        vx = Arrays.copyOf(vx, newCapacity);
+        vy = Arrays.copyOf(vy, newCapacity);
+        ax = Arrays.copyOf(ax, newCapacity);
+        ay = Arrays.copyOf(ay, newCapacity);
+        mass = Arrays.copyOf(mass, newCapacity);
+        radius = Arrays.copyOf(radius, newCapacity);
+        color = Arrays.copyOf(color, newCapacity);
+        id = Arrays.copyOf(id, newCapacity);
+    }
+
+    /**
+     * Sets the number of particles for bulk loading. Entries beyond the old size get fresh ids but keep whatever
+     * the other columns held, so the caller must fill every column of them.
+     */
+    public void resize(int newSize) {
+        if (newSize < 0) throw new IllegalArgumentException("Negative size: " + newSize);
+        ensureCapacity(newSize);
+        for (int i = size; i < newSize; i++) {
+            id[i] = nextId++;
+        }
+        size = newSize;
+        version++;
+    }
+
+    /** Replaces the contents with a copy of {@code source}. The copies are new bodies, so they get fresh ids. */
+    public void copyFrom(ParticleStore source) {
+        int count = source.size;
+        clear();
+        resize(count);
+        System.arraycopy(source.x, 0, x, 0, count);
+        System.arraycopy(source.y, 0, y, 0, count);
+        System.arraycopy(source.vx, 0, vx, 0, count);
+        System.arraycopy(source.vy, 0, vy, 0, count);
+        System.arraycopy(source.ax, 0, ax, 0, count);
+        System.arraycopy(source.ay, 0, ay, 0, count);
+        System.arraycopy(source.mass, 0, mass, 0, count);
+        System.arraycopy(source.radius, 0, radius, 0, count);
+        System.arraycopy(source.color, 0, color, 0, count);
+    }
+
+    public int add(Particle particle) {
+        int index = add(
+            particle.getMass(),
+            particle.getPosition().x, particle.getPosition().y,
+            particle.getVelocity().x, particle.getVelocity().y,
+            particle.getBodyColor()
+        );
+        ax[index] = particle.getAcceleration().x;
+        ay[index] = particle.getAcceleration().y;
+        return index;
+    }
+
+    public int add(double particleMass, double px, double py, double pvx, double pvy, int rgba8888) {
+        ensureCapacity(size + 1);
+        int index = size++;
+        version++;
+        x[index] = px;
+        y[index] = py;
+        vx[index] = pvx;
+        vy[index] = pvy;
+        ax[index] = 0;
+        ay[index] = 0;
+        mass[index] = particleMass;
+        radius[index] = Particle.calculateRadiusFromMass(particleMass);
+        color[index] = rgba8888;
+        id[index] = nextId++;
+        return index;
+    }
+
+    /** Returns a detached copy of particle {@code index}; changes to it are not written back. */
+    public Particle get(int index) {
+        return new Particle.Builder(mass[index], new Vector2D(x[index], y[index]))
+            .velocity(new Vector2D(vx[index], vy[index]))
+            .acceleration(new Vector2D(ax[index], ay[index]))
+            .bodyColor(color[index])
+            .build();
+    }
+
+    public void absorbMass(int index, double amount) {
+        mass[index] += amount;
+        radius[index] = Particle.calculateRadiusFromMass(mass[index]);
+        version++;
+    }
+
+    public void loseMass(int index, double amount) {
+        mass[index] = Math.max(0, mass[index] - amount);
+        radius[index] = Particle.calculateRadiusFromMass(mass[index]);
+        version++;
+    }
+
+    /** Removes every particle with no mass left, keeping the remaining particles in their original order. */
+    public int removeMassless() {
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            if (mass[read] <= 0) continue;
+            if (write != read) move(read, write);
+            write++;
+        }
+        int removed = size - write;
+        size = write;
+        if (removed > 0) version++;
+        return removed;
+    }
+
+    private void move(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        ax[to] = ax[from];
+        ay[to] = ay[from];
+        mass[to] = mass[from];
+        radius[to] = radius[from];
+        color[to] = color[from];
+        id[to] = id[from];
+    }
+
+    public void clear() {
+        size = 0;
+        version++;
+    }
+}
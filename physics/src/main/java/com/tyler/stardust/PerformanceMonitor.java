@@ -0,0 +1,203 @@
+package com.tyler.stardust;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Per-step timings and counters of a {@link PhysicsEngine}, for the in-app overlay and for headless runs.
+ *
+ * <p>Monitoring is off by default, and then a step costs one volatile read, a check whether a JDK Flight Recorder
+ * recording wants the step event, and a few untaken branches. When on, the engine times each {@link Phase} with
+ * {@link System#nanoTime()} and publishes the figures once per step, so other threads can read a consistent set
+ * through {@link #sample}. Independently of that, while a recording has the {@code stardust.Step} event enabled
+ * (and the runtime supports it), each step is timed the same way and recorded as an event spanning the step.
+ *
+ * <p>Allocations are counted on the stepping thread only; whatever the worker threads allocate when the engine
+ * runs on more than one is not included.
+ */
+public class PerformanceMonitor {
+
+    public enum Phase {
+        FORCES("Forces"),
+        INTEGRATION("Integration"),
+        COLLISION_DETECTION("Contacts"),
+        COLLISION_RESOLUTION("Resolution"),
+        COMPACTION("Compaction"),
+        LISTENERS("Listeners");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /** A copy of the published figures; reuse one instance across calls to {@link #sample}. */
+    public static final class Sample {
+        /** Steps published since the last {@link #reset()}. */
+        public long steps;
+        public final long[] lastNanos = new long[PHASES.length];
+        /** Exponential moving average over roughly the last 32 steps, for display. */
+        public final double[] averageNanos = new double[PHASES.length];
+        public final long[] totalNanos = new long[PHASES.length];
+        public int particles;
+        /** Candidate pairs distance-tested by collision detection in the last step. */
+        public long pairTests;
+        public int contacts;
+        public int clusters;
+        /**
+         * Bytes allocated by the stepping thread in the last step, not counting worker threads, or -1 if the JVM
+         * cannot tell.
+         */
+        public long allocatedBytes;
+        public long totalAllocatedBytes;
+
+        public long lastStepNanos() {
+            long sum = 0;
+            for (long nanos : lastNanos) sum += nanos;
+            return sum;
+        }
+
+        public double averageStepNanos() {
+            double sum = 0;
+            for (double nanos : averageNanos) sum += nanos;
+            return sum;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final double SMOOTHING = 1.0 / 32;
+
+    private volatile boolean enabled;
+
+    // Written only by the stepping thread
+    private boolean stepping;
+    private boolean publishing;
+    private Object stepEvent;
+    private long mark;
+    private long allocationMark;
+    private final long[] currentNanos = new long[PHASES.length];
+    private long currentPairTests;
+    private int currentContacts;
+    private int currentClusters;
+
+    // Published at the end of each step, guarded by this
+    private final Sample published = new Sample();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Safe from any thread; takes effect at the next step. */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public synchronized void reset() {
+        published.steps = 0;
+        Arrays.fill(published.lastNanos, 0);
+        Arrays.fill(published.averageNanos, 0);
+        Arrays.fill(published.totalNanos, 0);
+        published.totalAllocatedBytes = 0;
+    }
+
+    /** Copies the latest published figures into {@code into} and returns it. Safe from any thread. */
+    public synchronized Sample sample(Sample into) {
+        into.steps = published.steps;
+        System.arraycopy(published.lastNanos, 0, into.lastNanos, 0, PHASES.length);
+        System.arraycopy(published.averageNanos, 0, into.averageNanos, 0, PHASES.length);
+        System.arraycopy(published.totalNanos, 0, into.totalNanos, 0, PHASES.length);
+        into.particles = published.particles;
+        into.pairTests = published.pairTests;
+        into.contacts = published.contacts;
+        into.clusters = published.clusters;
+        into.allocatedBytes = published.allocatedBytes;
+        into.totalAllocatedBytes = published.totalAllocatedBytes;
+        return into;
+    }
+
+    void beginStep() {
+        publishing = enabled;
+        stepEvent = FlightRecorderEvents.beginStep();
+        stepping = publishing || stepEvent != null;
+        if (!stepping) return;
+        Arrays.fill(currentNanos, 0);
+        currentPairTests = 0;
+        currentContacts = 0;
+        currentClusters = 0;
+        allocationMark = allocatedBytes();
+        mark = System.nanoTime();
+    }
+
+    /** Charges the time since the previous lap, or since {@link #beginStep}, to {@code phase}. */
+    void lap(Phase phase) {
+        if (!stepping) return;
+        long now = System.nanoTime();
+        currentNanos[phase.ordinal()] += now - mark;
+        mark = now;
+    }
+
+    void countContacts(long pairTests, int contacts, int clusters) {
+        if (!stepping) return;
+        currentPairTests += pairTests;
+        currentContacts += contacts;
+        currentClusters += clusters;
+    }
+
+    void endStep(int particles) {
+        if (!stepping) return;
+        stepping = false;
+        long allocated = allocationMark < 0 ? -1 : allocatedBytes() - allocationMark;
+        if (stepEvent != null) {
+            FlightRecorderEvents.commitStep(stepEvent, currentNanos, particles, currentPairTests, currentContacts, currentClusters, allocated);
+            stepEvent = null;
+        }
+        if (!publishing) return;
+        synchronized (this) {
+            boolean first = published.steps == 0;
+            published.steps++;
+            for (int p = 0; p < PHASES.length; p++) {
+                long nanos = currentNanos[p];
+                published.lastNanos[p] = nanos;
+                published.totalNanos[p] += nanos;
+                published.averageNanos[p] = first ? nanos : published.averageNanos[p] + (nanos - published.averageNanos[p]) * SMOOTHING;
+            }
+            published.particles = particles;
+            published.pairTests = currentPairTests;
+            published.contacts = currentContacts;
+            published.clusters = currentClusters;
+            published.allocatedBytes = allocated;
+            if (allocated > 0) published.totalAllocatedBytes += allocated;
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean counter = AllocationCounter.INSTANCE;
+        return counter == null ? -1 : counter.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Loaded on first use, so runs whose steps are never timed never touch the management beans
+    private static final class AllocationCounter {
+
+        static final com.sun.management.ThreadMXBean INSTANCE = create();
+
+        private static com.sun.management.ThreadMXBean create() {
+            try {
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                if (!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+                com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean)threads;
+                if (!counter.isThreadAllocatedMemorySupported()) return null;
+                counter.setThreadAllocatedMemoryEnabled(true);
+                return counter;
+            } catch (RuntimeException | LinkageError e) {
+                // Not a HotSpot-style JVM, or management is unavailable (e.g. Android)
+                return null;
+            }
+        }
+    }
+}
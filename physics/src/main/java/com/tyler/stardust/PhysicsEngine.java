@@ -0,0 +1,541 @@
+package com.tyler.stardust;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+public class PhysicsEngine {
+
+    public static final double DEFAULT_RESTITUTION = 0.8;
+    public static final double DEFAULT_ABSORPTION_RATE = 0.25;
+
+    // Reach beyond touching, as a fraction of the largest radius, at which pairs count as contacts
+    private static final double MIN_CONTACT_PAD = 0.25;
+    private static final double MAX_CONTACT_PAD = 1;
+    // Radius, as a multiple of the mean, past which the ordered pass moves bodies up to coarser grid levels
+    private static final double LARGE_RADIUS_FACTOR = 4;
+    // How far past its own reach, as a fraction of the smallest level's radius, the ordered pass lists a row
+    private static final double ROW_SLACK = 0.5;
+
+    private double gravitationalConstant;
+    private GravitySolver gravitySolver = new DirectSumGravitySolver();
+    private WorkerPool workers = WorkerPool.serial();
+    private Integrator integrator = new SemiImplicitEulerIntegrator();
+    private final ForceEvaluator forceEvaluator = new ForceEvaluator();
+    private final ContactBuffer contacts = new ContactBuffer();
+    private final PerformanceMonitor monitor = new PerformanceMonitor();
+    private final List<StepListener> stepListeners = new ArrayList<StepListener>();
+    private double restitution = DEFAULT_RESTITUTION; // Coefficient of restitution (bounciness)
+    private double absorptionRate = DEFAULT_ABSORPTION_RATE; // Share of the smaller body's mass transferred per collision
+    private CollisionMode collisionMode = CollisionMode.EXACT;
+    private int[] contactGroups; // Bodies with equal entries never collide; null lets every pair collide
+    private double contactPad = MIN_CONTACT_PAD; // Grows and shrinks with how far the last pass pushed bodies
+    private boolean resolveInOrder; // Whether the last pass pushed bodies too far for clusters to stay apart
+    private double[] clusterDrift = new double[0];
+    private int[] clusterCollisions = new int[0];
+
+    // The ordered pass that takes over when clusters would not stay apart
+    private final MovingHashGrid orderedGrid = new MovingHashGrid();
+    private final BitSet pendingRows = new BitSet();
+    private int[] rowBodies = new int[0];
+    private double[] startX = new double[0];
+    private double[] startY = new double[0];
+    private double orderedDrift;
+    private double orderedMaxRadius;
+    private long orderedPairTests;
+
+    public void update(ParticleStore particles, double deltaTime) {
+        monitor.beginStep();
+
+        // First advance positions and velocities under gravity
+        integrator.step(particles, deltaTime, forceEvaluator, workers);
+        monitor.lap(PerformanceMonitor.Phase.INTEGRATION);
+
+        // Then handle collisions and absorption
+        handleCollisions(particles);
+
+        // Remove particles with no mass
+        particles.removeMassless();
+        monitor.lap(PerformanceMonitor.Phase.COMPACTION);
+
+        for (int i = 0; i < stepListeners.size(); i++) {
+            stepListeners.get(i).stepCompleted(particles, deltaTime);
+        }
+        monitor.lap(PerformanceMonitor.Phase.LISTENERS);
+        monitor.endStep(particles.size());
+    }
+
+    public void addStepListener(StepListener listener) {
+        stepListeners.add(listener);
+    }
+
+    public void removeStepListener(StepListener listener) {
+        stepListeners.remove(listener);
+    }
+
+    /**
+     * Resolves overlaps and absorption without advancing time; {@link #update} calls this after integrating.
+     *
+     * <p>The result is exactly that of visiting every pair in ascending order and resolving it if it overlaps at
+     * that moment, including overlaps created earlier in the same pass. Close pairs are collected first and
+     * resolved per cluster of bodies near each other, so clusters run in parallel. Should a body drift far enough
+     * to possibly reach one outside its cluster, the clusters are undone and the pass runs in order on one thread
+     * instead, going back over every body it moves or grows; after such a pass the next one runs in order from the
+     * start. Candidate pairs come from neighbour lists kept between calls; see {@link #setContactSkin}.
+     *
+     * <p>In {@link CollisionMode#CLUSTERED} mode contacts are grouped by tile rather than by connectivity, so a
+     * scene packed into one big cluster still spreads over the threads, and the tiles are always kept however far
+     * bodies drift; overlaps a pass creates between tiles are left for the next one. Only scenes too crowded to
+     * list pairs still run in order.
+     */
+    public void handleCollisions(ParticleStore particles) {
+        handleCollisions(particles, true);
+    }
+
+    /** With {@code reuseNeighbors} unset, detects from scratch and leaves the cached lists for the usual store. */
+    void handleCollisions(ParticleStore particles, boolean reuseNeighbors) {
+        // After a pass that pushed bodies too far for clusters, the ordered pass finds its own overlaps
+        boolean exact = collisionMode == CollisionMode.EXACT;
+        int found = resolveInOrder ? 0 : contacts.collect(particles, workers, reuseNeighbors, contactPad, !exact);
+        monitor.lap(PerformanceMonitor.Phase.COLLISION_DETECTION);
+        boolean everyRow = resolveInOrder || found == ContactBuffer.CROWDED;
+        if (!everyRow && found == 0) {
+            monitor.countContacts(contacts.getPairTests(), 0, 0);
+            return;
+        }
+
+        int clusters = everyRow ? 0 : contacts.getClusterCount();
+        int[] first = contacts.getFirst();
+        int[] second = contacts.getSecond();
+        double drift = 0;
+        int collided = 0;
+        boolean inOrder = everyRow || (exact && clusters == 1);
+        if (!inOrder) {
+            if (clusterDrift.length < clusters) {
+                clusterDrift = new double[clusters];
+                clusterCollisions = new int[clusters];
+            }
+            int[] clusterStart = contacts.getClusterStart();
+            int[] clusterContacts = contacts.getClusterContacts();
+            // Clusters of one phase share no bodies; tiles, unlike clusters found by connectivity, need several
+            int[] phaseStart = contacts.getPhaseStart();
+            for (int p = 0; p < contacts.getPhaseCount(); p++) {
+                int phase = phaseStart[p];
+                workers.forRange(phaseStart[p + 1] - phase, 1, (start, end) -> {
+                    for (int k = phase + start; k < phase + end; k++) {
+                        contacts.saveCluster(particles, k);
+                        double clusterMax = 0;
+                        int clusterCollided = 0;
+                        for (int c = clusterStart[k]; c < clusterStart[k + 1]; c++) {
+                            int i = first[clusterContacts[c]];
+                            int j = second[clusterContacts[c]];
+                            if (!collidePair(particles, i, j)) continue;
+                            clusterCollided++;
+                            clusterMax = Math.max(clusterMax, Math.max(contacts.drift(particles, i), contacts.drift(particles, j)));
+                        }
+                        clusterDrift[k] = clusterMax;
+                        clusterCollisions[k] = clusterCollided;
+                    }
+                });
+            }
+            for (int k = 0; k < clusters; k++) {
+                drift = Math.max(drift, clusterDrift[k]);
+                collided += clusterCollisions[k];
+            }
+
+            // Two bodies each within half the pad of where they started cannot have come to overlap unnoticed;
+            // the rest of the half is slack for rounding
+            if (exact && !(drift < 0.45 * contacts.getPad())) {
+                workers.forRange(clusters, 1, (start, end) -> {
+                    for (int k = start; k < end; k++) {
+                        contacts.restoreCluster(particles, k);
+                    }
+                });
+                inOrder = true;
+            }
+        }
+        long pairTests = everyRow ? 0 : contacts.getPairTests();
+        double maxRadius = everyRow ? 0 : contacts.getMaxRadius();
+        if (inOrder) {
+            collided = everyRow ? orderedPass(particles, null, 0) : orderedPass(particles, first, found);
+            clusters = collided > 0 ? 1 : 0;
+            drift = orderedDrift;
+            pairTests += orderedPairTests;
+            maxRadius = orderedMaxRadius;
+        }
+
+        // Sized for bodies being pushed about as far next time. Past the largest pad clusters merge into one, so
+        // the ordered pass does the same job without collecting contacts or trying clusters
+        double reach = maxRadius > 0 ? 3 * drift / maxRadius : 0;
+        resolveInOrder = exact && !(reach <= MAX_CONTACT_PAD);
+        contactPad = Math.min(Math.max(reach, MIN_CONTACT_PAD), MAX_CONTACT_PAD);
+        if (collided > 0) particles.markModified();
+        monitor.countContacts(pairTests, collided, clusters);
+        monitor.lap(PerformanceMonitor.Phase.COLLISION_RESOLUTION);
+    }
+
+    /**
+     * Same result as {@link #sweepCollisions}, but only visits rows that hold an overlap. A row is pending while
+     * its body overlaps a later one: at first those of the collected contacts, or every row without any, then
+     * every row ahead that a body the pass moves or grows comes to overlap. Bodies are kept in a grid that follows
+     * them as they move, with the few much larger ones on coarser levels of their own.
+     */
+    private int orderedPass(ParticleStore particles, int[] first, int contactCount) {
+        int count = particles.size();
+        double[] radius = particles.radius;
+        double maxRadius = 0;
+        double meanRadius = 0;
+        for (int i = 0; i < count; i++) {
+            if (radius[i] > maxRadius) maxRadius = radius[i];
+            meanRadius += radius[i];
+        }
+        orderedMaxRadius = maxRadius;
+        orderedDrift = 0;
+        orderedPairTests = 0;
+        // Nothing can overlap without a positive radius
+        if (count < 2 || !(maxRadius > 0)) return 0;
+        meanRadius /= count;
+        double baseRadius = meanRadius;
+        for (int i = 0; i < count; i++) {
+            if (radius[i] <= LARGE_RADIUS_FACTOR * meanRadius) baseRadius = Math.max(baseRadius, radius[i]);
+        }
+        if (!(baseRadius > 0)) baseRadius = maxRadius;
+        orderedGrid.build(particles.x, particles.y, radius, count, baseRadius);
+        if (startX.length < count) {
+            startX = new double[particles.capacity()];
+            startY = new double[particles.capacity()];
+        }
+        System.arraycopy(particles.x, 0, startX, 0, count);
+        System.arraycopy(particles.y, 0, startY, 0, count);
+        pendingRows.clear();
+        if (first == null) {
+            pendingRows.set(0, count);
+        } else {
+            for (int c = 0; c < contactCount; c++) {
+                pendingRows.set(first[c]);
+            }
+        }
+
+        double drift = 0;
+        int collided = 0;
+        long pairTests = 0;
+        double slack = ROW_SLACK * baseRadius;
+        for (int i = pendingRows.nextSetBit(0); i >= 0; i = pendingRows.nextSetBit(i + 1)) {
+            // Within a row only i and the bodies it has passed move, so the later ones near i can be listed once
+            // and gone through in order for as long as i stays within the slack of where they were listed from
+            int from = i + 1;
+            boolean moved = true;
+            while (moved) {
+                double rowX = particles.x[i];
+                double rowY = particles.y[i];
+                double rowRadius = radius[i];
+                int found = orderedGrid.collectNear(rowX, rowY, rowRadius + slack, from, count);
+                pairTests += found;
+                int[] nearby = orderedGrid.getFound();
+                if (rowBodies.length < found) rowBodies = new int[nearby.length];
+                int listed = 0;
+                for (int n = 0; n < found; n++) {
+                    if (within(particles, rowX, rowY, rowRadius + slack, nearby[n])) rowBodies[listed++] = nearby[n];
+                }
+                Arrays.sort(rowBodies, 0, listed);
+                moved = false;
+                for (int n = 0; n < listed && !moved; n++) {
+                    int other = rowBodies[n];
+                    if (!overlapping(particles, i, other) || sameGroup(i, other)) continue;
+                    collidePair(particles, i, other);
+                    collided++;
+                    orderedGrid.move(i, particles.x[i], particles.y[i], radius[i]);
+                    orderedGrid.move(other, particles.x[other], particles.y[other], radius[other]);
+                    drift = Math.max(drift, Math.max(distanceFromStart(particles, i), distanceFromStart(particles, other)));
+
+                    // Any new overlap of the other body waits in its own row or in one between i and it
+                    pendingRows.set(other);
+                    int between = orderedGrid.collectNear(particles.x[other], particles.y[other], radius[other], i + 1, other);
+                    pairTests += between;
+                    nearby = orderedGrid.getFound();
+                    for (int k = 0; k < between; k++) {
+                        if (overlapping(particles, nearby[k], other)) pendingRows.set(nearby[k]);
+                    }
+                    from = other + 1;
+                    double dx = particles.x[i] - rowX;
+                    double dy = particles.y[i] - rowY;
+                    moved = !(Math.sqrt(dx * dx + dy * dy) + radius[i] - rowRadius < 0.5 * slack);
+                }
+            }
+        }
+        orderedDrift = drift;
+        orderedPairTests = pairTests;
+        return collided;
+    }
+
+    private double distanceFromStart(ParticleStore particles, int i) {
+        double dx = particles.x[i] - startX[i];
+        double dy = particles.y[i] - startY[i];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Visits every pair in ascending order and resolves the ones that overlap at that moment, on one thread.
+     * Returns how many did. The clustered pass in {@link #handleCollisions} gives exactly the same result.
+     */
+    int sweepCollisions(ParticleStore particles) {
+        int count = particles.size();
+        int collided = 0;
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                if (collidePair(particles, i, j)) collided++;
+            }
+        }
+        if (collided > 0) particles.markModified();
+        return collided;
+    }
+
+    private static boolean within(ParticleStore particles, double x, double y, double reach, int j) {
+        double dx = particles.x[j] - x;
+        double dy = particles.y[j] - y;
+        double limit = reach + particles.radius[j];
+        return dx * dx + dy * dy < limit * limit;
+    }
+
+    // Exactly the test collidePair makes before touching anything
+    private static boolean overlapping(ParticleStore particles, int i, int j) {
+        double dx = particles.x[j] - particles.x[i];
+        double dy = particles.y[j] - particles.y[i];
+        return Math.sqrt(dx * dx + dy * dy) < particles.radius[i] + particles.radius[j];
+    }
+
+    private boolean sameGroup(int i, int j) {
+        return contactGroups != null && contactGroups[i] == contactGroups[j];
+    }
+
+    // Returns whether the pair overlapped
+    private boolean collidePair(ParticleStore particles, int i, int j) {
+        if (sameGroup(i, j)) return false;
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] mass = particles.mass;
+
+        double dx = x[j] - x[i];
+        double dy = y[j] - y[i];
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        double minDistance = particles.radius[i] + particles.radius[j];
+        if (!(distance < minDistance)) return false;
+
+        // Handle absorption before collision
+        handleAbsorption(particles, i, j);
+
+        // Only process collision if both particles still exist
+        if (mass[i] > 0 && mass[j] > 0) {
+            resolveCollision(particles, i, j);
+
+            // Move particles apart to prevent sticking
+            double overlap = minDistance - distance;
+            double normalX = distance == 0 ? 0 : dx / distance;
+            double normalY = distance == 0 ? 0 : dy / distance;
+
+            double totalMass = mass[i] + mass[j];
+            double p1Move = (overlap * mass[j]) / totalMass;
+            double p2Move = (overlap * mass[i]) / totalMass;
+
+            x[i] -= normalX * p1Move;
+            y[i] -= normalY * p1Move;
+            x[j] += normalX * p2Move;
+            y[j] += normalY * p2Move;
+        }
+        return true;
+    }
+
+    private void handleAbsorption(ParticleStore particles, int p1, int p2) {
+        int larger = particles.mass[p1] > particles.mass[p2] ? p1 : p2;
+        int smaller = particles.mass[p1] > particles.mass[p2] ? p2 : p1;
+
+        // Written directly rather than through absorbMass, whose version bump would race between clusters
+        double[] mass = particles.mass;
+        double massToTransfer = mass[smaller] * absorptionRate;
+        mass[larger] += massToTransfer;
+        mass[smaller] = Math.max(0, mass[smaller] - massToTransfer);
+        particles.radius[larger] = Particle.calculateRadiusFromMass(mass[larger]);
+        particles.radius[smaller] = Particle.calculateRadiusFromMass(mass[smaller]);
+    }
+
+    private void resolveCollision(ParticleStore particles, int p1, int p2) {
+        double dx = particles.x[p2] - particles.x[p1];
+        double dy = particles.y[p2] - particles.y[p1];
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        double normalX = distance == 0 ? 0 : dx / distance;
+        double normalY = distance == 0 ? 0 : dy / distance;
+
+        // Relative velocity
+        double relativeVelX = particles.vx[p2] - particles.vx[p1];
+        double relativeVelY = particles.vy[p2] - particles.vy[p1];
+
+        // Normal velocity component
+        double normalVel = relativeVelX * normalX + relativeVelY * normalY;
+
+        // Don't resolve if objects are moving apart
+        if (normalVel > 0) return;
+
+        double m1 = particles.mass[p1];
+        double m2 = particles.mass[p2];
+
+        // Calculate impulse
+        double j = -(1 + restitution) * normalVel;
+        j /= (1 / m1) + (1 / m2);
+
+        // Apply impulse
+        double impulseX = normalX * j;
+        double impulseY = normalY * j;
+        particles.vx[p1] -= impulseX / m1;
+        particles.vy[p1] -= impulseY / m1;
+        particles.vx[p2] += impulseX / m2;
+        particles.vy[p2] += impulseY / m2;
+    }
+
+    public void setGravitationalConstant(double value) {
+        if (value != gravitationalConstant) forceEvaluator.invalidate();
+        this.gravitationalConstant = value;
+    }
+
+    public double getGravitationalConstant() {
+        return gravitationalConstant;
+    }
+
+    public double getRestitution() {
+        return restitution;
+    }
+
+    /** Share of the approach speed kept after a collision: 0 is perfectly inelastic, 1 perfectly elastic. */
+    public void setRestitution(double restitution) {
+        if (!(restitution >= 0 && restitution <= 1)) throw new IllegalArgumentException("Restitution must be between 0 and 1: " + restitution);
+        this.restitution = restitution;
+    }
+
+    public double getAbsorptionRate() {
+        return absorptionRate;
+    }
+
+    /** Share of the smaller body's mass that passes to the larger one at each contact, between 0 and 1. */
+    public void setAbsorptionRate(double absorptionRate) {
+        if (!(absorptionRate >= 0 && absorptionRate <= 1)) throw new IllegalArgumentException("Absorption rate must be between 0 and 1: " + absorptionRate);
+        this.absorptionRate = absorptionRate;
+    }
+
+    public CollisionMode getCollisionMode() {
+        return collisionMode;
+    }
+
+    /** Whether collisions match the ordered sweep exactly or always resolve clusters in parallel; see {@link CollisionMode}. */
+    public void setCollisionMode(CollisionMode collisionMode) {
+        this.collisionMode = collisionMode;
+        resolveInOrder = false;
+    }
+
+    /**
+     * Leaves pairs of bodies whose entries in {@code groups} are equal alone in every collision pass, such as the
+     * ghosts {@link DomainWorker} received from one domain; null lets every pair collide. The array must cover every
+     * body of the stores passed in while it is set.
+     */
+    void setContactGroups(int[] groups) {
+        this.contactGroups = groups;
+    }
+
+    public GravitySolver getGravitySolver() {
+        return gravitySolver;
+    }
+
+    public void setGravitySolver(GravitySolver gravitySolver) {
+        if (gravitySolver != this.gravitySolver) forceEvaluator.invalidate();
+        this.gravitySolver = gravitySolver;
+    }
+
+    public Integrator getIntegrator() {
+        return integrator;
+    }
+
+    public void setIntegrator(Integrator integrator) {
+        this.integrator = integrator;
+    }
+
+    public int getParallelism() {
+        return workers.getParallelism();
+    }
+
+    /**
+     * Sets how many threads share the force, integration and collision work. Results are bit-identical for any
+     * value, so this can be changed between steps without affecting reproducibility.
+     */
+    public void setParallelism(int threads) {
+        if (threads == workers.getParallelism()) return;
+        WorkerPool previous = workers;
+        workers = new WorkerPool(threads);
+        previous.shutdown();
+    }
+
+    public double getContactSkin() {
+        return contacts.getSkinFraction();
+    }
+
+    /**
+     * Margin of the collision neighbour lists, as a fraction of the largest radius. The lists hold every pair
+     * within the sum of radii plus this margin and are rebuilt once bodies have drifted far enough to close it,
+     * so a wider skin rebuilds less often but tests more pairs per step. Zero rebuilds every step.
+     */
+    public void setContactSkin(double fraction) {
+        contacts.setSkinFraction(fraction);
+    }
+
+    /** How many times the collision neighbour lists were rebuilt so far. */
+    public long getNeighborListRebuilds() {
+        return contacts.getNeighborListRebuilds();
+    }
+
+    /** Phase timings and counters; disabled until {@link PerformanceMonitor#setEnabled} is called. */
+    public PerformanceMonitor getPerformanceMonitor() {
+        return monitor;
+    }
+
+    public WorkerPool getWorkers() {
+        return workers;
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private class ForceEvaluator implements Integrator.ForceEvaluator {
+
+        private ParticleStore evaluatedStore;
+        private long evaluatedVersion;
+        private boolean current;
+
+        @Override
+        public void computeAccelerations(ParticleStore particles) {
+            // Integrators call back in mid-step, so time up to here counts as integration
+            monitor.lap(PerformanceMonitor.Phase.INTEGRATION);
+            gravitySolver.calculateAccelerations(particles, gravitationalConstant, workers);
+            monitor.lap(PerformanceMonitor.Phase.FORCES);
+            evaluatedStore = particles;
+            evaluatedVersion = particles.getVersion();
+            current = true;
+        }
+
+        @Override
+        public void computeAccelerations(ParticleStore particles, int[] active, int activeCount) {
+            monitor.lap(PerformanceMonitor.Phase.INTEGRATION);
+            gravitySolver.calculateAccelerations(particles, gravitationalConstant, workers, active, activeCount);
+            monitor.lap(PerformanceMonitor.Phase.FORCES);
+            // The other bodies still hold accelerations from earlier positions
+            current = false;
+        }
+
+        @Override
+        public boolean accelerationsCurrent(ParticleStore particles) {
+            return current && evaluatedStore == particles && evaluatedVersion == particles.getVersion();
+        }
+
+        void invalidate() {
+            current = false;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.tyler.stardust;
+
+import java.util.SplittableRandom;
+
+/**
+ * A pressure-supported star cluster: the two-dimensional counterpart of a Plummer sphere in virial equilibrium.
+ *
+ * <p>In the plane of a flat system, the Plummer potential {@code -GM / sqrt(r² + a²)} belongs to a Kuzmin disk,
+ * so bodies follow the Kuzmin surface density, truncated at {@value #TRUNCATION} of the mass. Velocities are
+ * isotropic Gaussians whose dispersion solves the Jeans equation for that disk, {@code σ² = GM / (4 sqrt(r² + a²))}
+ * per axis. The cluster neither collapses nor disperses, apart from the slight looseness the truncation adds.
+ */
+public class PlummerGenerator extends SceneGenerator {
+
+    static final double TRUNCATION = 0.95;
+    private static final int COLOR = 0xfff2d0ff;
+
+    private int color = COLOR;
+
+    @Override
+    protected void place(ParticleStore particles, int index, int body, int count, double totalMass,
+            double scaleLength, double gravitationalConstant, SplittableRandom random) {
+        placeCluster(particles, index, totalMass, scaleLength, gravitationalConstant, random);
+        particles.color[index] = color;
+    }
+
+    /** Places one body of a cluster of {@code clusterMass} centred on the origin. */
+    static void placeCluster(ParticleStore particles, int index, double clusterMass, double scaleLength,
+            double gravitationalConstant, SplittableRandom random) {
+        // Inverts the Kuzmin cumulative mass M(<r) = M (1 - a / sqrt(r² + a²))
+        double u = TRUNCATION * random.nextDouble();
+        double oneMinus = 1 - u;
+        double r = scaleLength * Math.sqrt(1 / (oneMinus * oneMinus) - 1);
+        double angle = 2 * Math.PI * random.nextDouble();
+
+        double sigma = Math.sqrt(gravitationalConstant * clusterMass / (4 * Math.sqrt(r * r + scaleLength * scaleLength)));
+        particles.x[index] = r * Math.cos(angle);
+        particles.y[index] = r * Math.sin(angle);
+        particles.vx[index] = sigma * nextGaussian(random);
+        particles.vy[index] = sigma * nextGaussian(random);
+    }
+
+    /** Radius that holds all of a truncated cluster with the given scale length. */
+    static double clusterExtent(double scaleLength) {
+        double oneMinus = 1 - TRUNCATION;
+        return scaleLength * Math.sqrt(1 / (oneMinus * oneMinus) - 1);
+    }
+
+    @Override
+    public double getExtent(int count) {
+        // Half the bodies sit within about 2a; the sparse truncated tail reaches much further
+        return 0.5 * clusterExtent(getScaleLength(count));
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public void setColor(int rgba8888) {
+        this.color = rgba8888;
+    }
+}
@@ -0,0 +1,34 @@
+package com.tyler.stardust;
+
+/**
+ * Arithmetic used for the force sums, chosen at startup. State and integration stay in double either way;
+ * {@link #FLOAT} only changes solvers that have a single-precision kernel, see {@link GravitySolverType#create(Precision)}.
+ */
+public enum Precision {
+
+    DOUBLE("double"),
+    FLOAT("float");
+
+    private final String displayName;
+
+    Precision(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /** Accepts either the display name or the constant name, ignoring case. */
+    public static Precision fromName(String name) {
+        for (Precision precision : values()) {
+            if (precision.displayName.equalsIgnoreCase(name) || precision.name().equalsIgnoreCase(name)) return precision;
+        }
+        throw new IllegalArgumentException("Unknown precision: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,293 @@
+package com.tyler.stardust;
+
+import java.util.Arrays;
+
+/**
+ * Flat, array-backed quadtree over point masses, rebuilt from scratch every step.
+ * Nodes live in parallel primitive arrays and are reused between builds so a rebuild does not allocate.
+ */
+public class QuadTree {
+
+    // Bodies closer than this many subdivisions apart share a leaf instead of splitting forever
+    private static final int MAX_DEPTH = 48;
+
+    private int nodeCount;
+    private double[] centerX = new double[64];
+    private double[] centerY = new double[64];
+    private double[] halfSize = new double[64];
+    private double[] nodeMass = new double[64];
+    private double[] comX = new double[64];
+    private double[] comY = new double[64];
+    private int[] firstChild = new int[64];
+    private int[] firstBody = new int[64];
+    private int[] depth = new int[64];
+
+    private int[] nextBody = new int[0];
+
+    private double[] bodyX;
+    private double[] bodyY;
+    private double[] bodyMass;
+
+    public void build(double[] x, double[] y, double[] mass, int count) {
+        this.bodyX = x;
+        this.bodyY = y;
+        this.bodyMass = mass;
+        if (nextBody.length < count) nextBody = new int[count];
+        nodeCount = 0;
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        if (count == 0) return;
+
+        // Pad slightly so bodies on the max edge still fall strictly inside the root
+        double half = Math.max(maxX - minX, maxY - minY) * 0.5 * 1.0001 + 1e-9;
+        newNode((minX + maxX) * 0.5, (minY + maxY) * 0.5, half, 0);
+
+        for (int i = 0; i < count; i++) {
+            insert(i);
+        }
+        computeMassDistribution();
+    }
+
+    private int newNode(double cx, double cy, double half, int nodeDepth) {
+        if (nodeCount == centerX.length) growNodes();
+        int node = nodeCount++;
+        centerX[node] = cx;
+        centerY[node] = cy;
+        halfSize[node] = half;
+        depth[node] = nodeDepth;
+        firstChild[node] = -1;
+        firstBody[node] = -1;
+        return node;
+    }
+
+    private void growNodes() {
+        int capacity = centerX.length * 2;
+        centerX = Arrays.copyOf(centerX, capacity);
+        centerY = Arrays.copyOf(centerY, capacity);
+        halfSize = Arrays.copyOf(halfSize, capacity);
+        nodeMass = Arrays.copyOf(nodeMass, capacity);
+        comX = Arrays.copyOf(comX, capacity);
+        comY = Arrays.copyOf(comY, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        firstBody = Arrays.copyOf(firstBody, capacity);
+        depth = Arrays.copyOf(depth, capacity);
+    }
+
+    private void insert(int body) {
+        int node = 0;
+        while (true) {
+            if (firstChild[node] >= 0) {
+                node = firstChild[node] + quadrantOf(node, bodyX[body], bodyY[body]);
+                continue;
+            }
+            if (firstBody[node] < 0 || depth[node] >= MAX_DEPTH) {
+                nextBody[body] = firstBody[node];
+                firstBody[node] = body;
+                return;
+            }
+            subdivide(node);
+        }
+    }
+
+    private void subdivide(int node) {
+        double quarter = halfSize[node] * 0.5;
+        double cx = centerX[node];
+        double cy = centerY[node];
+        int childDepth = depth[node] + 1;
+
+        // Children are allocated consecutively: 0 = SW, 1 = SE, 2 = NW, 3 = NE
+        int first = newNode(cx - quarter, cy - quarter, quarter, childDepth);
+        newNode(cx + quarter, cy - quarter, quarter, childDepth);
+        newNode(cx - quarter, cy + quarter, quarter, childDepth);
+        newNode(cx + quarter, cy + quarter, quarter, childDepth);
+        firstChild[node] = first;
+
+        // Below MAX_DEPTH a leaf only ever holds one body, so just move it down
+        int body = firstBody[node];
+        firstBody[node] = -1;
+        int child = first + quadrantOf(node, bodyX[body], bodyY[body]);
+        nextBody[body] = -1;
+        firstBody[child] = body;
+    }
+
+    private int quadrantOf(int node, double x, double y) {
+        int quadrant = x >= centerX[node] ? 1 : 0;
+        if (y >= centerY[node]) quadrant += 2;
+        return quadrant;
+    }
+
+    private void computeMassDistribution() {
+        // Children always have higher indices than their parent, so a reverse sweep is a post-order walk
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            double m = 0, mx = 0, my = 0;
+            if (firstChild[node] >= 0) {
+                for (int c = firstChild[node]; c < firstChild[node] + 4; c++) {
+                    m += nodeMass[c];
+                    mx += nodeMass[c] * comX[c];
+                    my += nodeMass[c] * comY[c];
+                }
+            } else {
+                for (int b = firstBody[node]; b >= 0; b = nextBody[b]) {
+                    m += bodyMass[b];
+                    mx += bodyMass[b] * bodyX[b];
+                    my += bodyMass[b] * bodyY[b];
+                }
+            }
+            nodeMass[node] = m;
+            comX[node] = m > 0 ? mx / m : centerX[node];
+            comY[node] = m > 0 ? my / m : centerY[node];
+        }
+    }
+
+    /** Scratch space for {@link #accumulateAcceleration}; each concurrent caller needs its own. */
+    public static int[] newTraversalStack() {
+        // Every level pops one node and pushes four, so the stack never holds more than 3 per level
+        return new int[3 * (MAX_DEPTH + 1) + 1];
+    }
+
+    /**
+     * Accumulates the acceleration on {@code body} (without the gravitational constant) into {@code out[0..1]}.
+     * A node is treated as a single mass when its width divided by the distance to its centre of mass is
+     * below {@code openingAngle} and the body lies outside it. Safe to call concurrently once built, as long
+     * as each thread passes its own {@code stack} and {@code out}.
+     */
+    public void accumulateAcceleration(int body, double openingAngle, int[] stack, double[] out) {
+        if (nodeCount == 0) return;
+        double px = bodyX[body];
+        double py = bodyY[body];
+        double thetaSquared = openingAngle * openingAngle;
+        double ax = 0, ay = 0;
+
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (nodeMass[node] == 0) continue;
+
+            if (firstChild[node] < 0) {
+                for (int b = firstBody[node]; b >= 0; b = nextBody[b]) {
+                    if (b == body) continue;
+                    double dx = bodyX[b] - px;
+                    double dy = bodyY[b] - py;
+                    double distanceSquared = dx * dx + dy * dy;
+                    if (distanceSquared == 0) continue;
+                    double inverseCube = bodyMass[b] / (distanceSquared * Math.sqrt(distanceSquared));
+                    ax += dx * inverseCube;
+                    ay += dy * inverseCube;
+                }
+                continue;
+            }
+
+            double dx = comX[node] - px;
+            double dy = comY[node] - py;
+            double distanceSquared = dx * dx + dy * dy;
+            double width = 2 * halfSize[node];
+            boolean outside = Math.abs(px - centerX[node]) > halfSize[node] || Math.abs(py - centerY[node]) > halfSize[node];
+            if (outside && width * width < thetaSquared * distanceSquared) {
+                double inverseCube = nodeMass[node] / (distanceSquared * Math.sqrt(distanceSquared));
+                ax += dx * inverseCube;
+                ay += dy * inverseCube;
+            } else {
+                for (int c = firstChild[node]; c < firstChild[node] + 4; c++) {
+                    stack[top++] = c;
+                }
+            }
+        }
+        out[0] += ax;
+        out[1] += ay;
+    }
+
+    /**
+     * Distance from {@code body} to the nearest other body, or infinity if there is none. Safe to call concurrently
+     * once built, as long as each thread passes its own {@code stack}.
+     */
+    public double nearestNeighborDistance(int body, int[] stack) {
+        if (nodeCount == 0) return Double.POSITIVE_INFINITY;
+        double px = bodyX[body];
+        double py = bodyY[body];
+        double best = Double.POSITIVE_INFINITY;
+
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            // Nothing in a node can beat the best so far if its box is already farther away
+            double gapX = Math.max(0, Math.abs(px - centerX[node]) - halfSize[node]);
+            double gapY = Math.max(0, Math.abs(py - centerY[node]) - halfSize[node]);
+            if (gapX * gapX + gapY * gapY >= best) continue;
+
+            if (firstChild[node] < 0) {
+                for (int b = firstBody[node]; b >= 0; b = nextBody[b]) {
+                    if (b == body) continue;
+                    double dx = bodyX[b] - px;
+                    double dy = bodyY[b] - py;
+                    best = Math.min(best, dx * dx + dy * dy);
+                }
+                continue;
+            }
+            // The quadrant holding the body goes on top, since the nearest neighbour is most likely there
+            int own = firstChild[node] + quadrantOf(node, px, py);
+            for (int c = firstChild[node]; c < firstChild[node] + 4; c++) {
+                if (c != own) stack[top++] = c;
+            }
+            stack[top++] = own;
+        }
+        return Math.sqrt(best);
+    }
+
+    /** Receives the point masses picked out by {@link #collectEssential}. */
+    public interface MassSink {
+        void add(double x, double y, double mass);
+    }
+
+    /**
+     * Reduces the tree to the sources that any body inside the box {@code [minX, maxX] × [minY, maxY]} would
+     * interact with: nodes that pass the opening test for every point of the box become one mass at their centre
+     * of mass, and the bodies of leaves that do not are passed on individually. Summing over the result then gives
+     * each body in the box at least the accuracy of {@link #accumulateAcceleration} with the same angle.
+     */
+    public void collectEssential(double minX, double minY, double maxX, double maxY, double openingAngle, MassSink sink) {
+        if (nodeCount == 0) return;
+        double thetaSquared = openingAngle * openingAngle;
+        int[] stack = newTraversalStack();
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (nodeMass[node] == 0) continue;
+
+            if (firstChild[node] < 0) {
+                for (int b = firstBody[node]; b >= 0; b = nextBody[b]) {
+                    sink.add(bodyX[b], bodyY[b], bodyMass[b]);
+                }
+                continue;
+            }
+
+            // The nearest point of the box is the worst case for the whole box
+            double dx = Math.max(0, Math.max(minX - comX[node], comX[node] - maxX));
+            double dy = Math.max(0, Math.max(minY - comY[node], comY[node] - maxY));
+            double half = halfSize[node];
+            double width = 2 * half;
+            boolean disjoint = centerX[node] + half < minX || centerX[node] - half > maxX
+                || centerY[node] + half < minY || centerY[node] - half > maxY;
+            if (disjoint && width * width < thetaSquared * (dx * dx + dy * dy)) {
+                sink.add(comX[node], comY[node], nodeMass[node]);
+            } else {
+                for (int c = firstChild[node]; c < firstChild[node] + 4; c++) {
+                    stack[top++] = c;
+                }
+            }
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+}
@@ -0,0 +1,168 @@
+package com.tyler.stardust;
+
+import java.util.SplittableRandom;
+
+/**
+ * Fills a {@link ParticleStore} with a procedurally generated scene in one go.
+ *
+ * <p>Bodies are generated in fixed blocks of {@value #BLOCK_SIZE}, each drawing from its own random stream derived
+ * from the seed and the block number. Blocks can therefore be filled in parallel, and the same seed gives the
+ * same scene on any number of threads. Scenes are laid out around {@link #setCenter} and drift with
+ * {@link #setBulkVelocity}.
+ */
+public abstract class SceneGenerator {
+
+    public static final long DEFAULT_SEED = 1;
+    /** Target distance between neighbouring bodies where the scene is densest, about six radii of a unit mass. */
+    protected static final double BODY_SPACING = 12;
+    private static final int BLOCK_SIZE = 4096;
+
+    private long seed = DEFAULT_SEED;
+    private double bodyMass = 1;
+    private double scaleLength;
+    private double centerX;
+    private double centerY;
+    private double bulkVelocityX;
+    private double bulkVelocityY;
+
+    /**
+     * Appends {@code count} bodies to {@code particles} and returns the index of the first. Velocities that keep
+     * the scene in equilibrium depend on {@code gravitationalConstant}, so pass the one the engine will use.
+     */
+    public int generate(ParticleStore particles, int count, double gravitationalConstant, WorkerPool workers) {
+        return generate(particles, count, 0, count, gravitationalConstant, workers);
+    }
+
+    /**
+     * Appends only bodies {@code firstBody} to {@code endBody - 1} of a {@code count}-body scene, identical to the
+     * same bodies of the whole scene. Processes that each hold part of a scene can generate just their share.
+     */
+    public int generate(ParticleStore particles, int count, int firstBody, int endBody, double gravitationalConstant,
+            WorkerPool workers) {
+        if (count < 0) throw new IllegalArgumentException("Negative body count: " + count);
+        if (firstBody < 0 || endBody > count || firstBody > endBody) {
+            throw new IllegalArgumentException("Bodies " + firstBody + " to " + endBody + " are not part of a scene of " + count);
+        }
+        int start = particles.size();
+        particles.resize(start + endBody - firstBody);
+        if (firstBody == endBody) return start;
+
+        double totalMass = bodyMass * count;
+        double length = getScaleLength(count);
+        int firstBlock = firstBody / BLOCK_SIZE;
+        int blocks = (endBody + BLOCK_SIZE - 1) / BLOCK_SIZE - firstBlock;
+        workers.forRange(blocks, 1, (first, last) -> {
+            ParticleStore skipped = null;
+            for (int block = firstBlock + first; block < firstBlock + last; block++) {
+                SplittableRandom random = new SplittableRandom(mix(seed + mix(block)));
+                int end = Math.min(endBody, (block + 1) * BLOCK_SIZE);
+                for (int body = block * BLOCK_SIZE; body < end; body++) {
+                    if (body < firstBody) {
+                        // Draw the bodies before the range to bring the block's stream up to it
+                        if (skipped == null) {
+                            skipped = new ParticleStore(1);
+                            skipped.resize(1);
+                        }
+                        place(skipped, 0, body, count, totalMass, length, gravitationalConstant, random);
+                        continue;
+                    }
+                    int i = start + body - firstBody;
+                    particles.mass[i] = bodyMass;
+                    particles.ax[i] = 0;
+                    particles.ay[i] = 0;
+                    place(particles, i, body, count, totalMass, length, gravitationalConstant, random);
+                    particles.radius[i] = Particle.calculateRadiusFromMass(particles.mass[i]);
+                    particles.x[i] += centerX;
+                    particles.y[i] += centerY;
+                    particles.vx[i] += bulkVelocityX;
+                    particles.vy[i] += bulkVelocityY;
+                }
+            }
+        });
+        particles.markModified();
+        return start;
+    }
+
+    /**
+     * Sets the position and velocity of body {@code body} (0 to {@code count - 1}) relative to the scene centre,
+     * stored at {@code index}, along with its colour. Its mass is preset and may be overridden.
+     */
+    protected abstract void place(ParticleStore particles, int index, int body, int count, double totalMass,
+        double scaleLength, double gravitationalConstant, SplittableRandom random);
+
+    /** The scale length used when none is set, which keeps the densest part of the scene about equally crowded. */
+    protected double defaultScaleLength(int count) {
+        return BODY_SPACING * Math.sqrt(count / (2 * Math.PI));
+    }
+
+    /** Distance from the centre that takes in nearly all of a {@code count}-body scene, e.g. to frame a camera. */
+    public abstract double getExtent(int count);
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public double getBodyMass() {
+        return bodyMass;
+    }
+
+    public void setBodyMass(double bodyMass) {
+        if (!(bodyMass > 0)) throw new IllegalArgumentException("Body mass must be positive: " + bodyMass);
+        this.bodyMass = bodyMass;
+    }
+
+    /** The scene's characteristic size for {@code count} bodies: the set one, or else one derived from the count. */
+    public double getScaleLength(int count) {
+        return scaleLength > 0 ? scaleLength : defaultScaleLength(count);
+    }
+
+    /** Fixes the characteristic size, such as a disk's scale length; zero derives it from the body count. */
+    public void setScaleLength(double scaleLength) {
+        if (scaleLength < 0) throw new IllegalArgumentException("Negative scale length: " + scaleLength);
+        this.scaleLength = scaleLength;
+    }
+
+    public void setCenter(double x, double y) {
+        this.centerX = x;
+        this.centerY = y;
+    }
+
+    public void setBulkVelocity(double vx, double vy) {
+        this.bulkVelocityX = vx;
+        this.bulkVelocityY = vy;
+    }
+
+    /** A standard normal deviate by the polar method; {@link SplittableRandom} has none on Java 8. */
+    protected static double nextGaussian(SplittableRandom random) {
+        double u, v, s;
+        do {
+            u = 2 * random.nextDouble() - 1;
+            v = 2 * random.nextDouble() - 1;
+            s = u * u + v * v;
+        } while (s >= 1 || s == 0);
+        return u * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    /** Blends two RGBA8888 colours channel by channel, {@code t} = 0 giving {@code from}. */
+    protected static int blendColor(int from, int to, double t) {
+        t = Math.max(0, Math.min(1, t));
+        int blended = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int a = (from >>> shift) & 0xff;
+            int b = (to >>> shift) & 0xff;
+            blended |= ((int)Math.round(a + (b - a) * t) & 0xff) << shift;
+        }
+        return blended;
+    }
+
+    // SplitMix64 finaliser, so neighbouring blocks get unrelated streams
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,42 @@
+package com.tyler.stardust;
+
+/** The procedural scenes that can be generated, by command-line name. */
+public enum SceneType {
+
+    DISK("disk"),
+    PLUMMER("plummer"),
+    MERGER("merger"),
+    UNIFORM("uniform");
+
+    private final String displayName;
+
+    SceneType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public SceneGenerator create() {
+        switch (this) {
+            case PLUMMER: return new PlummerGenerator();
+            case MERGER: return new ClusterMergerGenerator();
+            case UNIFORM: return new UniformBoxGenerator();
+            default: return new ExponentialDiskGenerator();
+        }
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /** Accepts either the display name or the constant name, ignoring case. */
+    public static SceneType fromName(String name) {
+        for (SceneType type : values()) {
+            if (type.displayName.equalsIgnoreCase(name) || type.name().equalsIgnoreCase(name)) return type;
+        }
+        throw new IllegalArgumentException("Unknown scene: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
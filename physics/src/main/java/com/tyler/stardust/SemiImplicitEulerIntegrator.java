@@ -0,0 +1,18 @@
+package com.tyler.stardust;
+
+/** First-order symplectic Euler: kick with the current acceleration, then drift with the new velocity. */
+public class SemiImplicitEulerIntegrator implements Integrator {
+
+    @Override
+    public void step(final ParticleStore particles, final double deltaTime, ForceEvaluator forces, WorkerPool workers) {
+        forces.computeAccelerations(particles);
+        workers.forRange(particles.size(), (start, end) -> {
+            for (int i = start; i < end; i++) {
+                particles.vx[i] += particles.ax[i] * deltaTime;
+                particles.vy[i] += particles.ay[i] * deltaTime;
+                particles.x[i] += particles.vx[i] * deltaTime;
+                particles.y[i] += particles.vy[i] * deltaTime;
+            }
+        });
+    }
+}
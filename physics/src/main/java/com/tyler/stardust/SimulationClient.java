@@ -0,0 +1,158 @@
+package com.tyler.stardust;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Watches a simulation running in a {@link SimulationServer}, possibly on another machine.
+ *
+ * <p>A reader thread decodes each frame as it arrives and publishes it to a {@link SnapshotBuffer}, so the
+ * renderer picks up {@link #getLatestSnapshot()} exactly as it would from a local {@link SimulationRunner}.
+ * Like a replayed trajectory, a snapshot only holds positions, radii and colors. {@link #spawn} sends a body to
+ * the server, which adds it before its next step.
+ */
+public class SimulationClient implements Closeable {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final TrajectoryCodec codec;
+    private final TrajectoryCodec.Input payload = new TrajectoryCodec.Input();
+    private final Inflater inflater = new Inflater();
+    private final ParticleStore decoded = new ParticleStore();
+    private final SnapshotBuffer snapshots = new SnapshotBuffer();
+    private final Thread reader;
+    private byte[] compressed = new byte[1 << 16];
+
+    private volatile int receivedFrames;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    /** Connects and reads the server's header, failing after {@code timeoutMillis}. */
+    public SimulationClient(InetSocketAddress address, int timeoutMillis) throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(address, timeoutMillis);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(timeoutMillis);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            if (in.readInt() != SimulationServer.MAGIC) throw new IOException(address + " is not a simulation server");
+            int version = in.readInt();
+            if (version != SimulationServer.VERSION) throw new IOException(address + " speaks unsupported version " + version);
+            codec = new TrajectoryCodec(in.readDouble());
+            // A paused or busy server may go quiet for a while without having gone away
+            socket.setSoTimeout(0);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        reader = new Thread(this::readFrames, "stardust-client");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /** Returns the newest frame received. Only one thread (the renderer) may call this. */
+    public ParticleSnapshot getLatestSnapshot() {
+        return snapshots.acquire();
+    }
+
+    public int getReceivedFrames() {
+        return receivedFrames;
+    }
+
+    /** False once the connection is lost or closed; the last frame received stays available. */
+    public boolean isConnected() {
+        return !closed && failure == null;
+    }
+
+    /** Why the connection was lost, or null if it is still up or was closed on purpose. */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /** Asks the server to add a body. Safe from any thread. */
+    public void spawn(double mass, double x, double y, double vx, double vy, int rgba8888) throws IOException {
+        synchronized (out) {
+            out.writeByte(SimulationServer.SPAWN);
+            out.writeDouble(mass);
+            out.writeDouble(x);
+            out.writeDouble(y);
+            out.writeDouble(vx);
+            out.writeDouble(vy);
+            out.writeInt(rgba8888);
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        socket.close();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readFrames() {
+        try {
+            while (!closed) {
+                readFrame();
+            }
+        } catch (IOException e) {
+            if (!closed) failure = e;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void readFrame() throws IOException {
+        byte type = in.readByte();
+        long step = in.readLong();
+        double time = in.readDouble();
+        int rawLength = in.readInt();
+        int compressedLength = in.readInt();
+        if (rawLength < 0 || compressedLength < 0) throw new IOException("Corrupt frame header");
+        if (compressed.length < compressedLength) compressed = new byte[compressedLength];
+        in.readFully(compressed, 0, compressedLength);
+
+        if (payload.bytes.length < rawLength) payload.bytes = new byte[rawLength];
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(payload.bytes, inflated, rawLength - inflated);
+                if (n == 0 && inflater.needsInput()) break;
+                inflated += n;
+            }
+            if (inflated != rawLength) throw new IOException("Frame at step " + step + " is truncated");
+        } catch (DataFormatException e) {
+            throw new IOException("Frame at step " + step + " is corrupt", e);
+        }
+        payload.position = 0;
+
+        if (type == TrajectoryCodec.KEYFRAME) {
+            codec.decodeKeyframe(payload);
+        } else if (type == TrajectoryCodec.DELTA && receivedFrames > 0) {
+            codec.decodeDelta(payload);
+        } else {
+            throw new IOException("Unexpected frame type " + type);
+        }
+        codec.copyTo(decoded);
+        snapshots.publish(decoded, step, time);
+        receivedFrames++;
+    }
+}
@@ -0,0 +1,7 @@
+package com.tyler.stardust;
+
+/** A change to the simulation, queued from any thread and applied on the simulation thread between steps. */
+public interface SimulationCommand {
+
+    void execute(PhysicsEngine engine, ParticleStore particles);
+}
@@ -0,0 +1,164 @@
+package com.tyler.stardust;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a {@link PhysicsEngine} on its own thread at a fixed timestep, decoupled from the frame rate.
+ *
+ * <p>Other threads talk to it only through {@link #submit} (a lock-free queue drained between steps) and
+ * {@link #getLatestSnapshot} (a triple buffer), so a slow frame never slows the physics and a slow step
+ * never blocks rendering. When the physics cannot keep up with real time it runs at most
+ * {@link #MAX_STEPS_PER_TICK} steps per tick and the simulation slows down instead of spiralling. Should a step
+ * or a command throw, the thread stops and keeps the exception for {@link #getFailure}; the last published
+ * snapshot stays available.
+ *
+ * <p>The runner never shuts the engine down, so it can be stopped and started again; whoever created the engine
+ * calls {@link PhysicsEngine#shutdown} once the runner is stopped for good.
+ */
+public class SimulationRunner {
+
+    public static final double DEFAULT_TIME_STEP = 1.0 / 60.0;
+    private static final int MAX_STEPS_PER_TICK = 4;
+
+    private final PhysicsEngine engine;
+    private final ParticleStore particles;
+    private final double timeStep;
+    private final Queue<SimulationCommand> commands = new ConcurrentLinkedQueue<SimulationCommand>();
+    private final SnapshotBuffer snapshots = new SnapshotBuffer();
+
+    private volatile boolean running;
+    private volatile Throwable failure;
+    private Thread thread;
+
+    private long step;
+    private double simulationTime;
+
+    public SimulationRunner(PhysicsEngine engine, ParticleStore particles) {
+        this(engine, particles, DEFAULT_TIME_STEP);
+    }
+
+    public SimulationRunner(PhysicsEngine engine, ParticleStore particles, double timeStep) {
+        if (!(timeStep > 0)) throw new IllegalArgumentException("Time step must be positive: " + timeStep);
+        this.engine = engine;
+        this.particles = particles;
+        this.timeStep = timeStep;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        // Joins a thread that stopped on its own before starting over
+        stop();
+        failure = null;
+        running = true;
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread == null) return;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /** False once stopped, or once the simulation thread stopped on its own after a failure. */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * What made the simulation thread stop on its own, or null if it is still running or was stopped on purpose.
+     * Kept after {@link #stop} and cleared by the next {@link #start}.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /** Queues {@code command} to run on the simulation thread before the next step. Safe from any thread. */
+    public void submit(SimulationCommand command) {
+        commands.add(command);
+    }
+
+    /** Returns the newest published state. Only one thread (the renderer) may call this. */
+    public ParticleSnapshot getLatestSnapshot() {
+        return snapshots.acquire();
+    }
+
+    public double getTimeStep() {
+        return timeStep;
+    }
+
+    /** Steps taken so far. Only read this on the simulation thread, e.g. inside a submitted command. */
+    public long getStep() {
+        return step;
+    }
+
+    /** Simulated seconds so far. Only read this on the simulation thread, e.g. inside a submitted command. */
+    public double getSimulationTime() {
+        return simulationTime;
+    }
+
+    /**
+     * Moves the clock to a restored state, such as a loaded checkpoint. Only call this on the simulation
+     * thread, e.g. inside a submitted command.
+     */
+    public void setClock(long step, double simulationTime) {
+        this.step = step;
+        this.simulationTime = simulationTime;
+    }
+
+    private void run() {
+        try {
+            loop();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            running = false;
+        }
+    }
+
+    private void loop() {
+        long stepNanos = (long)(timeStep * TimeUnit.SECONDS.toNanos(1));
+        long nextStepAt = System.nanoTime();
+
+        while (running) {
+            boolean changed = drainCommands();
+
+            int steps = 0;
+            while (System.nanoTime() - nextStepAt >= 0 && steps < MAX_STEPS_PER_TICK) {
+                engine.update(particles, timeStep);
+                step++;
+                simulationTime += timeStep;
+                nextStepAt += stepNanos;
+                steps++;
+            }
+            if (steps == MAX_STEPS_PER_TICK) {
+                // Falling behind: drop the backlog rather than trying to catch up forever
+                long now = System.nanoTime();
+                if (now - nextStepAt > 0) nextStepAt = now;
+            }
+            if (changed || steps > 0) snapshots.publish(particles, step, simulationTime);
+
+            long wait = nextStepAt - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+        }
+    }
+
+    private boolean drainCommands() {
+        boolean drained = false;
+        SimulationCommand command;
+        while ((command = commands.poll()) != null) {
+            command.execute(engine, particles);
+            drained = true;
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,323 @@
+package com.tyler.stardust;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Streams a running simulation over TCP to any number of {@link SimulationClient}s and applies the bodies they
+ * spawn.
+ *
+ * <p>Register it with {@link PhysicsEngine#addStepListener} on an engine driven by a {@link SimulationRunner}.
+ * At most {@code rate} times a second the simulation thread copies the bodies into a pooled frame that every
+ * client shares. Each client has its own sender thread that quantizes and delta-encodes frames with its own
+ * {@link TrajectoryCodec}, deflates them and writes them to its socket, and a mailbox that holds only the newest
+ * frame it has not sent yet. A viewer that cannot keep up therefore skips frames, counted by
+ * {@link #getDroppedFrames()}, while the simulation and the other viewers carry on; its next frame is simply
+ * encoded against the last one it was sent.
+ *
+ * <p>Wire format (big-endian): the server opens with a header (magic {@code "STDN"}, version, position quantum),
+ * then sends frames laid out like {@link TrajectoryRecorder} records ({@code type, step, time, raw length,
+ * compressed length, deflated payload}), the first of them a keyframe. Clients send commands, each a type byte
+ * followed by its fields; {@link #SPAWN} carries mass, position and velocity as doubles and an RGBA8888 color.
+ */
+public class SimulationServer implements StepListener, Closeable {
+
+    public static final int DEFAULT_PORT = 7460;
+    public static final double DEFAULT_RATE = 30;
+
+    static final int MAGIC = 0x5354444E; // "STDN", unlike the "STDS" of SnapshotFile
+    static final int VERSION = 1;
+    static final byte SPAWN = 1;
+
+    private final SimulationRunner simulation;
+    private final ServerSocket server;
+    private final double positionQuantum;
+    private final long intervalNanos;
+    private final Thread acceptor;
+    private final CopyOnWriteArrayList<Connection> connections = new CopyOnWriteArrayList<Connection>();
+    private final Queue<SharedFrame> free = new ConcurrentLinkedQueue<SharedFrame>();
+
+    // Simulation thread
+    private long step;
+    private double simulationTime;
+    private long nextBroadcastAt = System.nanoTime();
+
+    private final AtomicInteger sentFrames = new AtomicInteger();
+    private final AtomicInteger droppedFrames = new AtomicInteger();
+    private volatile boolean closed;
+
+    /** Listens on {@code port} on every interface, sending {@link #DEFAULT_RATE} frames a second. */
+    public SimulationServer(SimulationRunner simulation, int port) throws IOException {
+        this(simulation, new InetSocketAddress(port), DEFAULT_RATE, TrajectoryRecorder.DEFAULT_POSITION_QUANTUM);
+    }
+
+    /**
+     * @param simulation      where spawn commands from clients are submitted
+     * @param address         address to listen on; port 0 picks a free one, see {@link #getPort()}
+     * @param rate            frames sent per second of wall-clock time, at most one per step
+     * @param positionQuantum grid spacing positions are rounded to, in world units
+     */
+    public SimulationServer(SimulationRunner simulation, InetSocketAddress address, double rate, double positionQuantum) throws IOException {
+        if (!(rate > 0)) throw new IllegalArgumentException("Frame rate must be positive: " + rate);
+        if (!(positionQuantum > 0)) throw new IllegalArgumentException("Position quantum must be positive: " + positionQuantum);
+        this.simulation = simulation;
+        this.positionQuantum = positionQuantum;
+        this.intervalNanos = (long)(TimeUnit.SECONDS.toNanos(1) / rate);
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        try {
+            server.bind(address);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        acceptor = new Thread(this::acceptClients, "stardust-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public int getClientCount() {
+        return connections.size();
+    }
+
+    /** Frames written to a client, summed over clients. */
+    public int getSentFrames() {
+        return sentFrames.get();
+    }
+
+    /** Frames a client skipped because it was still sending an earlier one, summed over clients. */
+    public int getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    @Override
+    public void stepCompleted(ParticleStore particles, double deltaTime) {
+        step++;
+        simulationTime += deltaTime;
+        long now = System.nanoTime();
+        if (closed || connections.isEmpty() || now - nextBroadcastAt < 0) return;
+        // Keep to the rate on average, but do not burst to catch up after a stall
+        nextBroadcastAt += intervalNanos;
+        if (now - nextBroadcastAt > intervalNanos) nextBroadcastAt = now;
+
+        // Each client holds at most one frame in flight and one waiting, so the pool stays small
+        SharedFrame shared = free.poll();
+        if (shared == null) shared = new SharedFrame();
+        shared.frame.capture(particles, step, simulationTime);
+        shared.references.set(1);
+        for (Connection connection : connections) {
+            connection.offer(shared);
+        }
+        shared.release();
+    }
+
+    /** Disconnects every client and stops listening. Steps completed afterwards are ignored. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptClients() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                // Closing the server socket is how close() stops this loop
+                return;
+            }
+            try {
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                // close() may have missed a client that was still connecting
+                if (closed) connection.close();
+                connection.start();
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /** A captured frame shared by every client it was offered to; back in the pool when the last one is done. */
+    private final class SharedFrame {
+        final TrajectoryRecorder.Frame frame = new TrajectoryRecorder.Frame();
+        final AtomicInteger references = new AtomicInteger();
+
+        void retain() {
+            references.incrementAndGet();
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) free.add(this);
+        }
+    }
+
+    private final class Connection {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final BlockingQueue<SharedFrame> mailbox = new ArrayBlockingQueue<SharedFrame>(1);
+        private final TrajectoryCodec codec = new TrajectoryCodec(positionQuantum);
+        private final TrajectoryCodec.Output payload = new TrajectoryCodec.Output();
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] compressed = new byte[1 << 16];
+        private boolean started;
+        private volatile boolean open = true;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(positionQuantum);
+            out.flush();
+        }
+
+        void start() {
+            String name = "stardust-client-" + socket.getRemoteSocketAddress();
+            Thread sender = new Thread(this::sendFrames, name + "-send");
+            sender.setDaemon(true);
+            sender.start();
+            Thread receiver = new Thread(this::receiveCommands, name + "-receive");
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+
+        // Simulation thread only, so once the stale frame is taken there is room for the new one
+        void offer(SharedFrame shared) {
+            if (!open) return;
+            shared.retain();
+            SharedFrame stale = mailbox.poll();
+            if (stale != null) {
+                stale.release();
+                droppedFrames.incrementAndGet();
+            }
+            mailbox.add(shared);
+        }
+
+        void close() {
+            open = false;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void sendFrames() {
+            try {
+                while (open) {
+                    SharedFrame shared = mailbox.poll(50, TimeUnit.MILLISECONDS);
+                    if (shared == null) continue;
+                    try {
+                        writeFrame(shared.frame);
+                    } finally {
+                        shared.release();
+                    }
+                    sentFrames.incrementAndGet();
+                }
+            } catch (IOException e) {
+                // The client went away
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                disconnect();
+                deflater.end();
+            }
+        }
+
+        private void writeFrame(TrajectoryRecorder.Frame frame) throws IOException {
+            payload.clear();
+            byte type = TrajectoryCodec.DELTA;
+            if (!started || !codec.encodeDelta(frame, payload)) {
+                payload.clear();
+                codec.encodeKeyframe(frame, payload);
+                type = TrajectoryCodec.KEYFRAME;
+                started = true;
+            }
+
+            deflater.reset();
+            deflater.setInput(payload.bytes, 0, payload.length);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+
+            out.writeByte(type);
+            out.writeLong(frame.step);
+            out.writeDouble(frame.simulationTime);
+            out.writeInt(payload.length);
+            out.writeInt(compressedLength);
+            out.write(compressed, 0, compressedLength);
+            out.flush();
+        }
+
+        private void receiveCommands() {
+            try {
+                while (open) {
+                    byte type = in.readByte();
+                    if (type != SPAWN) throw new IOException("Unknown command " + type);
+                    final double mass = in.readDouble();
+                    final double x = in.readDouble();
+                    final double y = in.readDouble();
+                    final double vx = in.readDouble();
+                    final double vy = in.readDouble();
+                    final int color = in.readInt();
+                    // Anything else would poison the whole simulation for every viewer
+                    if (!(mass > 0) || !Double.isFinite(mass) || !Double.isFinite(x) || !Double.isFinite(y)
+                            || !Double.isFinite(vx) || !Double.isFinite(vy)) {
+                        throw new IOException("Rejected spawn of mass " + mass + " at " + x + ", " + y);
+                    }
+                    simulation.submit((engine, particles) -> particles.add(mass, x, y, vx, vy, color));
+                }
+            } catch (IOException e) {
+                // Closed from either end, or sent something this server does not understand
+            } finally {
+                disconnect();
+            }
+        }
+
+        private void disconnect() {
+            close();
+            if (connections.remove(this)) {
+                SharedFrame stale = mailbox.poll();
+                if (stale != null) stale.release();
+            }
+        }
+    }
+}
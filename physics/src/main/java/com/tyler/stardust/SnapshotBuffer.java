@@ -0,0 +1,33 @@
+package com.tyler.stardust;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free triple buffer handing {@link ParticleSnapshot}s from one writer thread to one reader thread.
+ *
+ * <p>At any moment each of the three snapshots belongs to exactly one of: the writer, the reader, or the
+ * "ready" slot between them. Publishing and acquiring are single atomic swaps, so the writer never waits for
+ * a slow reader and the reader always gets the newest complete snapshot.
+ */
+public class SnapshotBuffer {
+
+    private final AtomicReference<ParticleSnapshot> ready = new AtomicReference<ParticleSnapshot>(new ParticleSnapshot());
+    private ParticleSnapshot back = new ParticleSnapshot();
+    private ParticleSnapshot front = new ParticleSnapshot();
+    private long nextSequence = 1;
+
+    /** Writer side: fills the back snapshot from {@code particles} and makes it the newest ready one. */
+    public void publish(ParticleStore particles, long step, double simulationTime) {
+        back.copyFrom(particles, step, simulationTime);
+        back.sequence = nextSequence++;
+        back = ready.getAndSet(back);
+    }
+
+    /** Reader side: returns the newest published snapshot, valid until the next call. */
+    public ParticleSnapshot acquire() {
+        if (ready.get().sequence > front.sequence) {
+            front = ready.getAndSet(front);
+        }
+        return front;
+    }
+}
@@ -0,0 +1,165 @@
+package com.tyler.stardust;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Versioned binary checkpoint of a {@link ParticleStore}, read and written through a {@link FileChannel}.
+ *
+ * <p>Layout (little-endian): a {@value #HEADER_BYTES}-byte header of magic {@code "STDS"}, format version,
+ * particle count, reserved word, step and simulation time, followed by one column per field, each
+ * {@code count} entries long: {@code mass, x, y, vx, vy} as doubles, then {@code color} as RGBA8888 ints.
+ * Columns are copied in bulk through a typed view of a direct buffer, {@value #CHUNK_BYTES} bytes at a time,
+ * so there is no per-particle parsing and throughput is close to the page cache or disk. Nothing is left
+ * mapped, so a file can be saved over again straight away, on Windows too, and columns of any length work.
+ * Radii are derived from mass on load and accelerations are recomputed by the next step.
+ */
+public final class SnapshotFile {
+
+    public static final String EXTENSION = ".stardust";
+
+    private static final int MAGIC = 0x53445453; // "STDS" read as little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int DOUBLE_COLUMNS = 5;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    /** Header fields of a snapshot file. */
+    public static final class Header {
+        public final int count;
+        public final long step;
+        public final double simulationTime;
+
+        Header(int count, long step, double simulationTime) {
+            this.count = count;
+            this.step = step;
+            this.simulationTime = simulationTime;
+        }
+    }
+
+    private SnapshotFile() { }
+
+    public static boolean isSnapshotFile(Path file) {
+        return file.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    public static void write(ParticleStore particles, long step, double simulationTime, Path file) throws IOException {
+        int count = particles.size();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0).putLong(step).putDouble(simulationTime);
+            buffer.flip();
+            writeFully(channel, buffer);
+
+            for (double[] column : doubleColumns(particles)) {
+                for (int start = 0; start < count; start += CHUNK_BYTES / 8) {
+                    int length = Math.min(CHUNK_BYTES / 8, count - start);
+                    buffer.clear();
+                    buffer.asDoubleBuffer().put(column, start, length);
+                    buffer.limit(8 * length);
+                    writeFully(channel, buffer);
+                }
+            }
+            for (int start = 0; start < count; start += CHUNK_BYTES / 4) {
+                int length = Math.min(CHUNK_BYTES / 4, count - start);
+                buffer.clear();
+                buffer.asIntBuffer().put(particles.color, start, length);
+                buffer.limit(4 * length);
+                writeFully(channel, buffer);
+            }
+        }
+    }
+
+    public static Header readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(channel, file);
+        }
+    }
+
+    public static ParticleStore read(Path file) throws IOException {
+        ParticleStore particles = new ParticleStore();
+        read(file, particles);
+        return particles;
+    }
+
+    /** Replaces the contents of {@code particles} with the snapshot in {@code file}. */
+    public static Header read(Path file, ParticleStore particles) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, file);
+            int count = header.count;
+            long doubleColumnBytes = 8L * count;
+            long expectedSize = HEADER_BYTES + DOUBLE_COLUMNS * doubleColumnBytes + 4L * count;
+            if (channel.size() < expectedSize) {
+                throw new IOException(file + ": truncated snapshot, expected " + expectedSize + " bytes but found " + channel.size());
+            }
+
+            // Loaded bodies are new bodies, so none of them may inherit an id from the old contents
+            particles.clear();
+            particles.resize(count);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long offset = HEADER_BYTES;
+            for (double[] column : doubleColumns(particles)) {
+                for (int start = 0; start < count; start += CHUNK_BYTES / 8) {
+                    int length = Math.min(CHUNK_BYTES / 8, count - start);
+                    offset = readFully(channel, buffer, offset, 8 * length, file);
+                    buffer.asDoubleBuffer().get(column, start, length);
+                }
+            }
+            for (int start = 0; start < count; start += CHUNK_BYTES / 4) {
+                int length = Math.min(CHUNK_BYTES / 4, count - start);
+                offset = readFully(channel, buffer, offset, 4 * length, file);
+                buffer.asIntBuffer().get(particles.color, start, length);
+            }
+
+            Arrays.fill(particles.ax, 0, count, 0);
+            Arrays.fill(particles.ay, 0, count, 0);
+            for (int i = 0; i < count; i++) {
+                particles.radius[i] = Particle.calculateRadiusFromMass(particles.mass[i]);
+            }
+            return header;
+        }
+    }
+
+    private static Header readHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) throw new IOException(file + ": not a snapshot file (too short)");
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) throw new IOException(file + ": not a snapshot file");
+        int version = header.getInt();
+        if (version != VERSION) throw new IOException(file + ": unsupported snapshot version " + version);
+        int count = header.getInt();
+        if (count < 0) throw new IOException(file + ": corrupt particle count " + count);
+        header.getInt();
+        return new Header(count, header.getLong(), header.getDouble());
+    }
+
+    // Column order on disk
+    private static double[][] doubleColumns(ParticleStore particles) {
+        return new double[][] { particles.mass, particles.x, particles.y, particles.vx, particles.vy };
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Fills the start of buffer with length bytes from offset and returns the offset after them
+    private static long readFully(FileChannel channel, ByteBuffer buffer, long offset, int length, Path file) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset + buffer.position());
+            if (read < 0) throw new IOException(file + ": unexpected end of snapshot");
+        }
+        buffer.flip();
+        return offset + length;
+    }
+}
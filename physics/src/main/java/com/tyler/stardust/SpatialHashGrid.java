@@ -0,0 +1,182 @@
+package com.tyler.stardust;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid broad phase backed by an open-addressing hash of occupied cells, so sparse scenes cost
+ * memory proportional to the particle count rather than to the extent of the world.
+ *
+ * <p>With a cell size of at least twice the largest radius, every overlapping pair lies in the same or an
+ * adjacent cell. Particles are bucketed by counting sort, so each cell lists its particles in index order.
+ * Lookups only read the grid, so threads may query it concurrently through their own {@link Query}.
+ */
+public class SpatialHashGrid {
+
+    private static final int EMPTY = -1;
+
+    private long[] slotKeys = new long[0];
+    private int[] slotCells = new int[0];
+    private int slotMask;
+
+    private long[] cellKeys = new long[0];
+    private int[] cellStart = new int[0];
+    private int[] cellCount = new int[0];
+    private int cellTotal;
+
+    private int[] particleCell = new int[0];
+    private int[] sortedParticles = new int[0];
+    private final Query defaultQuery = new Query();
+
+    private double inverseCellSize;
+
+    public void build(double[] x, double[] y, int count, double cellSize) {
+        if (!(cellSize > 0)) throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        inverseCellSize = 1.0 / cellSize;
+        ensureCapacity(count);
+
+        Arrays.fill(slotCells, EMPTY);
+        cellTotal = 0;
+        for (int i = 0; i < count; i++) {
+            long key = cellKey(cellCoordinate(x[i]), cellCoordinate(y[i]));
+            int cell = findCell(key);
+            if (cell == EMPTY) cell = insertCell(key);
+            particleCell[i] = cell;
+            cellCount[cell]++;
+        }
+
+        int offset = 0;
+        for (int cell = 0; cell < cellTotal; cell++) {
+            cellStart[cell] = offset;
+            offset += cellCount[cell];
+            cellCount[cell] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            int cell = particleCell[i];
+            sortedParticles[cellStart[cell] + cellCount[cell]++] = i;
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (particleCell.length < count) {
+            particleCell = new int[count];
+            sortedParticles = new int[count];
+            cellKeys = new long[count];
+            cellStart = new int[count];
+            cellCount = new int[count];
+        }
+        Arrays.fill(cellCount, 0, Math.min(cellCount.length, count), 0);
+
+        // Keep the table at most half full so probe sequences stay short
+        int slots = Integer.highestOneBit(Math.max(16, count) * 2 - 1) << 1;
+        if (slotKeys.length < slots) {
+            slotKeys = new long[slots];
+            slotCells = new int[slots];
+        }
+        slotMask = slotKeys.length - 1;
+    }
+
+    private int cellCoordinate(double value) {
+        return (int)Math.floor(value * inverseCellSize);
+    }
+
+    private static long cellKey(int cellX, int cellY) {
+        return ((long)cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int)(hash >>> 32) & slotMask;
+    }
+
+    private int findCell(long key) {
+        for (int slot = slotOf(key); ; slot = (slot + 1) & slotMask) {
+            int cell = slotCells[slot];
+            if (cell == EMPTY || slotKeys[slot] == key) return cell;
+        }
+    }
+
+    private int insertCell(long key) {
+        int slot = slotOf(key);
+        while (slotCells[slot] != EMPTY) slot = (slot + 1) & slotMask;
+        int cell = cellTotal++;
+        slotKeys[slot] = key;
+        slotCells[slot] = cell;
+        cellKeys[cell] = key;
+        return cell;
+    }
+
+    /**
+     * Collects every particle with a higher index than {@code particle} in its own and the eight adjacent
+     * cells, in ascending index order. Returns how many were written to {@link #getNeighbors()}.
+     */
+    public int collectLaterNeighbors(int particle) {
+        return defaultQuery.collectLaterNeighbors(particle);
+    }
+
+    /** Number of pairs {@link #collectLaterNeighbors} would report over all particles. */
+    public long countCandidatePairs() {
+        long pairs = 0;
+        for (int cell = 0; cell < cellTotal; cell++) {
+            int cellX = (int)(cellKeys[cell] >> 32);
+            int cellY = (int)cellKeys[cell];
+            long nearby = 0;
+            for (int offsetX = -1; offsetX <= 1; offsetX++) {
+                for (int offsetY = -1; offsetY <= 1; offsetY++) {
+                    int other = findCell(cellKey(cellX + offsetX, cellY + offsetY));
+                    if (other != EMPTY) nearby += cellCount[other];
+                }
+            }
+            // Every particle sees itself once and every other nearby particle from both sides
+            pairs += (long)cellCount[cell] * nearby - cellCount[cell];
+        }
+        return pairs / 2;
+    }
+
+    public int[] getNeighbors() {
+        return defaultQuery.getNeighbors();
+    }
+
+    public int getCellCount() {
+        return cellTotal;
+    }
+
+    /** A neighbour lookup with its own result buffer, so each thread can query the same grid. */
+    public Query newQuery() {
+        return new Query();
+    }
+
+    public final class Query {
+
+        private int[] neighbors = new int[16];
+
+        private Query() { }
+
+        /** Same as {@link SpatialHashGrid#collectLaterNeighbors(int)}, into this query's buffer. */
+        public int collectLaterNeighbors(int particle) {
+            long key = cellKeys[particleCell[particle]];
+            int cellX = (int)(key >> 32);
+            int cellY = (int)key;
+
+            int found = 0;
+            for (int offsetX = -1; offsetX <= 1; offsetX++) {
+                for (int offsetY = -1; offsetY <= 1; offsetY++) {
+                    int cell = findCell(cellKey(cellX + offsetX, cellY + offsetY));
+                    if (cell == EMPTY) continue;
+                    int end = cellStart[cell] + cellCount[cell];
+                    for (int s = cellStart[cell]; s < end; s++) {
+                        int other = sortedParticles[s];
+                        if (other <= particle) continue;
+                        if (found == neighbors.length) neighbors = Arrays.copyOf(neighbors, found * 2);
+                        neighbors[found++] = other;
+                    }
+                }
+            }
+            Arrays.sort(neighbors, 0, found);
+            return found;
+        }
+
+        public int[] getNeighbors() {
+            return neighbors;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.tyler.stardust;
+
+/** Called by {@link PhysicsEngine#update} on the simulation thread after every completed step. */
+public interface StepListener {
+
+    /**
+     * @param particles the state after integration, collisions and removal of massless bodies; only valid
+     *                  for the duration of the call
+     */
+    void stepCompleted(ParticleStore particles, double deltaTime);
+}
@@ -0,0 +1,180 @@
+package com.tyler.stardust;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Connects domains running as separate processes over TCP, one connection per pair of domains.
+ *
+ * <p>Every domain listens on its own address from the shared list, connects to each lower-numbered domain and
+ * accepts a connection from each higher-numbered one, so the processes can be started in any order. Messages
+ * are framed with a length prefix. A reader thread per connection drains the socket into a queue, so sends never
+ * stall on a peer that is itself busy sending.
+ */
+public class TcpDomainTransport implements DomainTransport {
+
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 60000;
+
+    private static final int RETRY_MILLIS = 100;
+    // Queued after the last message of a connection that closed
+    private static final byte[] CLOSED = new byte[0];
+
+    private final int rank;
+    private final ServerSocket server;
+    private final Socket[] sockets;
+    private final DataOutputStream[] outputs;
+    private final List<BlockingQueue<byte[]>> inboxes;
+    private volatile boolean closing;
+
+    private TcpDomainTransport(int rank, int size, ServerSocket server) {
+        this.rank = rank;
+        this.server = server;
+        this.sockets = new Socket[size];
+        this.outputs = new DataOutputStream[size];
+        this.inboxes = new ArrayList<BlockingQueue<byte[]>>(size);
+        for (int peer = 0; peer < size; peer++) {
+            inboxes.add(null);
+        }
+    }
+
+    /**
+     * Joins the group of domains listening on {@code addresses}, in rank order, as domain {@code rank}. Blocks
+     * until connected to every other domain, or fails after {@code timeoutMillis}.
+     */
+    public static TcpDomainTransport connect(int rank, List<InetSocketAddress> addresses, long timeoutMillis) throws IOException {
+        int size = addresses.size();
+        if (rank < 0 || rank >= size) throw new IllegalArgumentException("Rank " + rank + " is not one of " + size + " domains");
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        ServerSocket server = new ServerSocket();
+        server.setReuseAddress(true);
+        TcpDomainTransport transport = new TcpDomainTransport(rank, size, server);
+        try {
+            server.bind(addresses.get(rank));
+            for (int peer = 0; peer < rank; peer++) {
+                Socket socket = connectWithRetry(addresses.get(peer), deadline);
+                new DataOutputStream(socket.getOutputStream()).writeInt(rank);
+                transport.attach(peer, socket);
+            }
+            for (int accepted = rank + 1; accepted < size; accepted++) {
+                server.setSoTimeout((int)Math.max(1, deadline - System.currentTimeMillis()));
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    throw new IOException("Domain " + rank + " timed out waiting for " + (size - accepted) + " more domains");
+                }
+                int peer = new DataInputStream(socket.getInputStream()).readInt();
+                if (peer <= rank || peer >= size || transport.sockets[peer] != null) {
+                    socket.close();
+                    throw new IOException("Domain " + rank + " got a connection from unexpected domain " + peer);
+                }
+                transport.attach(peer, socket);
+            }
+            return transport;
+        } catch (IOException | RuntimeException e) {
+            transport.close();
+            throw e;
+        }
+    }
+
+    private static Socket connectWithRetry(InetSocketAddress address, long deadline) throws IOException {
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(address, (int)Math.max(1, deadline - System.currentTimeMillis()));
+                return socket;
+            } catch (ConnectException e) {
+                // The peer has not started listening yet
+                socket.close();
+                if (System.currentTimeMillis() + RETRY_MILLIS > deadline) throw new IOException("Could not reach domain at " + address, e);
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while connecting to " + address);
+                }
+            }
+        }
+    }
+
+    private void attach(int peer, Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        sockets[peer] = socket;
+        outputs[peer] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        BlockingQueue<byte[]> inbox = new LinkedBlockingQueue<byte[]>();
+        inboxes.set(peer, inbox);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Thread reader = new Thread(() -> {
+            try {
+                while (true) {
+                    byte[] message = new byte[input.readInt()];
+                    input.readFully(message);
+                    inbox.add(message);
+                }
+            } catch (IOException e) {
+                inbox.add(CLOSED);
+            }
+        }, "stardust-domain-" + rank + "-from-" + peer);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public int getRank() {
+        return rank;
+    }
+
+    @Override
+    public int getSize() {
+        return sockets.length;
+    }
+
+    @Override
+    public void send(int peer, byte[] message) throws IOException {
+        DataOutputStream output = outputs[peer];
+        synchronized (output) {
+            output.writeInt(message.length);
+            output.write(message);
+            output.flush();
+        }
+    }
+
+    @Override
+    public byte[] receive(int peer) throws IOException {
+        byte[] message;
+        try {
+            message = inboxes.get(peer).take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for domain " + peer);
+        }
+        if (message == CLOSED) {
+            inboxes.get(peer).add(CLOSED);
+            throw new IOException("Lost the connection to domain " + peer + (closing ? " while closing" : ""));
+        }
+        return message;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        for (Socket socket : sockets) {
+            if (socket != null) socket.close();
+        }
+        server.close();
+    }
+}
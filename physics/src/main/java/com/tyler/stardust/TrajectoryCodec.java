@@ -0,0 +1,369 @@
+package com.tyler.stardust;
+
+import java.util.Arrays;
+
+/**
+ * Frame encoding shared by {@link TrajectoryRecorder} and {@link TrajectoryReader}.
+ *
+ * <p>Positions are quantized to a fixed grid. A keyframe stores every body absolutely; a delta frame stores
+ * which bodies were removed (by index into the previous frame) and added (always at the end, since ids only
+ * grow), mass changes, and for each surviving body the difference between its quantized position and a linear
+ * extrapolation from the two frames before. Smooth motion leaves residuals near zero, which the zigzag varints
+ * and the writer's deflate pass shrink to a byte or two per body. Encoder and decoder keep identical state, so
+ * deltas never drift from the keyframe they start at.
+ *
+ * <p>Colors are recorded when a body first appears; later color changes are not.
+ */
+final class TrajectoryCodec {
+
+    static final byte KEYFRAME = 0;
+    static final byte DELTA = 1;
+
+    private final double quantum;
+
+    // State of the last frame, aligned by index; previousX/Y hold the frame before that for extrapolation
+    private int count;
+    private long[] ids = new long[0];
+    private long[] quantizedX = new long[0], quantizedY = new long[0];
+    private long[] previousX = new long[0], previousY = new long[0];
+    private float[] mass = new float[0];
+    private int[] color = new int[0];
+
+    // Spare arrays swapped in while building the next state
+    private long[] nextIds = new long[0];
+    private long[] nextQuantizedX = new long[0], nextQuantizedY = new long[0];
+    private long[] nextPreviousX = new long[0], nextPreviousY = new long[0];
+    private float[] nextMass = new float[0];
+    private int[] nextColor = new int[0];
+    private int[] survivorSource = new int[0];
+    private int[] scratch = new int[0];
+
+    TrajectoryCodec(double quantum) {
+        this.quantum = quantum;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the last encoded or decoded frame into {@code particles}, replacing its contents. The bodies keep
+     * their recorded ids, so only use this on a store that holds nothing else.
+     */
+    void copyTo(ParticleStore particles) {
+        particles.clear();
+        particles.resize(count);
+        System.arraycopy(ids, 0, particles.id, 0, count);
+        for (int i = 0; i < count; i++) {
+            particles.x[i] = quantizedX[i] * quantum;
+            particles.y[i] = quantizedY[i] * quantum;
+            particles.vx[i] = 0;
+            particles.vy[i] = 0;
+            particles.ax[i] = 0;
+            particles.ay[i] = 0;
+            particles.mass[i] = mass[i];
+            particles.radius[i] = Particle.calculateRadiusFromMass(mass[i]);
+            particles.color[i] = color[i];
+        }
+    }
+
+    void encodeKeyframe(TrajectoryRecorder.Frame frame, Output out) {
+        int n = frame.count;
+        prepareNext(n);
+        out.writeVarint(n);
+        long lastId = -1;
+        for (int i = 0; i < n; i++) {
+            out.writeVarint(frame.ids[i] - lastId - 1);
+            lastId = frame.ids[i];
+        }
+        for (int i = 0; i < n; i++) {
+            long qx = quantize(frame.x[i]);
+            long qy = quantize(frame.y[i]);
+            out.writeZigzag(qx);
+            out.writeZigzag(qy);
+            nextQuantizedX[i] = qx;
+            nextQuantizedY[i] = qy;
+        }
+        for (int i = 0; i < n; i++) {
+            float bodyMass = (float)frame.mass[i];
+            out.writeInt(Float.floatToIntBits(bodyMass));
+            out.writeInt(frame.color[i]);
+            nextMass[i] = bodyMass;
+            nextColor[i] = frame.color[i];
+        }
+        System.arraycopy(frame.ids, 0, nextIds, 0, n);
+        System.arraycopy(nextQuantizedX, 0, nextPreviousX, 0, n);
+        System.arraycopy(nextQuantizedY, 0, nextPreviousY, 0, n);
+        swap(n);
+    }
+
+    /**
+     * Encodes {@code frame} against the last one. Returns false without writing anything if the ids cannot be
+     * expressed as removals plus appended bodies, in which case the caller must write a keyframe instead.
+     */
+    boolean encodeDelta(TrajectoryRecorder.Frame frame, Output out) {
+        int n = frame.count;
+        long[] frameIds = frame.ids;
+
+        // Merge the two ascending id lists: survivors must come first, new bodies after every old id
+        ensureScratch(Math.max(n, count));
+        int survivors = 0;
+        int removed = 0;
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            if (next < n && frameIds[next] == ids[i]) {
+                survivorSource[survivors++] = i;
+                next++;
+            } else if (next < n && frameIds[next] < ids[i]) {
+                return false;
+            } else {
+                scratch[removed++] = i;
+            }
+        }
+        long lastOldId = count > 0 ? ids[count - 1] : -1;
+        if (next < n && frameIds[next] <= lastOldId) return false;
+        int added = n - survivors;
+
+        prepareNext(n);
+        out.writeVarint(removed);
+        int lastIndex = -1;
+        for (int r = 0; r < removed; r++) {
+            out.writeVarint(scratch[r] - lastIndex - 1);
+            lastIndex = scratch[r];
+        }
+
+        out.writeVarint(added);
+        long lastId = lastOldId;
+        for (int k = survivors; k < n; k++) {
+            out.writeVarint(frameIds[k] - lastId - 1);
+            lastId = frameIds[k];
+        }
+
+        int changed = 0;
+        for (int k = 0; k < survivors; k++) {
+            float bodyMass = (float)frame.mass[k];
+            if (Float.floatToIntBits(bodyMass) != Float.floatToIntBits(mass[survivorSource[k]])) scratch[changed++] = k;
+        }
+        out.writeVarint(changed);
+        lastIndex = -1;
+        for (int c = 0; c < changed; c++) {
+            int k = scratch[c];
+            out.writeVarint(k - lastIndex - 1);
+            out.writeInt(Float.floatToIntBits((float)frame.mass[k]));
+            lastIndex = k;
+        }
+
+        for (int k = 0; k < survivors; k++) {
+            int source = survivorSource[k];
+            long qx = quantize(frame.x[k]);
+            long qy = quantize(frame.y[k]);
+            out.writeZigzag(qx - (2 * quantizedX[source] - previousX[source]));
+            out.writeZigzag(qy - (2 * quantizedY[source] - previousY[source]));
+            nextQuantizedX[k] = qx;
+            nextQuantizedY[k] = qy;
+            nextPreviousX[k] = quantizedX[source];
+            nextPreviousY[k] = quantizedY[source];
+            nextMass[k] = (float)frame.mass[k];
+            nextColor[k] = color[source];
+        }
+        for (int k = survivors; k < n; k++) {
+            long qx = quantize(frame.x[k]);
+            long qy = quantize(frame.y[k]);
+            float bodyMass = (float)frame.mass[k];
+            out.writeZigzag(qx);
+            out.writeZigzag(qy);
+            out.writeInt(Float.floatToIntBits(bodyMass));
+            out.writeInt(frame.color[k]);
+            nextQuantizedX[k] = qx;
+            nextQuantizedY[k] = qy;
+            nextPreviousX[k] = qx;
+            nextPreviousY[k] = qy;
+            nextMass[k] = bodyMass;
+            nextColor[k] = frame.color[k];
+        }
+        System.arraycopy(frameIds, 0, nextIds, 0, n);
+        swap(n);
+        return true;
+    }
+
+    void decodeKeyframe(Input in) {
+        int n = in.readVarint();
+        prepareNext(n);
+        long lastId = -1;
+        for (int i = 0; i < n; i++) {
+            lastId += in.readVarlong() + 1;
+            nextIds[i] = lastId;
+        }
+        for (int i = 0; i < n; i++) {
+            nextQuantizedX[i] = in.readZigzag();
+            nextQuantizedY[i] = in.readZigzag();
+        }
+        for (int i = 0; i < n; i++) {
+            nextMass[i] = Float.intBitsToFloat(in.readInt());
+            nextColor[i] = in.readInt();
+        }
+        System.arraycopy(nextQuantizedX, 0, nextPreviousX, 0, n);
+        System.arraycopy(nextQuantizedY, 0, nextPreviousY, 0, n);
+        swap(n);
+    }
+
+    void decodeDelta(Input in) {
+        int removed = in.readVarint();
+        ensureScratch(Math.max(removed, count));
+        int lastIndex = -1;
+        for (int r = 0; r < removed; r++) {
+            lastIndex += in.readVarint() + 1;
+            scratch[r] = lastIndex;
+        }
+        int survivors = 0;
+        for (int i = 0, r = 0; i < count; i++) {
+            if (r < removed && scratch[r] == i) {
+                r++;
+            } else {
+                survivorSource[survivors++] = i;
+            }
+        }
+
+        int added = in.readVarint();
+        int n = survivors + added;
+        prepareNext(n);
+        for (int k = 0; k < survivors; k++) {
+            int source = survivorSource[k];
+            nextIds[k] = ids[source];
+            nextMass[k] = mass[source];
+            nextColor[k] = color[source];
+        }
+        long lastId = count > 0 ? ids[count - 1] : -1;
+        for (int k = survivors; k < n; k++) {
+            lastId += in.readVarlong() + 1;
+            nextIds[k] = lastId;
+        }
+
+        int changed = in.readVarint();
+        lastIndex = -1;
+        for (int c = 0; c < changed; c++) {
+            lastIndex += in.readVarint() + 1;
+            nextMass[lastIndex] = Float.intBitsToFloat(in.readInt());
+        }
+
+        for (int k = 0; k < survivors; k++) {
+            int source = survivorSource[k];
+            nextQuantizedX[k] = in.readZigzag() + 2 * quantizedX[source] - previousX[source];
+            nextQuantizedY[k] = in.readZigzag() + 2 * quantizedY[source] - previousY[source];
+            nextPreviousX[k] = quantizedX[source];
+            nextPreviousY[k] = quantizedY[source];
+        }
+        for (int k = survivors; k < n; k++) {
+            nextQuantizedX[k] = in.readZigzag();
+            nextQuantizedY[k] = in.readZigzag();
+            nextPreviousX[k] = nextQuantizedX[k];
+            nextPreviousY[k] = nextQuantizedY[k];
+            nextMass[k] = Float.intBitsToFloat(in.readInt());
+            nextColor[k] = in.readInt();
+        }
+        swap(n);
+    }
+
+    private long quantize(double value) {
+        return Math.round(value / quantum);
+    }
+
+    private void ensureScratch(int size) {
+        if (scratch.length < size) {
+            scratch = new int[size];
+            survivorSource = new int[size];
+        }
+    }
+
+    private void prepareNext(int size) {
+        if (nextIds.length >= size) return;
+        int capacity = Math.max(size, nextIds.length + (nextIds.length >> 1));
+        nextIds = new long[capacity];
+        nextQuantizedX = new long[capacity];
+        nextQuantizedY = new long[capacity];
+        nextPreviousX = new long[capacity];
+        nextPreviousY = new long[capacity];
+        nextMass = new float[capacity];
+        nextColor = new int[capacity];
+    }
+
+    private void swap(int newCount) {
+        long[] longs = ids; ids = nextIds; nextIds = longs;
+        longs = quantizedX; quantizedX = nextQuantizedX; nextQuantizedX = longs;
+        longs = quantizedY; quantizedY = nextQuantizedY; nextQuantizedY = longs;
+        longs = previousX; previousX = nextPreviousX; nextPreviousX = longs;
+        longs = previousY; previousY = nextPreviousY; nextPreviousY = longs;
+        float[] floats = mass; mass = nextMass; nextMass = floats;
+        int[] ints = color; color = nextColor; nextColor = ints;
+        count = newCount;
+    }
+
+    /** Growable byte array with varint writers. */
+    static final class Output {
+        byte[] bytes = new byte[1 << 16];
+        int length;
+
+        void clear() {
+            length = 0;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte)value;
+        }
+
+        void writeZigzag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            bytes[length++] = (byte)(value >>> 24);
+            bytes[length++] = (byte)(value >>> 16);
+            bytes[length++] = (byte)(value >>> 8);
+            bytes[length++] = (byte)value;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(length + extra, bytes.length * 2));
+        }
+    }
+
+    /** Reader over a byte array written by {@link Output}. */
+    static final class Input {
+        byte[] bytes = new byte[0];
+        int position;
+
+        long readVarlong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        int readVarint() {
+            return (int)readVarlong();
+        }
+
+        long readZigzag() {
+            long value = readVarlong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readInt() {
+            int value = ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+                | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.tyler.stardust;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Random access to a file written by {@link TrajectoryRecorder}.
+ *
+ * <p>{@link #readFrame} decodes from the nearest keyframe at or before the requested frame, or continues from
+ * the current frame when that is closer, so a seek costs at most one keyframe interval of decoding no matter
+ * how long the recording is. Playing forwards frame by frame decodes one delta per call.
+ */
+public class TrajectoryReader implements Closeable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final TrajectoryCodec codec;
+    private final TrajectoryCodec.Input payload = new TrajectoryCodec.Input();
+    private final Inflater inflater = new Inflater();
+    private final ParticleStore decoded = new ParticleStore();
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(TrajectoryRecorder.RECORD_HEADER_BYTES);
+    private byte[] compressed = new byte[1 << 16];
+
+    private final double positionQuantum;
+    private long[] frameOffsets = new long[0];
+    private int frameCount;
+    private int[] keyframes = new int[0];
+    private int keyframeCount;
+
+    private int currentFrame = -1;
+    private long currentStep;
+    private double currentTime;
+
+    public TrajectoryReader(Path file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(0, TrajectoryRecorder.HEADER_BYTES);
+            if (header.getInt() != TrajectoryRecorder.MAGIC) throw new IOException(file + ": not a trajectory file");
+            int version = header.getInt();
+            if (version != TrajectoryRecorder.VERSION) throw new IOException(file + ": unsupported trajectory version " + version);
+            positionQuantum = header.getDouble();
+            codec = new TrajectoryCodec(positionQuantum);
+            if (!readIndex()) scanRecords();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public double getPositionQuantum() {
+        return positionQuantum;
+    }
+
+    /**
+     * Decodes {@code frame} into {@code snapshot}. Velocities are not recorded, so only positions, radii and
+     * colors are meaningful.
+     */
+    public void readFrame(int frame, ParticleSnapshot snapshot) throws IOException {
+        if (frame < 0 || frame >= frameCount) throw new IndexOutOfBoundsException("Frame " + frame + " of " + frameCount);
+        if (frame != currentFrame) {
+            int keyframe = keyframeAtOrBefore(frame);
+            int start = currentFrame >= keyframe && currentFrame < frame ? currentFrame + 1 : keyframe;
+            for (int f = start; f <= frame; f++) {
+                decodeRecord(f);
+            }
+            codec.copyTo(decoded);
+        }
+        snapshot.copyFrom(decoded, currentStep, currentTime);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    private int keyframeAtOrBefore(int frame) {
+        int index = Arrays.binarySearch(keyframes, 0, keyframeCount, frame);
+        if (index < 0) index = -index - 2;
+        return keyframes[index];
+    }
+
+    private void decodeRecord(int frame) throws IOException {
+        long offset = frameOffsets[frame];
+        recordHeader.clear();
+        readFully(offset, recordHeader);
+        recordHeader.flip();
+        byte type = recordHeader.get();
+        long step = recordHeader.getLong();
+        double time = recordHeader.getDouble();
+        int rawLength = recordHeader.getInt();
+        int compressedLength = recordHeader.getInt();
+
+        if (compressed.length < compressedLength) compressed = new byte[compressedLength];
+        ByteBuffer body = ByteBuffer.wrap(compressed, 0, compressedLength);
+        readFully(offset + TrajectoryRecorder.RECORD_HEADER_BYTES, body);
+
+        if (payload.bytes.length < rawLength) payload.bytes = new byte[rawLength];
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(payload.bytes, inflated, rawLength - inflated);
+                if (n == 0 && inflater.needsInput()) break;
+                inflated += n;
+            }
+            if (inflated != rawLength) throw new IOException(file + ": frame " + frame + " is truncated");
+        } catch (DataFormatException e) {
+            throw new IOException(file + ": frame " + frame + " is corrupt", e);
+        }
+        payload.position = 0;
+
+        if (type == TrajectoryCodec.KEYFRAME) {
+            codec.decodeKeyframe(payload);
+        } else {
+            codec.decodeDelta(payload);
+        }
+        currentFrame = frame;
+        currentStep = step;
+        currentTime = time;
+    }
+
+    private boolean readIndex() throws IOException {
+        long size = channel.size();
+        if (size < TrajectoryRecorder.HEADER_BYTES + 12) return false;
+        ByteBuffer footer = readFully(size - 12, 12);
+        long indexOffset = footer.getLong();
+        if (footer.getInt() != TrajectoryRecorder.INDEX_MAGIC) return false;
+        if (indexOffset < TrajectoryRecorder.HEADER_BYTES || indexOffset > size - 16) return false;
+
+        ByteBuffer index = readFully(indexOffset, (int)(size - 12 - indexOffset));
+        frameCount = index.getInt();
+        frameOffsets = new long[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            frameOffsets[i] = index.getLong();
+        }
+        keyframeCount = index.getInt();
+        keyframes = new int[keyframeCount];
+        for (int i = 0; i < keyframeCount; i++) {
+            keyframes[i] = index.getInt();
+        }
+        return true;
+    }
+
+    // Rebuilds the index of a recording that was never closed, dropping a partially written last record
+    private void scanRecords() throws IOException {
+        long size = channel.size();
+        long offset = TrajectoryRecorder.HEADER_BYTES;
+        frameCount = 0;
+        keyframeCount = 0;
+        frameOffsets = new long[1024];
+        keyframes = new int[64];
+        while (offset + TrajectoryRecorder.RECORD_HEADER_BYTES <= size) {
+            recordHeader.clear();
+            readFully(offset, recordHeader);
+            byte type = recordHeader.get(0);
+            int compressedLength = recordHeader.getInt(TrajectoryRecorder.RECORD_HEADER_BYTES - 4);
+            long next = offset + TrajectoryRecorder.RECORD_HEADER_BYTES + compressedLength;
+            if (compressedLength < 0 || next > size) break;
+
+            if (frameCount == frameOffsets.length) frameOffsets = Arrays.copyOf(frameOffsets, frameCount * 2);
+            if (type == TrajectoryCodec.KEYFRAME) {
+                if (keyframeCount == keyframes.length) keyframes = Arrays.copyOf(keyframes, keyframeCount * 2);
+                keyframes[keyframeCount++] = frameCount;
+            }
+            frameOffsets[frameCount++] = offset;
+            offset = next;
+        }
+    }
+
+    private ByteBuffer readFully(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(offset, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readFully(long offset, ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position() - start) < 0) throw new IOException(file + ": unexpected end of file");
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.tyler.stardust;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Streams a simulation to a trajectory file for later replay with {@link TrajectoryReader}.
+ *
+ * <p>Register it with {@link PhysicsEngine#addStepListener}. On the simulation thread it only copies the ids,
+ * positions, masses and colors into one of a few pooled frames; quantizing, delta encoding
+ * ({@link TrajectoryCodec}), deflating and writing happen on a background writer thread. If the writer falls
+ * behind and no pooled frame is free, the step is skipped rather than stalling the simulation, and
+ * {@link #getDroppedFrames()} counts it. The next recorded frame is simply encoded against the last written one.
+ *
+ * <p>File layout (big-endian): a header (magic {@code "STDT"}, version, position quantum, keyframe interval),
+ * then one record per frame ({@code type, step, time, raw length, compressed length, deflated payload}), and on
+ * {@link #close()} an index of record offsets and keyframe numbers followed by its own offset and a magic
+ * word. A file cut short by a crash has no index; the reader then rebuilds it by scanning the records.
+ */
+public class TrajectoryRecorder implements StepListener, Closeable {
+
+    public static final String EXTENSION = ".trajectory";
+    /** One thirty-second of a world unit: well below a pixel at any useful zoom. */
+    public static final double DEFAULT_POSITION_QUANTUM = 1.0 / 32.0;
+    /** Seeking decodes at most this many frames from the nearest keyframe. */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+    /**
+     * Steps per recorded frame. A frame costs about a byte per body, so 100k bodies at 60 steps a second come to
+     * about 2 GB an hour; recording every step would be about 20 GB.
+     */
+    public static final int DEFAULT_RECORD_EVERY = 10;
+
+    static final int MAGIC = 0x53544454; // "STDT"
+    static final int INDEX_MAGIC = 0x53544449; // "STDI"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 24;
+    static final int RECORD_HEADER_BYTES = 25;
+
+    private static final int POOLED_FRAMES = 4;
+
+    private final int keyframeInterval;
+    private final int recordEvery;
+    private final BlockingQueue<Frame> free = new ArrayBlockingQueue<Frame>(POOLED_FRAMES);
+    private final BlockingQueue<Frame> pending = new ArrayBlockingQueue<Frame>(POOLED_FRAMES);
+    private final Thread writer;
+
+    // Simulation thread
+    private long step;
+    private double simulationTime;
+
+    // Writer thread
+    private final DataOutputStream out;
+    private final TrajectoryCodec codec;
+    private final TrajectoryCodec.Output payload = new TrajectoryCodec.Output();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[1 << 16];
+    private long position;
+    private long[] frameOffsets = new long[1024];
+    private int[] keyframes = new int[64];
+    private int keyframeCount;
+    private int framesSinceKeyframe;
+    private IOException failure;
+
+    private volatile int recordedFrames;
+    private volatile int droppedFrames;
+    private volatile boolean closed;
+
+    public TrajectoryRecorder(Path file) throws IOException {
+        this(file, DEFAULT_POSITION_QUANTUM, DEFAULT_KEYFRAME_INTERVAL, DEFAULT_RECORD_EVERY);
+    }
+
+    /**
+     * @param positionQuantum  grid spacing positions are rounded to, in world units
+     * @param keyframeInterval frames between keyframes; bounds the work of a seek
+     * @param recordEvery      record one frame every this many steps
+     */
+    public TrajectoryRecorder(Path file, double positionQuantum, int keyframeInterval, int recordEvery) throws IOException {
+        if (!(positionQuantum > 0)) throw new IllegalArgumentException("Position quantum must be positive: " + positionQuantum);
+        if (keyframeInterval < 1) throw new IllegalArgumentException("Keyframe interval must be at least 1: " + keyframeInterval);
+        if (recordEvery < 1) throw new IllegalArgumentException("Recording interval must be at least 1: " + recordEvery);
+        this.keyframeInterval = keyframeInterval;
+        this.recordEvery = recordEvery;
+        this.codec = new TrajectoryCodec(positionQuantum);
+
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeDouble(positionQuantum);
+        out.writeInt(keyframeInterval);
+        out.writeInt(0);
+        position = HEADER_BYTES;
+
+        for (int i = 0; i < POOLED_FRAMES; i++) {
+            free.add(new Frame());
+        }
+        writer = new Thread(this::writeFrames, "trajectory-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stepCompleted(ParticleStore particles, double deltaTime) {
+        step++;
+        simulationTime += deltaTime;
+        if (closed || step % recordEvery != 0) return;
+
+        Frame frame = free.poll();
+        if (frame == null) {
+            droppedFrames++;
+            return;
+        }
+        frame.capture(particles, step, simulationTime);
+        pending.add(frame);
+    }
+
+    public int getRecordedFrames() {
+        return recordedFrames;
+    }
+
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Stops recording, waits for the writer to flush every captured frame and appends the index. Safe to call
+     * from any thread; steps completed afterwards are ignored.
+     *
+     * @throws IOException if any write failed, including earlier ones on the writer thread
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while finishing the trajectory", e);
+        }
+        if (failure != null) throw failure;
+    }
+
+    private void writeFrames() {
+        try {
+            while (true) {
+                Frame frame = pending.poll(50, TimeUnit.MILLISECONDS);
+                if (frame == null) {
+                    if (closed && pending.isEmpty()) break;
+                    continue;
+                }
+                try {
+                    writeFrame(frame);
+                } finally {
+                    free.add(frame);
+                }
+            }
+            writeIndex();
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new IOException("Trajectory writer interrupted", e);
+        } finally {
+            deflater.end();
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+    }
+
+    private void writeFrame(Frame frame) throws IOException {
+        payload.clear();
+        byte type = TrajectoryCodec.DELTA;
+        if (recordedFrames == 0 || framesSinceKeyframe >= keyframeInterval || !codec.encodeDelta(frame, payload)) {
+            payload.clear();
+            codec.encodeKeyframe(frame, payload);
+            type = TrajectoryCodec.KEYFRAME;
+        }
+
+        deflater.reset();
+        deflater.setInput(payload.bytes, 0, payload.length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        int frameNumber = recordedFrames;
+        if (frameNumber == frameOffsets.length) frameOffsets = Arrays.copyOf(frameOffsets, frameOffsets.length * 2);
+        frameOffsets[frameNumber] = position;
+        if (type == TrajectoryCodec.KEYFRAME) {
+            if (keyframeCount == keyframes.length) keyframes = Arrays.copyOf(keyframes, keyframes.length * 2);
+            keyframes[keyframeCount++] = frameNumber;
+            framesSinceKeyframe = 0;
+        }
+        framesSinceKeyframe++;
+
+        out.writeByte(type);
+        out.writeLong(frame.step);
+        out.writeDouble(frame.simulationTime);
+        out.writeInt(payload.length);
+        out.writeInt(compressedLength);
+        out.write(compressed, 0, compressedLength);
+        position += RECORD_HEADER_BYTES + compressedLength;
+        recordedFrames = frameNumber + 1;
+    }
+
+    private void writeIndex() throws IOException {
+        long indexOffset = position;
+        out.writeInt(recordedFrames);
+        for (int i = 0; i < recordedFrames; i++) {
+            out.writeLong(frameOffsets[i]);
+        }
+        out.writeInt(keyframeCount);
+        for (int i = 0; i < keyframeCount; i++) {
+            out.writeInt(keyframes[i]);
+        }
+        out.writeLong(indexOffset);
+        out.writeInt(INDEX_MAGIC);
+    }
+
+    /** Raw copy of one step, handed from the simulation thread to the writer. */
+    static final class Frame {
+        int count;
+        long step;
+        double simulationTime;
+        long[] ids = new long[0];
+        double[] x = new double[0];
+        double[] y = new double[0];
+        double[] mass = new double[0];
+        int[] color = new int[0];
+
+        void capture(ParticleStore particles, long step, double simulationTime) {
+            int size = particles.size();
+            if (ids.length < size) {
+                int capacity = Math.max(size, ids.length + (ids.length >> 1));
+                ids = new long[capacity];
+                x = new double[capacity];
+                y = new double[capacity];
+                mass = new double[capacity];
+                color = new int[capacity];
+            }
+            System.arraycopy(particles.id, 0, ids, 0, size);
+            System.arraycopy(particles.x, 0, x, 0, size);
+            System.arraycopy(particles.y, 0, y, 0, size);
+            System.arraycopy(particles.mass, 0, mass, 0, size);
+            System.arraycopy(particles.color, 0, color, 0, size);
+            this.count = size;
+            this.step = step;
+            this.simulationTime = simulationTime;
+        }
+    }
+}
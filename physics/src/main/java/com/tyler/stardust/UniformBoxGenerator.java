@@ -0,0 +1,45 @@
+package com.tyler.stardust;
+
+import java.util.SplittableRandom;
+
+/**
+ * Bodies spread uniformly over a square, the scale length being half its side. They start at rest unless a
+ * velocity dispersion is set, so by default the box undergoes a cold collapse.
+ */
+public class UniformBoxGenerator extends SceneGenerator {
+
+    private static final int COLOR = 0xffffffff;
+
+    private double velocityDispersion;
+
+    @Override
+    protected void place(ParticleStore particles, int index, int body, int count, double totalMass,
+            double scaleLength, double gravitationalConstant, SplittableRandom random) {
+        particles.x[index] = scaleLength * (2 * random.nextDouble() - 1);
+        particles.y[index] = scaleLength * (2 * random.nextDouble() - 1);
+        particles.vx[index] = velocityDispersion * nextGaussian(random);
+        particles.vy[index] = velocityDispersion * nextGaussian(random);
+        particles.color[index] = COLOR;
+    }
+
+    @Override
+    protected double defaultScaleLength(int count) {
+        // Evenly spaced at the nominal spacing across the whole square
+        return BODY_SPACING * Math.sqrt(count) / 2;
+    }
+
+    @Override
+    public double getExtent(int count) {
+        return getScaleLength(count) * Math.sqrt(2);
+    }
+
+    public double getVelocityDispersion() {
+        return velocityDispersion;
+    }
+
+    /** Random velocity spread per axis, in world units per second. */
+    public void setVelocityDispersion(double velocityDispersion) {
+        if (velocityDispersion < 0) throw new IllegalArgumentException("Negative velocity dispersion: " + velocityDispersion);
+        this.velocityDispersion = velocityDispersion;
+    }
+}
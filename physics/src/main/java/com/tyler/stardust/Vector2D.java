@@ -27,7 +27,9 @@ public class Vector2D {
     }
 
     public double distanceTo(Vector2D other) {
-        return Math.sqrt(Math.pow(other.x - this.x, 2) + Math.pow(other.y - this.y, 2));
+        double dx = other.x - this.x;
+        double dy = other.y - this.y;
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
     public Vector2D normalize() {
@@ -0,0 +1,43 @@
+package com.tyler.stardust;
+
+/**
+ * Second-order velocity Verlet. Equivalent to {@link LeapfrogIntegrator} in exact arithmetic, but advances
+ * positions with the full Taylor term and averages the old and new accelerations for the velocity.
+ */
+public class VelocityVerletIntegrator implements Integrator {
+
+    private double[] previousAx = new double[0];
+    private double[] previousAy = new double[0];
+
+    @Override
+    public void step(final ParticleStore particles, final double deltaTime, ForceEvaluator forces, WorkerPool workers) {
+        if (!forces.accelerationsCurrent(particles)) forces.computeAccelerations(particles);
+
+        int count = particles.size();
+        if (previousAx.length < count) {
+            previousAx = new double[particles.capacity()];
+            previousAy = new double[particles.capacity()];
+        }
+        final double[] oldAx = previousAx;
+        final double[] oldAy = previousAy;
+        final double halfStepSquared = 0.5 * deltaTime * deltaTime;
+        workers.forRange(count, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                particles.x[i] += particles.vx[i] * deltaTime + particles.ax[i] * halfStepSquared;
+                particles.y[i] += particles.vy[i] * deltaTime + particles.ay[i] * halfStepSquared;
+                oldAx[i] = particles.ax[i];
+                oldAy[i] = particles.ay[i];
+            }
+        });
+
+        forces.computeAccelerations(particles);
+
+        final double halfStep = 0.5 * deltaTime;
+        workers.forRange(count, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                particles.vx[i] += (oldAx[i] + particles.ax[i]) * halfStep;
+                particles.vy[i] += (oldAy[i] + particles.ay[i]) * halfStep;
+            }
+        });
+    }
+}
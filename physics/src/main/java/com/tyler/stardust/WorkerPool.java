@@ -0,0 +1,84 @@
+package com.tyler.stardust;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits index ranges across a fixed number of worker threads.
+ *
+ * <p>Tasks handed to {@link #forRange} must only write to slots owned by their own range, which makes the
+ * result independent of how the range is split: a parallel run is bit-identical to a serial one.
+ */
+public class WorkerPool {
+
+    // Below this many items per chunk the fork/join overhead outweighs the work
+    private static final int MIN_CHUNK_SIZE = 64;
+    // Extra chunks per thread so uneven work (e.g. tree walks in dense regions) still balances
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    public interface RangeTask {
+        void run(int start, int end);
+    }
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    public WorkerPool(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        this.parallelism = parallelism;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    public static WorkerPool serial() {
+        return new WorkerPool(1);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void forRange(int count, RangeTask task) {
+        forRange(count, MIN_CHUNK_SIZE, task);
+    }
+
+    /** Like {@link #forRange(int, RangeTask)} for coarse items, e.g. whole blocks of particles, that are worth splitting finer. */
+    public void forRange(int count, int minChunkSize, RangeTask task) {
+        if (pool == null || count < 2 * minChunkSize) {
+            task.run(0, count);
+            return;
+        }
+        int grain = Math.max(minChunkSize, count / (parallelism * CHUNKS_PER_THREAD));
+        pool.invoke(new RangeAction(task, 0, count, grain));
+    }
+
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    private static class RangeAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeTask task;
+        private final int start;
+        private final int end;
+        private final int grain;
+
+        RangeAction(RangeTask task, int start, int end, int grain) {
+            this.task = task;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= grain) {
+                task.run(start, end);
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new RangeAction(task, start, middle, grain), new RangeAction(task, middle, end, grain));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.tyler.stardust;
+
+/**
+ * Fourth-order Yoshida integrator: three leapfrog sub-steps with weights chosen to cancel the third-order
+ * error. Costs three force evaluations per step, but tolerates much larger steps than leapfrog for the
+ * same energy error.
+ */
+public class YoshidaIntegrator implements Integrator {
+
+    private static final double CUBE_ROOT_OF_TWO = Math.cbrt(2);
+    private static final double OUTER_WEIGHT = 1 / (2 - CUBE_ROOT_OF_TWO);
+    private static final double INNER_WEIGHT = -CUBE_ROOT_OF_TWO / (2 - CUBE_ROOT_OF_TWO);
+
+    @Override
+    public void step(ParticleStore particles, double deltaTime, ForceEvaluator forces, WorkerPool workers) {
+        if (!forces.accelerationsCurrent(particles)) forces.computeAccelerations(particles);
+        LeapfrogIntegrator.kickDriftKick(particles, OUTER_WEIGHT * deltaTime, forces, workers);
+        LeapfrogIntegrator.kickDriftKick(particles, INNER_WEIGHT * deltaTime, forces, workers);
+        LeapfrogIntegrator.kickDriftKick(particles, OUTER_WEIGHT * deltaTime, forces, workers);
+    }
+}
@@ -0,0 +1,67 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * {@link BarnesHutGravitySolver} at the default opening angle against {@link DirectSumGravitySolver}, on a uniform
+ * and a clustered scene, held to the error table in its class doc with some room for the seed.
+ */
+public class BarnesHutGravitySolverTest {
+
+    private static final int COUNT = 4000;
+
+    @Test
+    public void defaultOpeningAngleOnUniformScene() {
+        // About 0.9% and 9% here
+        assertErrors(TestScenes.box(COUNT, 30, 10, 0, 1), 0.015, 0.15);
+    }
+
+    @Test
+    public void defaultOpeningAngleOnClusteredScene() {
+        // About 1.2% and 9% here
+        assertErrors(plummer(), 0.015, 0.15);
+    }
+
+    @Test
+    public void zeroOpeningAngleMatchesDirectSum() {
+        ParticleStore expected = plummer();
+        new DirectSumGravitySolver().calculateAccelerations(expected, 1, WorkerPool.serial());
+        ParticleStore actual = plummer();
+        new BarnesHutGravitySolver(0).calculateAccelerations(actual, 1, WorkerPool.serial());
+        double[] errors = relativeErrors(expected, actual);
+        assertTrue("largest error " + errors[COUNT - 1], errors[COUNT - 1] < 1e-9);
+    }
+
+    private static void assertErrors(ParticleStore scene, double median, double percentile99) {
+        ParticleStore expected = new ParticleStore();
+        expected.copyFrom(scene);
+        new DirectSumGravitySolver().calculateAccelerations(expected, 1, WorkerPool.serial());
+        new BarnesHutGravitySolver().calculateAccelerations(scene, 1, WorkerPool.serial());
+        double[] errors = relativeErrors(expected, scene);
+        assertTrue("median error " + errors[COUNT / 2], errors[COUNT / 2] < median);
+        assertTrue("99th percentile error " + errors[99 * COUNT / 100], errors[99 * COUNT / 100] < percentile99);
+    }
+
+    private static ParticleStore plummer() {
+        PlummerGenerator generator = new PlummerGenerator();
+        generator.setSeed(1);
+        ParticleStore particles = new ParticleStore(COUNT);
+        generator.generate(particles, COUNT, 1, WorkerPool.serial());
+        return particles;
+    }
+
+    // Sorted, so percentiles can be read off by index
+    private static double[] relativeErrors(ParticleStore expected, ParticleStore actual) {
+        double[] errors = new double[expected.size()];
+        for (int i = 0; i < errors.length; i++) {
+            double magnitude = Math.hypot(expected.ax[i], expected.ay[i]);
+            errors[i] = Math.hypot(actual.ax[i] - expected.ax[i], actual.ay[i] - expected.ay[i]) / magnitude;
+        }
+        Arrays.sort(errors);
+        return errors;
+    }
+}
@@ -0,0 +1,103 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * {@link BlockTimestepIntegrator} on an empty store, against {@link LeapfrogIntegrator} when every body stays on
+ * one rung, and on a tight binary among distant bodies that should be the only ones to take small steps.
+ */
+public class BlockTimestepIntegratorTest {
+
+    private static final double STEP = 1;
+
+    @Test
+    public void emptyStoreStepsWithEverySolver() {
+        for (GravitySolverType type : GravitySolverType.values()) {
+            PhysicsEngine engine = new PhysicsEngine();
+            engine.setGravitySolver(type.create());
+            engine.setIntegrator(new BlockTimestepIntegrator());
+            engine.setGravitationalConstant(1);
+            ParticleStore particles = new ParticleStore();
+            try {
+                engine.update(particles, STEP);
+                engine.update(particles, STEP);
+            } finally {
+                engine.shutdown();
+            }
+            assertEquals(type.getDisplayName(), 0, particles.size());
+        }
+    }
+
+    @Test
+    public void oneRungMatchesLeapfrog() {
+        BlockTimestepIntegrator block = new BlockTimestepIntegrator();
+        // Steps this long are far within what any body needs, so every body stays on the coarsest rung
+        block.setAccuracy(1e6);
+        PhysicsEngine engine = engine(block);
+        PhysicsEngine reference = engine(new LeapfrogIntegrator());
+        ParticleStore particles = new ParticleStore();
+        new UniformBoxGenerator().generate(particles, 500, 1, WorkerPool.serial());
+        ParticleStore expected = new ParticleStore();
+        expected.copyFrom(particles);
+        try {
+            for (int step = 0; step < 20; step++) {
+                engine.update(particles, STEP);
+                reference.update(expected, STEP);
+                assertEquals("step " + step, 0, block.getLastTopRung());
+                assertEquals("step " + step, particles.size(), block.getLastKicks());
+                TestScenes.assertSameBits(expected, particles, "step " + step);
+            }
+        } finally {
+            engine.shutdown();
+            reference.shutdown();
+        }
+    }
+
+    @Test
+    public void tightBinaryMovesToFinerRungs() {
+        ParticleStore particles = new ParticleStore();
+        // Two unit masses 6 apart on a circular orbit, with a period of about 65 steps
+        double separation = 6;
+        double speed = Math.sqrt(1 / (2 * separation));
+        particles.add(1, -separation / 2, 0, 0, -speed, 0xffffffff);
+        particles.add(1, separation / 2, 0, 0, speed, 0xffffffff);
+        int field = 0;
+        for (int row = 0; row < 5; row++) {
+            for (int column = 0; column < 5; column++) {
+                particles.add(1, 5000 + 1000 * column, 5000 + 1000 * row, 0, 0, 0xffffffff);
+                field++;
+            }
+        }
+
+        BlockTimestepIntegrator block = new BlockTimestepIntegrator();
+        PhysicsEngine engine = engine(block);
+        try {
+            for (int step = 0; step < 10; step++) {
+                engine.update(particles, STEP);
+            }
+        } finally {
+            engine.shutdown();
+        }
+        int[] histogram = block.rungHistogram(particles.size());
+        assertTrue("finest rung " + block.getLastTopRung(), block.getLastTopRung() >= 2);
+        assertEquals("bodies on the coarsest rung", field, histogram[0]);
+        int fine = 0;
+        for (int rung = 2; rung < histogram.length; rung++) {
+            fine += histogram[rung];
+        }
+        assertEquals("bodies on fine rungs", 2, fine);
+        assertTrue("kicks " + block.getLastKicks(), block.getLastKicks() < (long)particles.size() << block.getLastTopRung());
+        double distance = Math.hypot(particles.x[1] - particles.x[0], particles.y[1] - particles.y[0]);
+        assertEquals("binary separation", separation, distance, 0.01 * separation);
+    }
+
+    private static PhysicsEngine engine(Integrator integrator) {
+        PhysicsEngine engine = new PhysicsEngine();
+        engine.setIntegrator(integrator);
+        engine.setGravitationalConstant(1);
+        return engine;
+    }
+}
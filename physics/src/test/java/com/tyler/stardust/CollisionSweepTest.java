@@ -0,0 +1,57 @@
+package com.tyler.stardust;
+
+import org.junit.Test;
+
+/**
+ * {@link PhysicsEngine#handleCollisions} must give bit for bit the result of visiting every pair in order, which
+ * {@link PhysicsEngine#sweepCollisions} does literally. Dense scenes are the hard case: resolving one pair pushes
+ * bodies into overlaps that were not there when the pass started.
+ */
+public class CollisionSweepTest {
+
+    private static final int COUNT = 2000;
+    private static final int PASSES = 4;
+
+    @Test
+    public void sparseSceneMatchesSweep() {
+        assertMatchesSweep(30, 1);
+    }
+
+    @Test
+    public void denseSceneMatchesSweep() {
+        assertMatchesSweep(10, 1);
+    }
+
+    @Test
+    public void denseSceneMatchesSweepOnSeveralThreads() {
+        assertMatchesSweep(10, 4);
+    }
+
+    @Test
+    public void pileMatchesSweep() {
+        assertMatchesSweep(3, 4);
+    }
+
+    private static void assertMatchesSweep(double spacing, int threads) {
+        PhysicsEngine engine = new PhysicsEngine();
+        engine.setParallelism(threads);
+        PhysicsEngine reference = new PhysicsEngine();
+        try {
+            for (long seed = 1; seed <= 3; seed++) {
+                ParticleStore particles = TestScenes.box(COUNT, spacing, 100, 1, seed);
+                ParticleStore expected = new ParticleStore();
+                expected.copyFrom(particles);
+                for (int pass = 0; pass < PASSES; pass++) {
+                    engine.handleCollisions(particles);
+                    reference.sweepCollisions(expected);
+                    TestScenes.assertSameBits(expected, particles, "spacing " + spacing + ", seed " + seed + ", pass " + pass);
+                    particles.removeMassless();
+                    expected.removeMassless();
+                }
+            }
+        } finally {
+            engine.shutdown();
+            reference.shutdown();
+        }
+    }
+}
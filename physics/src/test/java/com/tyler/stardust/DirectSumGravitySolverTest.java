@@ -0,0 +1,78 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * The kernel {@link DirectSumGravitySolver} picked, SIMD when the runtime allows it, against the scalar loops. The
+ * scene size is not a multiple of any vector width, so every row also has leftover bodies.
+ */
+public class DirectSumGravitySolverTest {
+
+    private static final int COUNT = 1001;
+
+    @Test
+    public void blocksMatchScalarKernel() {
+        ParticleStore particles = scene();
+        clearAccelerations(particles);
+        DirectSumGravitySolver.KERNEL.accumulate(particles, 0, COUNT, 0, COUNT, true, 0.5);
+        ParticleStore expected = scene();
+        clearAccelerations(expected);
+        new DirectSumGravitySolver.ScalarKernel().accumulate(expected, 0, COUNT, 0, COUNT, true, 0.5);
+        assertClose(expected, particles);
+    }
+
+    @Test
+    public void gatherMatchesScalarKernel() {
+        ParticleStore particles = scene();
+        ParticleStore expected = scene();
+        DirectSumKernel scalar = new DirectSumGravitySolver.ScalarKernel();
+        for (int i = 0; i < COUNT; i++) {
+            DirectSumGravitySolver.KERNEL.gather(particles, i, 2, 0);
+            scalar.gather(expected, i, 2, 0);
+        }
+        assertClose(expected, particles);
+    }
+
+    @Test
+    public void sameResultOnAnyThreadCount() {
+        ParticleStore serial = scene();
+        new DirectSumGravitySolver().calculateAccelerations(serial, 1, WorkerPool.serial());
+        ParticleStore parallel = scene();
+        WorkerPool workers = new WorkerPool(4);
+        try {
+            new DirectSumGravitySolver().calculateAccelerations(parallel, 1, workers);
+        } finally {
+            workers.shutdown();
+        }
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals("body " + i + " ax", Double.doubleToLongBits(serial.ax[i]), Double.doubleToLongBits(parallel.ax[i]));
+            assertEquals("body " + i + " ay", Double.doubleToLongBits(serial.ay[i]), Double.doubleToLongBits(parallel.ay[i]));
+        }
+    }
+
+    private static ParticleStore scene() {
+        ParticleStore particles = TestScenes.box(COUNT, 30, 100, 0, 3);
+        // A coincident pair, which contributes nothing unsoftened
+        particles.x[7] = particles.x[500];
+        particles.y[7] = particles.y[500];
+        return particles;
+    }
+
+    private static void clearAccelerations(ParticleStore particles) {
+        for (int i = 0; i < particles.size(); i++) {
+            particles.ax[i] = 0;
+            particles.ay[i] = 0;
+        }
+    }
+
+    private static void assertClose(ParticleStore expected, ParticleStore actual) {
+        for (int i = 0; i < COUNT; i++) {
+            double magnitude = Math.hypot(expected.ax[i], expected.ay[i]);
+            double error = Math.hypot(actual.ax[i] - expected.ax[i], actual.ay[i] - expected.ay[i]);
+            assertTrue("body " + i + " off by " + error / magnitude, error <= 1e-12 * magnitude);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * {@link DomainWorker}s on threads, connected by {@link LocalDomainTransport} or by {@link TcpDomainTransport} on
+ * localhost. Bodies sit far enough apart never to touch, except in a scene of pairs that meet across the cut
+ * between two domains, and their colour doubles as a tag to find each one again after it changed domains.
+ */
+public class DomainWorkerTest {
+
+    private static final int SIDE = 20;
+    private static final double SPACING = 30;
+    private static final double DELTA_TIME = 0.1;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Test
+    public void matchesOneEngineWithEveryBodySent() throws Exception {
+        ParticleStore scene = scene(0);
+        int steps = 20;
+        ParticleStore expected = new ParticleStore();
+        expected.copyFrom(scene);
+        PhysicsEngine single = engine();
+        for (int step = 0; step < steps; step++) {
+            single.update(expected, DELTA_TIME);
+        }
+        assertEquals("bodies that collided", scene.size(), expected.size());
+
+        for (int domains = 2; domains <= 4; domains++) {
+            ParticleStore gathered = new ParticleStore();
+            runDomains(scene, domains, steps, gathered);
+            assertEquals(domains + " domains, bodies", expected.size(), gathered.size());
+            int[] indexOf = indexByTag(gathered);
+            for (int i = 0; i < expected.size(); i++) {
+                int k = indexOf[expected.color[i]];
+                String body = domains + " domains, body " + expected.color[i];
+                // Only the order in which each body's pulls are summed differs
+                assertEquals(body + " x", expected.x[i], gathered.x[k], 1e-9);
+                assertEquals(body + " y", expected.y[i], gathered.y[k], 1e-9);
+                assertEquals(body + " vx", expected.vx[i], gathered.vx[k], 1e-9);
+                assertEquals(body + " vy", expected.vy[i], gathered.vy[k], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void matchesOneEngineWithContactsAcrossBoundary() throws Exception {
+        ParticleStore scene = boundaryScene();
+        int steps = 10;
+        ParticleStore expected = new ParticleStore();
+        expected.copyFrom(scene);
+        PhysicsEngine single = engine();
+        for (int step = 0; step < steps; step++) {
+            single.update(expected, DELTA_TIME);
+        }
+
+        ParticleStore gathered = new ParticleStore();
+        runDomains(scene, 2, steps, gathered);
+        assertEquals("bodies", expected.size(), gathered.size());
+        int[] indexOf = indexByTag(gathered);
+        for (int i = 0; i < expected.size(); i++) {
+            int k = indexOf[expected.color[i]];
+            String body = "body " + expected.color[i];
+            // Resolving a contact twice would also move mass across it twice
+            assertEquals(body + " mass", expected.mass[i], gathered.mass[k], 1e-12 * expected.mass[i]);
+            assertEquals(body + " x", expected.x[i], gathered.x[k], 1e-9);
+            assertEquals(body + " y", expected.y[i], gathered.y[k], 1e-9);
+            assertEquals(body + " vx", expected.vx[i], gathered.vx[k], 1e-9);
+            assertEquals(body + " vy", expected.vy[i], gathered.vy[k], 1e-9);
+        }
+    }
+
+    @Test
+    public void tcpMatchesLocalTransport() throws Exception {
+        ParticleStore scene = scene(0);
+        int steps = 10;
+        ParticleStore expected = new ParticleStore();
+        runDomains(scene, 2, steps, expected);
+
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+        for (int rank = 0; rank < 2; rank++) {
+            try (ServerSocket probe = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), probe.getLocalPort()));
+            }
+        }
+        ParticleStore gathered = new ParticleStore();
+        runDomains(scene, 2, steps, gathered, rank -> TcpDomainTransport.connect(rank, addresses, TIMEOUT_MILLIS));
+        TestScenes.assertSameBits(expected, gathered, "over TCP");
+    }
+
+    @Test
+    public void rebalanceKeepsEveryBodyOnce() throws Exception {
+        // Everything drifts right, piling up in the domains at that edge until the regions are cut again
+        ParticleStore scene = scene(20);
+        ParticleStore gathered = new ParticleStore();
+        List<DomainWorker> workers = runDomains(scene, 4, 60, gathered);
+        assertTrue("rebalances " + workers.get(0).getRebalanceCount(), workers.get(0).getRebalanceCount() > 1);
+
+        assertEquals("bodies", scene.size(), gathered.size());
+        int[] seen = new int[scene.size()];
+        for (int i = 0; i < gathered.size(); i++) {
+            seen[gathered.color[i]]++;
+        }
+        for (int tag = 0; tag < seen.length; tag++) {
+            assertEquals("copies of body " + tag, 1, seen[tag]);
+        }
+        int held = 0;
+        for (DomainWorker worker : workers) {
+            held += worker.getParticles().size();
+        }
+        assertEquals("bodies held across domains", scene.size(), held);
+    }
+
+    private interface Connector {
+        DomainTransport connect(int rank) throws IOException;
+    }
+
+    private static List<DomainWorker> runDomains(ParticleStore scene, int domains, int steps, ParticleStore gathered)
+            throws Exception {
+        List<DomainTransport> transports = LocalDomainTransport.create(domains);
+        return runDomains(scene, domains, steps, gathered, transports::get);
+    }
+
+    // Runs the scene, dealt out round robin, on the given number of domains and gathers the result
+    private static List<DomainWorker> runDomains(ParticleStore scene, int domains, int steps, ParticleStore gathered,
+            Connector connector) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(domains);
+        try {
+            List<Future<DomainWorker>> results = new ArrayList<Future<DomainWorker>>();
+            for (int rank = 0; rank < domains; rank++) {
+                int domain = rank;
+                results.add(threads.submit(() -> {
+                    try (DomainTransport transport = connector.connect(domain)) {
+                        ParticleStore share = new ParticleStore();
+                        for (int i = domain; i < scene.size(); i += domains) {
+                            share.add(scene.mass[i], scene.x[i], scene.y[i], scene.vx[i], scene.vy[i], scene.color[i]);
+                        }
+                        DomainWorker worker = new DomainWorker(engine(), share, transport);
+                        worker.setOpeningAngle(0);
+                        worker.distribute();
+                        for (int step = 0; step < steps; step++) {
+                            worker.step(DELTA_TIME);
+                        }
+                        worker.gather(gathered);
+                        return worker;
+                    }
+                }));
+            }
+            List<DomainWorker> workers = new ArrayList<DomainWorker>();
+            for (Future<DomainWorker> result : results) {
+                workers.add(result.get(60, TimeUnit.SECONDS));
+            }
+            return workers;
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static PhysicsEngine engine() {
+        PhysicsEngine engine = new PhysicsEngine();
+        engine.setGravitationalConstant(1);
+        return engine;
+    }
+
+    // Everything drifting right by the given speed, on top of a small random spread
+    private static ParticleStore scene(double drift) {
+        ParticleStore particles = TestScenes.lattice(SIDE, SPACING, 10, 0.1, 5);
+        for (int i = 0; i < particles.size(); i++) {
+            particles.vx[i] += drift;
+        }
+        return particles;
+    }
+
+    /**
+     * Rows of pairs meeting head on across x = 0, where two domains split the scene, and on each side a chain of three
+     * overlapping bodies along the cut, close enough to be sent across, which one pass leaves overlapping. Two bodies
+     * far out on either side keep the cut along x.
+     */
+    private static ParticleStore boundaryScene() {
+        ParticleStore particles = new ParticleStore();
+        particles.add(1, -1000, 0, 0, 0, particles.size());
+        particles.add(1, 1000, 0, 0, 0, particles.size());
+        for (int row = 0; row < 10; row++) {
+            double y = row * SPACING;
+            particles.add(2, -3, y, 2, 0.1 * row, particles.size());
+            particles.add(5, 3, y, -2, 0, particles.size());
+        }
+        for (int k = 0; k < 3; k++) {
+            particles.add(1, -1, (0.5 + 0.05 * k) * SPACING, 0, 0, particles.size());
+            particles.add(1, 1, (2.5 + 0.05 * k) * SPACING, 0, 0, particles.size());
+        }
+        return particles;
+    }
+
+    private static int[] indexByTag(ParticleStore particles) {
+        int[] indexOf = new int[particles.size()];
+        for (int i = 0; i < particles.size(); i++) {
+            indexOf[particles.color[i]] = i;
+        }
+        return indexOf;
+    }
+}
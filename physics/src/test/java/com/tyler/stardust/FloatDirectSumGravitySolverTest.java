@@ -0,0 +1,47 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * {@link FloatDirectSumGravitySolver} against {@link DirectSumGravitySolver} on a scene with one body heavy enough
+ * that its pull on itself would overflow float, and a light body on top of it.
+ */
+public class FloatDirectSumGravitySolverTest {
+
+    private static final int COUNT = 600;
+    private static final int HEAVY = 300;
+
+    @Test
+    public void heavyBodyUnsoftened() {
+        assertMatchesDouble(0);
+    }
+
+    @Test
+    public void heavyBodySoftened() {
+        assertMatchesDouble(1e-10);
+    }
+
+    private static void assertMatchesDouble(double softening) {
+        ParticleStore expected = scene();
+        new DirectSumGravitySolver(softening).calculateAccelerations(expected, 1, WorkerPool.serial());
+        ParticleStore actual = scene();
+        new FloatDirectSumGravitySolver(softening).calculateAccelerations(actual, 1, WorkerPool.serial());
+        for (int i = 0; i < COUNT; i++) {
+            double magnitude = Math.hypot(expected.ax[i], expected.ay[i]);
+            double error = Math.hypot(actual.ax[i] - expected.ax[i], actual.ay[i] - expected.ay[i]);
+            assertTrue("body " + i + " got " + actual.ax[i] + ", " + actual.ay[i] + " instead of " + expected.ax[i]
+                + ", " + expected.ay[i], error <= 1e-3 * magnitude);
+        }
+    }
+
+    private static ParticleStore scene() {
+        ParticleStore particles = TestScenes.box(COUNT, 40, 10, 0, 4);
+        // Far past the 3.4e8 at which mass over the smallest squared distance cubed leaves float range
+        particles.mass[HEAVY] = 1e12;
+        particles.x[7] = particles.x[HEAVY];
+        particles.y[7] = particles.y[HEAVY];
+        return particles;
+    }
+}
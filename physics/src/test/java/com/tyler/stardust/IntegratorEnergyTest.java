@@ -0,0 +1,99 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Energy error of each {@link IntegratorType} on an isolated pair of unit masses, as {@link EnergyDiagnostics}
+ * reports it. The symplectic schemes keep it bounded over many orbits where plain forward Euler gains energy on
+ * every one, and halving the step shrinks it by 2 to the order of the scheme. A circular orbit cancels more of
+ * the error than the order accounts for, so the order is measured on a mildly eccentric one.
+ */
+public class IntegratorEnergyTest {
+
+    private static final double SEPARATION = 100;
+    private static final double PERIOD = 2 * Math.PI * Math.sqrt(SEPARATION * SEPARATION * SEPARATION / 2);
+    private static final int ORBITS = 100;
+    private static final int STEPS_PER_ORBIT = 200;
+
+    @Test
+    public void symplecticSchemesStayBoundedOnCircularOrbit() {
+        for (IntegratorType type : new IntegratorType[] {
+                IntegratorType.SEMI_IMPLICIT_EULER, IntegratorType.LEAPFROG, IntegratorType.VELOCITY_VERLET, IntegratorType.YOSHIDA }) {
+            double[] drift = orbitDrift(type.create(), 0, STEPS_PER_ORBIT);
+            // Within a few percent of its largest error by the end of the first tenth of the run
+            assertTrue(type + " drift " + drift[1] + " after " + drift[0], drift[1] <= 1.05 * drift[0] + 1e-12);
+        }
+    }
+
+    @Test
+    public void forwardEulerDriftsOnCircularOrbit() {
+        double[] drift = orbitDrift(new ForwardEulerIntegrator(), 0, STEPS_PER_ORBIT);
+        double bounded = orbitDrift(IntegratorType.SEMI_IMPLICIT_EULER.create(), 0, STEPS_PER_ORBIT)[1];
+        // The pair is well on its way to coming unbound, long after the symplectic scheme has levelled off
+        assertTrue("drift " + drift[1] + " after " + drift[0], drift[1] > 1.2 * drift[0]);
+        assertTrue("drift " + drift[0] + " against " + bounded, drift[0] > 100 * bounded);
+    }
+
+    @Test
+    public void errorShrinksWithOrderOfScheme() {
+        // About 2, 4, 4 and 16 here
+        assertOrder(IntegratorType.SEMI_IMPLICIT_EULER, 1);
+        assertOrder(IntegratorType.LEAPFROG, 2);
+        assertOrder(IntegratorType.VELOCITY_VERLET, 2);
+        assertOrder(IntegratorType.YOSHIDA, 4);
+    }
+
+    private static void assertOrder(IntegratorType type, int order) {
+        double coarse = orbitDrift(type.create(), 0.3, STEPS_PER_ORBIT)[1];
+        double fine = orbitDrift(type.create(), 0.3, 2 * STEPS_PER_ORBIT)[1];
+        double expected = 1 << order;
+        assertTrue(type + " error shrank " + coarse / fine + "x", coarse / fine > 0.8 * expected && coarse / fine < 1.25 * expected);
+    }
+
+    /**
+     * Runs a pair that starts at apocentre of an orbit with eccentricity {@code eccentricity} for {@link #ORBITS}
+     * orbits, returning the largest relative energy error over the first tenth of them and over the whole run.
+     */
+    private static double[] orbitDrift(Integrator integrator, double eccentricity, int stepsPerOrbit) {
+        PhysicsEngine engine = new PhysicsEngine();
+        engine.setIntegrator(integrator);
+        engine.setGravitationalConstant(1);
+        ParticleStore particles = new ParticleStore();
+        double speed = Math.sqrt((1 - eccentricity) / (2 * SEPARATION));
+        particles.add(1, -SEPARATION / 2, 0, 0, -speed, 0xffffffff);
+        particles.add(1, SEPARATION / 2, 0, 0, speed, 0xffffffff);
+        EnergyDiagnostics diagnostics = new EnergyDiagnostics();
+        diagnostics.reset(particles, 1, WorkerPool.serial());
+
+        double[] drift = new double[2];
+        try {
+            for (int orbit = 0; orbit < ORBITS; orbit++) {
+                for (int step = 0; step < stepsPerOrbit; step++) {
+                    engine.update(particles, PERIOD / stepsPerOrbit);
+                    drift[1] = Math.max(drift[1], diagnostics.relativeDrift(particles, 1, WorkerPool.serial()));
+                }
+                if (orbit == ORBITS / 10 - 1) drift[0] = drift[1];
+            }
+        } finally {
+            engine.shutdown();
+        }
+        return drift;
+    }
+
+    /** Drifts with the old velocity before kicking, which adds energy on every orbit. */
+    private static class ForwardEulerIntegrator implements Integrator {
+
+        @Override
+        public void step(ParticleStore particles, double deltaTime, ForceEvaluator forces, WorkerPool workers) {
+            forces.computeAccelerations(particles);
+            for (int i = 0; i < particles.size(); i++) {
+                particles.x[i] += particles.vx[i] * deltaTime;
+                particles.y[i] += particles.vy[i] * deltaTime;
+                particles.vx[i] += particles.ax[i] * deltaTime;
+                particles.vy[i] += particles.ay[i] * deltaTime;
+            }
+        }
+    }
+}
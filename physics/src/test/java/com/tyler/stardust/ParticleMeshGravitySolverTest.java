@@ -0,0 +1,91 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * {@link ParticleMeshGravitySolver} against {@link DirectSumGravitySolver}: P3M on a uniform disc, where the pull
+ * on each body is dominated by its nearest neighbours, and the mesh alone on pairs of bodies far enough apart for
+ * it to carry the whole force. A wrong sign, scale or index anywhere between deposit and interpolation shows up
+ * as errors of order one.
+ */
+public class ParticleMeshGravitySolverTest {
+
+    private static final int GRID_SIZE = 64;
+
+    @Test
+    public void p3mMatchesDirectSumOnUniformDisc() {
+        int count = 2000;
+        ParticleStore expected = TestScenes.disc(count, 1000, 10, 1);
+        new DirectSumGravitySolver().calculateAccelerations(expected, 1, WorkerPool.serial());
+        ParticleStore actual = TestScenes.disc(count, 1000, 10, 1);
+        new ParticleMeshGravitySolver(GRID_SIZE, true).calculateAccelerations(actual, 1, WorkerPool.serial());
+
+        double[] errors = new double[count];
+        for (int i = 0; i < count; i++) {
+            errors[i] = relativeError(expected, actual, i);
+        }
+        Arrays.sort(errors);
+        // About 0.5% and 5% here
+        assertTrue("median error " + errors[count / 2], errors[count / 2] < 0.01);
+        assertTrue("99th percentile error " + errors[99 * count / 100], errors[99 * count / 100] < 0.1);
+    }
+
+    @Test
+    public void meshMatchesDirectSumBeyondTenCells() {
+        // About 1% at ten cells, falling off with the square of the distance
+        assertPairError(10, 0.03);
+        assertPairError(20, 0.008);
+        assertPairError(40, 0.002);
+    }
+
+    @Test
+    public void meshMatchesDirectSumAcrossTheWholeMesh() {
+        // Bodies on opposite corners of the bounding box deposit onto, and read from, the outermost nodes
+        ParticleStore expected = new ParticleStore();
+        expected.add(5, 0, 0, 0, 0, 0xffffffff);
+        expected.add(7, 5000, 3000, 0, 0, 0xffffffff);
+        ParticleStore actual = new ParticleStore();
+        actual.copyFrom(expected);
+        new DirectSumGravitySolver().calculateAccelerations(expected, 1, WorkerPool.serial());
+        new ParticleMeshGravitySolver(GRID_SIZE, false).calculateAccelerations(actual, 1, WorkerPool.serial());
+        for (int i = 0; i < 2; i++) {
+            assertTrue("body " + i + " off by " + relativeError(expected, actual, i), relativeError(expected, actual, i) < 0.002);
+        }
+    }
+
+    // A pair some cells apart at random places and angles, with two bodies too light to matter pinning the mesh
+    private static void assertPairError(double cells, double tolerance) {
+        double side = 5800;
+        double cellSize = side / (GRID_SIZE - 6);
+        double distance = cells * cellSize;
+        SplittableRandom random = new SplittableRandom(9);
+        for (int trial = 0; trial < 20; trial++) {
+            double angle = 2 * Math.PI * random.nextDouble();
+            double centerX = side / 2 + (random.nextDouble() - 0.5) * (side - distance) / 2;
+            double centerY = side / 2 + (random.nextDouble() - 0.5) * (side - distance) / 2;
+            ParticleStore expected = new ParticleStore();
+            expected.add(1e-9, 0, 0, 0, 0, 0xffffffff);
+            expected.add(1e-9, side, side, 0, 0, 0xffffffff);
+            expected.add(5, centerX - distance / 2 * Math.cos(angle), centerY - distance / 2 * Math.sin(angle), 0, 0, 0xffffffff);
+            expected.add(7, centerX + distance / 2 * Math.cos(angle), centerY + distance / 2 * Math.sin(angle), 0, 0, 0xffffffff);
+            ParticleStore actual = new ParticleStore();
+            actual.copyFrom(expected);
+            new DirectSumGravitySolver().calculateAccelerations(expected, 1, WorkerPool.serial());
+            new ParticleMeshGravitySolver(GRID_SIZE, false).calculateAccelerations(actual, 1, WorkerPool.serial());
+            for (int i = 2; i < 4; i++) {
+                double error = relativeError(expected, actual, i);
+                assertTrue(cells + " cells apart, trial " + trial + ", body " + i + " off by " + error, error < tolerance);
+            }
+        }
+    }
+
+    private static double relativeError(ParticleStore expected, ParticleStore actual, int i) {
+        double magnitude = Math.hypot(expected.ax[i], expected.ay[i]);
+        return Math.hypot(actual.ax[i] - expected.ax[i], actual.ay[i] - expected.ay[i]) / magnitude;
+    }
+}
@@ -0,0 +1,83 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Every {@link SceneType} over several of the generator's blocks, with a seed, centre and drift of its own. The
+ * same seed must give the same scene bit for bit on any thread count, and a slice generated on its own, starting
+ * and ending partway through a block, must match the same bodies of the whole scene.
+ */
+public class SceneGeneratorTest {
+
+    // Four blocks, the last one partly filled
+    private static final int COUNT = 13000;
+    private static final int FIRST_BODY = 5000;
+    private static final int END_BODY = 11000;
+    private static final double GRAVITATIONAL_CONSTANT = 1;
+
+    @Test
+    public void sameResultOnAnyThreadCount() {
+        WorkerPool workers = new WorkerPool(4);
+        try {
+            for (SceneType type : SceneType.values()) {
+                ParticleStore serial = new ParticleStore();
+                generator(type).generate(serial, COUNT, GRAVITATIONAL_CONSTANT, WorkerPool.serial());
+                ParticleStore parallel = new ParticleStore();
+                generator(type).generate(parallel, COUNT, GRAVITATIONAL_CONSTANT, workers);
+                assertSameScene(serial, parallel, type.getDisplayName());
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    public void sliceMatchesWholeScene() {
+        WorkerPool workers = new WorkerPool(4);
+        try {
+            for (SceneType type : SceneType.values()) {
+                ParticleStore whole = new ParticleStore();
+                generator(type).generate(whole, COUNT, GRAVITATIONAL_CONSTANT, WorkerPool.serial());
+
+                // Appended after bodies already in the store
+                ParticleStore part = new ParticleStore();
+                part.add(1, 0, 0, 0, 0, 0);
+                int start = generator(type).generate(part, COUNT, FIRST_BODY, END_BODY, GRAVITATIONAL_CONSTANT, workers);
+                assertEquals(type + ", first index", 1, start);
+                assertSameScene(slice(whole, FIRST_BODY, END_BODY), slice(part, start, part.size()), type + " slice");
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private static SceneGenerator generator(SceneType type) {
+        SceneGenerator generator = type.create();
+        generator.setSeed(42);
+        generator.setCenter(100, -50);
+        generator.setBulkVelocity(0.5, -0.25);
+        return generator;
+    }
+
+    private static ParticleStore slice(ParticleStore particles, int from, int to) {
+        ParticleStore slice = new ParticleStore();
+        slice.resize(to - from);
+        System.arraycopy(particles.x, from, slice.x, 0, to - from);
+        System.arraycopy(particles.y, from, slice.y, 0, to - from);
+        System.arraycopy(particles.vx, from, slice.vx, 0, to - from);
+        System.arraycopy(particles.vy, from, slice.vy, 0, to - from);
+        System.arraycopy(particles.mass, from, slice.mass, 0, to - from);
+        System.arraycopy(particles.radius, from, slice.radius, 0, to - from);
+        System.arraycopy(particles.color, from, slice.color, 0, to - from);
+        return slice;
+    }
+
+    private static void assertSameScene(ParticleStore expected, ParticleStore actual, String where) {
+        TestScenes.assertSameBits(expected, actual, where);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(where + ", body " + i + " colour", expected.color[i], actual.color[i]);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * A {@link SimulationRunner} whose thread is stopped by a failing command or step, rather than dying quietly, and
+ * that can be started again on the same engine afterwards.
+ */
+public class SimulationRunnerTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Test
+    public void failingCommandStopsTheRunner() throws InterruptedException {
+        SimulationRunner runner = new SimulationRunner(new PhysicsEngine(), TestScenes.box(100, 30, 10, 0, 1));
+        IllegalStateException thrown = new IllegalStateException("command failed");
+        runner.start();
+        runner.submit((engine, particles) -> {
+            throw thrown;
+        });
+        awaitStopped(runner);
+        assertEquals("failure", thrown, runner.getFailure());
+        runner.stop();
+    }
+
+    @Test
+    public void failingStepStopsTheRunner() throws InterruptedException {
+        PhysicsEngine engine = new PhysicsEngine();
+        engine.addStepListener((particles, deltaTime) -> {
+            throw new ArithmeticException("step failed");
+        });
+        SimulationRunner runner = new SimulationRunner(engine, TestScenes.box(100, 30, 10, 0, 1));
+        runner.start();
+        awaitStopped(runner);
+        assertTrue("failure " + runner.getFailure(), runner.getFailure() instanceof ArithmeticException);
+    }
+
+    @Test
+    public void restartsOnSameEngineAfterStopAndFailure() throws InterruptedException {
+        PhysicsEngine engine = new PhysicsEngine();
+        engine.setParallelism(4);
+        SimulationRunner runner = new SimulationRunner(engine, TestScenes.box(1000, 30, 10, 0, 1));
+        try {
+            runner.start();
+            awaitNextStep(runner);
+            runner.stop();
+
+            runner.start();
+            awaitNextStep(runner);
+            runner.submit((failing, particles) -> {
+                throw new IllegalStateException("command failed");
+            });
+            awaitStopped(runner);
+            runner.stop();
+
+            runner.start();
+            awaitNextStep(runner);
+            assertEquals("failure", null, runner.getFailure());
+        } finally {
+            runner.stop();
+            engine.shutdown();
+        }
+    }
+
+    // Waits for a step newer than the last one published, so the worker threads have run since the start
+    private static void awaitNextStep(SimulationRunner runner) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        long step = runner.getLatestSnapshot().getStep();
+        while (runner.getLatestSnapshot().getStep() <= step) {
+            assertTrue("stopped: " + runner.getFailure(), runner.isRunning() && System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void awaitStopped(SimulationRunner runner) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (runner.isRunning()) {
+            assertTrue("still running", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A {@link SimulationServer} on a free localhost port with {@link SimulationClient}s. Most tests call
+ * {@link SimulationServer#stepCompleted} themselves instead of running a simulation, so they decide exactly which
+ * positions go out; the rate is high enough that every step is sent.
+ */
+public class SimulationServerTest {
+
+    private static final double QUANTUM = 1.0 / 64;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Test
+    public void streamStartsWithKeyframeThenDeltas() throws Exception {
+        ParticleStore particles = scene(100);
+        try (SimulationServer server = server(new SimulationRunner(new PhysicsEngine(), particles));
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals("magic", SimulationServer.MAGIC, in.readInt());
+            assertEquals("version", SimulationServer.VERSION, in.readInt());
+            assertEquals("quantum", QUANTUM, in.readDouble(), 0);
+            awaitClients(server, 1);
+
+            Random random = new Random(1);
+            for (int step = 1; step <= 3; step++) {
+                move(particles, random);
+                server.stepCompleted(particles, 1);
+                byte type = in.readByte();
+                assertEquals("step", step, in.readLong());
+                in.readDouble();
+                in.readInt();
+                in.skipBytes(in.readInt());
+                assertEquals("type of frame " + step, step == 1 ? TrajectoryCodec.KEYFRAME : TrajectoryCodec.DELTA, type);
+            }
+        }
+    }
+
+    @Test
+    public void clientDecodesServerPositions() throws Exception {
+        ParticleStore particles = scene(500);
+        try (SimulationServer server = server(new SimulationRunner(new PhysicsEngine(), particles));
+                SimulationClient client = client(server)) {
+            awaitClients(server, 1);
+            Random random = new Random(2);
+            for (int step = 1; step <= 10; step++) {
+                move(particles, random);
+                // Bodies come and go between frames as well
+                if (step % 3 == 0) {
+                    particles.mass[step] = 0;
+                    particles.removeMassless();
+                    particles.add(2, random.nextDouble() * 100, random.nextDouble() * 100, 0, 0, 0xff0000ff);
+                }
+                server.stepCompleted(particles, 1);
+                ParticleSnapshot snapshot = awaitStep(client, step);
+                assertEquals("bodies at step " + step, particles.size(), snapshot.getCount());
+                for (int i = 0; i < particles.size(); i++) {
+                    String body = "step " + step + ", body " + i;
+                    assertEquals(body + " id", particles.id[i], snapshot.getId(i));
+                    assertEquals(body + " color", particles.color[i], snapshot.getColor(i));
+                    // Half a quantum of rounding, plus what the float snapshot loses
+                    assertEquals(body + " x", particles.x[i], snapshot.getX(i), QUANTUM);
+                    assertEquals(body + " y", particles.y[i], snapshot.getY(i), QUANTUM);
+                }
+            }
+            assertEquals("dropped frames", 0, server.getDroppedFrames());
+        }
+    }
+
+    @Test
+    public void spawnReachesStore() throws Exception {
+        ParticleStore particles = scene(10);
+        SimulationRunner runner = new SimulationRunner(new PhysicsEngine(), particles);
+        try (SimulationServer server = server(runner); SimulationClient client = client(server)) {
+            awaitClients(server, 1);
+            runner.start();
+            client.spawn(5, 40, 60, 0, 0, 0x12345678);
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            ParticleSnapshot snapshot = runner.getLatestSnapshot();
+            while (snapshot.getCount() <= 10) {
+                assertTrue("spawn never arrived", System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+                snapshot = runner.getLatestSnapshot();
+            }
+            assertEquals("bodies", 11, snapshot.getCount());
+            assertEquals("spawned color", 0x12345678, snapshot.getColor(10));
+            assertEquals("spawned x", 40, snapshot.getX(10), 1e-3);
+            assertEquals("spawned y", 60, snapshot.getY(10), 1e-3);
+        } finally {
+            runner.stop();
+        }
+    }
+
+    @Test
+    public void stalledClientDropsFramesWithoutStallingSimulation() throws Exception {
+        // Random positions barely compress, so a few frames fill the socket buffers of a client that never reads
+        ParticleStore particles = scene(20000);
+        try (SimulationServer server = server(new SimulationRunner(new PhysicsEngine(), particles));
+                Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+            awaitClients(server, 1);
+
+            Random random = new Random(3);
+            long slowest = 0;
+            for (int step = 1; step <= 200; step++) {
+                move(particles, random);
+                long start = System.nanoTime();
+                server.stepCompleted(particles, 1);
+                slowest = Math.max(slowest, System.nanoTime() - start);
+            }
+            assertTrue("dropped frames " + server.getDroppedFrames(), server.getDroppedFrames() > 0);
+            // Capturing 20000 bodies takes well under this; waiting on the socket would take forever
+            assertTrue("slowest step took " + slowest / 1000000 + " ms", slowest < 1000000000L);
+            assertEquals("clients", 1, server.getClientCount());
+        }
+    }
+
+    private static SimulationServer server(SimulationRunner runner) throws IOException {
+        return new SimulationServer(runner, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1e6, QUANTUM);
+    }
+
+    private static SimulationClient client(SimulationServer server) throws IOException {
+        return new SimulationClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), (int)TIMEOUT_MILLIS);
+    }
+
+    private static void awaitClients(SimulationServer server, int clients) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (server.getClientCount() < clients) {
+            assertTrue("clients never connected", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static ParticleSnapshot awaitStep(SimulationClient client, long step) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        ParticleSnapshot snapshot = client.getLatestSnapshot();
+        while (snapshot.getStep() < step) {
+            assertTrue("frame of step " + step + " never arrived: " + client.getFailure(), System.currentTimeMillis() < deadline);
+            Thread.sleep(2);
+            snapshot = client.getLatestSnapshot();
+        }
+        assertEquals("step", step, snapshot.getStep());
+        return snapshot;
+    }
+
+    // Spread over the same thousand-unit square whatever the count
+    private static ParticleStore scene(int count) {
+        return TestScenes.box(count, 1000 / Math.sqrt(count), 10, 0, count);
+    }
+
+    private static void move(ParticleStore particles, Random random) {
+        for (int i = 0; i < particles.size(); i++) {
+            particles.x[i] += random.nextGaussian();
+            particles.y[i] += random.nextGaussian();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+/** Writes and reads back {@link SnapshotFile}s, with columns longer than one chunk of the copy buffer. */
+public class SnapshotFileTest {
+
+    @Test
+    public void roundTrip() throws IOException {
+        Path file = Files.createTempFile("stardust", SnapshotFile.EXTENSION);
+        try {
+            ParticleStore particles = scene(300000, 1);
+            SnapshotFile.write(particles, 1234, 56.5, file);
+
+            ParticleStore loaded = new ParticleStore();
+            loaded.add(1, 2, 3, 4, 5, 6);
+            loaded.ax[0] = 7;
+            SnapshotFile.Header header = SnapshotFile.read(file, loaded);
+            assertEquals("step", 1234, header.step);
+            assertEquals("time", 56.5, header.simulationTime, 0);
+            assertSame(particles, loaded);
+            assertEquals("header only", 300000, SnapshotFile.readHeader(file).count);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void savingAgainReplacesTheFile() throws IOException {
+        Path file = Files.createTempFile("stardust", SnapshotFile.EXTENSION);
+        try {
+            SnapshotFile.write(scene(200000, 2), 1, 1, file);
+            ParticleStore smaller = scene(1000, 3);
+            SnapshotFile.write(smaller, 2, 2, file);
+            assertSame(smaller, SnapshotFile.read(file));
+            assertEquals("file size", 32 + 44L * 1000, Files.size(file));
+
+            SnapshotFile.write(new ParticleStore(), 3, 3, file);
+            assertEquals("bodies", 0, SnapshotFile.read(file).size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws IOException {
+        Path file = Files.createTempFile("stardust", SnapshotFile.EXTENSION);
+        try {
+            SnapshotFile.write(scene(1000, 4), 1, 1, file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(Files.size(file) - 1);
+            }
+            try {
+                SnapshotFile.read(file);
+                throw new AssertionError("read a truncated snapshot");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("truncated"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static ParticleStore scene(int count, long seed) {
+        return TestScenes.box(count, 100, 100, 1, seed);
+    }
+
+    private static void assertSame(ParticleStore expected, ParticleStore actual) {
+        assertEquals("bodies", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            String body = "body " + i;
+            assertEquals(body + " mass", expected.mass[i], actual.mass[i], 0);
+            assertEquals(body + " x", expected.x[i], actual.x[i], 0);
+            assertEquals(body + " y", expected.y[i], actual.y[i], 0);
+            assertEquals(body + " vx", expected.vx[i], actual.vx[i], 0);
+            assertEquals(body + " vy", expected.vy[i], actual.vy[i], 0);
+            assertEquals(body + " color", expected.color[i], actual.color[i]);
+            assertEquals(body + " radius", expected.radius[i], actual.radius[i], 0);
+            assertEquals(body + " ax", 0, actual.ax[i], 0);
+            assertEquals(body + " ay", 0, actual.ay[i], 0);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+/** Seeded scenes the tests share, and a bit-for-bit comparison of two stores. */
+final class TestScenes {
+
+    private TestScenes() { }
+
+    /**
+     * {@code count} bodies laid out by {@link UniformBoxGenerator} about {@code spacing} apart, with masses drawn
+     * between 1 and {@code maxMass} so contacts see bodies of unequal size, and colours drawn at random so
+     * every column holds distinct values.
+     */
+    static ParticleStore box(int count, double spacing, double maxMass, double velocityDispersion, long seed) {
+        UniformBoxGenerator generator = new UniformBoxGenerator();
+        generator.setSeed(seed);
+        generator.setScaleLength(spacing * Math.sqrt(count) / 2);
+        generator.setVelocityDispersion(velocityDispersion);
+        ParticleStore particles = new ParticleStore(count);
+        generator.generate(particles, count, 1, WorkerPool.serial());
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < count; i++) {
+            particles.mass[i] = 1 + random.nextDouble() * (maxMass - 1);
+            particles.radius[i] = Particle.calculateRadiusFromMass(particles.mass[i]);
+            particles.color[i] = random.nextInt();
+        }
+        particles.markModified();
+        return particles;
+    }
+
+    /** {@code count} bodies at rest spread uniformly over a disc, with masses between 1 and {@code maxMass}. */
+    static ParticleStore disc(int count, double radius, double maxMass, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        ParticleStore particles = new ParticleStore(count);
+        for (int i = 0; i < count; i++) {
+            double distance = radius * Math.sqrt(random.nextDouble());
+            double angle = 2 * Math.PI * random.nextDouble();
+            particles.add(1 + random.nextDouble() * (maxMass - 1), distance * Math.cos(angle), distance * Math.sin(angle),
+                0, 0, 0xffffffff);
+        }
+        return particles;
+    }
+
+    /**
+     * A {@code side} by {@code side} lattice of unit masses {@code spacing} apart, each moved by up to half of
+     * {@code jitter} and given a velocity spread of {@code velocityDispersion}. No two start within reach of
+     * each other. Colours tag the bodies with their index.
+     */
+    static ParticleStore lattice(int side, double spacing, double jitter, double velocityDispersion, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        ParticleStore particles = new ParticleStore(side * side);
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                double x = column * spacing + (random.nextDouble() - 0.5) * jitter;
+                double y = row * spacing + (random.nextDouble() - 0.5) * jitter;
+                particles.add(1, x, y, velocityDispersion * SceneGenerator.nextGaussian(random),
+                    velocityDispersion * SceneGenerator.nextGaussian(random), particles.size());
+            }
+        }
+        return particles;
+    }
+
+    /** Asserts both stores hold the same bodies, comparing positions, velocities, masses and radii bit for bit. */
+    static void assertSameBits(ParticleStore expected, ParticleStore actual, String where) {
+        assertEquals(where + ", bodies", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            String body = where + ", body " + i;
+            assertBits(body + " x", expected.x[i], actual.x[i]);
+            assertBits(body + " y", expected.y[i], actual.y[i]);
+            assertBits(body + " vx", expected.vx[i], actual.vx[i]);
+            assertBits(body + " vy", expected.vy[i], actual.vy[i]);
+            assertBits(body + " mass", expected.mass[i], actual.mass[i]);
+            assertBits(body + " radius", expected.radius[i], actual.radius[i]);
+        }
+    }
+
+    private static void assertBits(String what, double expected, double actual) {
+        assertEquals(what, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+}
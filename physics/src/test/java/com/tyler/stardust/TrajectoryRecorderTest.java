@@ -0,0 +1,130 @@
+package com.tyler.stardust;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Records a scene whose bodies are created and removed along the way, including on the frames either side of a
+ * keyframe, and seeks back to frames of it in no particular order with {@link TrajectoryReader}.
+ */
+public class TrajectoryRecorderTest {
+
+    private static final double QUANTUM = 1.0 / 32;
+    private static final int KEYFRAME_INTERVAL = 4;
+    private static final int FRAMES = 20;
+    private static final int[] SEEKS = {17, 3, 4, 0, 19, 8, 9, 5, 12, 11, 1, 16, 15};
+
+    @Test
+    public void seeksMatchRecordedFrames() throws IOException {
+        Path file = Files.createTempFile("stardust", TrajectoryRecorder.EXTENSION);
+        try {
+            List<ParticleStore> expected = record(file);
+            try (TrajectoryReader reader = new TrajectoryReader(file)) {
+                assertSeeksMatch(reader, expected, FRAMES);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void recordingCutShortIsScanned() throws IOException {
+        Path file = Files.createTempFile("stardust", TrajectoryRecorder.EXTENSION);
+        Path cut = Files.createTempFile("stardust-cut", TrajectoryRecorder.EXTENSION);
+        try {
+            List<ParticleStore> expected = record(file);
+            byte[] bytes = Files.readAllBytes(file);
+            long indexOffset = ByteBuffer.wrap(bytes, bytes.length - 12, 8).getLong();
+
+            // No index, and half a record header where the next frame was being written
+            byte[] noIndex = Arrays.copyOf(bytes, (int)indexOffset + TrajectoryRecorder.RECORD_HEADER_BYTES / 2);
+            System.arraycopy(bytes, TrajectoryRecorder.HEADER_BYTES, noIndex, (int)indexOffset, TrajectoryRecorder.RECORD_HEADER_BYTES / 2);
+            Files.write(cut, noIndex);
+            try (TrajectoryReader reader = new TrajectoryReader(cut)) {
+                assertSeeksMatch(reader, expected, FRAMES);
+            }
+
+            // Cut inside the last record, which is dropped
+            Files.write(cut, Arrays.copyOf(bytes, (int)indexOffset - 1));
+            try (TrajectoryReader reader = new TrajectoryReader(cut)) {
+                assertSeeksMatch(reader, expected, FRAMES - 1);
+            }
+        } finally {
+            Files.delete(file);
+            Files.delete(cut);
+        }
+    }
+
+    // Records FRAMES steps and returns the bodies each frame should decode to
+    private static List<ParticleStore> record(Path file) throws IOException {
+        Random random = new Random(6);
+        ParticleStore particles = new ParticleStore();
+        for (int i = 0; i < 50; i++) {
+            particles.add(1 + random.nextDouble() * 9, random.nextDouble() * 500, random.nextDouble() * 500, 0, 0, random.nextInt());
+        }
+        List<ParticleStore> expected = new ArrayList<ParticleStore>();
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder(file, QUANTUM, KEYFRAME_INTERVAL, 1)) {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                for (int i = 0; i < particles.size(); i++) {
+                    particles.x[i] += random.nextGaussian() * 3;
+                    particles.y[i] += random.nextGaussian() * 3;
+                }
+                // Frames 3, 4, 7, 8, ... end or start a keyframe interval
+                if (frame % KEYFRAME_INTERVAL == 0 || frame % KEYFRAME_INTERVAL == KEYFRAME_INTERVAL - 1) {
+                    particles.mass[random.nextInt(particles.size())] = 0;
+                    particles.mass[random.nextInt(particles.size())] = 0;
+                    particles.removeMassless();
+                    particles.add(4, random.nextDouble() * 500, random.nextDouble() * 500, 0, 0, random.nextInt());
+                }
+                recorder.stepCompleted(particles, 0.5);
+                ParticleStore copy = new ParticleStore();
+                copy.copyFrom(particles);
+                System.arraycopy(particles.id, 0, copy.id, 0, particles.size());
+                expected.add(copy);
+                awaitRecorded(recorder, frame + 1);
+            }
+            assertEquals("dropped frames", 0, recorder.getDroppedFrames());
+        }
+        return expected;
+    }
+
+    // The recorder skips steps while its pooled frames are busy, so let it catch up after each one
+    private static void awaitRecorded(TrajectoryRecorder recorder, int frames) {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (recorder.getRecordedFrames() < frames) {
+            assertTrue("frame " + frames + " never written", System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+    }
+
+    private static void assertSeeksMatch(TrajectoryReader reader, List<ParticleStore> expected, int frames) throws IOException {
+        assertEquals("frames", frames, reader.getFrameCount());
+        ParticleSnapshot snapshot = new ParticleSnapshot();
+        for (int frame : SEEKS) {
+            if (frame >= frames) continue;
+            reader.readFrame(frame, snapshot);
+            ParticleStore bodies = expected.get(frame);
+            assertEquals("frame " + frame + " step", frame + 1, snapshot.getStep());
+            assertEquals("frame " + frame + " time", 0.5 * (frame + 1), snapshot.getSimulationTime(), 1e-12);
+            assertEquals("frame " + frame + " bodies", bodies.size(), snapshot.getCount());
+            for (int i = 0; i < bodies.size(); i++) {
+                String body = "frame " + frame + ", body " + i;
+                assertEquals(body + " id", bodies.id[i], snapshot.getId(i));
+                assertEquals(body + " color", bodies.color[i], snapshot.getColor(i));
+                assertEquals(body + " x", (float)(Math.round(bodies.x[i] / QUANTUM) * QUANTUM), snapshot.getX(i), 0);
+                assertEquals(body + " y", (float)(Math.round(bodies.y[i] / QUANTUM) * QUANTUM), snapshot.getY(i), 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.tyler.stardust;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link DirectSumKernel} evaluating as many pairs at once as the CPU has double lanes. Only compiled for Java 17
+ * and later and created by {@link DirectSumGravitySolver} by reflection; see the {@code vector} source set.
+ *
+ * <p>Each pair goes through the same operations as in the scalar loops, so only the order in which a body's own
+ * pulls are summed differs: lane by lane, then across the lanes, then the leftover bodies.
+ */
+final class VectorDirectSumKernel implements DirectSumKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    VectorDirectSumKernel() {
+        // Without SIMD the vector API falls back to plain Java, far slower than the scalar loops
+        if (SPECIES.length() < 2) throw new UnsupportedOperationException("No SIMD doubles on this CPU");
+    }
+
+    @Override
+    public void accumulate(ParticleStore particles, int start, int end, int otherStart, int otherEnd, boolean within,
+            double softeningSquared) {
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] mass = particles.mass;
+        double[] ax = particles.ax;
+        double[] ay = particles.ay;
+        DoubleVector softening = DoubleVector.broadcast(SPECIES, softeningSquared);
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+
+        for (int i = start; i < end; i++) {
+            double xi = x[i], yi = y[i], mi = mass[i];
+            DoubleVector vxi = DoubleVector.broadcast(SPECIES, xi);
+            DoubleVector vyi = DoubleVector.broadcast(SPECIES, yi);
+            DoubleVector sumX = zero;
+            DoubleVector sumY = zero;
+            int j = within ? i + 1 : otherStart;
+            for (int bound = j + SPECIES.loopBound(otherEnd - j); j < bound; j += SPECIES.length()) {
+                DoubleVector dx = DoubleVector.fromArray(SPECIES, x, j).sub(vxi);
+                DoubleVector dy = DoubleVector.fromArray(SPECIES, y, j).sub(vyi);
+                DoubleVector distanceSquared = dx.mul(dx).add(dy.mul(dy)).add(softening);
+                VectorMask<Double> apart = distanceSquared.compare(VectorOperators.NE, 0);
+                DoubleVector inverseCube = zero.blend(one.div(distanceSquared.mul(distanceSquared.sqrt())), apart);
+                DoubleVector fx = dx.mul(inverseCube);
+                DoubleVector fy = dy.mul(inverseCube);
+                DoubleVector mj = DoubleVector.fromArray(SPECIES, mass, j);
+                sumX = sumX.add(mj.mul(fx));
+                sumY = sumY.add(mj.mul(fy));
+                DoubleVector.fromArray(SPECIES, ax, j).sub(fx.mul(mi)).intoArray(ax, j);
+                DoubleVector.fromArray(SPECIES, ay, j).sub(fy.mul(mi)).intoArray(ay, j);
+            }
+            double axi = sumX.reduceLanes(VectorOperators.ADD);
+            double ayi = sumY.reduceLanes(VectorOperators.ADD);
+            for (; j < otherEnd; j++) {
+                double dx = x[j] - xi;
+                double dy = y[j] - yi;
+                double distanceSquared = dx * dx + dy * dy + softeningSquared;
+                if (distanceSquared == 0) continue;
+                double inverseCube = 1 / (distanceSquared * Math.sqrt(distanceSquared));
+                double fx = dx * inverseCube;
+                double fy = dy * inverseCube;
+                axi += mass[j] * fx;
+                ayi += mass[j] * fy;
+                ax[j] -= mi * fx;
+                ay[j] -= mi * fy;
+            }
+            ax[i] += axi;
+            ay[i] += ayi;
+        }
+    }
+
+    @Override
+    public void gather(ParticleStore particles, int i, double scale, double softeningSquared) {
+        int count = particles.size();
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] mass = particles.mass;
+        double xi = x[i], yi = y[i];
+        DoubleVector vxi = DoubleVector.broadcast(SPECIES, xi);
+        DoubleVector vyi = DoubleVector.broadcast(SPECIES, yi);
+        DoubleVector softening = DoubleVector.broadcast(SPECIES, softeningSquared);
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector sumX = zero;
+        DoubleVector sumY = zero;
+        int j = 0;
+        for (int bound = SPECIES.loopBound(count); j < bound; j += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, x, j).sub(vxi);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, y, j).sub(vyi);
+            DoubleVector distanceSquared = dx.mul(dx).add(dy.mul(dy)).add(softening);
+            // Also skips the body itself, which contributes nothing when softened
+            VectorMask<Double> apart = distanceSquared.compare(VectorOperators.NE, 0);
+            DoubleVector inverseCube = zero.blend(DoubleVector.fromArray(SPECIES, mass, j).div(distanceSquared.mul(distanceSquared.sqrt())), apart);
+            sumX = sumX.add(dx.mul(inverseCube));
+            sumY = sumY.add(dy.mul(inverseCube));
+        }
+        double axi = sumX.reduceLanes(VectorOperators.ADD);
+        double ayi = sumY.reduceLanes(VectorOperators.ADD);
+        for (; j < count; j++) {
+            double dx = x[j] - xi;
+            double dy = y[j] - yi;
+            double distanceSquared = dx * dx + dy * dy + softeningSquared;
+            if (distanceSquared == 0) continue;
+            double inverseCube = mass[j] / (distanceSquared * Math.sqrt(distanceSquared));
+            axi += dx * inverseCube;
+            ayi += dy * inverseCube;
+        }
+        particles.ax[i] = scale * axi;
+        particles.ay[i] = scale * ayi;
+    }
+}